@@ -1358,81 +1358,35 @@ public final class ByteBufUtil {
      * </pre>
      */
     private static boolean isUtf8(ByteBuf buf, int index, int length) {
-        final int endIndex = index + length;
-        while (index < endIndex) {
-            byte b1 = buf.getByte(index++);
-            byte b2, b3, b4;
-            if ((b1 & 0x80) == 0) {
-                // 1 byte
-                continue;
-            }
-            if ((b1 & 0xE0) == 0xC0) {
-                // 2 bytes
-                //
-                // Bit/Byte pattern
-                // 110xxxxx    10xxxxxx
-                // C2..DF      80..BF
-                if (index >= endIndex) { // no enough bytes
-                    return false;
-                }
-                b2 = buf.getByte(index++);
-                if ((b2 & 0xC0) != 0x80) { // 2nd byte not starts with 10
-                    return false;
-                }
-                if ((b1 & 0xFF) < 0xC2) { // out of lower bound
-                    return false;
-                }
-            } else if ((b1 & 0xF0) == 0xE0) {
-                // 3 bytes
-                //
-                // Bit/Byte pattern
-                // 1110xxxx    10xxxxxx    10xxxxxx
-                // E0          A0..BF      80..BF
-                // E1..EC      80..BF      80..BF
-                // ED          80..9F      80..BF
-                // E1..EF      80..BF      80..BF
-                if (index > endIndex - 2) { // no enough bytes
-                    return false;
-                }
-                b2 = buf.getByte(index++);
-                b3 = buf.getByte(index++);
-                if ((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80) { // 2nd or 3rd bytes not start with 10
-                    return false;
-                }
-                if ((b1 & 0x0F) == 0x00 && (b2 & 0xFF) < 0xA0) { // out of lower bound
-                    return false;
-                }
-                if ((b1 & 0x0F) == 0x0D && (b2 & 0xFF) > 0x9F) { // out of upper bound
-                    return false;
-                }
-            } else if ((b1 & 0xF8) == 0xF0) {
-                // 4 bytes
-                //
-                // Bit/Byte pattern
-                // 11110xxx    10xxxxxx    10xxxxxx    10xxxxxx
-                // F0          90..BF      80..BF      80..BF
-                // F1..F3      80..BF      80..BF      80..BF
-                // F4          80..8F      80..BF      80..BF
-                if (index > endIndex - 3) { // no enough bytes
-                    return false;
-                }
-                b2 = buf.getByte(index++);
-                b3 = buf.getByte(index++);
-                b4 = buf.getByte(index++);
-                if ((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80 || (b4 & 0xC0) != 0x80) {
-                    // 2nd, 3rd or 4th bytes not start with 10
-                    return false;
-                }
-                if ((b1 & 0xFF) > 0xF4 // b1 invalid
-                        || (b1 & 0xFF) == 0xF0 && (b2 & 0xFF) < 0x90    // b2 out of lower bound
-                        || (b1 & 0xFF) == 0xF4 && (b2 & 0xFF) > 0x8F) { // b2 out of upper bound
-                    return false;
-                }
-            } else {
-                return false;
-            }
+        return Utf8Validation.validate(buf, index, length, Utf8Validation.UTF8_ACCEPT) == Utf8Validation.UTF8_ACCEPT;
+    }
+
+    /**
+     * Validates that the specified bytes are UTF-8, possibly as a continuation of the bytes validated before, like
+     * a text message which is received in several frames. Runs of ASCII bytes are validated 8 bytes at a time.
+     *
+     * @param buf the buffer.
+     * @param index the start index of the bytes.
+     * @param length the number of bytes.
+     * @param state {@code 0} for the first bytes, otherwise the state returned for the bytes before.
+     * @return {@code 0} if the bytes are valid and end with a complete character, a positive state to pass to the
+     *         next call if they are valid so far but end within a character, or a negative value if they are not
+     *         valid UTF-8.
+     * @throws IndexOutOfBoundsException if the bytes are not within the capacity of the buffer.
+     * @throws IllegalArgumentException if {@code state} is neither negative nor a state returned by this method.
+     */
+    public static int validateUtf8(ByteBuf buf, int index, int length, int state) {
+        checkNotNull(buf, "buf");
+        if (isOutOfBounds(index, length, buf.capacity())) {
+            throw new IndexOutOfBoundsException("index: " + index + " length: " + length);
         }
-        return true;
+        if (state < 0) {
+            return state;
+        }
+        if (!Utf8Validation.isState(state)) {
+            throw new IllegalArgumentException("state: " + state + " (expected: 0 or a state returned before)");
+        }
+        return Utf8Validation.validate(buf, index, length, state);
     }
 
     /**
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+/*
+ * Adaptation of http://bjoern.hoehrmann.de/utf-8/decoder/dfa/
+ *
+ * Copyright (c) 2008-2009 Bjoern Hoehrmann <bjoern@hoehrmann.de>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.netty.buffer;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Validates UTF-8 with a DFA, which is only run around non-ASCII bytes. Runs of ASCII bytes are skipped 8 bytes at a
+ * time. See {@link ByteBufUtil#validateUtf8(ByteBuf, int, int, int)}.
+ */
+final class Utf8Validation {
+
+    static final int UTF8_ACCEPT = 0;
+    private static final int UTF8_REJECT = 12;
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+
+    private static final byte[] TYPES = { 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 1,
+            1, 1, 1, 1, 1, 1, 1, 1, 1, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 9, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 8,
+            8, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+            2, 2, 10, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 4, 3, 3, 11, 6, 6, 6, 5, 8, 8, 8, 8, 8,
+            8, 8, 8, 8, 8, 8 };
+
+    private static final byte[] STATES = { 0, 12, 24, 36, 60, 96, 84, 12, 12, 12, 48, 72, 12, 12,
+            12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 12, 0, 12, 12, 12, 12, 12, 0, 12, 0, 12, 12,
+            12, 24, 12, 12, 12, 12, 12, 24, 12, 24, 12, 12, 12, 12, 12, 12, 12, 12, 12, 24, 12, 12,
+            12, 12, 12, 24, 12, 12, 12, 12, 12, 12, 12, 24, 12, 12, 12, 12, 12, 12, 12, 12, 12, 36,
+            12, 36, 12, 12, 12, 36, 12, 12, 12, 12, 12, 36, 12, 36, 12, 12, 12, 36, 12, 12, 12, 12,
+            12, 12, 12, 12, 12, 12 };
+
+    private Utf8Validation() { }
+
+    /**
+     * Returns {@code true} if the given value is a state of the DFA which {@link #validate} may return, so it can be
+     * used to continue the validation.
+     */
+    static boolean isState(int state) {
+        return state >= 0 && state < STATES.length && state % 12 == 0 && state != UTF8_REJECT;
+    }
+
+    /**
+     * Returns the DFA state after the given bytes, or {@code -1} if they are invalid.
+     */
+    static int validate(ByteBuf buf, int index, int length, int state) {
+        if (PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned()) {
+            if (buf.hasMemoryAddress()) {
+                return validate(buf.memoryAddress() + index, length, state);
+            }
+            if (buf.hasArray()) {
+                return validate(buf.array(), buf.arrayOffset() + index, length, state);
+            }
+        }
+        final int end = index + length;
+        int i = index;
+        while (i < end) {
+            if (state == UTF8_ACCEPT) {
+                while (i < end - 7 && (buf.getLong(i) & NON_ASCII_MASK) == 0) {
+                    i += 8;
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+            state = STATES[state + TYPES[buf.getByte(i++) & 0xFF]];
+            if (state == UTF8_REJECT) {
+                return -1;
+            }
+        }
+        return state;
+    }
+
+    private static int validate(long address, int length, int state) {
+        final long end = address + length;
+        long i = address;
+        while (i < end) {
+            if (state == UTF8_ACCEPT) {
+                while (i < end - 7 && (PlatformDependent.getLong(i) & NON_ASCII_MASK) == 0) {
+                    i += 8;
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+            state = STATES[state + TYPES[PlatformDependent.getByte(i++) & 0xFF]];
+            if (state == UTF8_REJECT) {
+                return -1;
+            }
+        }
+        return state;
+    }
+
+    private static int validate(byte[] array, int index, int length, int state) {
+        final int end = index + length;
+        int i = index;
+        while (i < end) {
+            if (state == UTF8_ACCEPT) {
+                while (i < end - 7 && (PlatformDependent.getLong(array, i) & NON_ASCII_MASK) == 0) {
+                    i += 8;
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+            state = STATES[state + TYPES[array[i++] & 0xFF]];
+            if (state == UTF8_REJECT) {
+                return -1;
+            }
+        }
+        return state;
+    }
+}
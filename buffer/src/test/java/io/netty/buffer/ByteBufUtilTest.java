@@ -815,4 +815,82 @@ public class ByteBufUtilTest {
             buffer.release();
         }
     }
+
+    @Test
+    public void testValidateUtf8() {
+        assertValidUtf8(true, "");
+        assertValidUtf8(true, "only ascii characters, more than eight of them");
+        assertValidUtf8(true, "ascii with \u00e9, \u20ac and \ud83d\ude00 in between, and ascii after them");
+        assertValidUtf8(false, new byte[] { 'a', (byte) 0xC0, (byte) 0x80 }); // overlong
+        assertValidUtf8(false, new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 }); // surrogate
+        assertValidUtf8(false, new byte[] { (byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80 }); // > U+10FFFF
+        assertValidUtf8(false, new byte[] { (byte) 0xF5, (byte) 0x80, (byte) 0x80, (byte) 0x80 });
+        assertValidUtf8(false, new byte[] { 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', (byte) 0x80 });
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            byte[] bytes = new byte[random.nextInt(40)];
+            for (int j = 0; j < bytes.length; j++) {
+                // Mostly ASCII, with some multi-byte characters and some invalid sequences.
+                int b = random.nextInt(10) < 7 ? random.nextInt(0x80) : 0x80 + random.nextInt(0x80);
+                bytes[j] = (byte) b;
+            }
+            boolean valid = Arrays.equals(bytes, new String(bytes, CharsetUtil.UTF_8).getBytes(CharsetUtil.UTF_8));
+            assertValidUtf8(valid, bytes);
+        }
+    }
+
+    @Test
+    public void testValidateUtf8Incomplete() {
+        byte[] euro = "\u20ac".getBytes(CharsetUtil.UTF_8);
+        ByteBuf buf = Unpooled.wrappedBuffer(euro);
+        int state = ByteBufUtil.validateUtf8(buf, 0, 2, 0);
+        assertTrue(state > 0);
+        assertFalse(ByteBufUtil.isText(buf, 0, 2, CharsetUtil.UTF_8));
+        assertEquals(0, ByteBufUtil.validateUtf8(buf, 2, 1, state));
+        assertTrue(ByteBufUtil.validateUtf8(buf, 0, 1, ByteBufUtil.validateUtf8(buf, 0, 1, 0)) < 0);
+        buf.release();
+    }
+
+    @Test
+    public void testValidateUtf8InvalidState() {
+        ByteBuf buf = Unpooled.wrappedBuffer(new byte[] { 'a' });
+        try {
+            for (int state : new int[] { 1, 12, 13, 108, 120, Integer.MAX_VALUE }) {
+                try {
+                    ByteBufUtil.validateUtf8(buf, 0, 1, state);
+                    fail("state: " + state);
+                } catch (IllegalArgumentException expected) {
+                    // expected
+                }
+            }
+            assertEquals(-1, ByteBufUtil.validateUtf8(buf, 0, 1, -1));
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void assertValidUtf8(boolean expected, String text) {
+        assertValidUtf8(expected, text.getBytes(CharsetUtil.UTF_8));
+    }
+
+    private static void assertValidUtf8(boolean expected, byte[] bytes) {
+        ByteBuf[] buffers = {
+                Unpooled.wrappedBuffer(bytes),
+                Unpooled.directBuffer(bytes.length + 1).writeBytes(bytes),
+                Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(bytes, 0, bytes.length / 2),
+                                       Unpooled.wrappedBuffer(bytes, bytes.length / 2, bytes.length - bytes.length / 2))
+        };
+        for (ByteBuf buf : buffers) {
+            assertEquals(expected, ByteBufUtil.validateUtf8(buf, 0, bytes.length, 0) == 0);
+            assertEquals(expected, ByteBufUtil.isText(buf, CharsetUtil.UTF_8));
+            // The result does not depend on how the bytes are split.
+            for (int split = 0; split <= bytes.length; split++) {
+                int state = ByteBufUtil.validateUtf8(buf, 0, split, 0);
+                state = ByteBufUtil.validateUtf8(buf, split, bytes.length - split, state);
+                assertEquals(expected, state == 0);
+            }
+            buf.release();
+        }
+    }
 }
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * Caches the compressed bodies of {@link FullHttpResponse}s which are sent repeatedly, so
+ * {@link HttpContentCompressor} only needs to compress them once per {@link CompressionEncoderFactory}.
+ * <p>
+ * Bodies are looked up by a hash of their content and compared byte by byte before the cached result is used, so a
+ * hash collision never results in a wrong body. Bodies compressed by factories of
+ * {@link CompressionEncoderFactories} are shared between all factories with the same content-coding and parameters,
+ * bodies of other factories are only shared between users of the same factory instance. The least recently used
+ * bodies are evicted once {@code maxEntries} is reached. One instance can be shared by all
+ * {@link HttpContentCompressor}s.
+ */
+@UnstableApi
+public final class CompressedContentCache {
+
+    private final int maxEntries;
+    private final int maxContentLength;
+    private final Map<Key, Entry> entries;
+    private final LongCounter hits = PlatformDependent.newLongCounter();
+    private final LongCounter misses = PlatformDependent.newLongCounter();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of cached bodies.
+     * @param maxContentLength the maximum length of a body (before compression) which is cached.
+     */
+    public CompressedContentCache(final int maxEntries, int maxContentLength) {
+        this.maxEntries = checkPositive(maxEntries, "maxEntries");
+        this.maxContentLength = checkPositiveOrZero(maxContentLength, "maxContentLength");
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = -5398216462046375475L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of cached bodies.
+     */
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum length of a body (before compression) which is cached.
+     */
+    public int maxContentLength() {
+        return maxContentLength;
+    }
+
+    /**
+     * Returns the number of cached bodies.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of bodies which did not need to be compressed as they were cached.
+     */
+    public long hits() {
+        return hits.value();
+    }
+
+    /**
+     * Returns the number of cacheable bodies which needed to be compressed.
+     */
+    public long misses() {
+        return misses.value();
+    }
+
+    /**
+     * Removes all cached bodies.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns a {@link ChannelHandler} which writes the cached compressed body for the given content, or {@code null}
+     * if the content is not cached. In the latter case
+     * {@link #newRecordingHandler(CompressionEncoderFactory, ByteBuf)} should be used to cache the body.
+     */
+    ChannelHandler newCachedEncoder(CompressionEncoderFactory factory, ByteBuf content) {
+        Key key = new Key(factory, content);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.content.length == content.readableBytes() &&
+                ByteBufUtil.equals(content, content.readerIndex(),
+                        Unpooled.wrappedBuffer(entry.content), 0, entry.content.length)) {
+            hits.increment();
+            return new CachedEncoder(entry.compressed);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a {@link ChannelHandler} which needs to be placed in front of the actual encoder and caches its
+     * output once it is closed, or {@code null} if the content is too big to be cached.
+     */
+    ChannelHandler newRecordingHandler(CompressionEncoderFactory factory, ByteBuf content) {
+        if (content.readableBytes() > maxContentLength) {
+            return null;
+        }
+        misses.increment();
+        return new RecordingHandler(new Key(factory, content), ByteBufUtil.getBytes(content));
+    }
+
+    private void put(Key key, byte[] content, byte[] compressed) {
+        synchronized (entries) {
+            entries.put(key, new Entry(content, compressed));
+        }
+    }
+
+    private static final class Key {
+        // The factory determines the content-coding and the parameters of the encoder.
+        private final CompressionEncoderFactory factory;
+        private final int contentHash;
+        private final int contentLength;
+
+        Key(CompressionEncoderFactory factory, ByteBuf content) {
+            this.factory = factory;
+            contentHash = ByteBufUtil.hashCode(content);
+            contentLength = content.readableBytes();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * factory.hashCode() + contentHash) + contentLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return contentHash == other.contentHash && contentLength == other.contentLength &&
+                    factory.equals(other.factory);
+        }
+    }
+
+    private static final class Entry {
+        final byte[] content;
+        final byte[] compressed;
+
+        Entry(byte[] content, byte[] compressed) {
+            this.content = content;
+            this.compressed = compressed;
+        }
+    }
+
+    /**
+     * Replaces the encoder and writes the cached compressed body instead of the content.
+     */
+    private static final class CachedEncoder extends ChannelOutboundHandlerAdapter {
+        private final byte[] compressed;
+        private boolean written;
+
+        CachedEncoder(byte[] compressed) {
+            this.compressed = compressed;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            if (written) {
+                promise.setSuccess();
+            } else {
+                written = true;
+                // Read-only, as the cached body is shared by all responses.
+                ctx.write(Unpooled.wrappedBuffer(compressed).asReadOnly(), promise);
+            }
+        }
+    }
+
+    /**
+     * Records everything the encoder writes and caches it once the encoder is closed without a failure.
+     */
+    private final class RecordingHandler extends ChannelDuplexHandler {
+        private final Key key;
+        private final byte[] content;
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        private boolean failed;
+
+        RecordingHandler(Key key, byte[] content) {
+            this.key = key;
+            this.content = content;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof ByteBuf) {
+                ByteBuf buf = (ByteBuf) msg;
+                buf.getBytes(buf.readerIndex(), compressed, buf.readableBytes());
+            } else {
+                failed = true;
+            }
+            ctx.write(msg, promise);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            failed = true;
+            ctx.fireExceptionCaught(cause);
+        }
+
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+            if (!failed) {
+                put(key, content, compressed.toByteArray());
+            }
+            ctx.close(promise);
+        }
+    }
+}
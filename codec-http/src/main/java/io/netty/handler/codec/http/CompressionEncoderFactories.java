@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Arrays;
+
+/**
+ * The {@link CompressionEncoderFactory}s for the content-codings which are provided by Netty.
+ */
+@UnstableApi
+public final class CompressionEncoderFactories {
+
+    /**
+     * Returns a {@link CompressionEncoderFactory} for the {@code gzip} content-coding.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 9} yields the best compression.
+     * @param windowBits the base two logarithm of the size of the history buffer ({@code 9} to {@code 15}).
+     * @param memLevel how much memory should be allocated for the internal compression state ({@code 1} to
+     *                 {@code 9}).
+     */
+    public static CompressionEncoderFactory gzip(int compressionLevel, int windowBits, int memLevel) {
+        return new ZlibEncoderFactory("gzip", ZlibWrapper.GZIP, compressionLevel, windowBits, memLevel, null);
+    }
+
+    /**
+     * Returns a {@link CompressionEncoderFactory} for the {@code deflate} content-coding.
+     *
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 9} yields the best compression.
+     * @param windowBits the base two logarithm of the size of the history buffer ({@code 9} to {@code 15}).
+     * @param memLevel how much memory should be allocated for the internal compression state ({@code 1} to
+     *                 {@code 9}).
+     */
+    public static CompressionEncoderFactory deflate(int compressionLevel, int windowBits, int memLevel) {
+        return new ZlibEncoderFactory("deflate", ZlibWrapper.ZLIB, compressionLevel, windowBits, memLevel, null);
+    }
+
+    /**
+     * Returns a {@link CompressionEncoderFactory} which uses the {@code zlib} format with a preset dictionary that is
+     * shared with the peer. As the standard {@code deflate} content-coding does not allow to use a dictionary, a
+     * content-coding which the peer knows to decode with the same dictionary must be used.
+     *
+     * @param encoding the content-coding, for example {@code x-deflate-dict}.
+     * @param compressionLevel {@code 1} yields the fastest compression and {@code 9} yields the best compression.
+     * @param windowBits the base two logarithm of the size of the history buffer ({@code 9} to {@code 15}).
+     * @param memLevel how much memory should be allocated for the internal compression state ({@code 1} to
+     *                 {@code 9}).
+     * @param dictionary the preset dictionary.
+     */
+    public static CompressionEncoderFactory deflateWithDictionary(
+            String encoding, int compressionLevel, int windowBits, int memLevel, byte[] dictionary) {
+        ObjectUtil.checkNotNull(encoding, "encoding");
+        ObjectUtil.checkNotNull(dictionary, "dictionary");
+        return new ZlibEncoderFactory(encoding, ZlibWrapper.ZLIB, compressionLevel, windowBits, memLevel,
+                dictionary.clone());
+    }
+
+    private static final class ZlibEncoderFactory implements CompressionEncoderFactory {
+        private final String encoding;
+        private final ZlibWrapper wrapper;
+        private final int compressionLevel;
+        private final int windowBits;
+        private final int memLevel;
+        private final byte[] dictionary;
+
+        ZlibEncoderFactory(String encoding, ZlibWrapper wrapper, int compressionLevel, int windowBits, int memLevel,
+                           byte[] dictionary) {
+            if (compressionLevel < 0 || compressionLevel > 9) {
+                throw new IllegalArgumentException(
+                        "compressionLevel: " + compressionLevel + " (expected: 0-9)");
+            }
+            if (windowBits < 9 || windowBits > 15) {
+                throw new IllegalArgumentException(
+                        "windowBits: " + windowBits + " (expected: 9-15)");
+            }
+            if (memLevel < 1 || memLevel > 9) {
+                throw new IllegalArgumentException(
+                        "memLevel: " + memLevel + " (expected: 1-9)");
+            }
+            this.encoding = encoding;
+            this.wrapper = wrapper;
+            this.compressionLevel = compressionLevel;
+            this.windowBits = windowBits;
+            this.memLevel = memLevel;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public String encoding() {
+            return encoding;
+        }
+
+        @Override
+        public ChannelHandler newEncoder() {
+            if (dictionary != null) {
+                return ZlibCodecFactory.newZlibEncoder(compressionLevel, windowBits, memLevel, dictionary);
+            }
+            return ZlibCodecFactory.newZlibEncoder(wrapper, compressionLevel, windowBits, memLevel);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = encoding.hashCode();
+            hash = 31 * hash + wrapper.hashCode();
+            hash = 31 * hash + compressionLevel;
+            hash = 31 * hash + windowBits;
+            hash = 31 * hash + memLevel;
+            return 31 * hash + Arrays.hashCode(dictionary);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ZlibEncoderFactory)) {
+                return false;
+            }
+            ZlibEncoderFactory other = (ZlibEncoderFactory) o;
+            return encoding.equals(other.encoding) && wrapper == other.wrapper &&
+                    compressionLevel == other.compressionLevel && windowBits == other.windowBits &&
+                    memLevel == other.memLevel && Arrays.equals(dictionary, other.dictionary);
+        }
+
+        @Override
+        public String toString() {
+            return encoding;
+        }
+    }
+
+    private CompressionEncoderFactories() { }
+}
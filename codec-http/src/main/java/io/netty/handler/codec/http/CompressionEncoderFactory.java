@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Creates the encoders for a content-coding which can be negotiated by {@link HttpContentCompressor}.
+ * <p>
+ * Implementations can be used to plug in content-codings which are not provided by Netty itself, like {@code br}
+ * or {@code zstd}. See {@link CompressionEncoderFactories} for the built-in ones. A {@link CompressedContentCache}
+ * shares compressed bodies between equal factories, so implementations which override {@link Object#equals(Object)}
+ * must only be equal if their encoders produce the same output.
+ */
+@UnstableApi
+public interface CompressionEncoderFactory {
+
+    /**
+     * Returns the content-coding as used in the {@code "Accept-Encoding"} and {@code "Content-Encoding"} headers,
+     * for example {@code gzip}.
+     */
+    String encoding();
+
+    /**
+     * Returns a new {@link ChannelHandler} which compresses all {@link ByteBuf}s written to it and writes the
+     * remaining data once it is closed. The returned handler is only used for a single response.
+     */
+    ChannelHandler newEncoder();
+}
@@ -0,0 +1,649 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.PrematureChannelClosureException;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.Closeable;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A HTTP/1.1 client which keeps the connections to each remote address alive and reuses them for later requests.
+ * <p>
+ * Connections are pooled per remote address and per {@link EventLoop}. A request which is executed from an
+ * {@link EventLoop} of the {@link Bootstrap}'s group uses the connections of that {@link EventLoop}, so the request
+ * and its response never cross threads; other requests use the next {@link EventLoop} of the group. At most
+ * {@code maxConnectionsPerHost} connections are opened per remote address and {@link EventLoop}, further requests
+ * wait for a connection to become available.
+ * <p>
+ * If {@code maxPipelinedRequests} is greater than {@code 1}, idempotent requests are also pipelined on connections
+ * which only have idempotent requests in flight. An idempotent request whose connection is closed before its
+ * response was received is retried once on another connection, if the closed connection already received a response
+ * before. Connections are closed once they were idle for {@code idleTimeout} or once they are older than
+ * {@code maxLifetime}. The state kept for a remote address is dropped once it has no connections and no waiting
+ * requests anymore.
+ * <p>
+ * The handler of the {@link Bootstrap}, if any, is added to the pipeline of each connection before the
+ * {@link HttpClientCodec}, for example to add a {@link io.netty.handler.ssl.SslHandler}. It must therefore be a
+ * {@link ChannelHandler.Sharable} handler such as a {@link ChannelInitializer}.
+ * <p>
+ * Responses are aggregated into a {@link FullHttpResponse}, which must be released by the caller.
+ */
+@UnstableApi
+public final class HttpClientConnectionPool implements Closeable {
+
+    private final Bootstrap bootstrap;
+    private final ChannelHandler handler;
+    private final List<EventLoop> eventLoops = new ArrayList<EventLoop>();
+    private final EventLoopGroup group;
+    private final int maxConnectionsPerHost;
+    private final int maxPendingRequestsPerHost;
+    private final int maxPipelinedRequests;
+    private final int maxContentLength;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+    private final ConcurrentMap<PoolKey, HostPool> pools = PlatformDependent.newConcurrentHashMap();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance which neither pipelines requests nor closes idle connections.
+     *
+     * @param bootstrap             the {@link Bootstrap} used to connect, with its group and channel set and an
+     *                              optional handler which is added before the HTTP codec
+     * @param maxConnectionsPerHost the maximum number of connections per remote address and {@link EventLoop}
+     */
+    public HttpClientConnectionPool(Bootstrap bootstrap, int maxConnectionsPerHost) {
+        this(bootstrap, maxConnectionsPerHost, Integer.MAX_VALUE, 1, 1024 * 1024, 0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap                 the {@link Bootstrap} used to connect, with its group and channel set and
+     *                                  an optional handler which is added before the HTTP codec
+     * @param maxConnectionsPerHost     the maximum number of connections per remote address and {@link EventLoop}
+     * @param maxPendingRequestsPerHost the maximum number of requests per remote address and {@link EventLoop} which
+     *                                  wait for a connection, further requests are failed
+     * @param maxPipelinedRequests      the maximum number of requests in flight per connection, {@code 1} disables
+     *                                  pipelining
+     * @param maxContentLength          the maximum length of the content of a response
+     * @param idleTimeout               the time after which an idle connection is closed, {@code 0} to disable
+     * @param maxLifetime               the time after which a connection is not reused anymore, {@code 0} to disable
+     * @param unit                      the unit of {@code idleTimeout} and {@code maxLifetime}
+     */
+    public HttpClientConnectionPool(Bootstrap bootstrap, int maxConnectionsPerHost, int maxPendingRequestsPerHost,
+                                    int maxPipelinedRequests, int maxContentLength, long idleTimeout,
+                                    long maxLifetime, TimeUnit unit) {
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
+        group = checkNotNull(this.bootstrap.config().group(), "bootstrap.config().group()");
+        handler = this.bootstrap.config().handler();
+        this.maxConnectionsPerHost = checkPositive(maxConnectionsPerHost, "maxConnectionsPerHost");
+        this.maxPendingRequestsPerHost = checkPositiveOrZero(maxPendingRequestsPerHost, "maxPendingRequestsPerHost");
+        this.maxPipelinedRequests = checkPositive(maxPipelinedRequests, "maxPipelinedRequests");
+        this.maxContentLength = checkPositiveOrZero(maxContentLength, "maxContentLength");
+        checkNotNull(unit, "unit");
+        idleTimeoutNanos = unit.toNanos(checkPositiveOrZero(idleTimeout, "idleTimeout"));
+        maxLifetimeNanos = unit.toNanos(checkPositiveOrZero(maxLifetime, "maxLifetime"));
+        for (EventExecutor executor : group) {
+            if (executor instanceof EventLoop) {
+                eventLoops.add((EventLoop) executor);
+            }
+        }
+    }
+
+    /**
+     * Writes the given request to the given remote address and returns the {@link Future} of its response. The
+     * request is released once it is not needed anymore.
+     */
+    public Future<FullHttpResponse> execute(SocketAddress remoteAddress, FullHttpRequest request) {
+        checkNotNull(remoteAddress, "remoteAddress");
+        checkNotNull(request, "request");
+        final EventLoop loop = currentEventLoop();
+        final Exchange exchange = new Exchange(request, loop.<FullHttpResponse>newPromise());
+        if (closed) {
+            exchange.fail(new IllegalStateException("HttpClientConnectionPool was closed"));
+            return exchange.promise;
+        }
+        HttpHeaders headers = request.headers();
+        if (!headers.contains(HttpHeaderNames.CONTENT_LENGTH) && !HttpUtil.isTransferEncodingChunked(request) &&
+                request.content().isReadable()) {
+            HttpUtil.setContentLength(request, request.content().readableBytes());
+        }
+
+        final HostPool pool = hostPool(loop, remoteAddress);
+        if (loop.inEventLoop()) {
+            pool.execute(exchange);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    pool.execute(exchange);
+                }
+            });
+        }
+        return exchange.promise;
+    }
+
+    /**
+     * Returns the metric of the connections to the given remote address, summed up over all {@link EventLoop}s.
+     */
+    public HttpClientConnectionPoolMetric metric(SocketAddress remoteAddress) {
+        int connections = 0;
+        int idleConnections = 0;
+        int inFlightRequests = 0;
+        int pendingRequests = 0;
+        long openedConnections = 0;
+        long completedRequests = 0;
+        for (HostPool pool : pools.values()) {
+            if (pool.remoteAddress.equals(remoteAddress)) {
+                connections += pool.connectionCount;
+                idleConnections += pool.idleCount;
+                inFlightRequests += pool.inFlightCount;
+                pendingRequests += pool.pendingCount;
+                openedConnections += pool.openedConnections;
+                completedRequests += pool.completedRequests;
+            }
+        }
+        return new HttpClientConnectionPoolMetric(connections, idleConnections, inFlightRequests, pendingRequests,
+                openedConnections, completedRequests);
+    }
+
+    /**
+     * Closes all connections and fails all requests which were not answered yet.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (final HostPool pool : pools.values()) {
+            pool.loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    pool.close();
+                }
+            });
+        }
+    }
+
+    private EventLoop currentEventLoop() {
+        for (EventLoop loop : eventLoops) {
+            if (loop.inEventLoop()) {
+                return loop;
+            }
+        }
+        return group.next();
+    }
+
+    /**
+     * Returns the number of remote address and {@link EventLoop} pairs which currently have state in this pool.
+     */
+    int hostPoolCount() {
+        return pools.size();
+    }
+
+    private HostPool hostPool(EventLoop loop, SocketAddress remoteAddress) {
+        PoolKey key = new PoolKey(loop, remoteAddress);
+        HostPool pool = pools.get(key);
+        if (pool == null) {
+            pool = new HostPool(key);
+            HostPool old = pools.putIfAbsent(key, pool);
+            if (old != null) {
+                pool = old;
+            }
+        }
+        return pool;
+    }
+
+    private static boolean isIdempotent(HttpMethod method) {
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) || HttpMethod.PUT.equals(method) ||
+                HttpMethod.DELETE.equals(method) || HttpMethod.OPTIONS.equals(method) ||
+                HttpMethod.TRACE.equals(method);
+    }
+
+    private static final class PoolKey {
+        private final EventLoop loop;
+        private final SocketAddress remoteAddress;
+
+        PoolKey(EventLoop loop, SocketAddress remoteAddress) {
+            this.loop = loop;
+            this.remoteAddress = remoteAddress;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(loop) + remoteAddress.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return loop == other.loop && remoteAddress.equals(other.remoteAddress);
+        }
+    }
+
+    private static final class Exchange {
+        final FullHttpRequest request;
+        final Promise<FullHttpResponse> promise;
+        final boolean idempotent;
+        final boolean keepAlive;
+        boolean retried;
+
+        Exchange(FullHttpRequest request, Promise<FullHttpResponse> promise) {
+            this.request = request;
+            this.promise = promise;
+            idempotent = isIdempotent(request.method());
+            keepAlive = HttpUtil.isKeepAlive(request);
+        }
+
+        void succeed(FullHttpResponse response) {
+            request.release();
+            if (!promise.trySuccess(response)) {
+                response.release();
+            }
+        }
+
+        void fail(Throwable cause) {
+            request.release();
+            promise.tryFailure(cause);
+        }
+    }
+
+    /**
+     * The connections to one remote address of one {@link EventLoop}, only accessed from that {@link EventLoop}.
+     */
+    private final class HostPool implements Runnable {
+        final PoolKey key;
+        final EventLoop loop;
+        final SocketAddress remoteAddress;
+        private final List<Connection> connections = new ArrayList<Connection>();
+        private final ArrayDeque<Connection> idleConnections = new ArrayDeque<Connection>();
+        private final ArrayDeque<Exchange> pendingExchanges = new ArrayDeque<Exchange>();
+        private ScheduledFuture<?> sweepFuture;
+        private boolean removed;
+
+        // Only written by the EventLoop, read by metric(...)
+        volatile int connectionCount;
+        volatile int idleCount;
+        volatile int inFlightCount;
+        volatile int pendingCount;
+        volatile long openedConnections;
+        volatile long completedRequests;
+
+        HostPool(PoolKey key) {
+            this.key = key;
+            loop = key.loop;
+            remoteAddress = key.remoteAddress;
+        }
+
+        void execute(Exchange exchange) {
+            if (removed) {
+                // This pool was removed after it was looked up, so use the one which replaced it.
+                hostPool(loop, remoteAddress).execute(exchange);
+                return;
+            }
+            if (closed) {
+                exchange.fail(new IllegalStateException("HttpClientConnectionPool was closed"));
+            } else if (!pendingExchanges.isEmpty() || !dispatch(exchange)) {
+                if (pendingExchanges.size() >= maxPendingRequestsPerHost) {
+                    exchange.fail(new IllegalStateException("Too many outstanding requests"));
+                } else {
+                    pendingExchanges.add(exchange);
+                }
+            }
+            updateCounts();
+        }
+
+        /**
+         * Writes the given exchange to an idle or pipelining connection, or opens a new connection for it.
+         *
+         * @return {@code false} if there is no connection available.
+         */
+        private boolean dispatch(Exchange exchange) {
+            long now = System.nanoTime();
+            Connection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                if (connection.isReusable(now)) {
+                    connection.write(exchange);
+                    return true;
+                }
+                connection.close();
+            }
+            if (maxPipelinedRequests > 1 && exchange.idempotent) {
+                for (int i = 0; i < connections.size(); i++) {
+                    connection = connections.get(i);
+                    if (connection.canPipeline(now)) {
+                        connection.write(exchange);
+                        return true;
+                    }
+                }
+            }
+            if (connections.size() < maxConnectionsPerHost) {
+                connect(exchange);
+                return true;
+            }
+            return false;
+        }
+
+        private void dispatchPending() {
+            Exchange exchange;
+            while ((exchange = pendingExchanges.peek()) != null) {
+                if (exchange.promise.isDone()) {
+                    // Cancelled while waiting
+                    pendingExchanges.poll();
+                    exchange.request.release();
+                } else if (dispatch(exchange)) {
+                    pendingExchanges.poll();
+                } else {
+                    break;
+                }
+            }
+        }
+
+        private void connect(final Exchange exchange) {
+            final Connection connection = new Connection(this);
+            connections.add(connection);
+            openedConnections++;
+            bootstrap.clone(loop).handler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel ch) {
+                    if (handler != null) {
+                        ch.pipeline().addLast(handler);
+                    }
+                    ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(maxContentLength),
+                            connection);
+                }
+            }).connect(remoteAddress).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    if (future.isSuccess()) {
+                        connection.channel = future.channel();
+                        connection.write(exchange);
+                        // Pipeline the requests which were queued while connecting
+                        dispatchPending();
+                    } else {
+                        exchange.fail(future.cause());
+                        remove(connection);
+                    }
+                    updateCounts();
+                }
+            });
+            scheduleSweep();
+        }
+
+        /**
+         * Called once the given connection has no requests in flight anymore.
+         */
+        void release(Connection connection) {
+            if (connection.isReusable(System.nanoTime())) {
+                idleConnections.addFirst(connection);
+            } else {
+                connection.close();
+            }
+            dispatchPending();
+            updateCounts();
+        }
+
+        void remove(Connection connection) {
+            connections.remove(connection);
+            idleConnections.remove(connection);
+            if (!closed) {
+                dispatchPending();
+            }
+            updateCounts();
+            removeIfUnused();
+        }
+
+        /**
+         * Removes this pool from the map of pools once it has neither connections nor waiting requests, so the map
+         * does not grow with every remote address which was ever used.
+         */
+        private void removeIfUnused() {
+            if (!removed && connections.isEmpty() && pendingExchanges.isEmpty()) {
+                removed = true;
+                pools.remove(key, this);
+                if (sweepFuture != null) {
+                    sweepFuture.cancel(false);
+                    sweepFuture = null;
+                }
+            }
+        }
+
+        /**
+         * Writes an idempotent request again whose connection was closed before the response was received, for
+         * example because the server closed it after it was idle for too long.
+         */
+        void retry(Exchange exchange) {
+            exchange.retried = true;
+            if (closed) {
+                exchange.fail(new IllegalStateException("HttpClientConnectionPool was closed"));
+            } else if (!dispatch(exchange)) {
+                pendingExchanges.addFirst(exchange);
+            }
+        }
+
+        private void scheduleSweep() {
+            long interval = Math.min(idleTimeoutNanos == 0 ? Long.MAX_VALUE : idleTimeoutNanos,
+                    maxLifetimeNanos == 0 ? Long.MAX_VALUE : maxLifetimeNanos);
+            if (sweepFuture == null && interval != Long.MAX_VALUE) {
+                sweepFuture = loop.schedule(this, interval, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Closes the idle connections which timed out or expired.
+         */
+        @Override
+        public void run() {
+            sweepFuture = null;
+            long now = System.nanoTime();
+            for (Iterator<Connection> i = idleConnections.iterator(); i.hasNext();) {
+                Connection connection = i.next();
+                if (!connection.isReusable(now)) {
+                    i.remove();
+                    connection.close();
+                }
+            }
+            updateCounts();
+            if (!connections.isEmpty()) {
+                scheduleSweep();
+            } else {
+                removeIfUnused();
+            }
+        }
+
+        void close() {
+            Exchange exchange;
+            while ((exchange = pendingExchanges.poll()) != null) {
+                exchange.fail(new IllegalStateException("HttpClientConnectionPool was closed"));
+            }
+            for (Connection connection : new ArrayList<Connection>(connections)) {
+                connection.close();
+            }
+            if (sweepFuture != null) {
+                sweepFuture.cancel(false);
+                sweepFuture = null;
+            }
+            updateCounts();
+        }
+
+        void updateCounts() {
+            int inFlight = 0;
+            for (int i = 0; i < connections.size(); i++) {
+                inFlight += connections.get(i).inFlight.size();
+            }
+            connectionCount = connections.size();
+            idleCount = idleConnections.size();
+            inFlightCount = inFlight;
+            pendingCount = pendingExchanges.size();
+        }
+    }
+
+    /**
+     * One connection of a {@link HostPool}, which correlates the responses with the requests in flight.
+     */
+    private final class Connection extends SimpleChannelInboundHandler<FullHttpResponse> {
+        private final HostPool pool;
+        private final long createdNanos = System.nanoTime();
+        final ArrayDeque<Exchange> inFlight = new ArrayDeque<Exchange>();
+        Channel channel;
+        private long lastUsedNanos = createdNanos;
+        private int nonIdempotentInFlight;
+        private boolean closing;
+        private boolean responded;
+        private boolean reused;
+        private Throwable cause;
+
+        Connection(HostPool pool) {
+            super(false);
+            this.pool = pool;
+        }
+
+        boolean isReusable(long now) {
+            return channel != null && channel.isActive() && !closing && inFlight.isEmpty() &&
+                    (idleTimeoutNanos == 0 || now - lastUsedNanos < idleTimeoutNanos) &&
+                    (maxLifetimeNanos == 0 || now - createdNanos < maxLifetimeNanos);
+        }
+
+        boolean canPipeline(long now) {
+            return channel != null && channel.isActive() && !closing && !inFlight.isEmpty() &&
+                    inFlight.size() < maxPipelinedRequests && nonIdempotentInFlight == 0 &&
+                    (maxLifetimeNanos == 0 || now - createdNanos < maxLifetimeNanos);
+        }
+
+        void write(Exchange exchange) {
+            inFlight.add(exchange);
+            if (!exchange.idempotent) {
+                nonIdempotentInFlight++;
+            }
+            if (!exchange.keepAlive) {
+                closing = true;
+            }
+            // Keep the request until the response was received, so it can be retried.
+            channel.writeAndFlush(exchange.request.retainedDuplicate())
+                    .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+
+        void close() {
+            closing = true;
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+            Exchange exchange = inFlight.poll();
+            if (exchange == null) {
+                // Unsolicited response
+                response.release();
+                ctx.close();
+                return;
+            }
+            if (!exchange.idempotent) {
+                nonIdempotentInFlight--;
+            }
+            pool.completedRequests++;
+            if (!response.decoderResult().isSuccess()) {
+                response.release();
+                exchange.fail(response.decoderResult().cause());
+                ctx.close();
+                return;
+            }
+            if (!HttpUtil.isKeepAlive(response)) {
+                closing = true;
+            }
+            lastUsedNanos = System.nanoTime();
+            responded = true;
+            reused = true;
+            exchange.succeed(response);
+            if (closing && inFlight.isEmpty()) {
+                ctx.close();
+            }
+            // Otherwise the pipelined requests of a closing connection are retried once the server closed it
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) {
+            // Write the next requests once all responses of this read were handled, not from within the decoder
+            if (responded && !closing) {
+                responded = false;
+                if (inFlight.isEmpty()) {
+                    pool.release(this);
+                } else {
+                    pool.dispatchPending();
+                    pool.updateCounts();
+                }
+            }
+            ctx.fireChannelReadComplete();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (this.cause == null) {
+                this.cause = cause;
+            }
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            closing = true;
+            Exchange exchange;
+            while ((exchange = inFlight.poll()) != null) {
+                // Only retry on a connection which already received a response, as a fresh connection which is
+                // closed likely means the server rejects the request and not that it closed a stale connection.
+                if (cause == null && reused && exchange.idempotent && !exchange.retried) {
+                    pool.retry(exchange);
+                } else {
+                    exchange.fail(cause != null ? cause : new PrematureChannelClosureException(
+                            "Channel closed before the response was received"));
+                }
+            }
+            // Remove this connection after the retries were queued, so the pool is not dropped in between.
+            pool.remove(this);
+            super.channelInactive(ctx);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * A snapshot of the connections and requests of one remote address in a {@link HttpClientConnectionPool}.
+ * <p>
+ * The pool drops the state of a remote address once it has no connections and no waiting requests anymore, so
+ * {@link #openedConnections()} and {@link #completedRequests()} start from {@code 0} again after that.
+ */
+@UnstableApi
+public final class HttpClientConnectionPoolMetric {
+
+    private final int connections;
+    private final int idleConnections;
+    private final int inFlightRequests;
+    private final int pendingRequests;
+    private final long openedConnections;
+    private final long completedRequests;
+
+    HttpClientConnectionPoolMetric(int connections, int idleConnections, int inFlightRequests, int pendingRequests,
+                                   long openedConnections, long completedRequests) {
+        this.connections = connections;
+        this.idleConnections = idleConnections;
+        this.inFlightRequests = inFlightRequests;
+        this.pendingRequests = pendingRequests;
+        this.openedConnections = openedConnections;
+        this.completedRequests = completedRequests;
+    }
+
+    /**
+     * Returns the number of open or opening connections.
+     */
+    public int connections() {
+        return connections;
+    }
+
+    /**
+     * Returns the number of open connections which do not have a request in flight.
+     */
+    public int idleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * Returns the number of requests which were written and wait for their response.
+     */
+    public int inFlightRequests() {
+        return inFlightRequests;
+    }
+
+    /**
+     * Returns the number of requests which wait for a connection.
+     */
+    public int pendingRequests() {
+        return pendingRequests;
+    }
+
+    /**
+     * Returns the number of connections which were opened since the remote address was last used without any
+     * connection.
+     */
+    public long openedConnections() {
+        return openedConnections;
+    }
+
+    /**
+     * Returns the number of responses which were received since the remote address was last used without any
+     * connection.
+     */
+    public long completedRequests() {
+        return completedRequests;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientConnectionPoolMetric(connections: " + connections +
+                ", idleConnections: " + idleConnections +
+                ", inFlightRequests: " + inFlightRequests +
+                ", pendingRequests: " + pendingRequests +
+                ", openedConnections: " + openedConnections +
+                ", completedRequests: " + completedRequests + ')';
+    }
+}
@@ -15,10 +15,16 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.embedded.EmbeddedChannel;
-import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Arrays;
 
 /**
  * Compresses an {@link HttpMessage} and an {@link HttpContent} in {@code gzip} or
@@ -26,6 +32,11 @@ import io.netty.handler.codec.compression.ZlibWrapper;
  * If there is no matching encoding, no compression is done.  For more
  * information on how this handler modifies the message, please refer to
  * {@link HttpContentEncoder}.
+ * <p>
+ * Other content-codings can be supported by passing the {@link CompressionEncoderFactory}s to use, in which case the
+ * content-coding with the highest quality value in the {@code "Accept-Encoding"} header is used, preferring the
+ * factory which was passed first if multiple have the same quality value. A {@link CompressedContentCache} can be
+ * used to only compress the bodies of {@link FullHttpResponse}s that are sent repeatedly once.
  */
 public class HttpContentCompressor extends HttpContentEncoder {
 
@@ -33,6 +44,11 @@ public class HttpContentCompressor extends HttpContentEncoder {
     private final int windowBits;
     private final int memLevel;
     private final int contentSizeThreshold;
+    private final CompressionEncoderFactory gzipFactory;
+    private final CompressionEncoderFactory deflateFactory;
+    // null if the gzip / deflate negotiation of determineWrapper(...) is used.
+    private final CompressionEncoderFactory[] factories;
+    private final CompressedContentCache contentCache;
     private ChannelHandlerContext ctx;
 
     /**
@@ -124,6 +140,43 @@ public class HttpContentCompressor extends HttpContentEncoder {
         this.windowBits = windowBits;
         this.memLevel = memLevel;
         this.contentSizeThreshold = contentSizeThreshold;
+        gzipFactory = CompressionEncoderFactories.gzip(compressionLevel, windowBits, memLevel);
+        deflateFactory = CompressionEncoderFactories.deflate(compressionLevel, windowBits, memLevel);
+        factories = null;
+        contentCache = null;
+    }
+
+    /**
+     * Creates a new handler which negotiates the content-coding between the given {@link CompressionEncoderFactory}s.
+     *
+     * @param contentSizeThreshold
+     *        The response body is compressed when the size of the response
+     *        body exceeds the threshold. The value should be a non negative
+     *        number. {@code 0} will enable compression for all responses.
+     * @param contentCache
+     *        The {@link CompressedContentCache} used for the bodies of {@link FullHttpResponse}s or {@code null} if
+     *        every body should be compressed.
+     * @param factories
+     *        The supported content-codings, in the order of preference.
+     */
+    @UnstableApi
+    public HttpContentCompressor(int contentSizeThreshold, CompressedContentCache contentCache,
+                                 CompressionEncoderFactory... factories) {
+        this.contentSizeThreshold = ObjectUtil.checkPositiveOrZero(contentSizeThreshold, "contentSizeThreshold");
+        ObjectUtil.checkNotNull(factories, "factories");
+        if (factories.length == 0) {
+            throw new IllegalArgumentException("factories must not be empty");
+        }
+        for (int i = 0; i < factories.length; i++) {
+            ObjectUtil.checkNotNull(factories[i], "factories[" + i + ']');
+        }
+        this.factories = factories.clone();
+        this.contentCache = contentCache;
+        compressionLevel = 6;
+        windowBits = 15;
+        memLevel = 8;
+        gzipFactory = null;
+        deflateFactory = null;
     }
 
     @Override
@@ -147,28 +200,100 @@ public class HttpContentCompressor extends HttpContentEncoder {
             return null;
         }
 
-        ZlibWrapper wrapper = determineWrapper(acceptEncoding);
-        if (wrapper == null) {
+        CompressionEncoderFactory factory = determineEncoderFactory(acceptEncoding);
+        if (factory == null) {
             return null;
         }
 
-        String targetContentEncoding;
-        switch (wrapper) {
-        case GZIP:
-            targetContentEncoding = "gzip";
-            break;
-        case ZLIB:
-            targetContentEncoding = "deflate";
-            break;
-        default:
-            throw new Error();
+        String targetContentEncoding = factory.encoding();
+        ChannelHandler[] handlers = null;
+        if (contentCache != null && httpResponse instanceof LastHttpContent) {
+            // The whole body is known, so we may be able to use or populate the cache.
+            ByteBuf content = ((LastHttpContent) httpResponse).content();
+            ChannelHandler cachedEncoder = contentCache.newCachedEncoder(factory, content);
+            if (cachedEncoder != null) {
+                handlers = new ChannelHandler[] { cachedEncoder };
+            } else {
+                ChannelHandler recorder = contentCache.newRecordingHandler(factory, content);
+                if (recorder != null) {
+                    handlers = new ChannelHandler[] { recorder, factory.newEncoder() };
+                }
+            }
+        }
+        if (handlers == null) {
+            handlers = new ChannelHandler[] { factory.newEncoder() };
+        }
+
+        Channel channel = ctx.channel();
+        return new Result(targetContentEncoding,
+                new EmbeddedChannel(channel.id(), channel.metadata().hasDisconnect(), channel.config(), handlers));
+    }
+
+    /**
+     * Returns the {@link CompressionEncoderFactory} which should be used for the given {@code "Accept-Encoding"}
+     * header or {@code null} if the content should not be compressed.
+     */
+    @UnstableApi
+    @SuppressWarnings("FloatingPointEquality")
+    protected CompressionEncoderFactory determineEncoderFactory(String acceptEncoding) {
+        if (factories == null) {
+            ZlibWrapper wrapper = determineWrapper(acceptEncoding);
+            if (wrapper == null) {
+                return null;
+            }
+            switch (wrapper) {
+            case GZIP:
+                return gzipFactory;
+            case ZLIB:
+                return deflateFactory;
+            default:
+                throw new Error();
+            }
+        }
+
+        float starQ = -1.0f;
+        float[] factoryQ = null;
+        for (String encoding : acceptEncoding.split(",")) {
+            float q = 1.0f;
+            int equalsPos = encoding.indexOf('=');
+            if (equalsPos != -1) {
+                try {
+                    q = Float.parseFloat(encoding.substring(equalsPos + 1));
+                } catch (NumberFormatException e) {
+                    // Ignore encoding
+                    q = 0.0f;
+                }
+            }
+            int semicolonPos = encoding.indexOf(';');
+            String coding = (semicolonPos != -1 ? encoding.substring(0, semicolonPos) : encoding).trim();
+            if ("*".equals(coding)) {
+                starQ = q;
+                continue;
+            }
+            for (int i = 0; i < factories.length; i++) {
+                if (coding.equalsIgnoreCase(factories[i].encoding())) {
+                    if (factoryQ == null) {
+                        factoryQ = new float[factories.length];
+                        Arrays.fill(factoryQ, -1.0f);
+                    }
+                    if (q > factoryQ[i]) {
+                        factoryQ[i] = q;
+                    }
+                    break;
+                }
+            }
         }
 
-        return new Result(
-                targetContentEncoding,
-                new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
-                        ctx.channel().config(), ZlibCodecFactory.newZlibEncoder(
-                        wrapper, compressionLevel, windowBits, memLevel)));
+        CompressionEncoderFactory best = null;
+        float bestQ = 0.0f;
+        for (int i = 0; i < factories.length; i++) {
+            float q = factoryQ == null || factoryQ[i] == -1.0f ? starQ : factoryQ[i];
+            if (q > bestQ) {
+                best = factories[i];
+                bestQ = q;
+            }
+        }
+        return best;
     }
 
     @SuppressWarnings("FloatingPointEquality")
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http;
+
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * Caches the open {@link FileChannel}s and the metadata of the files served by {@link HttpStaticFileHandler}, so
+ * a file does not need to be opened and closed again for every request.
+ * <p>
+ * A cached file is checked for modifications at most once per {@code revalidateInterval}, by comparing its length
+ * and modification time. The least recently used files are closed once {@code maxEntries} is reached, or once the
+ * responses which are still transferring them are done. One instance can be shared by all
+ * {@link HttpStaticFileHandler}s.
+ */
+@UnstableApi
+public final class HttpStaticFileCache {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HttpStaticFileCache.class);
+
+    private final int maxEntries;
+    private final long revalidateIntervalNanos;
+    private final Map<File, Entry> entries;
+    private final LongCounter hits = PlatformDependent.newLongCounter();
+    private final LongCounter misses = PlatformDependent.newLongCounter();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxEntries            the maximum number of open files, {@code 0} disables the cache
+     * @param revalidateInterval    the interval after which a cached file is checked for modifications
+     * @param unit                  the unit of {@code revalidateInterval}
+     */
+    public HttpStaticFileCache(int maxEntries, long revalidateInterval, TimeUnit unit) {
+        this.maxEntries = checkPositiveOrZero(maxEntries, "maxEntries");
+        revalidateIntervalNanos = checkNotNull(unit, "unit").toNanos(
+                checkPositiveOrZero(revalidateInterval, "revalidateInterval"));
+        entries = new LinkedHashMap<File, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the maximum number of open files.
+     */
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the number of open files.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of requests which were served from an already open file.
+     */
+    public long hits() {
+        return hits.value();
+    }
+
+    /**
+     * Returns the number of requests which needed to open a file.
+     */
+    public long misses() {
+        return misses.value();
+    }
+
+    /**
+     * Closes all cached files which are not transferred anymore, the others are closed once their transfer is done.
+     */
+    public void clear() {
+        List<Entry> removed;
+        synchronized (entries) {
+            removed = new ArrayList<Entry>(entries.values());
+            entries.clear();
+        }
+        for (Entry entry : removed) {
+            entry.release();
+        }
+    }
+
+    /**
+     * Returns the {@link Entry} of the given file which must be released once it is not used anymore, or
+     * {@code null} if the file is not a readable regular file.
+     * <p>
+     * The file system is only accessed without holding the lock, so a slow disk does not block the other callers.
+     */
+    Entry acquire(File file) throws IOException {
+        long now = System.nanoTime();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(file);
+            if (entry != null) {
+                // Keep the file open while it is revalidated, it may be evicted in the meantime.
+                entry.retain();
+                if (now - entry.validatedNanos < revalidateIntervalNanos) {
+                    hits.increment();
+                    return entry;
+                }
+            }
+        }
+        if (entry != null) {
+            if (file.lastModified() == entry.lastModified && file.length() == entry.length) {
+                synchronized (entries) {
+                    entry.validatedNanos = now;
+                }
+                hits.increment();
+                return entry;
+            }
+            boolean removed;
+            synchronized (entries) {
+                removed = entries.get(file) == entry && entries.remove(file) != null;
+            }
+            if (removed) {
+                entry.release();
+            }
+            entry.release();
+        }
+
+        misses.increment();
+        if (!file.isFile()) {
+            return null;
+        }
+        long lastModified = file.lastModified();
+        RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException ignore) {
+            return null;
+        }
+        Entry newEntry;
+        try {
+            newEntry = new Entry(raf.getChannel(), raf.length(), lastModified, now);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        if (maxEntries == 0) {
+            return newEntry;
+        }
+
+        Entry winner = null;
+        List<Entry> evicted = null;
+        synchronized (entries) {
+            Entry existing = entries.get(file);
+            if (existing != null && existing.lastModified == lastModified && existing.length == newEntry.length) {
+                // Another caller opened the same file in the meantime.
+                winner = existing.retain();
+            } else {
+                Entry replaced = entries.put(file, newEntry.retain());
+                if (replaced != null) {
+                    evicted = new ArrayList<Entry>(1);
+                    evicted.add(replaced);
+                }
+                for (Iterator<Entry> i = entries.values().iterator(); entries.size() > maxEntries;) {
+                    if (evicted == null) {
+                        evicted = new ArrayList<Entry>(1);
+                    }
+                    evicted.add(i.next());
+                    i.remove();
+                }
+            }
+        }
+        if (evicted != null) {
+            for (Entry e : evicted) {
+                e.release();
+            }
+        }
+        if (winner != null) {
+            newEntry.release();
+            return winner;
+        }
+        return newEntry;
+    }
+
+    /**
+     * An open file, which is closed once the cache and all responses which transfer it released it.
+     */
+    static final class Entry extends AbstractReferenceCounted {
+        private final FileChannel channel;
+        private final long length;
+        private final long lastModified;
+        private final String etag;
+        private long validatedNanos;
+
+        Entry(FileChannel channel, long length, long lastModified, long validatedNanos) {
+            this.channel = channel;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.validatedNanos = validatedNanos;
+            etag = "\"" + Long.toHexString(lastModified) + '-' + Long.toHexString(length) + '"';
+        }
+
+        FileChannel channel() {
+            return channel;
+        }
+
+        long length() {
+            return length;
+        }
+
+        long lastModified() {
+            return lastModified;
+        }
+
+        String etag() {
+            return etag;
+        }
+
+        @Override
+        public Entry retain() {
+            super.retain();
+            return this;
+        }
+
+        @Override
+        public Entry touch(Object hint) {
+            return this;
+        }
+
+        @Override
+        protected void deallocate() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close a file.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Serves the files below a root directory for {@code GET} and {@code HEAD} requests.
+ * <p>
+ * The files are kept open in a {@link HttpStaticFileCache}, which can be shared by all channels. Single byte ranges
+ * ({@code Range} and {@code If-Range}) and conditional requests ({@code If-None-Match} and
+ * {@code If-Modified-Since}) are supported. The file is written as a {@link DefaultFileRegion}, which is transferred
+ * without copying it to user space, unless a {@link SslHandler} or {@link HttpContentEncoder} is in the pipeline. In
+ * that case it is written as a {@link HttpChunkedInput} and a {@link ChunkedWriteHandler} must be in the pipeline.
+ * <p>
+ * All other requests, and requests for paths which do not denote a readable regular file, are passed on to the next
+ * handler. Path segments starting with a {@code '.'} are never served. If a file can not be read, a
+ * {@code 500 Internal Server Error} is sent instead.
+ */
+@UnstableApi
+public class HttpStaticFileHandler extends ChannelInboundHandlerAdapter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(HttpStaticFileHandler.class);
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+
+    static {
+        CONTENT_TYPES.put("css", "text/css");
+        CONTENT_TYPES.put("csv", "text/csv");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("htm", "text/html");
+        CONTENT_TYPES.put("html", "text/html");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("js", "application/javascript");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("mp4", "video/mp4");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("txt", "text/plain");
+        CONTENT_TYPES.put("wasm", "application/wasm");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("xml", "application/xml");
+        CONTENT_TYPES.put("zip", "application/zip");
+    }
+
+    private final File root;
+    private final HttpStaticFileCache cache;
+    private final int chunkSize;
+    private boolean discardContent;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param root      the directory whose files are served
+     * @param cache     the cache of the open files
+     */
+    public HttpStaticFileHandler(File root, HttpStaticFileCache cache) {
+        this(root, cache, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param root      the directory whose files are served
+     * @param cache     the cache of the open files
+     * @param chunkSize the size of the chunks if the file can not be written as a {@link DefaultFileRegion}
+     */
+    public HttpStaticFileHandler(File root, HttpStaticFileCache cache, int chunkSize) {
+        this.root = checkNotNull(root, "root");
+        this.cache = checkNotNull(cache, "cache");
+        this.chunkSize = checkPositive(chunkSize, "chunkSize");
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) msg;
+            try {
+                discardContent = serve(ctx, request);
+            } catch (IOException e) {
+                // Nothing was written yet, so answer the request here instead of leaving the client waiting.
+                logger.debug("Failed to serve {}", request.uri(), e);
+                FullHttpResponse response = new DefaultFullHttpResponse(
+                        request.protocolVersion(), HttpResponseStatus.INTERNAL_SERVER_ERROR, Unpooled.EMPTY_BUFFER);
+                response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+                write(ctx, response, HttpUtil.isKeepAlive(request));
+                discardContent = true;
+            }
+        }
+        if (!discardContent) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        // The request was served, discard it and its content
+        if (msg instanceof LastHttpContent) {
+            discardContent = false;
+        }
+        ReferenceCountUtil.release(msg);
+    }
+
+    /**
+     * Returns the {@code Content-Type} of the given file, or {@code null} if unknown.
+     */
+    protected String contentType(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        return CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private boolean serve(ChannelHandlerContext ctx, HttpRequest request) throws IOException {
+        if (!request.decoderResult().isSuccess() ||
+                !HttpMethod.GET.equals(request.method()) && !HttpMethod.HEAD.equals(request.method())) {
+            return false;
+        }
+        File file = resolve(request.uri());
+        if (file == null) {
+            return false;
+        }
+        HttpStaticFileCache.Entry entry = cache.acquire(file);
+        if (entry == null) {
+            return false;
+        }
+        try {
+            respond(ctx, request, file, entry);
+        } finally {
+            entry.release();
+        }
+        return true;
+    }
+
+    private File resolve(String uri) {
+        String path;
+        try {
+            path = new QueryStringDecoder(uri).path();
+        } catch (IllegalArgumentException ignore) {
+            return null;
+        }
+        if (path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        StringBuilder relative = new StringBuilder(path.length());
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.charAt(0) == '.' || segment.indexOf(File.separatorChar) >= 0 || segment.indexOf('\0') >= 0) {
+                return null;
+            }
+            if (relative.length() > 0) {
+                relative.append(File.separatorChar);
+            }
+            relative.append(segment);
+        }
+        return relative.length() == 0 ? null : new File(root, relative.toString());
+    }
+
+    private void respond(ChannelHandlerContext ctx, HttpRequest request, File file, HttpStaticFileCache.Entry entry)
+            throws IOException {
+        HttpHeaders headers = request.headers();
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        final long length = entry.length();
+        String lastModified = DateFormatter.format(new Date(entry.lastModified()));
+
+        String ifNoneMatch = headers.get(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null ? matchesEtag(ifNoneMatch, entry.etag()) :
+                notModifiedSince(headers.get(HttpHeaderNames.IF_MODIFIED_SINCE), entry.lastModified())) {
+            FullHttpResponse response = new DefaultFullHttpResponse(
+                    request.protocolVersion(), HttpResponseStatus.NOT_MODIFIED, Unpooled.EMPTY_BUFFER);
+            response.headers()
+                    .set(HttpHeaderNames.ETAG, entry.etag())
+                    .set(HttpHeaderNames.LAST_MODIFIED, lastModified);
+            write(ctx, response, keepAlive);
+            return;
+        }
+
+        HttpResponseStatus status = HttpResponseStatus.OK;
+        long start = 0;
+        long count = length;
+        String range = headers.get(HttpHeaderNames.RANGE);
+        if (range != null && ifRangeMatches(headers.get(HttpHeaderNames.IF_RANGE), entry.etag(),
+                entry.lastModified())) {
+            long[] bytes = parseRange(range, length);
+            if (bytes != null) {
+                if (bytes.length == 0) {
+                    FullHttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(),
+                            HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, Unpooled.EMPTY_BUFFER);
+                    response.headers()
+                            .set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + length)
+                            .setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+                    write(ctx, response, keepAlive);
+                    return;
+                }
+                status = HttpResponseStatus.PARTIAL_CONTENT;
+                start = bytes[0];
+                count = bytes[1] - bytes[0] + 1;
+            }
+        }
+
+        HttpResponse response = new DefaultHttpResponse(request.protocolVersion(), status);
+        HttpHeaders responseHeaders = response.headers();
+        responseHeaders
+                .set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES)
+                .set(HttpHeaderNames.ETAG, entry.etag())
+                .set(HttpHeaderNames.LAST_MODIFIED, lastModified)
+                .set(HttpHeaderNames.CONTENT_LENGTH, count);
+        String contentType = contentType(file);
+        if (contentType != null) {
+            responseHeaders.set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        }
+        if (status == HttpResponseStatus.PARTIAL_CONTENT) {
+            responseHeaders.set(HttpHeaderNames.CONTENT_RANGE,
+                    "bytes " + start + '-' + (start + count - 1) + '/' + length);
+        }
+        HttpUtil.setKeepAlive(response, keepAlive);
+
+        // Open the chunked input before anything is written, as it fails if the file can not be read anymore.
+        HttpChunkedInput chunkedInput = null;
+        boolean noContent = HttpMethod.HEAD.equals(request.method()) || count == 0;
+        boolean zeroCopy = isZeroCopyPossible(ctx.pipeline());
+        if (!noContent && !zeroCopy) {
+            chunkedInput = new HttpChunkedInput(new CachedChunkedFile(entry, start, count, chunkSize));
+        }
+        ctx.write(response);
+
+        ChannelFuture future;
+        if (noContent) {
+            future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else if (zeroCopy) {
+            ctx.write(new CachedFileRegion(entry, start, count));
+            future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else {
+            future = ctx.writeAndFlush(chunkedInput);
+        }
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static void write(ChannelHandlerContext ctx, FullHttpResponse response, boolean keepAlive) {
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ChannelFuture future = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private static boolean isZeroCopyPossible(ChannelPipeline pipeline) {
+        return pipeline.get(SslHandler.class) == null && pipeline.get(HttpContentEncoder.class) == null;
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        for (String value : ifNoneMatch.split(",")) {
+            value = value.trim();
+            if (value.startsWith("W/")) {
+                // If-None-Match uses the weak comparison
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || etag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean notModifiedSince(String ifModifiedSince, long lastModified) {
+        if (ifModifiedSince == null) {
+            return false;
+        }
+        Date date = DateFormatter.parseHttpDate(ifModifiedSince);
+        return date != null && lastModified / 1000 <= date.getTime() / 1000;
+    }
+
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range uses the strong comparison, so weak entity tags never match
+            return etag.equals(ifRange);
+        }
+        Date date = DateFormatter.parseHttpDate(ifRange);
+        return date != null && lastModified / 1000 == date.getTime() / 1000;
+    }
+
+    /**
+     * Parses a {@code Range} header with a single byte range.
+     *
+     * @return the first and last byte of the range, an empty array if it is not satisfiable, or {@code null} if the
+     *         header is invalid or contains several ranges, so it is ignored
+     */
+    static long[] parseRange(String range, long length) {
+        final String unit = "bytes=";
+        if (!range.regionMatches(true, 0, unit, 0, unit.length()) || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(unit.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        long start;
+        long end;
+        try {
+            if (dash == 0) {
+                // Suffix range: the last N bytes
+                long suffixLength = Long.parseLong(spec.substring(1).trim());
+                if (suffixLength < 0) {
+                    return null;
+                }
+                if (suffixLength == 0 || length == 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffixLength);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash).trim());
+                String last = spec.substring(dash + 1).trim();
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                if (start < 0 || !last.isEmpty() && Long.parseLong(last) < start) {
+                    return null;
+                }
+                if (start >= length) {
+                    return new long[0];
+                }
+            }
+        } catch (NumberFormatException ignore) {
+            return null;
+        }
+        return new long[] { start, end };
+    }
+
+    /**
+     * A {@link DefaultFileRegion} of a cached file, which releases the cache entry instead of closing the file.
+     */
+    private static final class CachedFileRegion extends DefaultFileRegion {
+        private final HttpStaticFileCache.Entry entry;
+
+        CachedFileRegion(HttpStaticFileCache.Entry entry, long position, long count) {
+            super(entry.channel(), position, count);
+            this.entry = entry.retain();
+        }
+
+        @Override
+        protected void deallocate() {
+            entry.release();
+        }
+    }
+
+    /**
+     * A {@link ChunkedNioFile} of a cached file, which releases the cache entry instead of closing the file.
+     */
+    private static final class CachedChunkedFile extends ChunkedNioFile {
+        private final HttpStaticFileCache.Entry entry;
+        private boolean closed;
+
+        CachedChunkedFile(HttpStaticFileCache.Entry entry, long offset, long length, int chunkSize)
+                throws IOException {
+            super(entry.channel(), offset, length, chunkSize);
+            this.entry = entry.retain();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                entry.release();
+            }
+        }
+    }
+}
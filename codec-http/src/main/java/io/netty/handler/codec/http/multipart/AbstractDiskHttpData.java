@@ -156,8 +156,6 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                     throw new IOException("Out of size: " + (size + localsize) +
                             " > " + definedSize);
                 }
-                ByteBuffer byteBuffer = buffer.nioBufferCount() == 1 ? buffer.nioBuffer() : buffer.copy().nioBuffer();
-                int written = 0;
                 if (file == null) {
                     file = tempFile();
                 }
@@ -165,11 +163,22 @@ public abstract class AbstractDiskHttpData extends AbstractHttpData {
                     RandomAccessFile accessFile = new RandomAccessFile(file, "rw");
                     fileChannel = accessFile.getChannel();
                 }
-                while (written < localsize) {
-                    written += fileChannel.write(byteBuffer);
+                long written = 0;
+                int nioBufferCount = buffer.nioBufferCount();
+                if (nioBufferCount > 1) {
+                    // Gathering write of all the components, no need to copy them into one buffer first
+                    ByteBuffer[] byteBuffers = buffer.nioBuffers();
+                    while (written < localsize) {
+                        written += fileChannel.write(byteBuffers);
+                    }
+                } else {
+                    ByteBuffer byteBuffer = nioBufferCount == 1 ? buffer.nioBuffer() : buffer.copy().nioBuffer();
+                    while (written < localsize) {
+                        written += fileChannel.write(byteBuffer);
+                    }
                 }
                 size += localsize;
-                buffer.readerIndex(buffer.readerIndex() + written);
+                buffer.readerIndex(buffer.readerIndex() + (int) written);
             } finally {
                 // Release the buffer as it was retained before and we not need a reference to it at all
                 // See https://github.com/netty/netty/issues/1516
@@ -1379,7 +1379,7 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      *
      * @return the cleaned String
      */
-    private static String cleanString(String field) {
+    static String cleanString(String field) {
         int size = field.length();
         StringBuilder sb = new StringBuilder(size);
         for (int i = 0; i < size; i++) {
@@ -1438,7 +1438,7 @@ public class HttpPostMultipartRequestDecoder implements InterfaceHttpPostRequest
      * @return an array of String where rank 0 is the name of the header,
      *         follows by several values that were separated by ';' or ','
      */
-    private static String[] splitMultipartHeader(String sb) {
+    static String[] splitMultipartHeader(String sb) {
         ArrayList<String> headers = new ArrayList<String>(1);
         int nameStart;
         int nameEnd;
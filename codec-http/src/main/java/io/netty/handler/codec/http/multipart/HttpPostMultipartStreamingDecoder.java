@@ -0,0 +1,677 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpConstants;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.multipart.HttpPostBodyUtil.TransferEncodingMechanism;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.EndOfDataDecoderException;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.MultiPartStatus;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.NotEnoughDataDecoderException;
+import io.netty.util.ByteProcessor;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static io.netty.buffer.Unpooled.*;
+import static io.netty.util.internal.ObjectUtil.*;
+
+/**
+ * A multipart/form-data decoder which decodes the body while the chunks arrive, without accumulating it.
+ * <p>
+ * Unlike {@link HttpPostMultipartRequestDecoder}, which copies every chunk into an internal buffer and scans it
+ * byte by byte, this decoder searches the boundary of each offered chunk with a precomputed skip table and hands
+ * the content of each part to its {@link HttpData} as retained slices of the offered chunks. The only bytes
+ * which are buffered are the part headers, bounded by {@code maxHeaderSize}, and a possible partial boundary at
+ * the end of a chunk. With a {@link HttpDataFactory} which stores the data on disk, such as a
+ * {@link DefaultHttpDataFactory} with a size limit, the memory used per request is therefore bounded regardless
+ * of the size of the uploads, and a {@link DiskFileUpload} writes the slices of direct chunks to its
+ * {@link java.nio.channels.FileChannel} without any intermediate copy.
+ * <p>
+ * Nested multipart/mixed parts are not supported by this decoder.
+ * <p>
+ * You <strong>MUST</strong> call {@link #destroy()} after completion to release all resources.
+ */
+@UnstableApi
+public class HttpPostMultipartStreamingDecoder implements InterfaceHttpPostRequestDecoder {
+
+    /**
+     * Default maximum length of the headers of one part
+     */
+    public static final int DEFAULT_MAX_HEADER_SIZE = 8192;
+
+    private static final String FILENAME_ENCODED = HttpHeaderValues.FILENAME.toString() + '*';
+
+    private final HttpDataFactory factory;
+    private final HttpRequest request;
+    private final int maxHeaderSize;
+    private Charset charset;
+
+    /**
+     * CRLF followed by the dash-boundary, as searched in the body
+     */
+    private final byte[] delimiter;
+
+    /**
+     * Horspool bad character shift for each byte value
+     */
+    private final int[] shifts = new int[256];
+
+    private final List<InterfaceHttpData> bodyListHttpData = new ArrayList<InterfaceHttpData>();
+    private final Map<String, List<InterfaceHttpData>> bodyMapHttpData = new TreeMap<String, List<InterfaceHttpData>>(
+            CaseIgnoringComparator.INSTANCE);
+    private int bodyListHttpDataRank;
+
+    /**
+     * Bytes at the end of the last chunk which may be the start of a delimiter
+     */
+    private final ByteBuf pending;
+
+    /**
+     * The current delimiter or header line
+     */
+    private final ByteBuf line = buffer(64);
+    private int headerSize;
+
+    private MultiPartStatus currentStatus = MultiPartStatus.PREAMBLE;
+    private boolean isLastChunk;
+    private boolean destroyed;
+    private int discardThreshold = HttpPostRequestDecoder.DEFAULT_DISCARD_THRESHOLD;
+
+    private String partName;
+    private String partFilename;
+    private String partContentType;
+    private String partTransferEncoding;
+    private String partCharset;
+    private long partDefinedSize;
+    private HttpData currentData;
+
+    /**
+     *
+     * @param request
+     *            the request to decode
+     * @throws NullPointerException
+     *             for request
+     * @throws ErrorDataDecoderException
+     *             if the request is not a multipart request or other errors
+     */
+    public HttpPostMultipartStreamingDecoder(HttpRequest request) {
+        this(new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE), request, HttpConstants.DEFAULT_CHARSET);
+    }
+
+    /**
+     *
+     * @param factory
+     *            the factory used to create InterfaceHttpData
+     * @param request
+     *            the request to decode
+     * @throws NullPointerException
+     *             for request or factory
+     * @throws ErrorDataDecoderException
+     *             if the request is not a multipart request or other errors
+     */
+    public HttpPostMultipartStreamingDecoder(HttpDataFactory factory, HttpRequest request) {
+        this(factory, request, HttpConstants.DEFAULT_CHARSET);
+    }
+
+    /**
+     *
+     * @param factory
+     *            the factory used to create InterfaceHttpData
+     * @param request
+     *            the request to decode
+     * @param charset
+     *            the charset to use as default
+     * @throws NullPointerException
+     *             for request or charset or factory
+     * @throws ErrorDataDecoderException
+     *             if the request is not a multipart request or other errors
+     */
+    public HttpPostMultipartStreamingDecoder(HttpDataFactory factory, HttpRequest request, Charset charset) {
+        this(factory, request, charset, DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    /**
+     *
+     * @param factory
+     *            the factory used to create InterfaceHttpData
+     * @param request
+     *            the request to decode
+     * @param charset
+     *            the charset to use as default
+     * @param maxHeaderSize
+     *            the maximum length of the delimiter line and headers of one part
+     * @throws NullPointerException
+     *             for request or charset or factory
+     * @throws ErrorDataDecoderException
+     *             if the request is not a multipart request or other errors
+     */
+    public HttpPostMultipartStreamingDecoder(HttpDataFactory factory, HttpRequest request, Charset charset,
+                                             int maxHeaderSize) {
+        this.request = checkNotNull(request, "request");
+        this.charset = checkNotNull(charset, "charset");
+        this.factory = checkNotNull(factory, "factory");
+        this.maxHeaderSize = checkPositive(maxHeaderSize, "maxHeaderSize");
+
+        String[] dataBoundary = HttpPostRequestDecoder.getMultipartDataBoundary(
+                request.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        if (dataBoundary == null) {
+            throw new ErrorDataDecoderException("No multipart boundary found");
+        }
+        if (dataBoundary.length > 1 && dataBoundary[1] != null) {
+            try {
+                this.charset = Charset.forName(dataBoundary[1]);
+            } catch (IllegalArgumentException e) {
+                throw new ErrorDataDecoderException(e);
+            }
+        }
+        delimiter = ("\r\n" + dataBoundary[0]).getBytes(CharsetUtil.US_ASCII);
+        Arrays.fill(shifts, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++) {
+            shifts[delimiter[i] & 0xFF] = delimiter.length - 1 - i;
+        }
+        // The first delimiter may be at the very start of the body, so behave as if it was preceded by a CRLF.
+        pending = buffer(delimiter.length * 2);
+        pending.writeByte(HttpConstants.CR).writeByte(HttpConstants.LF);
+
+        if (request instanceof HttpContent) {
+            // Offer automatically if the given request is als type of HttpContent
+            offer((HttpContent) request);
+        }
+    }
+
+    private void checkDestroyed() {
+        if (destroyed) {
+            throw new IllegalStateException(HttpPostMultipartStreamingDecoder.class.getSimpleName()
+                    + " was destroyed already");
+        }
+    }
+
+    @Override
+    public boolean isMultipart() {
+        checkDestroyed();
+        return true;
+    }
+
+    /**
+     * Has no effect, as this decoder does not accumulate the body.
+     */
+    @Override
+    public void setDiscardThreshold(int discardThreshold) {
+        this.discardThreshold = checkPositiveOrZero(discardThreshold, "discardThreshold");
+    }
+
+    @Override
+    public int getDiscardThreshold() {
+        return discardThreshold;
+    }
+
+    @Override
+    public List<InterfaceHttpData> getBodyHttpDatas() {
+        checkDestroyed();
+
+        if (!isLastChunk) {
+            throw new NotEnoughDataDecoderException();
+        }
+        return bodyListHttpData;
+    }
+
+    @Override
+    public List<InterfaceHttpData> getBodyHttpDatas(String name) {
+        checkDestroyed();
+
+        if (!isLastChunk) {
+            throw new NotEnoughDataDecoderException();
+        }
+        return bodyMapHttpData.get(name);
+    }
+
+    @Override
+    public InterfaceHttpData getBodyHttpData(String name) {
+        checkDestroyed();
+
+        if (!isLastChunk) {
+            throw new NotEnoughDataDecoderException();
+        }
+        List<InterfaceHttpData> list = bodyMapHttpData.get(name);
+        if (list != null) {
+            return list.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the given chunk. The content of the current part is added to its {@link HttpData} as retained
+     * slices of the chunk, so the chunk must not be modified after it was offered.
+     *
+     * @param content
+     *            the new received chunk
+     * @throws ErrorDataDecoderException
+     *             if there is a problem with the charset decoding or other
+     *             errors
+     */
+    @Override
+    public HttpPostMultipartStreamingDecoder offer(HttpContent content) {
+        checkDestroyed();
+
+        ByteBuf buf = content.content();
+        parseBody(buf, buf.readerIndex(), buf.writerIndex());
+        if (content instanceof LastHttpContent) {
+            isLastChunk = true;
+            if (currentStatus == MultiPartStatus.PREEPILOGUE) {
+                currentStatus = MultiPartStatus.EPILOGUE;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        checkDestroyed();
+
+        if (currentStatus == MultiPartStatus.EPILOGUE) {
+            // OK except if end of list
+            if (bodyListHttpDataRank >= bodyListHttpData.size()) {
+                throw new EndOfDataDecoderException();
+            }
+        }
+        return !bodyListHttpData.isEmpty() && bodyListHttpDataRank < bodyListHttpData.size();
+    }
+
+    @Override
+    public InterfaceHttpData next() {
+        checkDestroyed();
+
+        if (hasNext()) {
+            return bodyListHttpData.get(bodyListHttpDataRank++);
+        }
+        return null;
+    }
+
+    @Override
+    public InterfaceHttpData currentPartialHttpData() {
+        return currentData;
+    }
+
+    /**
+     * Destroy the {@link HttpPostMultipartStreamingDecoder} and release all it resources. After this method
+     * was called it is not possible to operate on it anymore.
+     */
+    @Override
+    public void destroy() {
+        // Release all data items, including those not yet pulled
+        cleanFiles();
+
+        destroyed = true;
+        pending.release();
+        line.release();
+    }
+
+    @Override
+    public void cleanFiles() {
+        checkDestroyed();
+
+        factory.cleanRequestHttpData(request);
+    }
+
+    @Override
+    public void removeHttpDataFromClean(InterfaceHttpData data) {
+        checkDestroyed();
+
+        factory.removeHttpDataFromClean(request, data);
+    }
+
+    private void parseBody(ByteBuf buf, int index, int end) {
+        while (index < end) {
+            switch (currentStatus) {
+            case PREAMBLE:
+            case FIELD:
+            case FILEUPLOAD:
+                index = loadData(buf, index, end);
+                break;
+            case HEADERDELIMITER:
+            case DISPOSITION:
+                index = readLines(buf, index, end);
+                break;
+            default:
+                // PREEPILOGUE or EPILOGUE, ignore the rest of the body
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the content of the current part up to the next delimiter, or up to a possible partial delimiter at the
+     * end of the chunk.
+     *
+     * @return the index of the first byte after the consumed bytes
+     */
+    private int loadData(ByteBuf buf, int index, int end) {
+        final int delimiterLength = delimiter.length;
+        if (pending.isReadable()) {
+            // Check if the pending bytes and the start of the chunk contain a delimiter. As less than delimiterLength
+            // bytes are pending, such a delimiter would start in the pending bytes.
+            final int pendingLength = pending.readableBytes();
+            final int length = Math.min(delimiterLength - 1, end - index);
+            pending.writeBytes(buf, index, length);
+            int found = indexOf(pending, 0, pending.writerIndex());
+            if (found >= 0) {
+                addContent(pending.copy(0, found));
+                pending.clear();
+                endPart();
+                return index + found + delimiterLength - pendingLength;
+            }
+            int partial = partialDelimiterLength(pending, 0, pending.writerIndex());
+            int contentLength = pending.writerIndex() - partial;
+            if (contentLength < pendingLength) {
+                // A longer partial delimiter which started in the pending bytes, which means the chunk was shorter
+                // than the delimiter and is fully pending now.
+                addContent(pending.copy(0, contentLength));
+                pending.readerIndex(contentLength);
+                pending.discardReadBytes();
+                return end;
+            }
+            addContent(pending.copy(0, pendingLength));
+            pending.clear();
+        }
+        int found = indexOf(buf, index, end);
+        if (found >= 0) {
+            addContent(buf.retainedSlice(index, found - index));
+            endPart();
+            return found + delimiterLength;
+        }
+        int partial = partialDelimiterLength(buf, index, end);
+        addContent(buf.retainedSlice(index, end - partial - index));
+        pending.writeBytes(buf, end - partial, partial);
+        return end;
+    }
+
+    /**
+     * Returns the index of the first delimiter in the given range using the Boyer-Moore-Horspool algorithm, or
+     * {@code -1} if there is none.
+     */
+    private int indexOf(ByteBuf buf, int index, int end) {
+        final byte[] delimiter = this.delimiter;
+        final int last = delimiter.length - 1;
+        final byte lastByte = delimiter[last];
+        if (buf.hasArray()) {
+            final byte[] array = buf.array();
+            final int offset = buf.arrayOffset();
+            final int limit = end + offset - last;
+            int i = index + offset;
+            while (i < limit) {
+                byte b = array[i + last];
+                if (b == lastByte && matches(array, i, last)) {
+                    return i - offset;
+                }
+                i += shifts[b & 0xFF];
+            }
+        } else {
+            final int limit = end - last;
+            int i = index;
+            while (i < limit) {
+                byte b = buf.getByte(i + last);
+                if (b == lastByte && matches(buf, i, last)) {
+                    return i;
+                }
+                i += shifts[b & 0xFF];
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(byte[] array, int index, int length) {
+        for (int i = 0; i < length; i++) {
+            if (array[index + i] != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(ByteBuf buf, int index, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buf.getByte(index + i) != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of the longest suffix of the given range which is a prefix of the delimiter.
+     */
+    private int partialDelimiterLength(ByteBuf buf, int index, int end) {
+        for (int length = Math.min(delimiter.length - 1, end - index); length > 0; length--) {
+            if (buf.getByte(end - length) == HttpConstants.CR && matches(buf, end - length, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private void addContent(ByteBuf content) {
+        if (currentData == null || !content.isReadable()) {
+            // Preamble or nothing to add
+            content.release();
+            return;
+        }
+        try {
+            currentData.addContent(content, false);
+        } catch (IOException e) {
+            throw new ErrorDataDecoderException(e);
+        }
+    }
+
+    private void endPart() {
+        HttpData data = currentData;
+        currentData = null;
+        currentStatus = MultiPartStatus.HEADERDELIMITER;
+        headerSize = 0;
+        if (data == null) {
+            // End of the preamble
+            return;
+        }
+        try {
+            data.addContent(EMPTY_BUFFER, true);
+        } catch (IOException e) {
+            throw new ErrorDataDecoderException(e);
+        }
+        List<InterfaceHttpData> datas = bodyMapHttpData.get(data.getName());
+        if (datas == null) {
+            datas = new ArrayList<InterfaceHttpData>(1);
+            bodyMapHttpData.put(data.getName(), datas);
+        }
+        datas.add(data);
+        bodyListHttpData.add(data);
+    }
+
+    /**
+     * Reads the rest of the delimiter line and the headers of a part.
+     *
+     * @return the index of the first byte after the consumed bytes
+     */
+    private int readLines(ByteBuf buf, int index, int end) {
+        while (index < end) {
+            int lf = buf.forEachByte(index, end - index, ByteProcessor.FIND_LF);
+            int lineEnd = lf < 0 ? end : lf;
+            headerSize += lineEnd - index;
+            if (headerSize > maxHeaderSize) {
+                throw new ErrorDataDecoderException("Multipart headers are larger than " + maxHeaderSize + " bytes");
+            }
+            line.writeBytes(buf, index, lineEnd - index);
+            if (currentStatus == MultiPartStatus.HEADERDELIMITER && line.readableBytes() >= 2 &&
+                    line.getByte(0) == '-' && line.getByte(1) == '-') {
+                // Close delimiter, some clients do not send a CRLF after it
+                line.clear();
+                currentStatus = MultiPartStatus.PREEPILOGUE;
+                return end;
+            }
+            if (lf < 0) {
+                return end;
+            }
+            index = lf + 1;
+            int length = line.readableBytes();
+            if (length > 0 && line.getByte(length - 1) == HttpConstants.CR) {
+                length--;
+            }
+            String newline = line.toString(0, length, charset);
+            line.clear();
+            if (currentStatus == MultiPartStatus.HEADERDELIMITER) {
+                if (!newline.trim().isEmpty()) {
+                    throw new ErrorDataDecoderException("No Multipart delimiter found");
+                }
+                currentStatus = MultiPartStatus.DISPOSITION;
+            } else if (newline.isEmpty()) {
+                startPart();
+                return index;
+            } else {
+                parseHeader(newline);
+            }
+        }
+        return index;
+    }
+
+    private void parseHeader(String newline) {
+        String[] contents = HttpPostMultipartRequestDecoder.splitMultipartHeader(newline);
+        if (HttpHeaderNames.CONTENT_DISPOSITION.contentEqualsIgnoreCase(contents[0])) {
+            if (HttpHeaderValues.FORM_DATA.contentEqualsIgnoreCase(contents[1])) {
+                for (int i = 2; i < contents.length; i++) {
+                    String[] values = contents[i].split("=", 2);
+                    if (values.length == 2) {
+                        parseContentDispositionParameter(
+                                HttpPostMultipartRequestDecoder.cleanString(values[0]), values[1]);
+                    }
+                }
+            }
+        } else if (HttpHeaderNames.CONTENT_TRANSFER_ENCODING.contentEqualsIgnoreCase(contents[0])) {
+            partTransferEncoding = HttpPostMultipartRequestDecoder.cleanString(contents[1]);
+        } else if (HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(contents[0])) {
+            try {
+                partDefinedSize = Long.parseLong(HttpPostMultipartRequestDecoder.cleanString(contents[1]));
+            } catch (NumberFormatException ignored) {
+                partDefinedSize = 0;
+            }
+        } else if (HttpHeaderNames.CONTENT_TYPE.contentEqualsIgnoreCase(contents[0])) {
+            if (HttpHeaderValues.MULTIPART_MIXED.contentEqualsIgnoreCase(contents[1])) {
+                throw new ErrorDataDecoderException("Mixed Multipart is not supported by "
+                        + HttpPostMultipartStreamingDecoder.class.getSimpleName());
+            }
+            partContentType = contents[1];
+            final String charsetHeader = HttpHeaderValues.CHARSET.toString();
+            for (int i = 2; i < contents.length; i++) {
+                if (contents[i].regionMatches(true, 0, charsetHeader, 0, charsetHeader.length())) {
+                    partCharset = HttpPostMultipartRequestDecoder.cleanString(
+                            StringUtil.substringAfter(contents[i], '='));
+                }
+            }
+        }
+    }
+
+    private void parseContentDispositionParameter(String name, String value) {
+        // Filename can be token, quoted or encoded. See https://tools.ietf.org/html/rfc5987
+        if (HttpHeaderValues.NAME.contentEquals(name)) {
+            partName = HttpPostMultipartRequestDecoder.cleanString(value);
+        } else if (HttpHeaderValues.FILENAME.contentEquals(name)) {
+            // Value is quoted or token. Strip if quoted:
+            int last = value.length() - 1;
+            if (last > 0 &&
+                    value.charAt(0) == HttpConstants.DOUBLE_QUOTE &&
+                    value.charAt(last) == HttpConstants.DOUBLE_QUOTE) {
+                value = value.substring(1, last);
+            }
+            partFilename = value;
+        } else if (FILENAME_ENCODED.equals(name)) {
+            try {
+                String[] split = value.split("'", 3);
+                partFilename = QueryStringDecoder.decodeComponent(split[2], Charset.forName(split[0]));
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new ErrorDataDecoderException(e);
+            } catch (IllegalArgumentException e) {
+                throw new ErrorDataDecoderException(e);
+            }
+        }
+    }
+
+    /**
+     * Creates the {@link HttpData} of the part whose headers were just read.
+     */
+    private void startPart() {
+        if (partName == null) {
+            throw new ErrorDataDecoderException("Content-Disposition name not found");
+        }
+        try {
+            Charset localCharset = partCharset != null ? Charset.forName(partCharset) : null;
+            if (partFilename != null) {
+                TransferEncodingMechanism mechanism = TransferEncodingMechanism.BIT7;
+                if (partTransferEncoding != null) {
+                    String code = partTransferEncoding.toLowerCase();
+                    if (code.equals(TransferEncodingMechanism.BIT7.value())) {
+                        if (localCharset == null) {
+                            localCharset = CharsetUtil.US_ASCII;
+                        }
+                    } else if (code.equals(TransferEncodingMechanism.BIT8.value())) {
+                        mechanism = TransferEncodingMechanism.BIT8;
+                        if (localCharset == null) {
+                            localCharset = CharsetUtil.ISO_8859_1;
+                        }
+                    } else if (code.equals(TransferEncodingMechanism.BINARY.value())) {
+                        mechanism = TransferEncodingMechanism.BINARY;
+                    } else {
+                        throw new ErrorDataDecoderException("TransferEncoding Unknown: " + code);
+                    }
+                }
+                currentData = factory.createFileUpload(request, partName, partFilename,
+                        partContentType != null ? partContentType : HttpPostBodyUtil.DEFAULT_BINARY_CONTENT_TYPE,
+                        mechanism.value(), localCharset != null ? localCharset : charset, partDefinedSize);
+                currentStatus = MultiPartStatus.FILEUPLOAD;
+            } else {
+                Attribute attribute = partDefinedSize > 0 ?
+                        factory.createAttribute(request, partName, partDefinedSize) :
+                        factory.createAttribute(request, partName);
+                if (localCharset != null) {
+                    attribute.setCharset(localCharset);
+                }
+                currentData = attribute;
+                currentStatus = MultiPartStatus.FIELD;
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ErrorDataDecoderException(e);
+        } finally {
+            partName = null;
+            partFilename = null;
+            partContentType = null;
+            partTransferEncoding = null;
+            partCharset = null;
+            partDefinedSize = 0;
+        }
+    }
+}
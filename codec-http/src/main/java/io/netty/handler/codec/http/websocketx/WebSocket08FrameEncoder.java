@@ -57,11 +57,10 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.List;
 
 /**
@@ -85,11 +84,12 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
      * The size threshold for gathering writes. Non-Masked messages bigger than this size will be be sent fragmented as
      * a header and a content ByteBuf whereas messages smaller than the size will be merged into a single buffer and
      * sent at once.<br>
-     * Masked messages will always be sent at once.
+     * Masked messages will be sent at once, unless their payload is masked in place.
      */
     private static final int GATHERING_WRITE_THRESHOLD = 1024;
 
     private final boolean maskPayload;
+    private final boolean maskPayloadInPlace;
 
     /**
      * Constructor
@@ -99,13 +99,32 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
      *            false.
      */
     public WebSocket08FrameEncoder(boolean maskPayload) {
+        this(maskPayload, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maskPayload
+     *            Web socket clients must set this to true to mask payload. Server implementations must set this to
+     *            false.
+     * @param maskPayloadInPlace
+     *            {@code true} to mask the payload of frames bigger than 1024 bytes in place instead of copying it,
+     *            which modifies the content of the frame. Only set this if the content of the written frames is not
+     *            used after the write, e.g. because it does not wrap an array of the caller.
+     */
+    public WebSocket08FrameEncoder(boolean maskPayload, boolean maskPayloadInPlace) {
         this.maskPayload = maskPayload;
+        this.maskPayloadInPlace = maskPayloadInPlace;
+    }
+
+    boolean isMaskPayload() {
+        return maskPayload;
     }
 
     @Override
     protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
         final ByteBuf data = msg.content();
-        byte[] mask;
 
         byte opcode;
         if (msg instanceof TextWebSocketFrame) {
@@ -146,9 +165,13 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
         ByteBuf buf = null;
         try {
             int maskLength = maskPayload ? 4 : 0;
+            // If allowed, a payload which only this frame references can be masked in place instead of being copied.
+            boolean maskInPlace = maskPayload && maskPayloadInPlace && length > GATHERING_WRITE_THRESHOLD &&
+                    data.refCnt() == 1 && data.unwrap() == null && !data.isReadOnly();
+            boolean merge = maskPayload ? !maskInPlace : length <= GATHERING_WRITE_THRESHOLD;
             if (length <= 125) {
                 int size = 2 + maskLength;
-                if (maskPayload || length <= GATHERING_WRITE_THRESHOLD) {
+                if (merge) {
                     size += length;
                 }
                 buf = ctx.alloc().buffer(size);
@@ -157,7 +180,7 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
                 buf.writeByte(b);
             } else if (length <= 0xFFFF) {
                 int size = 4 + maskLength;
-                if (maskPayload || length <= GATHERING_WRITE_THRESHOLD) {
+                if (merge) {
                     size += length;
                 }
                 buf = ctx.alloc().buffer(size);
@@ -167,7 +190,7 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
                 buf.writeByte(length & 0xFF);
             } else {
                 int size = 10 + maskLength;
-                if (maskPayload || length <= GATHERING_WRITE_THRESHOLD) {
+                if (merge) {
                     size += length;
                 }
                 buf = ctx.alloc().buffer(size);
@@ -178,42 +201,18 @@ public class WebSocket08FrameEncoder extends MessageToMessageEncoder<WebSocketFr
 
             // Write payload
             if (maskPayload) {
-                int random = (int) (Math.random() * Integer.MAX_VALUE);
-                mask = ByteBuffer.allocate(4).putInt(random).array();
-                buf.writeBytes(mask);
-
-                ByteOrder srcOrder = data.order();
-                ByteOrder dstOrder = buf.order();
-
-                int counter = 0;
-                int i = data.readerIndex();
-                int end = data.writerIndex();
-
-                if (srcOrder == dstOrder) {
-                    // Use the optimized path only when byte orders match
-                    // Remark: & 0xFF is necessary because Java will do signed expansion from
-                    // byte to int which we don't want.
-                    int intMask = ((mask[0] & 0xFF) << 24)
-                                | ((mask[1] & 0xFF) << 16)
-                                | ((mask[2] & 0xFF) << 8)
-                                | (mask[3] & 0xFF);
-
-                    // If the byte order of our buffers it little endian we have to bring our mask
-                    // into the same format, because getInt() and writeInt() will use a reversed byte order
-                    if (srcOrder == ByteOrder.LITTLE_ENDIAN) {
-                        intMask = Integer.reverseBytes(intMask);
-                    }
-
-                    for (; i + 3 < end; i += 4) {
-                        int intData = data.getInt(i);
-                        buf.writeInt(intData ^ intMask);
-                    }
-                }
-                for (; i < end; i++) {
-                    byte byteData = data.getByte(i);
-                    buf.writeByte(byteData ^ mask[counter++ % 4]);
+                int mask = PlatformDependent.threadLocalRandom().nextInt();
+                buf.writeInt(mask);
+
+                if (maskInPlace) {
+                    WebSocketUtil.mask(data, data.readerIndex(), data, data.readerIndex(), length, mask);
+                    out.add(buf);
+                    out.add(data.retain());
+                } else {
+                    WebSocketUtil.mask(data, data.readerIndex(), buf, buf.writerIndex(), length, mask);
+                    buf.writerIndex(buf.writerIndex() + length);
+                    out.add(buf);
                 }
-                out.add(buf);
             } else {
                 if (buf.writableBytes() >= data.readableBytes()) {
                     // merge buffers as this is cheaper then a gathering write if the payload is small enough
@@ -70,4 +70,19 @@ public class WebSocket13FrameEncoder extends WebSocket08FrameEncoder {
     public WebSocket13FrameEncoder(boolean maskPayload) {
         super(maskPayload);
     }
+
+    /**
+     * Constructor
+     *
+     * @param maskPayload
+     *            Web socket clients must set this to true to mask payload. Server implementations must set this to
+     *            false.
+     * @param maskPayloadInPlace
+     *            {@code true} to mask the payload of big frames in place instead of copying it, which modifies the
+     *            content of the frame. Only set this if the content of the written frames is not used after the
+     *            write.
+     */
+    public WebSocket13FrameEncoder(boolean maskPayload, boolean maskPayloadInPlace) {
+        super(maskPayload, maskPayloadInPlace);
+    }
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http.websocketx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelGroupMessage;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.compression.OffloadingCompressionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketShareableExtensionEncoder;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link WebSocketFrame} to the channels of a {@link DefaultChannelGroup}, encoding it once per distinct
+ * encoding instead of once per channel:
+ * <pre>
+ * group.writeAndFlush(new WebSocketBroadcast(frame));
+ * </pre>
+ * A channel gets a retained duplicate of the encoded frame as {@link ByteBuf}, which passes the encoders in its
+ * pipeline, if its {@link WebSocketFrameEncoder} does not mask payloads and each of its extension encoders is a
+ * {@link WebSocketShareableExtensionEncoder} whose {@code sharedEncodingKey()} is not {@code null}. All
+ * channels with equal keys share the same encoded frame, so for example a compressed message is only compressed once
+ * for all channels which negotiated the same {@code permessage-deflate} parameters without server context takeover.
+ * Other channels get a retained duplicate of the frame and encode it themselves, as do all channels if the frame is
+ * a fragment of a fragmented message and all channels whose pipeline contains an {@link OffloadingCompressionHandler},
+ * as the extension encoders it wraps are not visible in the pipeline.
+ * <p>
+ * The extension encoders of a channel are looked up once and cached, so they must not change after the channel was
+ * written a {@link WebSocketBroadcast}. A {@link WebSocketBroadcast} must not be written by several threads at once.
+ */
+public final class WebSocketBroadcast extends AbstractReferenceCounted implements ChannelGroupMessage {
+
+    private static final AttributeKey<ChannelEncoding> ENCODING =
+            AttributeKey.valueOf(WebSocketBroadcast.class, "ENCODING");
+
+    private final WebSocketFrame frame;
+    private final Map<Object, ByteBuf> encodedFrames = new HashMap<Object, ByteBuf>();
+
+    /**
+     * Creates a new instance which takes over the ownership of the given frame.
+     */
+    public WebSocketBroadcast(WebSocketFrame frame) {
+        this.frame = ObjectUtil.checkNotNull(frame, "frame");
+    }
+
+    /**
+     * Returns the broadcast frame.
+     */
+    public WebSocketFrame frame() {
+        return frame;
+    }
+
+    @Override
+    public Object newMessage(Channel channel) {
+        // The encoding of fragments may depend on the fragments before, like whether the message is compressed.
+        if (frame.isFinalFragment() && !(frame instanceof ContinuationWebSocketFrame)) {
+            ChannelPipeline pipeline = channel.pipeline();
+            WebSocketFrameEncoder frameEncoder = pipeline.get(WebSocketFrameEncoder.class);
+            if (isSharable(frameEncoder)) {
+                ChannelEncoding encoding = encoding(channel, frameEncoder);
+                if (encoding.key != null) {
+                    ByteBuf encoded = encodedFrames.get(encoding.key);
+                    if (encoded == null) {
+                        encoded = encode(encoding.extensionEncoders);
+                        encodedFrames.put(encoding.key, encoded);
+                    }
+                    return encoded.retainedDuplicate();
+                }
+            }
+        }
+        return frame.retainedDuplicate();
+    }
+
+    private static boolean isSharable(WebSocketFrameEncoder frameEncoder) {
+        // Subclasses of other types may encode differently.
+        if (frameEncoder == null) {
+            return false;
+        }
+        Class<?> type = frameEncoder.getClass();
+        return (type == WebSocket13FrameEncoder.class || type == WebSocket08FrameEncoder.class ||
+                type == WebSocket07FrameEncoder.class) && !((WebSocket08FrameEncoder) frameEncoder).isMaskPayload();
+    }
+
+    private static ChannelEncoding encoding(Channel channel, WebSocketFrameEncoder frameEncoder) {
+        ChannelPipeline pipeline = channel.pipeline();
+        WebSocketExtensionEncoder firstExtensionEncoder = pipeline.get(WebSocketExtensionEncoder.class);
+        OffloadingCompressionHandler offloadingHandler = pipeline.get(OffloadingCompressionHandler.class);
+        Attribute<ChannelEncoding> attr = channel.attr(ENCODING);
+        ChannelEncoding encoding = attr.get();
+        if (encoding == null || encoding.frameEncoder != frameEncoder ||
+            encoding.firstExtensionEncoder != firstExtensionEncoder ||
+            encoding.offloadingHandler != offloadingHandler) {
+            encoding = new ChannelEncoding(pipeline, frameEncoder, firstExtensionEncoder, offloadingHandler);
+            attr.set(encoding);
+        }
+        return encoding;
+    }
+
+    private ByteBuf encode(List<WebSocketExtensionEncoder> extensionEncoders) {
+        ChannelHandler[] handlers = new ChannelHandler[extensionEncoders.size() + 1];
+        handlers[0] = new WebSocket08FrameEncoder(false);
+        for (int i = 0; i < extensionEncoders.size(); i++) {
+            handlers[i + 1] = ((WebSocketShareableExtensionEncoder) extensionEncoders.get(i)).newSharedEncoder();
+        }
+        EmbeddedChannel encoder = new EmbeddedChannel(handlers);
+        try {
+            encoder.writeOutbound(frame.retainedDuplicate());
+            ByteBuf encoded = encoder.readOutbound();
+            CompositeByteBuf composite = null;
+            for (;;) {
+                ByteBuf buf = encoder.readOutbound();
+                if (buf == null) {
+                    return encoded;
+                }
+                if (composite == null) {
+                    composite = encoder.alloc().compositeBuffer();
+                    composite.addComponent(true, encoded);
+                    encoded = composite;
+                }
+                composite.addComponent(true, buf);
+            }
+        } finally {
+            encoder.finishAndReleaseAll();
+        }
+    }
+
+    @Override
+    public WebSocketBroadcast touch(Object hint) {
+        frame.touch(hint);
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        frame.release();
+        for (ByteBuf encoded : encodedFrames.values()) {
+            encoded.release();
+        }
+        encodedFrames.clear();
+    }
+
+    /**
+     * The encoders in the pipeline of a channel, and the key of their encoding if it can be shared.
+     */
+    private static final class ChannelEncoding {
+        final WebSocketFrameEncoder frameEncoder;
+        final WebSocketExtensionEncoder firstExtensionEncoder;
+        final OffloadingCompressionHandler offloadingHandler;
+        final List<WebSocketExtensionEncoder> extensionEncoders;
+        final List<Object> key;
+
+        ChannelEncoding(ChannelPipeline pipeline, WebSocketFrameEncoder frameEncoder,
+                        WebSocketExtensionEncoder firstExtensionEncoder,
+                        OffloadingCompressionHandler offloadingHandler) {
+            this.frameEncoder = frameEncoder;
+            this.firstExtensionEncoder = firstExtensionEncoder;
+            this.offloadingHandler = offloadingHandler;
+            if (offloadingHandler != null) {
+                // The wrapped encoder, for example a PerMessageDeflateEncoder, encodes the frames of this channel.
+                extensionEncoders = Collections.emptyList();
+                key = null;
+                return;
+            }
+            if (firstExtensionEncoder == null) {
+                extensionEncoders = Collections.emptyList();
+                key = Collections.emptyList();
+                return;
+            }
+            extensionEncoders = new ArrayList<WebSocketExtensionEncoder>(2);
+            List<Object> key = new ArrayList<Object>(2);
+            for (Map.Entry<String, ChannelHandler> entry : pipeline) {
+                ChannelHandler handler = entry.getValue();
+                if (handler instanceof WebSocketExtensionEncoder) {
+                    Object extensionKey = handler instanceof WebSocketShareableExtensionEncoder ?
+                            ((WebSocketShareableExtensionEncoder) handler).sharedEncodingKey() : null;
+                    if (extensionKey == null) {
+                        key = null;
+                        break;
+                    }
+                    extensionEncoders.add((WebSocketExtensionEncoder) handler);
+                    key.add(extensionKey);
+                }
+            }
+            this.key = key;
+        }
+    }
+}
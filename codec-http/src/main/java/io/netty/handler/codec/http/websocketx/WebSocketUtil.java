@@ -20,9 +20,11 @@ import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.base64.Base64;
 import io.netty.util.CharsetUtil;
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.MathUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SuppressJava6Requirement;
 
+import java.nio.ByteOrder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -148,6 +150,53 @@ final class WebSocketUtil {
         return (int) (minimum + fraction * (maximum - minimum));
     }
 
+    /**
+     * XORs {@code length} bytes of {@code src} with the masking key and writes them to {@code dst}. Both may be the
+     * same buffer to mask in place. The indexes of the buffers are not modified.
+     *
+     * @param mask the masking key, with its first byte as the most significant byte.
+     */
+    static void mask(ByteBuf src, int srcIndex, ByteBuf dst, int dstIndex, int length, int mask) {
+        if (MathUtil.isOutOfBounds(srcIndex, length, src.capacity()) ||
+            MathUtil.isOutOfBounds(dstIndex, length, dst.capacity())) {
+            throw new IndexOutOfBoundsException("srcIndex: " + srcIndex + ", dstIndex: " + dstIndex +
+                    ", length: " + length);
+        }
+        int i = 0;
+        // The masking key repeats every 4 bytes, so 8 bytes are masked at once with the key repeated twice.
+        long longMask = (long) mask << 32 | mask & 0xFFFFFFFFL;
+        if (PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned()) {
+            // Unsafe accesses use the native byte order.
+            long nativeMask = PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? longMask : Long.reverseBytes(longMask);
+            if (src.hasMemoryAddress() && dst.hasMemoryAddress()) {
+                long srcAddress = src.memoryAddress() + srcIndex;
+                long dstAddress = dst.memoryAddress() + dstIndex;
+                for (; i + 7 < length; i += 8) {
+                    PlatformDependent.putLong(dstAddress + i, PlatformDependent.getLong(srcAddress + i) ^ nativeMask);
+                }
+            } else if (src.hasArray() && dst.hasArray()) {
+                byte[] srcArray = src.array();
+                byte[] dstArray = dst.array();
+                int srcOffset = src.arrayOffset() + srcIndex;
+                int dstOffset = dst.arrayOffset() + dstIndex;
+                for (; i + 7 < length; i += 8) {
+                    PlatformDependent.putLong(dstArray, dstOffset + i,
+                            PlatformDependent.getLong(srcArray, srcOffset + i) ^ nativeMask);
+                }
+            }
+        }
+        if (i + 7 < length && src.order() == dst.order()) {
+            // getLong() and setLong() of buffers with the deprecated little endian order reverse the bytes.
+            long orderedMask = src.order() == ByteOrder.BIG_ENDIAN ? longMask : Long.reverseBytes(longMask);
+            for (; i + 7 < length; i += 8) {
+                dst.setLong(dstIndex + i, src.getLong(srcIndex + i) ^ orderedMask);
+            }
+        }
+        for (; i < length; i++) {
+            dst.setByte(dstIndex + i, src.getByte(srcIndex + i) ^ mask >>> 24 - (i & 3) * 8);
+        }
+    }
+
     /**
      * A private constructor to ensure that instances of this class cannot be made
      */
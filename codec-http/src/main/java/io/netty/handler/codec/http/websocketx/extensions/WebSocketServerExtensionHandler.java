@@ -18,8 +18,10 @@ package io.netty.handler.codec.http.websocketx.extensions;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.compression.OffloadingCompressionHandler;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpRequest;
@@ -126,7 +128,8 @@ public class WebSocketServerExtensionHandler extends ChannelDuplexHandler {
                                     WebSocketExtensionEncoder encoder = extension.newExtensionEncoder();
                                     ctx.pipeline()
                                        .addAfter(ctx.name(), decoder.getClass().getName(), decoder)
-                                       .addAfter(ctx.name(), encoder.getClass().getName(), encoder);
+                                       .addAfter(ctx.name(), encoder.getClass().getName(),
+                                                 newEncoderHandler(encoder));
                                 }
                             }
                         }
@@ -150,4 +153,13 @@ public class WebSocketServerExtensionHandler extends ChannelDuplexHandler {
 
         super.write(ctx, msg, promise);
     }
+
+    /**
+     * Returns the {@link ChannelHandler} which is added to the pipeline for the given extension encoder once the
+     * extensions were negotiated. The default implementation returns the encoder itself, sub-classes may wrap it,
+     * for example in an {@link OffloadingCompressionHandler}.
+     */
+    protected ChannelHandler newEncoderHandler(WebSocketExtensionEncoder encoder) {
+        return encoder;
+    }
 }
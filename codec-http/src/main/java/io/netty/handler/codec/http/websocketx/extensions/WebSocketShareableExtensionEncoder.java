@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http.websocketx.extensions;
+
+/**
+ * Implemented by a {@link WebSocketExtensionEncoder} whose output for a final frame can be shared by several
+ * channels, so a frame which is written to all of them only needs to be encoded once.
+ */
+public interface WebSocketShareableExtensionEncoder {
+
+    /**
+     * Returns a key which is equal for all encoders that encode a final frame to the same output, regardless of
+     * the frames encoded before, or {@code null} if the output currently depends on the state of this encoder.
+     */
+    Object sharedEncodingKey();
+
+    /**
+     * Returns a new encoder which encodes final frames like this one. Only called if {@link #sharedEncodingKey()}
+     * does not return {@code null}.
+     */
+    WebSocketExtensionEncoder newSharedEncoder();
+}
@@ -28,6 +28,7 @@ import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketShareableExtensionEncoder;
 
 import java.util.List;
 
@@ -38,7 +39,7 @@ import static io.netty.util.internal.ObjectUtil.*;
  * Deflate implementation of a payload compressor for
  * <tt>io.netty.handler.codec.http.websocketx.WebSocketFrame</tt>.
  */
-abstract class DeflateEncoder extends WebSocketExtensionEncoder {
+abstract class DeflateEncoder extends WebSocketExtensionEncoder implements WebSocketShareableExtensionEncoder {
 
     private final int compressionLevel;
     private final int windowSize;
@@ -69,6 +70,23 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
         return extensionEncoderFilter;
     }
 
+    @Override
+    public Object sharedEncodingKey() {
+        // With context takeover the output depends on the messages compressed before.
+        return noContext ? new SharedEncodingKey(this) : null;
+    }
+
+    @Override
+    public WebSocketExtensionEncoder newSharedEncoder() {
+        return newEncoder(compressionLevel, windowSize, noContext, extensionEncoderFilter);
+    }
+
+    /**
+     * Creates a new encoder of the same type with the given settings.
+     */
+    abstract DeflateEncoder newEncoder(int compressionLevel, int windowSize, boolean noContext,
+                                       WebSocketExtensionFilter extensionEncoderFilter);
+
     /**
      * @param msg the current frame.
      * @return the rsv bits to set in the compressed frame.
@@ -162,4 +180,36 @@ abstract class DeflateEncoder extends WebSocketExtensionEncoder {
             encoder = null;
         }
     }
+
+    private static final class SharedEncodingKey {
+        private final Class<?> type;
+        private final int compressionLevel;
+        private final int windowSize;
+        private final WebSocketExtensionFilter extensionEncoderFilter;
+
+        SharedEncodingKey(DeflateEncoder encoder) {
+            type = encoder.getClass();
+            compressionLevel = encoder.compressionLevel;
+            windowSize = encoder.windowSize;
+            extensionEncoderFilter = encoder.extensionEncoderFilter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SharedEncodingKey)) {
+                return false;
+            }
+            SharedEncodingKey other = (SharedEncodingKey) o;
+            return type == other.type && compressionLevel == other.compressionLevel &&
+                   windowSize == other.windowSize && extensionEncoderFilter == other.extensionEncoderFilter;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = type.hashCode();
+            hash = 31 * hash + compressionLevel;
+            hash = 31 * hash + windowSize;
+            return 31 * hash + System.identityHashCode(extensionEncoderFilter);
+        }
+    }
 }
@@ -78,4 +78,9 @@ class PerFrameDeflateEncoder extends DeflateEncoder {
         return true;
     }
 
+    @Override
+    PerFrameDeflateEncoder newEncoder(int compressionLevel, int windowSize, boolean noContext,
+                                      WebSocketExtensionFilter extensionEncoderFilter) {
+        return new PerFrameDeflateEncoder(compressionLevel, windowSize, noContext, extensionEncoderFilter);
+    }
 }
@@ -98,4 +98,9 @@ class PerMessageDeflateEncoder extends DeflateEncoder {
         }
     }
 
+    @Override
+    PerMessageDeflateEncoder newEncoder(int compressionLevel, int windowSize, boolean noContext,
+                                        WebSocketExtensionFilter extensionEncoderFilter) {
+        return new PerMessageDeflateEncoder(compressionLevel, windowSize, noContext, extensionEncoderFilter);
+    }
 }
@@ -15,7 +15,12 @@
  */
 package io.netty.handler.codec.http.websocketx.extensions.compression;
 
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.compression.OffloadingCompressionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.internal.ObjectUtil;
 
 /**
  * Extends <tt>io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerExtensionHandler</tt>
@@ -25,12 +30,37 @@ import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensio
  */
 public class WebSocketServerCompressionHandler extends WebSocketServerExtensionHandler {
 
+    private final EventExecutorGroup compressionGroup;
+    private final int offloadThreshold;
+
     /**
      * Constructor with default configuration.
      */
     public WebSocketServerCompressionHandler() {
         super(new PerMessageDeflateServerExtensionHandshaker(),
                 new DeflateFrameServerExtensionHandshaker());
+        compressionGroup = null;
+        offloadThreshold = 0;
+    }
+
+    /**
+     * Constructor which compresses frames with at least {@code offloadThreshold} bytes of content on the given
+     * {@link EventExecutorGroup} instead of the event loop.
+     *
+     * @see OffloadingCompressionHandler
+     */
+    public WebSocketServerCompressionHandler(EventExecutorGroup compressionGroup, int offloadThreshold) {
+        super(new PerMessageDeflateServerExtensionHandshaker(),
+                new DeflateFrameServerExtensionHandshaker());
+        this.compressionGroup = ObjectUtil.checkNotNull(compressionGroup, "compressionGroup");
+        this.offloadThreshold = ObjectUtil.checkPositive(offloadThreshold, "offloadThreshold");
     }
 
+    @Override
+    protected ChannelHandler newEncoderHandler(WebSocketExtensionEncoder encoder) {
+        if (compressionGroup == null) {
+            return encoder;
+        }
+        return new OffloadingCompressionHandler(encoder, compressionGroup, offloadThreshold);
+    }
 }
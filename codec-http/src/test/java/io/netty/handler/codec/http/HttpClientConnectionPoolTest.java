@@ -0,0 +1,375 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.PrematureChannelClosureException;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpClientConnectionPoolTest {
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final LinkedBlockingQueue<HeldRequest> held = new LinkedBlockingQueue<HeldRequest>();
+    private final AtomicBoolean dropped = new AtomicBoolean();
+    private volatile boolean hold;
+    private HttpClientConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        accepted.incrementAndGet();
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024),
+                                new SimpleChannelInboundHandler<FullHttpRequest>(false) {
+                                    @Override
+                                    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                                        HeldRequest heldRequest = new HeldRequest(ctx, request);
+                                        String uri = request.uri();
+                                        if ("/drop".equals(uri) ||
+                                                "/dropOnce".equals(uri) && dropped.compareAndSet(false, true)) {
+                                            request.release();
+                                            ctx.close();
+                                        } else if (hold) {
+                                            held.add(heldRequest);
+                                        } else {
+                                            // Respond from a new task, as this channel may still be flushing the
+                                            // previous response which triggered this request
+                                            respond(Collections.singletonList(heldRequest));
+                                        }
+                                    }
+                                });
+                    }
+                })
+                .bind(new LocalAddress("HttpClientConnectionPoolTest")).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        for (HeldRequest request : held) {
+            request.request.release();
+        }
+    }
+
+    private static void respond(ChannelHandlerContext ctx, FullHttpRequest request) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(request.uri(), CharsetUtil.US_ASCII));
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        boolean keepAlive = HttpUtil.isKeepAlive(request) && !request.uri().endsWith("close");
+        HttpUtil.setKeepAlive(response, keepAlive);
+        request.release();
+        if (keepAlive) {
+            ctx.writeAndFlush(response);
+        } else {
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private HttpClientConnectionPool newPool(int maxConnections, int maxPending, int maxPipelined,
+                                             long idleTimeoutMillis) {
+        return newPool(new Bootstrap().group(group).channel(LocalChannel.class), maxConnections, maxPending,
+                maxPipelined, idleTimeoutMillis);
+    }
+
+    private HttpClientConnectionPool newPool(Bootstrap bootstrap, int maxConnections, int maxPending,
+                                             int maxPipelined, long idleTimeoutMillis) {
+        pool = new HttpClientConnectionPool(bootstrap, maxConnections, maxPending, maxPipelined, 1024,
+                idleTimeoutMillis, 0, TimeUnit.MILLISECONDS);
+        return pool;
+    }
+
+    private HttpClientConnectionPoolMetric metric() throws Exception {
+        // All connections of the pool are served by the single EventLoop, so this returns once it is quiet.
+        return group.next().submit(new Callable<HttpClientConnectionPoolMetric>() {
+            @Override
+            public HttpClientConnectionPoolMetric call() {
+                return pool.metric(serverChannel.localAddress());
+            }
+        }).sync().getNow();
+    }
+
+    private Future<FullHttpResponse> get(String uri) {
+        return pool.execute(serverChannel.localAddress(),
+                new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri));
+    }
+
+    private static void assertResponse(String uri, Future<FullHttpResponse> future) throws Exception {
+        FullHttpResponse response = future.sync().getNow();
+        try {
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertEquals(uri, response.content().toString(CharsetUtil.US_ASCII));
+        } finally {
+            response.release();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testKeepAliveConnectionIsReused() throws Exception {
+        newPool(4, 16, 1, 0);
+        for (int i = 0; i < 5; i++) {
+            assertResponse("/" + i, get("/" + i));
+        }
+        assertEquals(1, accepted.get());
+
+        HttpClientConnectionPoolMetric metric = metric();
+        assertEquals(1, metric.connections());
+        assertEquals(1, metric.idleConnections());
+        assertEquals(0, metric.inFlightRequests());
+        assertEquals(1, metric.openedConnections());
+        assertEquals(5, metric.completedRequests());
+    }
+
+    @Test(timeout = 10000)
+    public void testMaxConnectionsQueuesRequests() throws Exception {
+        newPool(2, 16, 1, 0);
+        hold = true;
+        List<Future<FullHttpResponse>> futures = new ArrayList<Future<FullHttpResponse>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(get("/" + i));
+        }
+        List<HeldRequest> requests = take(2);
+        HttpClientConnectionPoolMetric metric = metric();
+        assertEquals(2, metric.connections());
+        assertEquals(2, metric.inFlightRequests());
+        assertEquals(3, metric.pendingRequests());
+
+        hold = false;
+        respond(requests);
+        for (int i = 0; i < futures.size(); i++) {
+            assertResponse("/" + i, futures.get(i));
+        }
+        assertEquals(2, accepted.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testTooManyPendingRequests() throws Exception {
+        newPool(1, 1, 1, 0);
+        hold = true;
+        Future<FullHttpResponse> first = get("/0");
+        Future<FullHttpResponse> second = get("/1");
+        Future<FullHttpResponse> third = get("/2");
+        assertTrue(third.await().cause() instanceof IllegalStateException);
+
+        List<HeldRequest> requests = take(1);
+        hold = false;
+        respond(requests);
+        assertResponse("/0", first);
+        assertResponse("/1", second);
+    }
+
+    @Test(timeout = 10000)
+    public void testPipelining() throws Exception {
+        newPool(1, 16, 4, 0);
+        hold = true;
+        List<Future<FullHttpResponse>> futures = new ArrayList<Future<FullHttpResponse>>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(get("/" + i));
+        }
+        List<HeldRequest> requests = take(4);
+        assertEquals(4, metric().inFlightRequests());
+        hold = false;
+        respond(requests);
+        for (int i = 0; i < futures.size(); i++) {
+            assertResponse("/" + i, futures.get(i));
+        }
+        assertEquals(1, accepted.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testNonIdempotentRequestIsNotPipelined() throws Exception {
+        newPool(2, 16, 4, 0);
+        hold = true;
+        Future<FullHttpResponse> post = pool.execute(serverChannel.localAddress(),
+                new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/post",
+                        Unpooled.copiedBuffer("body", CharsetUtil.US_ASCII)));
+        Future<FullHttpResponse> get = get("/get");
+        List<HeldRequest> requests = take(2);
+        assertEquals(2, metric().connections());
+        hold = false;
+        respond(requests);
+        assertResponse("/post", post);
+        assertResponse("/get", get);
+    }
+
+    @Test(timeout = 10000)
+    public void testConnectionCloseOpensNewConnection() throws Exception {
+        newPool(1, 16, 1, 0);
+        assertResponse("/close", get("/close"));
+        assertResponse("/next", get("/next"));
+        assertEquals(2, accepted.get());
+        assertEquals(1, metric().connections());
+    }
+
+    @Test(timeout = 10000)
+    public void testUnusedRemoteAddressIsRemoved() throws Exception {
+        newPool(1, 16, 1, 0);
+        assertResponse("/0", get("/0"));
+        assertEquals(1, pool.hostPoolCount());
+        assertResponse("/close", get("/close"));
+        while (metric().connections() != 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.hostPoolCount());
+
+        // A new request to the same remote address opens a new connection.
+        assertResponse("/1", get("/1"));
+        assertEquals(1, pool.hostPoolCount());
+        assertEquals(1, metric().openedConnections());
+    }
+
+    @Test(timeout = 10000)
+    public void testIdempotentRequestIsRetried() throws Exception {
+        newPool(1, 16, 1, 0);
+        assertResponse("/0", get("/0"));
+        assertResponse("/dropOnce", get("/dropOnce"));
+        assertEquals(2, accepted.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testIdempotentRequestIsNotRetriedOnNewConnection() throws Exception {
+        newPool(1, 16, 1, 0);
+        assertTrue(get("/drop").await().cause() instanceof PrematureChannelClosureException);
+        assertEquals(1, accepted.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testBootstrapHandlerIsAdded() throws Exception {
+        final AtomicInteger encodedWrites = new AtomicInteger();
+        final AtomicInteger otherWrites = new AtomicInteger();
+        newPool(new Bootstrap().group(group).channel(LocalChannel.class).handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                // Added before the HTTP codec, so it only sees the encoded requests.
+                ch.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+                    @Override
+                    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                        (msg instanceof ByteBuf ? encodedWrites : otherWrites).incrementAndGet();
+                        ctx.write(msg, promise);
+                    }
+                });
+            }
+        }), 1, 16, 1, 0);
+        assertResponse("/0", get("/0"));
+        assertTrue(encodedWrites.get() > 0);
+        assertEquals(0, otherWrites.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testNonIdempotentRequestIsNotRetried() throws Exception {
+        newPool(1, 16, 1, 0);
+        Future<FullHttpResponse> future = pool.execute(serverChannel.localAddress(),
+                new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/drop"));
+        assertTrue(future.await().cause() instanceof PrematureChannelClosureException);
+        assertEquals(1, accepted.get());
+        assertResponse("/next", get("/next"));
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleConnectionIsClosed() throws Exception {
+        newPool(1, 16, 1, 100);
+        assertResponse("/0", get("/0"));
+        while (metric().connections() != 0) {
+            Thread.sleep(10);
+        }
+        assertResponse("/1", get("/1"));
+        assertEquals(2, accepted.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseFailsPendingRequests() throws Exception {
+        newPool(1, 16, 1, 0);
+        hold = true;
+        Future<FullHttpResponse> first = get("/0");
+        Future<FullHttpResponse> second = get("/1");
+        held.take().request.release();
+        pool.close();
+        assertFalse(first.await().isSuccess());
+        assertTrue(second.await().cause() instanceof IllegalStateException);
+        assertTrue(get("/2").await().cause() instanceof IllegalStateException);
+    }
+
+    private List<HeldRequest> take(int count) throws InterruptedException {
+        List<HeldRequest> requests = new ArrayList<HeldRequest>(count);
+        for (int i = 0; i < count; i++) {
+            requests.add(held.take());
+        }
+        return requests;
+    }
+
+    private static void respond(List<HeldRequest> requests) {
+        for (final HeldRequest request : requests) {
+            request.ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    respond(request.ctx, request.request);
+                }
+            });
+        }
+    }
+
+    private static final class HeldRequest {
+        final ChannelHandlerContext ctx;
+        final FullHttpRequest request;
+
+        HeldRequest(ChannelHandlerContext ctx, FullHttpRequest request) {
+            this.ctx = ctx;
+            this.request = request;
+        }
+    }
+}
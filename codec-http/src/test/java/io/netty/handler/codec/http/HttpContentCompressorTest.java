@@ -15,14 +15,20 @@
  */
 package io.netty.handler.codec.http;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.DecoderResult;
 import io.netty.handler.codec.EncoderException;
+import io.netty.handler.codec.compression.OffloadingCompressionHandler;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import org.junit.Test;
 
 import static io.netty.handler.codec.http.HttpHeadersTestUtils.of;
@@ -259,6 +265,35 @@ public class HttpContentCompressorTest {
         assertThat(ch.readOutbound(), is(nullValue()));
     }
 
+    @Test
+    public void testOffloadedFullContent() throws Exception {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new OffloadingCompressionHandler(new HttpContentCompressor(), ImmediateEventExecutor.INSTANCE, 4));
+        ch.writeInbound(newRequest());
+
+        FullHttpResponse res = new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+            Unpooled.copiedBuffer("Hello, World", CharsetUtil.US_ASCII));
+        ch.writeOutbound(res);
+        ch.runPendingTasks();
+
+        assertEncodedResponse(ch);
+        HttpContent c = ch.readOutbound();
+        assertThat(ByteBufUtil.hexDump(c.content()), is("1f8b0800000000000000f248cdc9c9d75108cf2fca4901000000ffff"));
+        c.release();
+
+        c = ch.readOutbound();
+        assertThat(ByteBufUtil.hexDump(c.content()), is("0300c6865b260c000000"));
+        c.release();
+
+        LastHttpContent last = ch.readOutbound();
+        assertThat(last.content().readableBytes(), is(0));
+        last.release();
+
+        assertThat(ch.readOutbound(), is(nullValue()));
+        assertTrue(ch.finishAndReleaseAll());
+    }
+
     /**
      * If the length of the content is unknown, {@link HttpContentEncoder} should not skip encoding the content
      * even if the actual length is turned out to be 0.
@@ -533,6 +568,160 @@ public class HttpContentCompressorTest {
         assertTrue(ch.finishAndReleaseAll());
     }
 
+    @Test
+    public void testEncoderFactoryNegotiation() {
+        CompressionEncoderFactory custom = new CompressionEncoderFactory() {
+            @Override
+            public String encoding() {
+                return "x-custom";
+            }
+
+            @Override
+            public ChannelHandler newEncoder() {
+                return new ChannelOutboundHandlerAdapter();
+            }
+        };
+        HttpContentCompressor compressor = new HttpContentCompressor(0, null,
+                custom, CompressionEncoderFactories.gzip(6, 15, 8));
+
+        String[] tests = {
+            // Accept-Encoding -> Content-Encoding
+            "", null,
+            "br", null,
+            "*", "x-custom",
+            "*;q=0.0", null,
+            "gzip", "gzip",
+            "gzip, x-custom", "x-custom",
+            "gzip;q=1.0, X-Custom;q=0.5", "gzip",
+            "x-custom;q=0, *", "gzip",
+            "deflate, *;q=0.1", "x-custom",
+        };
+        for (int i = 0; i < tests.length; i += 2) {
+            CompressionEncoderFactory factory = compressor.determineEncoderFactory(tests[i]);
+            String targetEncoding = factory == null ? null : factory.encoding();
+            assertEquals(tests[i + 1], targetEncoding);
+        }
+    }
+
+    @Test
+    public void testCompressedContentCache() {
+        CompressedContentCache cache = new CompressedContentCache(16, 1024);
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new HttpContentCompressor(0, cache, CompressionEncoderFactories.gzip(6, 15, 8)));
+        String body = "Hello, World! Hello, World! Hello, World!";
+
+        ByteBuf first = writeAndReadCompressedResponse(ch, body);
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.size());
+
+        ByteBuf second = writeAndReadCompressedResponse(ch, body);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(first, second);
+
+        // A different body with the same length is not served from the cache.
+        ByteBuf third = writeAndReadCompressedResponse(ch, body.replace('H', 'J'));
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+        assertNotEquals(first, third);
+
+        EmbeddedChannel decoder = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
+        assertTrue(decoder.writeInbound(second));
+        ByteBuf decompressed = decoder.readInbound();
+        assertEquals(body, decompressed.toString(CharsetUtil.US_ASCII));
+        decompressed.release();
+
+        first.release();
+        third.release();
+        assertFalse(decoder.finishAndReleaseAll());
+        assertFalse(ch.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testCompressedContentCacheIsKeyedByEncoderParameters() {
+        CompressedContentCache cache = new CompressedContentCache(16, 1024);
+        String body = "Hello, World! Hello, World! Hello, World!";
+        EmbeddedChannel fast = new EmbeddedChannel(
+                new HttpContentCompressor(0, cache, CompressionEncoderFactories.gzip(1, 15, 8)));
+        EmbeddedChannel best = new EmbeddedChannel(
+                new HttpContentCompressor(0, cache, CompressionEncoderFactories.gzip(9, 15, 8)));
+        EmbeddedChannel bestAgain = new EmbeddedChannel(
+                new HttpContentCompressor(0, cache, CompressionEncoderFactories.gzip(9, 15, 8)));
+
+        writeAndReadCompressedResponse(fast, body).release();
+        assertEquals(1, cache.misses());
+        // The same content-coding with another compression level must not use the body compressed before.
+        writeAndReadCompressedResponse(best, body).release();
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(2, cache.size());
+
+        // Factories with the same parameters share the cached body, which is read-only.
+        assertTrue(bestAgain.writeInbound(newRequest()));
+        ReferenceCountUtil.release(bestAgain.readInbound());
+        assertTrue(bestAgain.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body, CharsetUtil.US_ASCII))));
+        assertEquals(1, cache.hits());
+        ReferenceCountUtil.release(bestAgain.readOutbound());
+        HttpContent content = bestAgain.readOutbound();
+        assertTrue(content.content().isReadable());
+        assertTrue(content.content().isReadOnly());
+        content.release();
+
+        assertFalse(fast.finishAndReleaseAll());
+        assertFalse(best.finishAndReleaseAll());
+        assertTrue(bestAgain.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testDeflateWithDictionary() {
+        byte[] dictionary = "Hello, World".getBytes(CharsetUtil.US_ASCII);
+        FullHttpRequest request = newRequest();
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip;q=0.5, x-deflate-dict");
+        EmbeddedChannel ch = new EmbeddedChannel(new HttpContentCompressor(0, null,
+                CompressionEncoderFactories.deflateWithDictionary("x-deflate-dict", 6, 15, 8, dictionary),
+                CompressionEncoderFactories.gzip(6, 15, 8)));
+        assertTrue(ch.writeInbound(request));
+        assertTrue(ch.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer("Hello, World", CharsetUtil.US_ASCII))));
+
+        HttpResponse res = ch.readOutbound();
+        assertEquals("x-deflate-dict", res.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        EmbeddedChannel decoder = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(dictionary));
+        for (;;) {
+            HttpContent content = ch.readOutbound();
+            if (content == null) {
+                break;
+            }
+            decoder.writeInbound(content.content());
+        }
+        ByteBuf decompressed = decoder.readInbound();
+        assertEquals("Hello, World", decompressed.toString(CharsetUtil.US_ASCII));
+        decompressed.release();
+        assertFalse(decoder.finishAndReleaseAll());
+        assertTrue(ch.finishAndReleaseAll());
+    }
+
+    private static ByteBuf writeAndReadCompressedResponse(EmbeddedChannel ch, String body) {
+        assertTrue(ch.writeInbound(newRequest()));
+        ReferenceCountUtil.release(ch.readInbound());
+        assertTrue(ch.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body, CharsetUtil.US_ASCII))));
+        HttpResponse res = ch.readOutbound();
+        assertEquals("gzip", res.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+        ByteBuf compressed = Unpooled.buffer();
+        for (;;) {
+            HttpContent content = ch.readOutbound();
+            if (content == null) {
+                break;
+            }
+            compressed.writeBytes(content.content());
+            content.release();
+        }
+        return compressed;
+    }
+
     private static FullHttpRequest newRequest() {
         FullHttpRequest req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
         req.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
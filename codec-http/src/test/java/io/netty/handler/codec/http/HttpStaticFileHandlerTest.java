@@ -0,0 +1,337 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HttpStaticFileHandlerTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpStaticFileCache cache;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new HttpStaticFileCache(16, 1, TimeUnit.HOURS);
+        file = write(folder.newFile("index.html"), CONTENT);
+    }
+
+    private static File write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(CharsetUtil.US_ASCII));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private EmbeddedChannel newChannel() {
+        return new EmbeddedChannel(new HttpStaticFileHandler(folder.getRoot(), cache));
+    }
+
+    private static HttpRequest get(String uri) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+
+    private static String readRegion(DefaultFileRegion region) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (region.transferred() < region.count()) {
+            region.transferTo(Channels.newChannel(out), region.transferred());
+        }
+        region.release();
+        return new String(out.toByteArray(), CharsetUtil.US_ASCII);
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        EmbeddedChannel channel = newChannel();
+        for (int i = 0; i < 2; i++) {
+            assertFalse(channel.writeInbound(get("/index.html?v=" + i)));
+            HttpResponse response = channel.readOutbound();
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertEquals(CONTENT.length(), HttpUtil.getContentLength(response));
+            assertEquals("text/html", response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+            assertEquals("bytes", response.headers().get(HttpHeaderNames.ACCEPT_RANGES));
+            assertEquals(DateFormatter.format(new Date(file.lastModified())),
+                    response.headers().get(HttpHeaderNames.LAST_MODIFIED));
+            assertEquals(CONTENT, readRegion((DefaultFileRegion) channel.readOutbound()));
+            assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        }
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.size());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHead() {
+        EmbeddedChannel channel = newChannel();
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, "/index.html"));
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals(CONTENT.length(), HttpUtil.getContentLength(response));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        EmbeddedChannel channel = newChannel();
+        assertRange(channel, "bytes=10-19", "10-19", CONTENT.substring(10, 20));
+        assertRange(channel, "bytes=30-", "30-35", CONTENT.substring(30));
+        assertRange(channel, "bytes=-6", "30-35", CONTENT.substring(30));
+        assertRange(channel, "bytes=30-100", "30-35", CONTENT.substring(30));
+
+        HttpRequest request = get("/index.html");
+        request.headers().set(HttpHeaderNames.RANGE, "bytes=36-");
+        channel.writeInbound(request);
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.status());
+        assertEquals("bytes */36", response.headers().get(HttpHeaderNames.CONTENT_RANGE));
+        response.release();
+
+        // Several ranges and ranges for an older version of the file are ignored
+        request = get("/index.html");
+        request.headers().set(HttpHeaderNames.RANGE, "bytes=0-1,3-4");
+        channel.writeInbound(request);
+        assertFullContent(channel);
+        request = get("/index.html");
+        request.headers().set(HttpHeaderNames.RANGE, "bytes=0-1");
+        request.headers().set(HttpHeaderNames.IF_RANGE, "\"other\"");
+        channel.writeInbound(request);
+        assertFullContent(channel);
+        assertFalse(channel.finish());
+    }
+
+    private static void assertRange(EmbeddedChannel channel, String range, String contentRange, String content)
+            throws IOException {
+        HttpRequest request = get("/index.html");
+        request.headers().set(HttpHeaderNames.RANGE, range);
+        channel.writeInbound(request);
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.PARTIAL_CONTENT, response.status());
+        assertEquals("bytes " + contentRange + "/36", response.headers().get(HttpHeaderNames.CONTENT_RANGE));
+        assertEquals(content.length(), HttpUtil.getContentLength(response));
+        assertEquals(content, readRegion((DefaultFileRegion) channel.readOutbound()));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+    }
+
+    private static void assertFullContent(EmbeddedChannel channel) throws IOException {
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals(CONTENT, readRegion((DefaultFileRegion) channel.readOutbound()));
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+    }
+
+    @Test
+    public void testConditional() {
+        EmbeddedChannel channel = newChannel();
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, "/index.html"));
+        HttpResponse response = channel.readOutbound();
+        String etag = response.headers().get(HttpHeaderNames.ETAG);
+        String lastModified = response.headers().get(HttpHeaderNames.LAST_MODIFIED);
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readOutbound());
+
+        HttpRequest request = get("/index.html");
+        request.headers().set(HttpHeaderNames.IF_NONE_MATCH, "\"other\", W/" + etag);
+        channel.writeInbound(request);
+        FullHttpResponse notModified = channel.readOutbound();
+        assertEquals(HttpResponseStatus.NOT_MODIFIED, notModified.status());
+        assertEquals(etag, notModified.headers().get(HttpHeaderNames.ETAG));
+        notModified.release();
+
+        request = get("/index.html");
+        request.headers().set(HttpHeaderNames.IF_MODIFIED_SINCE, lastModified);
+        channel.writeInbound(request);
+        notModified = channel.readOutbound();
+        assertEquals(HttpResponseStatus.NOT_MODIFIED, notModified.status());
+        notModified.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testChunkedWhenContentEncoderPresent() {
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpContentCompressor(), new ChunkedWriteHandler(),
+                new HttpStaticFileHandler(folder.getRoot(), cache, 10));
+        channel.writeInbound(get("/index.html"));
+        HttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        ByteBuf content = Unpooled.buffer();
+        for (;;) {
+            HttpContent chunk = channel.readOutbound();
+            content.writeBytes(chunk.content());
+            chunk.release();
+            if (chunk instanceof LastHttpContent) {
+                break;
+            }
+        }
+        assertEquals(CONTENT, content.toString(CharsetUtil.US_ASCII));
+        content.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFileNotReadableAfterStat() throws Exception {
+        // Cache the file, then close it as if it became unreadable after it was checked and opened.
+        HttpStaticFileCache.Entry entry = cache.acquire(file);
+        entry.channel().close();
+        entry.release();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpContentCompressor(), new ChunkedWriteHandler(),
+                new HttpStaticFileHandler(folder.getRoot(), cache));
+        assertFalse(channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/index.html")));
+        ByteBuf content = Unpooled.copiedBuffer("ignored", CharsetUtil.US_ASCII);
+        assertFalse(channel.writeInbound(new DefaultLastHttpContent(content)));
+        assertEquals(0, content.refCnt());
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status());
+        assertEquals(0, HttpUtil.getContentLength(response));
+        response.release();
+        assertNull(channel.readOutbound());
+        assertTrue(channel.isOpen());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testNotServed() throws Exception {
+        folder.newFolder("dir");
+        write(folder.newFile(".secret"), "secret");
+        EmbeddedChannel channel = newChannel();
+        for (String uri : new String[] {
+                "/missing.html", "/dir", "/.secret", "/dir/../.secret", "/dir/%2e%2e/index.html", "/" }) {
+            HttpRequest request = get(uri);
+            assertTrue(channel.writeInbound(request));
+            assertSame(request, channel.readInbound());
+            ReferenceCountUtil.release(request);
+        }
+        HttpRequest post = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/index.html");
+        assertTrue(channel.writeInbound(post));
+        assertSame(post, channel.readInbound());
+        ReferenceCountUtil.release(post);
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDiscardsContentOfServedRequest() throws Exception {
+        EmbeddedChannel channel = newChannel();
+        assertFalse(channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/index.html")));
+        ByteBuf content = Unpooled.copiedBuffer("ignored", CharsetUtil.US_ASCII);
+        assertFalse(channel.writeInbound(new DefaultLastHttpContent(content)));
+        assertEquals(0, content.refCnt());
+        assertFullContent(channel);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCacheRevalidationAndEviction() throws Exception {
+        cache = new HttpStaticFileCache(1, 0, TimeUnit.NANOSECONDS);
+        HttpStaticFileCache.Entry entry = cache.acquire(file);
+        assertEquals(CONTENT.length(), entry.length());
+        assertTrue(entry.channel().isOpen());
+
+        write(file, CONTENT + CONTENT);
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        HttpStaticFileCache.Entry modified = cache.acquire(file);
+        assertEquals(CONTENT.length() * 2, modified.length());
+        // The old entry was removed from the cache, but is still in use
+        assertTrue(entry.channel().isOpen());
+        assertTrue(entry.release());
+        assertFalse(entry.channel().isOpen());
+
+        File other = write(folder.newFile("other.txt"), CONTENT);
+        HttpStaticFileCache.Entry otherEntry = cache.acquire(other);
+        assertEquals(1, cache.size());
+        assertTrue(modified.channel().isOpen());
+        assertTrue(modified.release());
+        assertFalse(modified.channel().isOpen());
+
+        cache.clear();
+        assertTrue(otherEntry.channel().isOpen());
+        assertTrue(otherEntry.release());
+        assertFalse(otherEntry.channel().isOpen());
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentAcquireSharesOneFile() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<HttpStaticFileCache.Entry>> futures = new ArrayList<Future<HttpStaticFileCache.Entry>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<HttpStaticFileCache.Entry>() {
+                    @Override
+                    public HttpStaticFileCache.Entry call() throws Exception {
+                        start.await();
+                        return cache.acquire(file);
+                    }
+                }));
+            }
+            start.countDown();
+
+            HttpStaticFileCache.Entry cached = futures.get(0).get();
+            for (Future<HttpStaticFileCache.Entry> future : futures) {
+                // The files opened by the callers which lost the race were closed again.
+                assertSame(cached, future.get());
+                assertFalse(future.get().release());
+            }
+            assertEquals(1, cache.size());
+            cache.clear();
+            assertFalse(cached.channel().isOpen());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
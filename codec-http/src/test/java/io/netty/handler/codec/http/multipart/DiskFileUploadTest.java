@@ -15,10 +15,15 @@
  */
 package io.netty.handler.codec.http.multipart;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledHeapByteBuf;
+import io.netty.util.CharsetUtil;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -77,4 +82,46 @@ public class DiskFileUploadTest {
         assertEquals(2, f.getFile().length());
         f.delete();
     }
+
+    @Test
+    public void testAddCompositeContent() throws IOException {
+        DiskFileUpload f =
+                new DiskFileUpload("d1", "d1", "application/json", null, null, 0);
+        ByteBuf content = Unpooled.wrappedBuffer(
+                Unpooled.copiedBuffer("abc", CharsetUtil.US_ASCII),
+                Unpooled.directBuffer().writeBytes("def".getBytes(CharsetUtil.US_ASCII)));
+        assertTrue(content.nioBufferCount() > 1);
+        f.addContent(content, false);
+        f.addContent(Unpooled.copiedBuffer("ghi", CharsetUtil.US_ASCII), true);
+        assertEquals(0, content.refCnt());
+        assertEquals("abcdefghi", f.getString(CharsetUtil.US_ASCII));
+        f.delete();
+    }
+
+    @Test
+    public void testAddContentWithoutNioBuffers() throws IOException {
+        DiskFileUpload f =
+                new DiskFileUpload("d1", "d1", "application/json", null, null, 0);
+        ByteBuf content = new UnpooledHeapByteBuf(UnpooledByteBufAllocator.DEFAULT, 8, 8) {
+            @Override
+            public int nioBufferCount() {
+                return -1;
+            }
+
+            @Override
+            public ByteBuffer nioBuffer(int index, int length) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public ByteBuffer[] nioBuffers(int index, int length) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        content.writeBytes("abcdef".getBytes(CharsetUtil.US_ASCII));
+        f.addContent(content, true);
+        assertEquals(0, content.refCnt());
+        assertEquals("abcdef", f.getString(CharsetUtil.US_ASCII));
+        f.delete();
+    }
 }
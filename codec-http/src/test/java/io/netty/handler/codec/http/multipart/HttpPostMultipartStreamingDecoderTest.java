@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http.multipart;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder.ErrorDataDecoderException;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpPostMultipartStreamingDecoderTest {
+
+    private static final String BOUNDARY = "dLV9Wyq26L_-JQxk6ferf-RT153LhOO";
+
+    private static HttpRequest newRequest() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + BOUNDARY);
+        return request;
+    }
+
+    private static String body(String fileContent) {
+        return "This is the preamble\r\n" +
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"field1\"\r\n" +
+                "\r\n" +
+                "value1\r\n" +
+                "--" + BOUNDARY + "  \r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n" +
+                "Content-Type: text/plain\r\n" +
+                "\r\n" +
+                fileContent + "\r\n" +
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"empty\"\r\n" +
+                "\r\n" +
+                "\r\n" +
+                "--" + BOUNDARY + "--\r\n" +
+                "This is the epilogue";
+    }
+
+    @Test
+    public void testAllChunkSizes() throws Exception {
+        // Partial delimiters which must be kept as content
+        String fileContent = "\r\n--" + BOUNDARY.substring(0, 10) + "\r\r\n-\r\n--" + BOUNDARY.substring(0, 20) + "\r";
+        byte[] body = body(fileContent).getBytes(CharsetUtil.US_ASCII);
+        for (int chunkSize = 1; chunkSize <= body.length; chunkSize++) {
+            for (boolean direct : new boolean[] { false, true }) {
+                HttpPostMultipartStreamingDecoder decoder =
+                        decode(new DefaultHttpDataFactory(false), body, chunkSize, direct);
+                try {
+                    List<InterfaceHttpData> datas = decoder.getBodyHttpDatas();
+                    assertEquals(3, datas.size());
+                    Attribute field = (Attribute) datas.get(0);
+                    assertEquals("field1", field.getName());
+                    assertEquals("value1", field.getValue());
+                    FileUpload file = (FileUpload) datas.get(1);
+                    assertEquals("file", file.getName());
+                    assertEquals("a.txt", file.getFilename());
+                    assertEquals("text/plain", file.getContentType());
+                    assertEquals(fileContent, file.getString(CharsetUtil.US_ASCII));
+                    Attribute empty = (Attribute) datas.get(2);
+                    assertEquals("empty", empty.getName());
+                    assertEquals("", empty.getValue());
+                    assertTrue(decoder.hasNext());
+                } finally {
+                    // Memory based data is not released by the factory
+                    for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
+                        data.release();
+                    }
+                    decoder.destroy();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryContent() throws Exception {
+        byte[] content = new byte[64 * 1024];
+        new Random(42).nextBytes(content);
+        byte[] body = concat(("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n" +
+                "Content-Transfer-Encoding: binary\r\n" +
+                "\r\n").getBytes(CharsetUtil.US_ASCII),
+                content,
+                ("\r\n--" + BOUNDARY + "--").getBytes(CharsetUtil.US_ASCII));
+        for (int chunkSize : new int[] { 7, 1000, 8192 }) {
+            HttpPostMultipartStreamingDecoder decoder =
+                    decode(new DefaultHttpDataFactory(false), body, chunkSize, true);
+            try {
+                FileUpload file = (FileUpload) decoder.getBodyHttpData("file");
+                assertEquals("binary", file.getContentTransferEncoding());
+                assertArrayEquals(content, file.get());
+                file.release();
+            } finally {
+                decoder.destroy();
+            }
+        }
+    }
+
+    @Test
+    public void testDiskUploadStreamsToFile() throws Exception {
+        byte[] content = new byte[1024 * 1024];
+        new Random(42).nextBytes(content);
+        byte[] body = concat(("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n" +
+                "\r\n").getBytes(CharsetUtil.US_ASCII),
+                content,
+                ("\r\n--" + BOUNDARY + "--\r\n").getBytes(CharsetUtil.US_ASCII));
+        HttpRequest request = newRequest();
+        HttpPostMultipartStreamingDecoder decoder =
+                new HttpPostMultipartStreamingDecoder(new DefaultHttpDataFactory(true), request);
+        try {
+            for (int i = 0; i < body.length; i += 8192) {
+                ByteBuf chunk = Unpooled.directBuffer(8192).writeBytes(body, i, Math.min(8192, body.length - i));
+                try {
+                    decoder.offer(new DefaultHttpContent(chunk));
+                } finally {
+                    // Nothing of the upload may stay referenced once written to the file
+                    assertTrue(chunk.release());
+                }
+                if (i + 8192 < content.length) {
+                    DiskFileUpload upload = (DiskFileUpload) decoder.currentPartialHttpData();
+                    assertFalse(upload.isInMemory());
+                }
+            }
+            decoder.offer(new DefaultLastHttpContent());
+            FileUpload file = (FileUpload) decoder.next();
+            assertTrue(file.isCompleted());
+            File f = file.getFile();
+            assertEquals(content.length, f.length());
+            assertArrayEquals(content, file.get());
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    @Test
+    public void testHeadersTooLarge() {
+        char[] value = new char[256];
+        Arrays.fill(value, 'a');
+        byte[] body = ("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"" + new String(value) + "\"\r\n" +
+                "\r\n" +
+                "value\r\n" +
+                "--" + BOUNDARY + "--\r\n").getBytes(CharsetUtil.US_ASCII);
+        HttpPostMultipartStreamingDecoder decoder = new HttpPostMultipartStreamingDecoder(
+                new DefaultHttpDataFactory(false), newRequest(), CharsetUtil.UTF_8, 128);
+        try {
+            decoder.offer(new DefaultLastHttpContent(Unpooled.wrappedBuffer(body)));
+            fail();
+        } catch (ErrorDataDecoderException expected) {
+            // expected
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    private static HttpPostMultipartStreamingDecoder decode(
+            HttpDataFactory factory, byte[] body, int chunkSize, boolean direct) {
+        HttpPostMultipartStreamingDecoder decoder = new HttpPostMultipartStreamingDecoder(factory, newRequest());
+        for (int i = 0; i < body.length; i += chunkSize) {
+            int length = Math.min(chunkSize, body.length - i);
+            ByteBuf chunk = direct ? Unpooled.directBuffer(length) : Unpooled.buffer(length);
+            chunk.writeBytes(body, i, length);
+            try {
+                decoder.offer(new DefaultHttpContent(chunk));
+            } finally {
+                chunk.release();
+            }
+        }
+        decoder.offer(new DefaultLastHttpContent());
+        return decoder;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        int length = 0;
+        for (byte[] array : arrays) {
+            length += array.length;
+        }
+        byte[] result = new byte[length];
+        int index = 0;
+        for (byte[] array : arrays) {
+            System.arraycopy(array, 0, result, index, array.length);
+            index += array.length;
+        }
+        return result;
+    }
+}
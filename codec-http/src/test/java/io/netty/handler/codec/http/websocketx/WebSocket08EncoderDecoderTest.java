@@ -18,6 +18,7 @@ package io.netty.handler.codec.http.websocketx;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.internal.PlatformDependent;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -142,6 +143,57 @@ public class WebSocket08EncoderDecoderTest {
         binTestData.release();
     }
 
+    @Test
+    public void testMaskPayloadInPlace() {
+        byte[] data = new byte[4096];
+        PlatformDependent.threadLocalRandom().nextBytes(data);
+        EmbeddedChannel outChannel = new EmbeddedChannel(new WebSocket08FrameEncoder(true, true));
+        EmbeddedChannel inChannel = new EmbeddedChannel(new WebSocket08FrameDecoder(true, false, 1024 * 1024, false));
+
+        // Only referenced by the frame, so it is masked in place and written after the header.
+        ByteBuf payload = Unpooled.directBuffer().writeBytes(data);
+        outChannel.writeOutbound(new BinaryWebSocketFrame(payload));
+        ByteBuf header = outChannel.readOutbound();
+        Assert.assertEquals(2 + 2 + 4, header.readableBytes());
+        Assert.assertSame(payload, outChannel.readOutbound());
+        inChannel.writeInbound(header, payload);
+        BinaryWebSocketFrame frame = inChannel.readInbound();
+        Assert.assertEquals(Unpooled.wrappedBuffer(data), frame.content());
+        frame.release();
+
+        // Also referenced elsewhere, so it is copied.
+        ByteBuf shared = Unpooled.wrappedBuffer(data);
+        outChannel.writeOutbound(new BinaryWebSocketFrame(shared.retain()));
+        ByteBuf encoded = outChannel.readOutbound();
+        Assert.assertEquals(2 + 2 + 4 + data.length, encoded.readableBytes());
+        Assert.assertNull(outChannel.readOutbound());
+        Assert.assertEquals(Unpooled.wrappedBuffer(data), shared);
+        shared.release();
+        inChannel.writeInbound(encoded);
+        frame = inChannel.readInbound();
+        Assert.assertEquals(Unpooled.wrappedBuffer(data), frame.content());
+        frame.release();
+
+        Assert.assertFalse(outChannel.finish());
+        Assert.assertFalse(inChannel.finish());
+    }
+
+    @Test
+    public void testPayloadNotMaskedInPlaceByDefault() {
+        byte[] data = new byte[4096];
+        PlatformDependent.threadLocalRandom().nextBytes(data);
+        byte[] array = data.clone();
+        EmbeddedChannel outChannel = new EmbeddedChannel(new WebSocket08FrameEncoder(true));
+
+        // The wrapped array of the caller must not be modified.
+        outChannel.writeOutbound(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(array)));
+        ByteBuf encoded = outChannel.readOutbound();
+        Assert.assertEquals(2 + 2 + 4 + data.length, encoded.readableBytes());
+        Assert.assertArrayEquals(data, array);
+        encoded.release();
+        Assert.assertFalse(outChannel.finish());
+    }
+
     private void executeTests(EmbeddedChannel outChannel, EmbeddedChannel inChannel) {
         // Test at the boundaries of each message type, because this shifts the position of the mask field
         // Test min. 4 lengths to check for problems related to an uneven frame length
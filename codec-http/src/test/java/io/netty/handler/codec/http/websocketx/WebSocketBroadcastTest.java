@@ -0,0 +1,258 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http.websocketx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.compression.OffloadingCompressionHandler;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketShareableExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionTestUtil.newUpgradeRequest;
+import static io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionTestUtil.newUpgradeResponse;
+import static org.junit.Assert.*;
+
+public class WebSocketBroadcastTest {
+
+    private static final String TEXT = "Hello, subscribers of the broadcast! Hello, subscribers of the broadcast!";
+
+    @Test
+    public void testPlainFrameIsEncodedOnce() {
+        ChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel first = newChannel(new WebSocket13FrameEncoder(false));
+        EmbeddedChannel second = newChannel(new WebSocket13FrameEncoder(false));
+        group.add(first);
+        group.add(second);
+
+        WebSocketBroadcast broadcast = new WebSocketBroadcast(new TextWebSocketFrame(TEXT));
+        ChannelGroupFuture future = group.writeAndFlush(broadcast);
+        assertTrue(future.isSuccess());
+        assertEquals(0, broadcast.refCnt());
+
+        ByteBuf expected = encode(new TextWebSocketFrame(TEXT), new WebSocket13FrameEncoder(false));
+        ByteBuf firstEncoded = first.readOutbound();
+        ByteBuf secondEncoded = second.readOutbound();
+        assertEquals(expected, firstEncoded);
+        assertEquals(expected, secondEncoded);
+        // Both are views of the same encoded frame.
+        assertEquals(firstEncoded.unwrap(), secondEncoded.unwrap());
+        expected.release();
+        firstEncoded.release();
+        assertEquals(1, secondEncoded.refCnt());
+        secondEncoded.release();
+        assertFalse(first.finish());
+        assertFalse(second.finish());
+    }
+
+    @Test
+    public void testSharedEncodingKey() {
+        AtomicInteger encoded = new AtomicInteger();
+        ChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel[] channels = new EmbeddedChannel[4];
+        for (int i = 0; i < channels.length; i++) {
+            // Every other channel uses another key.
+            channels[i] = newChannel(new WebSocket13FrameEncoder(false),
+                    new CountingExtensionEncoder(i % 2 == 0 ? "a" : "b", encoded));
+            group.add(channels[i]);
+        }
+        group.writeAndFlush(new WebSocketBroadcast(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[10]))));
+        group.writeAndFlush(new WebSocketBroadcast(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[20]))));
+        assertEquals(4, encoded.get());
+        for (EmbeddedChannel channel : channels) {
+            ByteBuf buf = channel.readOutbound();
+            assertEquals(12, buf.readableBytes());
+            buf.release();
+            buf = channel.readOutbound();
+            assertEquals(22, buf.readableBytes());
+            buf.release();
+            assertFalse(channel.finish());
+        }
+    }
+
+    @Test
+    public void testUnsharedEncodings() {
+        AtomicInteger encoded = new AtomicInteger();
+        ChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel stateful = newChannel(new WebSocket13FrameEncoder(false),
+                new CountingExtensionEncoder(null, encoded));
+        EmbeddedChannel masking = newChannel(new WebSocket13FrameEncoder(true));
+        group.add(stateful);
+        group.add(masking);
+
+        group.writeAndFlush(new WebSocketBroadcast(new TextWebSocketFrame(TEXT)));
+        assertEquals(1, encoded.get());
+        ByteBuf buf = stateful.readOutbound();
+        assertEquals(2 + TEXT.length(), buf.readableBytes());
+        buf.release();
+        buf = masking.readOutbound();
+        assertEquals(2 + 4 + TEXT.length(), buf.readableBytes());
+        buf.release();
+        masking.finishAndReleaseAll();
+        assertFalse(stateful.finish());
+    }
+
+    @Test
+    public void testFragmentsAreNotShared() {
+        AtomicInteger encoded = new AtomicInteger();
+        ChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel first = newChannel(new WebSocket13FrameEncoder(false),
+                new CountingExtensionEncoder("a", encoded));
+        EmbeddedChannel second = newChannel(new WebSocket13FrameEncoder(false),
+                new CountingExtensionEncoder("a", encoded));
+        group.add(first);
+        group.add(second);
+
+        group.writeAndFlush(new WebSocketBroadcast(new TextWebSocketFrame(false, 0, TEXT)));
+        group.writeAndFlush(new WebSocketBroadcast(new ContinuationWebSocketFrame(true, 0, TEXT)));
+        assertEquals(4, encoded.get());
+        assertTrue(first.finishAndReleaseAll());
+        assertTrue(second.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testPerMessageDeflate() {
+        ChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel first = newChannel(new WebSocket13FrameEncoder(false), deflateEncoder(true));
+        EmbeddedChannel second = newChannel(new WebSocket13FrameEncoder(false), deflateEncoder(true));
+        EmbeddedChannel contextTakeover = newChannel(
+                new WebSocket13FrameEncoder(false), deflateEncoder(false));
+        group.add(first);
+        group.add(second);
+        group.add(contextTakeover);
+
+        for (int i = 0; i < 2; i++) {
+            group.writeAndFlush(new WebSocketBroadcast(new TextWebSocketFrame(TEXT)));
+            ByteBuf expected = encode(new TextWebSocketFrame(TEXT),
+                    new WebSocket13FrameEncoder(false), deflateEncoder(true));
+            ByteBuf firstEncoded = first.readOutbound();
+            ByteBuf secondEncoded = second.readOutbound();
+            assertEquals(ByteBufUtil.hexDump(expected), ByteBufUtil.hexDump(firstEncoded));
+            assertEquals(ByteBufUtil.hexDump(expected), ByteBufUtil.hexDump(secondEncoded));
+            assertTrue(expected.readableBytes() < 2 + TEXT.length());
+            expected.release();
+            firstEncoded.release();
+            secondEncoded.release();
+            assertTrue(contextTakeover.releaseOutbound());
+        }
+        assertFalse(first.finish());
+        assertFalse(second.finish());
+        assertFalse(contextTakeover.finish());
+    }
+
+    @Test
+    public void testOffloadedCompressionIsNotShared() {
+        ChannelGroup group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        EmbeddedChannel plain = newChannel(new WebSocket13FrameEncoder(false));
+        EmbeddedChannel offloaded = newChannel(new WebSocket13FrameEncoder(false),
+                new WebSocketServerCompressionHandler(ImmediateEventExecutor.INSTANCE, 512));
+        assertTrue(offloaded.writeInbound(newUpgradeRequest("permessage-deflate; client_no_context_takeover")));
+        assertTrue(offloaded.writeOutbound(newUpgradeResponse(null)));
+        HttpResponse res = offloaded.readOutbound();
+        assertTrue(res.headers().contains(HttpHeaderNames.SEC_WEBSOCKET_EXTENSIONS));
+        assertNotNull(offloaded.pipeline().get(OffloadingCompressionHandler.class));
+        ReferenceCountUtil.release(offloaded.readInbound());
+        group.add(plain);
+        group.add(offloaded);
+
+        group.writeAndFlush(new WebSocketBroadcast(new TextWebSocketFrame(TEXT)));
+        ByteBuf uncompressed = plain.readOutbound();
+        assertEquals(2 + TEXT.length(), uncompressed.readableBytes());
+        uncompressed.release();
+        offloaded.runPendingTasks();
+        ByteBuf compressed = offloaded.readOutbound();
+        assertEquals(WebSocketExtension.RSV1 << 4, compressed.getByte(0) & WebSocketExtension.RSV1 << 4);
+        assertTrue(compressed.readableBytes() < 2 + TEXT.length());
+        compressed.release();
+        assertFalse(plain.finish());
+        offloaded.finishAndReleaseAll();
+    }
+
+    private static EmbeddedChannel newChannel(ChannelHandler... handlers) {
+        // DefaultChannelGroup distinguishes its channels by their ids.
+        return new EmbeddedChannel(DefaultChannelId.newInstance(), handlers);
+    }
+
+    private static WebSocketExtensionEncoder deflateEncoder(boolean serverNoContext) {
+        return new PerMessageDeflateServerExtensionHandshaker(6, false, 15, true, false).handshakeExtension(
+                new WebSocketExtensionData("permessage-deflate", serverNoContext ?
+                        Collections.<String, String>singletonMap("server_no_context_takeover", null) :
+                        Collections.<String, String>emptyMap())).newExtensionEncoder();
+    }
+
+    private static ByteBuf encode(WebSocketFrame frame, ChannelHandler... encoders) {
+        EmbeddedChannel channel = new EmbeddedChannel(encoders);
+        assertTrue(channel.writeOutbound(frame));
+        ByteBuf encoded = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            encoded.writeBytes(buf);
+            buf.release();
+        }
+        assertFalse(channel.finish());
+        return encoded;
+    }
+
+    private static final class CountingExtensionEncoder extends WebSocketExtensionEncoder
+            implements WebSocketShareableExtensionEncoder {
+        private final Object key;
+        private final AtomicInteger encoded;
+
+        CountingExtensionEncoder(Object key, AtomicInteger encoded) {
+            this.key = key;
+            this.encoded = encoded;
+        }
+
+        @Override
+        public Object sharedEncodingKey() {
+            return key;
+        }
+
+        @Override
+        public WebSocketExtensionEncoder newSharedEncoder() {
+            return new CountingExtensionEncoder(key, encoded);
+        }
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) {
+            encoded.incrementAndGet();
+            out.add(msg.retain());
+        }
+    }
+}
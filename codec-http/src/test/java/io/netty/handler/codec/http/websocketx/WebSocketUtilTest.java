@@ -15,8 +15,14 @@
  */
 package io.netty.handler.codec.http.websocketx;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.PlatformDependent;
 import org.junit.Test;
 
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class WebSocketUtilTest {
@@ -40,4 +46,55 @@ public class WebSocketUtilTest {
         }
     }
 
+    @Test
+    public void testMask() {
+        int mask = 0x9A3C51F7;
+        byte[] maskBytes = { (byte) 0x9A, 0x3C, 0x51, (byte) 0xF7 };
+        byte[] data = new byte[1027];
+        PlatformDependent.threadLocalRandom().nextBytes(data);
+        ByteBuf[] sources = {
+                Unpooled.wrappedBuffer(data),
+                Unpooled.directBuffer(data.length).writeBytes(data),
+                Unpooled.wrappedBuffer(new byte[3], data).slice(3, data.length),
+                Unpooled.wrappedBuffer(data).order(ByteOrder.LITTLE_ENDIAN)
+        };
+        for (ByteBuf src : sources) {
+            for (ByteBuf dst : new ByteBuf[] { Unpooled.buffer(data.length + 5),
+                                               Unpooled.directBuffer(data.length + 5) }) {
+                for (int length : new int[] { 0, 1, 3, 7, 8, 9, 15, 16, 17, 1021 }) {
+                    for (int offset = 0; offset < 4; offset++) {
+                        WebSocketUtil.mask(src, offset, dst, offset + 1, length, mask);
+                        for (int i = 0; i < length; i++) {
+                            assertEquals((byte) (data[offset + i] ^ maskBytes[i % 4]), dst.getByte(offset + 1 + i));
+                        }
+                    }
+                }
+                dst.release();
+            }
+            src.release();
+        }
+    }
+
+    @Test
+    public void testMaskInPlace() {
+        byte[] data = new byte[100];
+        PlatformDependent.threadLocalRandom().nextBytes(data);
+        for (ByteBuf buf : new ByteBuf[] { Unpooled.buffer().writeBytes(data),
+                                           Unpooled.directBuffer().writeBytes(data) }) {
+            WebSocketUtil.mask(buf, 1, buf, 1, 98, 0x01020304);
+            WebSocketUtil.mask(buf, 1, buf, 1, 98, 0x01020304);
+            assertEquals(Unpooled.wrappedBuffer(data), buf);
+            buf.release();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testMaskOutOfBounds() {
+        ByteBuf buf = Unpooled.buffer(8, 8);
+        try {
+            WebSocketUtil.mask(buf, 1, buf, 0, 8, 0);
+        } finally {
+            buf.release();
+        }
+    }
 }
@@ -15,14 +15,20 @@
  */
 package io.netty.handler.codec.http.websocketx.extensions.compression;
 
+import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.OffloadingCompressionHandler;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionUtil;
 import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
@@ -194,4 +200,32 @@ public class WebSocketServerCompressionHandlerTest {
         Assert.assertNotNull(ch.pipeline().get(PerMessageDeflateEncoder.class));
     }
 
+    @Test
+    public void testOffloadedCompression() {
+        EmbeddedChannel ch = new EmbeddedChannel(
+                new WebSocketServerCompressionHandler(ImmediateEventExecutor.INSTANCE, 512));
+
+        ch.writeInbound(newUpgradeRequest(PERMESSAGE_DEFLATE_EXTENSION));
+        ch.writeOutbound(newUpgradeResponse(null));
+        HttpResponse res = ch.readOutbound();
+        Assert.assertNotNull(res);
+        Assert.assertNotNull(ch.pipeline().get(OffloadingCompressionHandler.class));
+        Assert.assertNull(ch.pipeline().get(PerMessageDeflateEncoder.class));
+
+        byte[] payload = new byte[4096];
+        Arrays.fill(payload, (byte) 'a');
+        ch.writeOutbound(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(payload)));
+        ch.runPendingTasks();
+        BinaryWebSocketFrame compressed = ch.readOutbound();
+        Assert.assertEquals(WebSocketExtension.RSV1, compressed.rsv());
+        Assert.assertTrue(compressed.content().readableBytes() < payload.length);
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new PerMessageDeflateDecoder(false));
+        Assert.assertTrue(decoder.writeInbound(compressed));
+        BinaryWebSocketFrame decompressed = decoder.readInbound();
+        Assert.assertEquals(Unpooled.wrappedBuffer(payload), decompressed.content());
+        decompressed.release();
+        Assert.assertFalse(decoder.finish());
+        ch.finishAndReleaseAll();
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.UnstableApi;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A {@link DefaultHttp2LocalFlowController} which estimates the bandwidth-delay product of the connection and grows
+ * the connection and stream flow control windows to match it, up to {@link #maxWindowSize()}.
+ * <p>
+ * When {@code DATA} arrives and no estimation is in progress a {@code PING} is sent, and all bytes received until its
+ * acknowledgement form one sample. If a sample fills most of the current window while the measured bandwidth is at
+ * its maximum the window is the bottleneck, so the target window is doubled and {@code WINDOW_UPDATE} frames are sent
+ * for the connection and for each stream on its next {@code DATA} frame. The {@code SETTINGS_INITIAL_WINDOW_SIZE}
+ * is never changed and windows only grow, so start from a small initial window to keep the memory of slow
+ * connections low.
+ * <p>
+ * The acknowledgements of these {@code PING}s are consumed by {@link DefaultHttp2ConnectionDecoder} and are not
+ * propagated to the {@link Http2FrameListener}.
+ * <p>
+ * This class is <strong>NOT</strong> thread safe. The assumption is all methods must be invoked from a single thread.
+ * Typically this thread is the event loop thread for the {@link ChannelHandlerContext} managed by this class.
+ */
+@UnstableApi
+public class AdaptiveHttp2LocalFlowController extends DefaultHttp2LocalFlowController {
+    /**
+     * The default upper bound of the window sizes.
+     */
+    public static final int DEFAULT_MAX_WINDOW_SIZE = 16 * 1024 * 1024;
+
+    // Opaque data of the PINGs used for the estimation, chosen to be unlikely to collide with user PINGs.
+    static final long BDP_PING_DATA = 0x4e65747479424450L;
+
+    private static final int RTT_SAMPLES_TO_AVERAGE = 10;
+    private static final double RTT_DECAY = 0.9;
+    private static final double BDP_GAMMA = 2;
+    private static final double BDP_THRESHOLD = 0.66;
+    private static final double BANDWIDTH_RTT_FACTOR = 1.5;
+
+    private final Http2Connection connection;
+    private final int maxWindowSize;
+    private Http2FrameWriter frameWriter;
+    private ChannelHandlerContext ctx;
+
+    private final ChannelFutureListener pingWriteListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (!future.isSuccess()) {
+                // No acknowledgement will arrive, so start a new sample with the next DATA frame.
+                pingOutstanding = false;
+            }
+        }
+    };
+
+    private int targetWindowSize;
+    private boolean pingOutstanding;
+    private long pingSentNanos;
+    private long sample;
+    private long rttSampleCount;
+    private double rttNanos;
+    private double maxBandwidth;
+    private long pingCount;
+    private long windowSizeUpdateCount;
+
+    public AdaptiveHttp2LocalFlowController(Http2Connection connection) {
+        this(connection, DEFAULT_WINDOW_UPDATE_RATIO, false, DEFAULT_MAX_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructs a controller with the given settings.
+     *
+     * @param connection the connection state.
+     * @param windowUpdateRatio the window percentage below which to send a {@code WINDOW_UPDATE}.
+     * @param autoRefillConnectionWindow if {@code true}, effectively disables the connection window
+     * in the flow control algorithm as they will always refill automatically without requiring the
+     * application to consume the bytes.
+     * @param maxWindowSize the size up to which the connection and stream windows may grow.
+     */
+    public AdaptiveHttp2LocalFlowController(Http2Connection connection,
+                                            float windowUpdateRatio,
+                                            boolean autoRefillConnectionWindow,
+                                            int maxWindowSize) {
+        super(connection, windowUpdateRatio, autoRefillConnectionWindow);
+        this.connection = connection;
+        this.maxWindowSize = checkPositive(maxWindowSize, "maxWindowSize");
+        targetWindowSize = initialWindowSize();
+    }
+
+    @Override
+    public void initialWindowSize(int newWindowSize) throws Http2Exception {
+        super.initialWindowSize(newWindowSize);
+        // Follow the configured window until the estimation grew the target beyond it.
+        targetWindowSize = windowSizeUpdateCount == 0 ? newWindowSize : max(targetWindowSize, newWindowSize);
+    }
+
+    @Override
+    public AdaptiveHttp2LocalFlowController frameWriter(Http2FrameWriter frameWriter) {
+        super.frameWriter(frameWriter);
+        this.frameWriter = frameWriter;
+        return this;
+    }
+
+    @Override
+    public void channelHandlerContext(ChannelHandlerContext ctx) {
+        super.channelHandlerContext(ctx);
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void receiveFlowControlledFrame(Http2Stream stream, ByteBuf data, int padding,
+            boolean endOfStream) throws Http2Exception {
+        super.receiveFlowControlledFrame(stream, data, padding, endOfStream);
+        int dataLength = data.readableBytes() + padding;
+        if (targetWindowSize < maxWindowSize) {
+            if (!pingOutstanding) {
+                pingOutstanding = true;
+                pingCount++;
+                sample = 0;
+                pingSentNanos = System.nanoTime();
+                ChannelPromise promise = ctx.newPromise();
+                promise.addListener(pingWriteListener);
+                frameWriter.writePing(ctx, false, BDP_PING_DATA, promise);
+            }
+            sample += dataLength;
+        }
+
+        // Streams are grown lazily so the WINDOW_UPDATE is never sent before the peer knows about the stream.
+        if (stream != null && !endOfStream && stream.state().remoteSideOpen()) {
+            growWindow(stream);
+        }
+    }
+
+    /**
+     * Called by {@link DefaultHttp2ConnectionDecoder} for each {@code PING} acknowledgement.
+     *
+     * @return {@code true} if the acknowledgement belongs to a {@code PING} sent by this controller and must not be
+     * propagated any further.
+     */
+    boolean onPingAckRead(long data) throws Http2Exception {
+        if (data != BDP_PING_DATA || !pingOutstanding) {
+            return false;
+        }
+        pingOutstanding = false;
+        long rtt = max(1, System.nanoTime() - pingSentNanos);
+        if (rttSampleCount < RTT_SAMPLES_TO_AVERAGE) {
+            rttSampleCount++;
+            rttNanos += (rtt - rttNanos) / rttSampleCount;
+        } else {
+            rttNanos += (rtt - rttNanos) * RTT_DECAY;
+        }
+
+        double bandwidth = sample / (rttNanos * BANDWIDTH_RTT_FACTOR);
+        if (bandwidth > maxBandwidth) {
+            maxBandwidth = bandwidth;
+        }
+        if (sample >= BDP_THRESHOLD * targetWindowSize && bandwidth == maxBandwidth &&
+                targetWindowSize < maxWindowSize) {
+            targetWindowSize = (int) min(maxWindowSize, (long) (sample * BDP_GAMMA));
+            windowSizeUpdateCount++;
+            growWindow(connection.connectionStream());
+        }
+        return true;
+    }
+
+    private void growWindow(Http2Stream stream) throws Http2Exception {
+        int delta = targetWindowSize - initialWindowSize(stream);
+        if (delta > 0) {
+            incrementWindowSize(stream, delta);
+        }
+    }
+
+    /**
+     * The upper bound of the window sizes.
+     */
+    public int maxWindowSize() {
+        return maxWindowSize;
+    }
+
+    /**
+     * The window size the connection and the streams currently grow to, based on the estimated bandwidth-delay
+     * product.
+     */
+    public int targetWindowSize() {
+        return targetWindowSize;
+    }
+
+    /**
+     * The number of times {@link #targetWindowSize()} has grown.
+     */
+    public long windowSizeUpdateCount() {
+        return windowSizeUpdateCount;
+    }
+
+    /**
+     * The number of {@code PING}s sent to estimate the bandwidth-delay product.
+     */
+    public long pingCount() {
+        return pingCount;
+    }
+
+    /**
+     * The smoothed round trip time in nanoseconds, or {@code 0} if no {@code PING} was acknowledged yet.
+     */
+    public long roundTripTimeNanos() {
+        return (long) rttNanos;
+    }
+}
@@ -59,6 +59,7 @@ public class DefaultHttp2ConnectionDecoder implements Http2ConnectionDecoder {
     private final Http2PromisedRequestVerifier requestVerifier;
     private final Http2SettingsReceivedConsumer settingsReceivedConsumer;
     private final boolean autoAckPing;
+    private final AdaptiveHttp2LocalFlowController adaptiveFlowController;
 
     public DefaultHttp2ConnectionDecoder(Http2Connection connection,
                                          Http2ConnectionEncoder encoder,
@@ -131,7 +132,10 @@ public class DefaultHttp2ConnectionDecoder implements Http2ConnectionDecoder {
         if (connection.local().flowController() == null) {
             connection.local().flowController(new DefaultHttp2LocalFlowController(connection));
         }
-        connection.local().flowController().frameWriter(encoder.frameWriter());
+        Http2LocalFlowController flowController = connection.local().flowController();
+        flowController.frameWriter(encoder.frameWriter());
+        adaptiveFlowController = flowController instanceof AdaptiveHttp2LocalFlowController ?
+                (AdaptiveHttp2LocalFlowController) flowController : null;
     }
 
     @Override
@@ -490,6 +494,10 @@ public class DefaultHttp2ConnectionDecoder implements Http2ConnectionDecoder {
 
         @Override
         public void onPingAckRead(ChannelHandlerContext ctx, long data) throws Http2Exception {
+            if (adaptiveFlowController != null && adaptiveFlowController.onPingAckRead(data)) {
+                // The PING was sent to estimate the bandwidth-delay product, not by the user.
+                return;
+            }
             listener.onPingAckRead(ctx, data);
         }
 
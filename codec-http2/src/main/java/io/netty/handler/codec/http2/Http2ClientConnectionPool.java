@@ -0,0 +1,473 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.PlatformDependent;
+import io.netty.util.internal.UnstableApi;
+
+import java.io.Closeable;
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.SMALLEST_MAX_CONCURRENT_STREAMS;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * A HTTP/2 client which hands out {@link Http2StreamChannel}s of pooled connections, and only opens another
+ * connection to a remote address once all streams which the existing connections may open are in use.
+ * <p>
+ * The {@link Bootstrap}'s handler must add a {@link Http2FrameCodec} and a {@link Http2MultiplexHandler}, or a
+ * {@link Http2MultiplexCodec}, to the pipeline of each connection before it is connected. The streams a connection
+ * may open are limited by {@code maxStreamsPerConnection} and the {@code SETTINGS_MAX_CONCURRENT_STREAMS} of the
+ * remote peer; until its first {@code SETTINGS} frame was received, at most
+ * {@value Http2CodecUtil#SMALLEST_MAX_CONCURRENT_STREAMS} streams are opened. A connection which received a
+ * {@code GOAWAY} frame opens no new streams and is closed once all its streams were closed, it does not count
+ * towards {@code maxConnectionsPerHost} anymore. If connecting fails repeatedly, or no other connection may open
+ * streams anymore, the acquires which are waiting for a stream are failed.
+ * <p>
+ * Connections are pooled per remote address and per {@link EventLoop}, so streams which are acquired from an
+ * {@link EventLoop} of the {@link Bootstrap}'s group are opened on that {@link EventLoop} without any hop to another
+ * thread; other acquires use the next {@link EventLoop} of the group. Requests to different authorities share the
+ * connections of a remote address, it is up to the caller to only do so if the remote peer is authoritative for all
+ * of them.
+ * <p>
+ * A stream is given back to the pool by closing it.
+ */
+@UnstableApi
+public final class Http2ClientConnectionPool implements Closeable {
+
+    /**
+     * The number of consecutive failed connection attempts after which the pending acquires are failed.
+     */
+    private static final int MAX_CONNECT_ATTEMPTS = 3;
+
+    private final Bootstrap bootstrap;
+    private final EventLoopGroup group;
+    private final List<EventLoop> eventLoops = new ArrayList<EventLoop>();
+    private final int maxConnectionsPerHost;
+    private final int maxStreamsPerConnection;
+    private final int maxPendingAcquiresPerHost;
+    private final ConcurrentMap<PoolKey, HostPool> pools = PlatformDependent.newConcurrentHashMap();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap             the {@link Bootstrap} used to connect, with its group, channel and handler set
+     * @param maxConnectionsPerHost the maximum number of connections per remote address and {@link EventLoop}
+     */
+    public Http2ClientConnectionPool(Bootstrap bootstrap, int maxConnectionsPerHost) {
+        this(bootstrap, maxConnectionsPerHost, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bootstrap                 the {@link Bootstrap} used to connect, with its group, channel and handler set
+     * @param maxConnectionsPerHost     the maximum number of connections per remote address and {@link EventLoop}
+     * @param maxStreamsPerConnection   the maximum number of streams opened at once per connection
+     * @param maxPendingAcquiresPerHost the maximum number of acquires per remote address and {@link EventLoop} which
+     *                                  wait for a stream, further acquires are failed
+     */
+    public Http2ClientConnectionPool(Bootstrap bootstrap, int maxConnectionsPerHost, int maxStreamsPerConnection,
+                                     int maxPendingAcquiresPerHost) {
+        this.bootstrap = checkNotNull(bootstrap, "bootstrap").clone();
+        group = checkNotNull(this.bootstrap.config().group(), "bootstrap.config().group()");
+        checkNotNull(this.bootstrap.config().handler(), "bootstrap.config().handler()");
+        this.maxConnectionsPerHost = checkPositive(maxConnectionsPerHost, "maxConnectionsPerHost");
+        this.maxStreamsPerConnection = checkPositive(maxStreamsPerConnection, "maxStreamsPerConnection");
+        this.maxPendingAcquiresPerHost = checkPositiveOrZero(maxPendingAcquiresPerHost, "maxPendingAcquiresPerHost");
+        for (EventExecutor executor : group) {
+            if (executor instanceof EventLoop) {
+                eventLoops.add((EventLoop) executor);
+            }
+        }
+    }
+
+    /**
+     * Opens a new {@link Http2StreamChannel} to the given remote address, whose pipeline is initialized with the
+     * given handler.
+     */
+    public Future<Http2StreamChannel> acquire(SocketAddress remoteAddress, ChannelHandler streamHandler) {
+        checkNotNull(remoteAddress, "remoteAddress");
+        checkNotNull(streamHandler, "streamHandler");
+        EventLoop loop = currentEventLoop();
+        final Acquire acquire = new Acquire(loop.<Http2StreamChannel>newPromise(), streamHandler);
+        if (closed) {
+            acquire.promise.setFailure(new IllegalStateException("Http2ClientConnectionPool was closed"));
+            return acquire.promise;
+        }
+        final HostPool pool = hostPool(loop, remoteAddress);
+        if (loop.inEventLoop()) {
+            pool.acquire(acquire);
+        } else {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    pool.acquire(acquire);
+                }
+            });
+        }
+        return acquire.promise;
+    }
+
+    /**
+     * Closes all connections and fails all acquires which are still waiting for a stream.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (final HostPool pool : pools.values()) {
+            pool.loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    pool.close();
+                }
+            });
+        }
+    }
+
+    private EventLoop currentEventLoop() {
+        for (EventLoop loop : eventLoops) {
+            if (loop.inEventLoop()) {
+                return loop;
+            }
+        }
+        return group.next();
+    }
+
+    private HostPool hostPool(EventLoop loop, SocketAddress remoteAddress) {
+        PoolKey key = new PoolKey(loop, remoteAddress);
+        HostPool pool = pools.get(key);
+        if (pool == null) {
+            pool = new HostPool(loop, remoteAddress);
+            HostPool old = pools.putIfAbsent(key, pool);
+            if (old != null) {
+                pool = old;
+            }
+        }
+        return pool;
+    }
+
+    private static final class PoolKey {
+        private final EventLoop loop;
+        private final SocketAddress remoteAddress;
+
+        PoolKey(EventLoop loop, SocketAddress remoteAddress) {
+            this.loop = loop;
+            this.remoteAddress = remoteAddress;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(loop) + remoteAddress.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return loop == other.loop && remoteAddress.equals(other.remoteAddress);
+        }
+    }
+
+    private static final class Acquire {
+        final Promise<Http2StreamChannel> promise;
+        final ChannelHandler streamHandler;
+
+        Acquire(Promise<Http2StreamChannel> promise, ChannelHandler streamHandler) {
+            this.promise = promise;
+            this.streamHandler = streamHandler;
+        }
+    }
+
+    /**
+     * The connections to one remote address of one {@link EventLoop}, only accessed from that {@link EventLoop}.
+     */
+    private final class HostPool {
+        final EventLoop loop;
+        final SocketAddress remoteAddress;
+        private final List<Connection> connections = new ArrayList<Connection>();
+        private final ArrayDeque<Acquire> pendingAcquires = new ArrayDeque<Acquire>();
+        private int connecting;
+        private int connectFailures;
+
+        HostPool(EventLoop loop, SocketAddress remoteAddress) {
+            this.loop = loop;
+            this.remoteAddress = remoteAddress;
+        }
+
+        void acquire(Acquire acquire) {
+            if (closed) {
+                acquire.promise.tryFailure(new IllegalStateException("Http2ClientConnectionPool was closed"));
+            } else if (!pendingAcquires.isEmpty() || !dispatch(acquire)) {
+                if (pendingAcquires.size() >= maxPendingAcquiresPerHost) {
+                    acquire.promise.tryFailure(new IllegalStateException("Too many outstanding acquire operations"));
+                } else {
+                    pendingAcquires.add(acquire);
+                    connectIfNeeded();
+                }
+            }
+        }
+
+        /**
+         * Opens a stream for the given acquire on the first connection which may open another stream.
+         *
+         * @return {@code false} if no connection may open another stream.
+         */
+        private boolean dispatch(Acquire acquire) {
+            for (int i = 0; i < connections.size(); i++) {
+                Connection connection = connections.get(i);
+                if (connection.availableStreams() > 0) {
+                    connection.openStream(acquire);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void dispatchPending() {
+            Acquire acquire;
+            while ((acquire = pendingAcquires.peek()) != null) {
+                if (acquire.promise.isDone()) {
+                    // Cancelled while waiting
+                    pendingAcquires.poll();
+                } else if (dispatch(acquire)) {
+                    pendingAcquires.poll();
+                } else {
+                    break;
+                }
+            }
+            connectIfNeeded();
+        }
+
+        /**
+         * Opens new connections while there are more pending acquires than the connecting connections will be able
+         * to serve.
+         */
+        private void connectIfNeeded() {
+            int expectedStreams = Math.min(maxStreamsPerConnection, SMALLEST_MAX_CONCURRENT_STREAMS);
+            while (!closed && liveConnections() < maxConnectionsPerHost &&
+                    pendingAcquires.size() > connecting * expectedStreams) {
+                connect();
+            }
+        }
+
+        /**
+         * Returns the number of connections which are connecting or may still open streams, so connections which
+         * are draining after a {@code GOAWAY} do not keep new connections from being opened.
+         */
+        private int liveConnections() {
+            int live = 0;
+            for (int i = 0; i < connections.size(); i++) {
+                if (!connections.get(i).isDraining()) {
+                    live++;
+                }
+            }
+            return live;
+        }
+
+        private void connect() {
+            final Connection connection = new Connection(this);
+            connections.add(connection);
+            connecting++;
+            bootstrap.clone(loop).connect(remoteAddress).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    connecting--;
+                    Throwable cause = future.cause();
+                    if (cause == null) {
+                        cause = connection.init(future.channel());
+                    }
+                    if (cause == null) {
+                        connectFailures = 0;
+                        dispatchPending();
+                        return;
+                    }
+                    connections.remove(connection);
+                    if (++connectFailures < MAX_CONNECT_ATTEMPTS && liveConnections() > 0) {
+                        // Another connection may still serve the pending acquires, try to replace this one
+                        connectIfNeeded();
+                        return;
+                    }
+                    // Nothing will serve the pending acquires anymore
+                    connectFailures = 0;
+                    Acquire acquire;
+                    while ((acquire = pendingAcquires.poll()) != null) {
+                        acquire.promise.tryFailure(cause);
+                    }
+                }
+            });
+        }
+
+        void remove(Connection connection) {
+            if (connections.remove(connection) && !closed) {
+                dispatchPending();
+            }
+        }
+
+        void close() {
+            Acquire acquire;
+            while ((acquire = pendingAcquires.poll()) != null) {
+                acquire.promise.tryFailure(new IllegalStateException("Http2ClientConnectionPool was closed"));
+            }
+            for (Connection connection : new ArrayList<Connection>(connections)) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Tracks the streams of one connection of a {@link HostPool}. It is added to the pipeline after the
+     * {@link Http2MultiplexHandler}, to be notified about {@code SETTINGS} and {@code GOAWAY} frames.
+     */
+    private final class Connection extends ChannelInboundHandlerAdapter {
+        private final HostPool pool;
+        private Channel channel;
+        private Http2Connection http2Connection;
+        private Http2StreamChannelBootstrap streamBootstrap;
+        private boolean settingsReceived;
+        private int streams;
+
+        Connection(HostPool pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * Adds this handler to the pipeline of the connected channel.
+         *
+         * @return the cause if the pipeline is not set up for HTTP/2.
+         */
+        @SuppressWarnings("deprecation")
+        Throwable init(Channel channel) {
+            ChannelPipeline pipeline = channel.pipeline();
+            Http2FrameCodec codec = pipeline.get(Http2FrameCodec.class);
+            ChannelHandlerContext multiplexCtx = pipeline.context(Http2MultiplexHandler.class);
+            if (multiplexCtx == null) {
+                multiplexCtx = pipeline.context(Http2MultiplexCodec.class);
+            }
+            if (codec == null || multiplexCtx == null) {
+                channel.close();
+                return new IllegalStateException("Http2FrameCodec and Http2MultiplexHandler, or Http2MultiplexCodec, " +
+                        "must be in the ChannelPipeline of Channel " + channel);
+            }
+            this.channel = channel;
+            http2Connection = codec.connection();
+            streamBootstrap = new Http2StreamChannelBootstrap(channel);
+            pipeline.addAfter(multiplexCtx.name(), null, this);
+            return null;
+        }
+
+        /**
+         * Returns {@code true} if this connection is connected but will never open another stream.
+         */
+        boolean isDraining() {
+            return channel != null && (!channel.isActive() || http2Connection.goAwayReceived() ||
+                    http2Connection.goAwaySent());
+        }
+
+        int availableStreams() {
+            if (channel == null || isDraining()) {
+                return 0;
+            }
+            int maxStreams = settingsReceived ? http2Connection.local().maxActiveStreams()
+                    : SMALLEST_MAX_CONCURRENT_STREAMS;
+            return Math.min(maxStreamsPerConnection, maxStreams) - streams;
+        }
+
+        void openStream(final Acquire acquire) {
+            streams++;
+            streamBootstrap.handler(acquire.streamHandler).open().addListener(
+                    new FutureListener<Http2StreamChannel>() {
+                @Override
+                public void operationComplete(Future<Http2StreamChannel> future) {
+                    if (!future.isSuccess()) {
+                        streamClosed();
+                        acquire.promise.tryFailure(future.cause());
+                        return;
+                    }
+                    Http2StreamChannel stream = future.getNow();
+                    stream.closeFuture().addListener(new ChannelFutureListener() {
+                        @Override
+                        public void operationComplete(ChannelFuture future) {
+                            streamClosed();
+                        }
+                    });
+                    if (!acquire.promise.trySuccess(stream)) {
+                        stream.close();
+                    }
+                }
+            });
+        }
+
+        private void streamClosed() {
+            streams--;
+            if (streams == 0 && http2Connection.goAwayReceived()) {
+                close();
+            } else {
+                pool.dispatchPending();
+            }
+        }
+
+        void close() {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (msg instanceof Http2SettingsFrame) {
+                settingsReceived = true;
+                pool.dispatchPending();
+            } else if (msg instanceof Http2GoAwayFrame) {
+                // Drain this connection, new streams are opened on other connections
+                if (streams == 0) {
+                    ctx.close();
+                }
+                pool.dispatchPending();
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            pool.remove(this);
+            ctx.fireChannelInactive();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.ObjectPool;
+import io.netty.util.internal.ObjectPool.Handle;
+import io.netty.util.internal.ObjectPool.ObjectCreator;
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * The state of one stream whose frames are handled by a {@link Http2StreamFrameHandler}. Compared to a
+ * {@link Http2StreamChannel} it has no pipeline of its own, frames are written directly to the
+ * {@link Http2FrameCodec} of the connection.
+ * <p>
+ * Contexts are recycled once {@link Http2StreamFrameHandler#streamClosed(Http2StreamContext)} and the callback
+ * which caused the stream to close returned, and are then reused for other streams. A handler which uses a context
+ * outside of the methods of {@link Http2StreamFrameHandler}, for example to write an asynchronous response, must
+ * call {@link #keep()} while the stream is open. A kept context stays bound to its stream, writes fail with a
+ * {@link ClosedChannelException} once the stream was closed.
+ */
+@UnstableApi
+public final class Http2StreamContext {
+
+    private static final ObjectPool<Http2StreamContext> RECYCLER = ObjectPool.newPool(
+            new ObjectCreator<Http2StreamContext>() {
+        @Override
+        public Http2StreamContext newObject(Handle<Http2StreamContext> handle) {
+            return new Http2StreamContext(handle);
+        }
+    });
+
+    private final Handle<Http2StreamContext> handle;
+    private ChannelHandlerContext ctx;
+    private Http2FrameCodec codec;
+    private Http2FrameCodec.DefaultHttp2FrameStream stream;
+    private Object attachment;
+    private boolean closed;
+    private boolean kept;
+
+    private Http2StreamContext(Handle<Http2StreamContext> handle) {
+        this.handle = handle;
+    }
+
+    static Http2StreamContext newInstance(ChannelHandlerContext ctx, Http2FrameCodec codec,
+                                          Http2FrameCodec.DefaultHttp2FrameStream stream) {
+        Http2StreamContext context = RECYCLER.get();
+        context.ctx = ctx;
+        context.codec = codec;
+        context.stream = stream;
+        context.closed = false;
+        stream.context = context;
+        return context;
+    }
+
+    /**
+     * Gives this closed context back to the pool, unless it was kept. Until it is reused for another stream, writes
+     * still fail as the context is closed.
+     */
+    void recycle() {
+        assert closed;
+        if (kept) {
+            return;
+        }
+        if (stream.context == this) {
+            stream.context = null;
+        }
+        attachment = null;
+        handle.recycle(this);
+    }
+
+    /**
+     * Keeps this context bound to its stream once the stream was closed, so it is never reused for another stream
+     * and may be used after {@link Http2StreamFrameHandler#streamClosed(Http2StreamContext)} returned. Writes fail
+     * once the stream was closed.
+     */
+    public Http2StreamContext keep() {
+        kept = true;
+        return this;
+    }
+
+    /**
+     * Marks this context as closed.
+     *
+     * @return {@code true} if it was not closed before.
+     */
+    boolean close() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    /**
+     * Returns {@code true} once the stream of this context was closed.
+     */
+    public boolean isClosed() {
+        return closed || stream.state() == Http2Stream.State.CLOSED;
+    }
+
+    /**
+     * Returns the stream of this context.
+     */
+    public Http2FrameStream stream() {
+        return stream;
+    }
+
+    /**
+     * Returns the {@link Channel} of the connection.
+     */
+    public Channel channel() {
+        return ctx.channel();
+    }
+
+    /**
+     * Returns the object which was attached to this stream via {@link #attachment(Object)}, or {@code null}.
+     */
+    public Object attachment() {
+        return attachment;
+    }
+
+    /**
+     * Attaches the given object to this stream.
+     */
+    public Http2StreamContext attachment(Object attachment) {
+        this.attachment = attachment;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if the flow control window of the stream is not exhausted and the connection is writable.
+     */
+    public boolean isWritable() {
+        if (isClosed() || !ctx.channel().isWritable()) {
+            return false;
+        }
+        Http2Stream http2Stream = stream.stream;
+        return http2Stream == null || codec.connection().remote().flowController().isWritable(http2Stream);
+    }
+
+    /**
+     * Writes the given frame on this stream.
+     */
+    public ChannelFuture write(Http2StreamFrame frame) {
+        return write(frame, ctx.newPromise());
+    }
+
+    /**
+     * Writes the given frame on this stream and notifies the given {@link ChannelPromise}.
+     */
+    public ChannelFuture write(Http2StreamFrame frame, ChannelPromise promise) {
+        if (isClosed()) {
+            ReferenceCountUtil.release(frame);
+            return promise.setFailure(new ClosedChannelException());
+        }
+        return ctx.write(frame.stream(stream), promise);
+    }
+
+    /**
+     * Writes the given frame on this stream and flushes the connection.
+     */
+    public ChannelFuture writeAndFlush(Http2StreamFrame frame) {
+        ChannelFuture future = write(frame);
+        ctx.flush();
+        return future;
+    }
+
+    /**
+     * Flushes the connection.
+     */
+    public Http2StreamContext flush() {
+        ctx.flush();
+        return this;
+    }
+
+    /**
+     * Returns the given number of bytes of received {@code DATA} frames to the flow control window of this stream.
+     * This is only needed if the {@link Http2StreamFrameDispatcher} does not do so automatically. A
+     * {@code WINDOW_UPDATE} frame this may cause is written once the connection is flushed.
+     *
+     * @return {@code true} if a {@code WINDOW_UPDATE} frame was written.
+     */
+    public boolean consumeBytes(int bytes) throws Http2Exception {
+        if (isClosed()) {
+            return false;
+        }
+        return codec.consumeBytes(stream.id(), bytes);
+    }
+
+    /**
+     * Resets this stream with the given error code.
+     */
+    public ChannelFuture reset(Http2Error error) {
+        return writeAndFlush(new DefaultHttp2ResetFrame(error));
+    }
+
+    /**
+     * Returns a new promise for a write on this stream.
+     */
+    public ChannelPromise newPromise() {
+        return ctx.newPromise();
+    }
+
+    /**
+     * Returns a promise which does not notify about the result of a write on this stream, to save the allocation of
+     * a {@link ChannelPromise}.
+     */
+    public ChannelPromise voidPromise() {
+        return ctx.voidPromise();
+    }
+
+    @Override
+    public String toString() {
+        return "Http2StreamContext(stream: " + stream + ')';
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http2.Http2FrameCodec.DefaultHttp2FrameStream;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * Dispatches the {@link Http2StreamFrame}s received by a {@link Http2FrameCodec} to a single
+ * {@link Http2StreamFrameHandler}, as a lighter alternative to the {@link Http2StreamChannel}s of a
+ * {@link Http2MultiplexHandler}. Instead of a channel with its own pipeline, each stream only gets a
+ * {@link Http2StreamContext}, which is recycled once the stream was closed.
+ * <p>
+ * This handler must be added to the pipeline after the {@link Http2FrameCodec}. All frames which are not
+ * {@link Http2StreamFrame}s are passed on in the pipeline, {@link Http2WindowUpdateFrame}s are dropped.
+ * <p>
+ * If {@code autoConsumeBytes} is {@code true}, the bytes of a {@link Http2DataFrame} are returned to the flow control
+ * window of its stream once {@link Http2StreamFrameHandler#streamFrameRead(Http2StreamContext, Http2StreamFrame)}
+ * returned. Otherwise the handler must return them via {@link Http2StreamContext#consumeBytes(int)}, which allows it
+ * to apply back pressure to the remote peer.
+ */
+@UnstableApi
+public class Http2StreamFrameDispatcher extends Http2ChannelDuplexHandler {
+
+    private final Http2StreamFrameHandler handler;
+    private final boolean autoConsumeBytes;
+    private ChannelHandlerContext ctx;
+    private Http2FrameCodec codec;
+    // The contexts which were closed during the current callback, they are recycled once it returned.
+    private final List<Http2StreamContext> closedContexts = new ArrayList<Http2StreamContext>(2);
+    private int callbackDepth;
+
+    /**
+     * Creates a new instance which returns the bytes of received {@link Http2DataFrame}s automatically.
+     */
+    public Http2StreamFrameDispatcher(Http2StreamFrameHandler handler) {
+        this(handler, true);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param handler          the handler of the frames of all streams
+     * @param autoConsumeBytes {@code true} if the bytes of received {@link Http2DataFrame}s are returned to the flow
+     *                         control window automatically
+     */
+    public Http2StreamFrameDispatcher(Http2StreamFrameHandler handler, boolean autoConsumeBytes) {
+        this.handler = checkNotNull(handler, "handler");
+        this.autoConsumeBytes = autoConsumeBytes;
+    }
+
+    @Override
+    protected void handlerAdded0(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        codec = ctx.pipeline().get(Http2FrameCodec.class);
+    }
+
+    /**
+     * Creates the context of a new outbound stream, which is created once its first {@link Http2HeadersFrame} was
+     * written via {@link Http2StreamContext#write(Http2StreamFrame)}.
+     * <p>
+     * This method may only be called from the {@link io.netty.channel.EventLoop} of the connection.
+     */
+    public final Http2StreamContext newStreamContext() {
+        assert ctx.executor().inEventLoop();
+        return Http2StreamContext.newInstance(ctx, codec, (DefaultHttp2FrameStream) newStream());
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Http2StreamFrame)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        if (msg instanceof Http2WindowUpdateFrame) {
+            // Handled by the flow controller already
+            return;
+        }
+        Http2StreamFrame frame = (Http2StreamFrame) msg;
+        DefaultHttp2FrameStream stream = (DefaultHttp2FrameStream) frame.stream();
+        Http2StreamContext context = stream.context;
+        if (context == null) {
+            context = Http2StreamContext.newInstance(ctx, codec, stream);
+        }
+        int bytes = autoConsumeBytes && frame instanceof Http2DataFrame ?
+                ((Http2DataFrame) frame).initialFlowControlledBytes() : 0;
+        callbackDepth++;
+        try {
+            try {
+                handler.streamFrameRead(context, frame);
+            } catch (Throwable cause) {
+                notifyExceptionCaught(context, cause);
+            }
+            if (bytes > 0) {
+                // The stream may have been closed by the handler already, in which case this is a no-op.
+                codec.consumeBytes(stream.id(), bytes);
+            }
+            if (stream.state() == Http2Stream.State.CLOSED) {
+                // The frame arrived after the close event of its stream, or the handler closed the stream.
+                notifyStreamClosed(context);
+            }
+        } finally {
+            callbackReturned();
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (!(evt instanceof Http2FrameStreamEvent)) {
+            ctx.fireUserEventTriggered(evt);
+            return;
+        }
+        Http2FrameStreamEvent event = (Http2FrameStreamEvent) evt;
+        Http2StreamContext context = ((DefaultHttp2FrameStream) event.stream()).context;
+        if (context == null) {
+            return;
+        }
+        callbackDepth++;
+        try {
+            if (event.type() == Http2FrameStreamEvent.Type.Writability) {
+                notifyWritabilityChanged(context);
+            } else if (event.stream().state() == Http2Stream.State.CLOSED) {
+                notifyStreamClosed(context);
+            }
+        } finally {
+            callbackReturned();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        callbackDepth++;
+        try {
+            forEachActiveStream(new Http2FrameStreamVisitor() {
+                @Override
+                public boolean visit(Http2FrameStream stream) {
+                    Http2StreamContext context = ((DefaultHttp2FrameStream) stream).context;
+                    if (context != null) {
+                        notifyWritabilityChanged(context);
+                    }
+                    return true;
+                }
+            });
+        } finally {
+            callbackReturned();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (cause instanceof Http2FrameStreamException) {
+            Http2StreamContext context =
+                    ((DefaultHttp2FrameStream) ((Http2FrameStreamException) cause).stream()).context;
+            if (context != null) {
+                // The stream was reset by the Http2FrameCodec already.
+                callbackDepth++;
+                try {
+                    notifyExceptionCaught(context, cause.getCause());
+                } finally {
+                    callbackReturned();
+                }
+                return;
+            }
+        }
+        ctx.fireExceptionCaught(cause);
+    }
+
+    private void notifyStreamClosed(Http2StreamContext context) {
+        if (!context.close()) {
+            return;
+        }
+        try {
+            handler.streamClosed(context);
+        } catch (Throwable cause) {
+            notifyExceptionCaught(context, cause);
+        }
+        // The callback which closed the stream may still use the context, so only recycle it once that returned.
+        closedContexts.add(context);
+    }
+
+    private void callbackReturned() {
+        if (--callbackDepth == 0 && !closedContexts.isEmpty()) {
+            for (int i = 0; i < closedContexts.size(); i++) {
+                closedContexts.get(i).recycle();
+            }
+            closedContexts.clear();
+        }
+    }
+
+    private void notifyWritabilityChanged(Http2StreamContext context) {
+        try {
+            handler.streamWritabilityChanged(context);
+        } catch (Throwable cause) {
+            notifyExceptionCaught(context, cause);
+        }
+    }
+
+    private void notifyExceptionCaught(Http2StreamContext context, Throwable cause) {
+        try {
+            handler.streamExceptionCaught(context, cause);
+        } catch (Throwable t) {
+            ctx.fireExceptionCaught(t);
+        }
+    }
+}
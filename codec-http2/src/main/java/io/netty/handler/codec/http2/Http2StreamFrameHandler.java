@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Handles the {@link Http2StreamFrame}s of all streams of a connection, which are dispatched to it by a
+ * {@link Http2StreamFrameDispatcher}. A single instance is used for all streams, the state of a stream is reached via
+ * its {@link Http2StreamContext}.
+ * <p>
+ * All methods are called from the {@link io.netty.channel.EventLoop} of the connection. Writes on a
+ * {@link Http2StreamContext} fail once {@link #streamClosed(Http2StreamContext)} was called. A context must not be
+ * used once the callback in which its stream was closed returned, unless {@link Http2StreamContext#keep()} was
+ * called, as it is then reused for other streams.
+ */
+@UnstableApi
+public interface Http2StreamFrameHandler {
+
+    /**
+     * Called for each {@link Http2StreamFrame} which was received on the stream of the given context. The frame must
+     * be released by this method.
+     */
+    void streamFrameRead(Http2StreamContext ctx, Http2StreamFrame frame) throws Exception;
+
+    /**
+     * Called once the writability of the stream of the given context changed, see
+     * {@link Http2StreamContext#isWritable()}.
+     */
+    void streamWritabilityChanged(Http2StreamContext ctx) throws Exception;
+
+    /**
+     * Called if an error occurred on the stream of the given context, or if one of the other methods threw.
+     */
+    void streamExceptionCaught(Http2StreamContext ctx, Throwable cause) throws Exception;
+
+    /**
+     * Called once the stream of the given context was closed.
+     */
+    void streamClosed(Http2StreamContext ctx) throws Exception;
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.channels.ClosedChannelException;
+
+import static io.netty.handler.codec.http2.AdaptiveHttp2LocalFlowController.BDP_PING_DATA;
+import static io.netty.handler.codec.http2.DefaultHttp2LocalFlowController.DEFAULT_WINDOW_UPDATE_RATIO;
+import static io.netty.handler.codec.http2.Http2CodecUtil.CONNECTION_STREAM_ID;
+import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AdaptiveHttp2LocalFlowController}.
+ */
+public class AdaptiveHttp2LocalFlowControllerTest {
+    private static final int STREAM_ID = 1;
+
+    private AdaptiveHttp2LocalFlowController controller;
+
+    @Mock
+    private Http2FrameWriter frameWriter;
+
+    @Mock
+    private ChannelHandlerContext ctx;
+
+    @Mock
+    private EventExecutor executor;
+
+    @Mock
+    private ChannelPromise promise;
+
+    @Mock
+    private Channel channel;
+
+    private DefaultHttp2Connection connection;
+
+    @Before
+    public void setup() throws Http2Exception {
+        MockitoAnnotations.initMocks(this);
+        when(ctx.newPromise()).thenReturn(promise);
+        when(ctx.executor()).thenReturn(executor);
+        when(executor.inEventLoop()).thenReturn(true);
+
+        initController(AdaptiveHttp2LocalFlowController.DEFAULT_MAX_WINDOW_SIZE);
+    }
+
+    @Test
+    public void pingShouldBeSentOncePerSample() throws Http2Exception {
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        verify(frameWriter).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+        assertEquals(1, controller.pingCount());
+
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertTrue(controller.roundTripTimeNanos() > 0);
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        verify(frameWriter, times(2)).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+        assertEquals(2, controller.pingCount());
+    }
+
+    @Test
+    public void unknownPingAckShouldNotBeConsumed() throws Http2Exception {
+        assertFalse(controller.onPingAckRead(BDP_PING_DATA));
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        assertFalse(controller.onPingAckRead(42));
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertFalse(controller.onPingAckRead(BDP_PING_DATA));
+    }
+
+    @Test
+    public void smallSampleShouldNotGrowWindows() throws Http2Exception {
+        receiveFlowControlledFrame(STREAM_ID, 1000, false);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.targetWindowSize());
+        assertEquals(0, controller.windowSizeUpdateCount());
+        verify(frameWriter, never()).writeWindowUpdate(any(ChannelHandlerContext.class), anyInt(), anyInt(),
+                any(ChannelPromise.class));
+    }
+
+    @Test
+    public void fullSampleShouldGrowWindows() throws Http2Exception {
+        int dataSize = 50000;
+        receiveFlowControlledFrame(STREAM_ID, dataSize, false);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+
+        int target = 2 * dataSize;
+        assertEquals(target, controller.targetWindowSize());
+        assertEquals(1, controller.windowSizeUpdateCount());
+        assertEquals(target, controller.initialWindowSize(stream(CONNECTION_STREAM_ID)));
+
+        // The stream window grows on the next DATA frame.
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.initialWindowSize(stream(STREAM_ID)));
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        assertEquals(target, controller.initialWindowSize(stream(STREAM_ID)));
+
+        // The grown windows are announced once the bytes are consumed.
+        assertTrue(controller.consumeBytes(stream(STREAM_ID), dataSize + 10));
+        int windowUpdate = target - (DEFAULT_WINDOW_SIZE - dataSize - 10);
+        verify(frameWriter).writeWindowUpdate(eq(ctx), eq(CONNECTION_STREAM_ID), eq(windowUpdate), eq(promise));
+        verify(frameWriter).writeWindowUpdate(eq(ctx), eq(STREAM_ID), eq(windowUpdate), eq(promise));
+    }
+
+    @Test
+    public void windowsShouldNotGrowBeyondMax() throws Http2Exception {
+        int maxWindowSize = 80000;
+        initController(maxWindowSize);
+        receiveFlowControlledFrame(STREAM_ID, 50000, false);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(maxWindowSize, controller.targetWindowSize());
+        assertEquals(maxWindowSize, controller.initialWindowSize(stream(CONNECTION_STREAM_ID)));
+
+        // Once the max is reached there is nothing left to estimate.
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        assertEquals(maxWindowSize, controller.initialWindowSize(stream(STREAM_ID)));
+        assertEquals(1, controller.pingCount());
+        verify(frameWriter).writePing(any(ChannelHandlerContext.class), anyBoolean(), anyLong(),
+                any(ChannelPromise.class));
+    }
+
+    @Test
+    public void targetWindowSizeShouldFollowInitialWindowSize() throws Http2Exception {
+        assertEquals(DEFAULT_WINDOW_SIZE, controller.targetWindowSize());
+        controller.initialWindowSize(16384);
+        assertEquals(16384, controller.targetWindowSize());
+
+        // A sample which fills most of the configured window grows it.
+        receiveFlowControlledFrame(STREAM_ID, 12000, false);
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+        assertEquals(24000, controller.targetWindowSize());
+
+        // A smaller initial window does not shrink the estimated target.
+        controller.initialWindowSize(8192);
+        assertEquals(24000, controller.targetWindowSize());
+        controller.initialWindowSize(32768);
+        assertEquals(32768, controller.targetWindowSize());
+    }
+
+    @Test
+    public void failedPingShouldNotStopEstimation() throws Http2Exception {
+        ChannelPromise failedPromise = new DefaultChannelPromise(channel, ImmediateEventExecutor.INSTANCE);
+        when(ctx.newPromise()).thenReturn(failedPromise);
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        verify(frameWriter).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(failedPromise));
+        failedPromise.setFailure(new ClosedChannelException());
+
+        // No acknowledgement is expected for the failed PING, so the next DATA frame sends a new one.
+        assertFalse(controller.onPingAckRead(BDP_PING_DATA));
+        when(ctx.newPromise()).thenReturn(promise);
+        receiveFlowControlledFrame(STREAM_ID, 10, false);
+        verify(frameWriter).writePing(eq(ctx), eq(false), eq(BDP_PING_DATA), eq(promise));
+        assertEquals(2, controller.pingCount());
+        assertTrue(controller.onPingAckRead(BDP_PING_DATA));
+    }
+
+    private void receiveFlowControlledFrame(int streamId, int dataSize, boolean endOfStream)
+            throws Http2Exception {
+        ByteBuf buf = Unpooled.buffer(dataSize).writerIndex(dataSize);
+        try {
+            controller.receiveFlowControlledFrame(stream(streamId), buf, 0, endOfStream);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private Http2Stream stream(int streamId) {
+        return connection.stream(streamId);
+    }
+
+    private void initController(int maxWindowSize) throws Http2Exception {
+        connection = new DefaultHttp2Connection(false);
+        controller = new AdaptiveHttp2LocalFlowController(connection, DEFAULT_WINDOW_UPDATE_RATIO, false,
+                maxWindowSize).frameWriter(frameWriter);
+        connection.local().flowController(controller);
+        connection.local().createStream(STREAM_ID, false);
+        controller.channelHandlerContext(ctx);
+    }
+}
@@ -58,6 +58,7 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -740,6 +741,22 @@ public class DefaultHttp2ConnectionDecoderTest {
         verify(listener).onPingAckRead(eq(ctx), eq(0L));
     }
 
+    @Test
+    public void pingAckOfAdaptiveFlowControllerShouldNotNotifyListener() throws Exception {
+        AdaptiveHttp2LocalFlowController adaptiveFlow = mock(AdaptiveHttp2LocalFlowController.class);
+        when(adaptiveFlow.onPingAckRead(1L)).thenReturn(true);
+        when(local.flowController()).thenReturn(adaptiveFlow);
+        decoder = new DefaultHttp2ConnectionDecoder(connection, encoder, reader);
+        decoder.lifecycleManager(lifecycleManager);
+        decoder.frameListener(listener);
+        decode().onSettingsRead(ctx, new Http2Settings());
+
+        decode().onPingAckRead(ctx, 1L);
+        verify(listener, never()).onPingAckRead(eq(ctx), eq(1L));
+        decode().onPingAckRead(ctx, 2L);
+        verify(listener).onPingAckRead(eq(ctx), eq(2L));
+    }
+
     @Test
     public void pingReadShouldReplyWithAck() throws Exception {
         decode().onPingRead(ctx, 0L);
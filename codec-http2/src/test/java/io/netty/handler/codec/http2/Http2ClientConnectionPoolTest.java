@@ -0,0 +1,266 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Http2ClientConnectionPoolTest {
+
+    private static final ChannelHandler DISCARD_HANDLER = new ChannelInboundHandlerAdapter() {
+
+        @Override
+        public boolean isSharable() {
+            return true;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ReferenceCountUtil.release(msg);
+        }
+    };
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private final LinkedBlockingQueue<Channel> serverConnections = new LinkedBlockingQueue<Channel>();
+    private final CountDownLatch goAwayLatch = new CountDownLatch(1);
+    private Http2ClientConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        serverConnections.add(ch);
+                        ch.pipeline().addLast(Http2FrameCodecBuilder.forServer()
+                                .initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(2)).build());
+                        ch.pipeline().addLast(new Http2MultiplexHandler(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public boolean isSharable() {
+                                return true;
+                            }
+
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                if (msg instanceof Http2HeadersFrame && ((Http2HeadersFrame) msg).isEndStream()) {
+                                    ctx.writeAndFlush(new DefaultHttp2HeadersFrame(
+                                            new DefaultHttp2Headers().status("200"), true));
+                                }
+                                ReferenceCountUtil.release(msg);
+                            }
+                        }));
+                    }
+                })
+                .bind(new LocalAddress("Http2ClientConnectionPoolTest")).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    private Http2ClientConnectionPool newPool(int maxConnections, int maxStreams, int maxPending) {
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(Http2FrameCodecBuilder.forClient().build(),
+                                new Http2MultiplexHandler(DISCARD_HANDLER),
+                                new ChannelInboundHandlerAdapter() {
+                                    @Override
+                                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                        if (msg instanceof Http2GoAwayFrame) {
+                                            goAwayLatch.countDown();
+                                        }
+                                        ReferenceCountUtil.release(msg);
+                                    }
+                                });
+                    }
+                });
+        pool = new Http2ClientConnectionPool(bootstrap, maxConnections, maxStreams, maxPending);
+        return pool;
+    }
+
+    private Http2StreamChannel acquire() throws Exception {
+        return acquire0().sync().getNow();
+    }
+
+    private Future<Http2StreamChannel> acquire0() {
+        return pool.acquire(serverChannel.localAddress(), new ChannelInboundHandlerAdapter());
+    }
+
+    /**
+     * Sends a request on a new stream and waits for its response, so the {@code SETTINGS} of the server were
+     * received.
+     */
+    private Http2StreamChannel roundtrip() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Http2StreamChannel stream = pool.acquire(serverChannel.localAddress(), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                if (msg instanceof Http2HeadersFrame) {
+                    latch.countDown();
+                }
+                ReferenceCountUtil.release(msg);
+            }
+        }).sync().getNow();
+        stream.writeAndFlush(new DefaultHttp2HeadersFrame(
+                new DefaultHttp2Headers().method("GET").path("/").scheme("http"), true)).sync();
+        latch.await();
+        stream.closeFuture().sync();
+        return stream;
+    }
+
+    @Test(timeout = 10000)
+    public void testStreamsShareConnection() throws Exception {
+        newPool(2, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Channel connection = roundtrip().parent();
+        Http2StreamChannel first = acquire();
+        Http2StreamChannel second = acquire();
+        assertSame(connection, first.parent());
+        assertSame(connection, second.parent());
+
+        // The server allows 2 concurrent streams
+        Http2StreamChannel third = acquire();
+        assertNotSame(connection, third.parent());
+        assertEquals(2, serverConnections.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testMaxStreamsPerConnection() throws Exception {
+        newPool(2, 1, Integer.MAX_VALUE);
+        Http2StreamChannel first = acquire();
+        Http2StreamChannel second = acquire();
+        assertNotSame(first.parent(), second.parent());
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquireWaitsForStream() throws Exception {
+        newPool(1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Channel connection = roundtrip().parent();
+        Http2StreamChannel first = acquire();
+        acquire();
+        Future<Http2StreamChannel> third = acquire0();
+        assertFalse(third.await(100));
+
+        first.close();
+        assertSame(connection, third.sync().getNow().parent());
+        assertEquals(1, serverConnections.size());
+    }
+
+    @Test(timeout = 10000)
+    public void testTooManyPendingAcquires() throws Exception {
+        newPool(1, 1, 1);
+        Http2StreamChannel first = acquire();
+        Future<Http2StreamChannel> second = acquire0();
+        assertTrue(acquire0().await().cause() instanceof IllegalStateException);
+
+        first.close();
+        assertSame(first.parent(), second.sync().getNow().parent());
+    }
+
+    @Test(timeout = 10000)
+    public void testGoAwayDrainsConnection() throws Exception {
+        newPool(2, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Channel connection = roundtrip().parent();
+        Http2StreamChannel first = acquire();
+        serverConnections.take().writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR)).sync();
+        goAwayLatch.await();
+
+        Http2StreamChannel second = acquire();
+        assertNotSame(connection, second.parent());
+        assertTrue(connection.isActive());
+
+        first.close();
+        connection.closeFuture().sync();
+        assertTrue(second.parent().isActive());
+    }
+
+    @Test(timeout = 10000)
+    public void testGoAwayDoesNotCountTowardsMaxConnections() throws Exception {
+        newPool(1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Channel connection = roundtrip().parent();
+        Http2StreamChannel first = acquire();
+        serverConnections.take().writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR)).sync();
+        goAwayLatch.await();
+
+        // The draining connection is still open, but another one is opened for new streams
+        Http2StreamChannel second = acquire();
+        assertNotSame(connection, second.parent());
+        assertTrue(connection.isActive());
+        first.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testConnectFailureFailsAcquiresOfDrainingConnection() throws Exception {
+        newPool(1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        roundtrip();
+        Http2StreamChannel first = acquire();
+        serverConnections.take().writeAndFlush(new DefaultHttp2GoAwayFrame(Http2Error.NO_ERROR)).sync();
+        goAwayLatch.await();
+        serverChannel.close().sync();
+
+        // Only the draining connection is left, so nothing will serve this acquire
+        assertFalse(acquire0().await().isSuccess());
+        first.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseFailsPendingAcquires() throws Exception {
+        newPool(1, 1, Integer.MAX_VALUE);
+        Http2StreamChannel first = acquire();
+        Future<Http2StreamChannel> second = acquire0();
+        pool.close();
+        assertTrue(second.await().cause() instanceof IllegalStateException);
+        first.parent().closeFuture().sync();
+        assertTrue(acquire0().await().cause() instanceof IllegalStateException);
+    }
+}
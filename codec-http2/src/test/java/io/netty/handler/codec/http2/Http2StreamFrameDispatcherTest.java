@@ -0,0 +1,322 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpScheme;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static io.netty.handler.codec.http2.Http2TestUtil.anyChannelPromise;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyShort;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class Http2StreamFrameDispatcherTest {
+
+    private final Http2Headers request = new DefaultHttp2Headers()
+            .method(HttpMethod.POST.asciiName()).scheme(HttpScheme.HTTPS.name())
+            .authority(new AsciiString("example.org")).path(new AsciiString("/foo"));
+    private final Http2Headers response = new DefaultHttp2Headers()
+            .status(HttpResponseStatus.OK.codeAsText());
+
+    private Http2FrameWriter frameWriter;
+    private Http2FrameCodec frameCodec;
+    private EmbeddedChannel channel;
+    private Http2FrameInboundWriter frameInboundWriter;
+    private RecordingHandler handler;
+
+    private void setUp(boolean server, boolean autoConsumeBytes) throws Exception {
+        if (channel != null) {
+            tearDown();
+        }
+        frameWriter = Http2TestUtil.mockedFrameWriter();
+        frameCodec = (server ? Http2FrameCodecBuilder.forServer() : Http2FrameCodecBuilder.forClient())
+                .frameWriter(frameWriter).build();
+        handler = new RecordingHandler();
+
+        channel = new EmbeddedChannel();
+        frameInboundWriter = new Http2FrameInboundWriter(channel);
+        channel.connect(new InetSocketAddress(0));
+        channel.pipeline().addLast(frameCodec, new Http2StreamFrameDispatcher(handler, autoConsumeBytes));
+        channel.pipeline().fireChannelActive();
+
+        if (server) {
+            channel.writeInbound(Http2CodecUtil.connectionPrefaceBuf());
+        }
+        frameInboundWriter.writeInboundSettings(new Http2Settings());
+        frameInboundWriter.writeInboundSettingsAck();
+
+        // Connection level frames are passed on
+        assertTrue(channel.readInbound() instanceof Http2SettingsFrame);
+        assertTrue(channel.readInbound() instanceof Http2SettingsAckFrame);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        setUp(true, true);
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        for (Http2StreamFrame frame : handler.frames) {
+            ReferenceCountUtil.release(frame);
+        }
+        handler.frames.clear();
+    }
+
+    @Test
+    public void testRequestResponse() throws Exception {
+        frameInboundWriter.writeInboundHeaders(1, request, 0, true);
+
+        assertEquals(1, handler.frames.size());
+        Http2HeadersFrame headersFrame = (Http2HeadersFrame) handler.frames.get(0);
+        assertEquals(request, headersFrame.headers());
+        Http2StreamContext context = handler.contexts.get(0);
+        assertSame(headersFrame.stream(), context.stream());
+        assertEquals(1, context.stream().id());
+        assertSame(channel, context.channel());
+        assertTrue(context.isWritable());
+
+        context.writeAndFlush(new DefaultHttp2HeadersFrame(response, true));
+        verify(frameWriter).writeHeaders(any(ChannelHandlerContext.class), eq(1), eq(response), eq(0), eq(true),
+                anyChannelPromise());
+        assertEquals(1, handler.closed.size());
+        assertEquals(Http2Stream.State.CLOSED, handler.closedStates.get(0));
+        assertTrue(context.isClosed());
+        assertSame(headersFrame.stream(), context.stream());
+    }
+
+    @Test
+    public void testContextPerStream() throws Exception {
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        frameInboundWriter.writeInboundHeaders(3, request, 0, false);
+        frameInboundWriter.writeInboundData(1, Unpooled.copyLong(1), 0, false);
+
+        assertEquals(3, handler.contexts.size());
+        assertNotSame(handler.contexts.get(0), handler.contexts.get(1));
+        assertSame(handler.contexts.get(0), handler.contexts.get(2));
+        assertEquals("1", handler.contexts.get(2).attachment());
+        assertEquals("3", handler.contexts.get(1).attachment());
+    }
+
+    @Test
+    public void testDataIsConsumedAutomatically() throws Exception {
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        frameInboundWriter.writeInboundData(1, Unpooled.wrappedBuffer(new byte[1024]), 0, false);
+
+        Http2Stream stream = frameCodec.connection().stream(1);
+        assertEquals(0, frameCodec.connection().local().flowController().unconsumedBytes(stream));
+    }
+
+    @Test
+    public void testDataIsConsumedManually() throws Exception {
+        setUp(true, false);
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        frameInboundWriter.writeInboundData(1, Unpooled.wrappedBuffer(new byte[1024]), 0, false);
+
+        Http2Stream stream = frameCodec.connection().stream(1);
+        Http2LocalFlowController flowController = frameCodec.connection().local().flowController();
+        assertEquals(1024, flowController.unconsumedBytes(stream));
+        handler.contexts.get(1).consumeBytes(1024);
+        assertEquals(0, flowController.unconsumedBytes(stream));
+    }
+
+    @Test
+    public void testResetIsDispatched() throws Exception {
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        frameInboundWriter.writeInboundRstStream(1, Http2Error.CANCEL.code());
+
+        assertEquals(2, handler.frames.size());
+        assertEquals(Http2Error.CANCEL.code(), ((Http2ResetFrame) handler.frames.get(1)).errorCode());
+        assertEquals(1, handler.closed.size());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        handler.contexts.get(0).reset(Http2Error.CANCEL);
+        verify(frameWriter).writeRstStream(any(ChannelHandlerContext.class), eq(1), eq(Http2Error.CANCEL.code()),
+                anyChannelPromise());
+        assertEquals(1, handler.closed.size());
+    }
+
+    @Test
+    public void testWriteAfterResetFails() throws Exception {
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        Http2StreamContext context = handler.contexts.get(0).keep();
+        context.attachment("request 1");
+        frameInboundWriter.writeInboundRstStream(1, Http2Error.CANCEL.code());
+        assertEquals(1, handler.closed.size());
+        assertTrue(context.isClosed());
+
+        // A new stream must not be able to observe or receive anything of the reset one.
+        frameInboundWriter.writeInboundHeaders(3, request, 0, false);
+        Http2StreamContext other = handler.contexts.get(2);
+        assertNotSame(context, other);
+        assertEquals("3", other.attachment());
+        assertEquals("request 1", context.attachment());
+        assertEquals(1, context.stream().id());
+
+        ByteBuf data = Unpooled.copyLong(1);
+        ChannelFuture headersFuture = context.write(new DefaultHttp2HeadersFrame(response));
+        ChannelFuture dataFuture = context.writeAndFlush(new DefaultHttp2DataFrame(data, true));
+        assertTrue(headersFuture.cause() instanceof ClosedChannelException);
+        assertTrue(dataFuture.cause() instanceof ClosedChannelException);
+        assertEquals(0, data.refCnt());
+        assertFalse(context.isWritable());
+        assertFalse(context.consumeBytes(8));
+
+        verify(frameWriter, never()).writeHeaders(any(ChannelHandlerContext.class), anyInt(),
+                any(Http2Headers.class), anyInt(), anyBoolean(), any(ChannelPromise.class));
+        verify(frameWriter, never()).writeHeaders(any(ChannelHandlerContext.class), anyInt(),
+                any(Http2Headers.class), anyInt(), anyShort(), anyBoolean(), anyInt(), anyBoolean(),
+                any(ChannelPromise.class));
+        verify(frameWriter, never()).writeData(any(ChannelHandlerContext.class), anyInt(), any(ByteBuf.class),
+                anyInt(), anyBoolean(), any(ChannelPromise.class));
+    }
+
+    @Test
+    public void testFrameAfterCloseUsesClosedContext() throws Exception {
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        Http2StreamContext context = handler.contexts.get(0).keep();
+        frameInboundWriter.writeInboundRstStream(1, Http2Error.CANCEL.code());
+        assertEquals(1, handler.closed.size());
+
+        channel.pipeline().fireChannelRead(new DefaultHttp2DataFrame(Unpooled.copyLong(1)).stream(context.stream()));
+        assertEquals(3, handler.contexts.size());
+        assertSame(context, handler.contexts.get(2));
+        // The handler is not notified about the close twice.
+        assertEquals(1, handler.closed.size());
+    }
+
+    @Test
+    public void testContextIsRecycled() throws Exception {
+        Set<Http2StreamContext> contexts = Collections.newSetFromMap(
+                new IdentityHashMap<Http2StreamContext, Boolean>());
+        for (int streamId = 1; streamId < 64; streamId += 2) {
+            frameInboundWriter.writeInboundHeaders(streamId, request, 0, false);
+            Http2StreamContext context = handler.contexts.get(handler.contexts.size() - 1);
+            // A reused context must not carry the attachment of its previous stream.
+            assertEquals(String.valueOf(streamId), context.attachment());
+            contexts.add(context);
+            frameInboundWriter.writeInboundRstStream(streamId, Http2Error.CANCEL.code());
+            assertNull(context.attachment());
+
+            // Writes through a recycled context fail until it is reused.
+            ChannelFuture future = context.write(new DefaultHttp2HeadersFrame(response));
+            assertTrue(future.cause() instanceof ClosedChannelException);
+        }
+        assertTrue(contexts.size() < 32);
+        verify(frameWriter, never()).writeHeaders(any(ChannelHandlerContext.class), anyInt(),
+                any(Http2Headers.class), anyInt(), anyBoolean(), any(ChannelPromise.class));
+        verify(frameWriter, never()).writeHeaders(any(ChannelHandlerContext.class), anyInt(),
+                any(Http2Headers.class), anyInt(), anyShort(), anyBoolean(), anyInt(), anyBoolean(),
+                any(ChannelPromise.class));
+    }
+
+    @Test
+    public void testExceptionIsDispatched() throws Exception {
+        handler.fail = true;
+        frameInboundWriter.writeInboundHeaders(1, request, 0, false);
+        assertEquals(1, handler.exceptions.size());
+        assertEquals("test", handler.exceptions.get(0).getMessage());
+        assertSame(handler.contexts.get(0), handler.exceptionContexts.get(0));
+    }
+
+    @Test
+    public void testNewStreamContext() throws Exception {
+        setUp(false, true);
+        Http2StreamFrameDispatcher dispatcher = channel.pipeline().get(Http2StreamFrameDispatcher.class);
+        Http2StreamContext context = dispatcher.newStreamContext();
+        context.writeAndFlush(new DefaultHttp2HeadersFrame(request, true));
+        int streamId = context.stream().id();
+        verify(frameWriter).writeHeaders(any(ChannelHandlerContext.class), eq(streamId), eq(request), eq(0), eq(true),
+                anyChannelPromise());
+
+        frameInboundWriter.writeInboundHeaders(streamId, response, 0, true);
+        assertEquals(1, handler.frames.size());
+        assertSame(context, handler.contexts.get(0));
+        assertEquals(1, handler.closed.size());
+    }
+
+    private static final class RecordingHandler implements Http2StreamFrameHandler {
+        final List<Http2StreamFrame> frames = new ArrayList<Http2StreamFrame>();
+        final List<Http2StreamContext> contexts = new ArrayList<Http2StreamContext>();
+        final List<Http2StreamContext> closed = new ArrayList<Http2StreamContext>();
+        final List<Http2Stream.State> closedStates = new ArrayList<Http2Stream.State>();
+        final List<Throwable> exceptions = new ArrayList<Throwable>();
+        final List<Http2StreamContext> exceptionContexts = new ArrayList<Http2StreamContext>();
+        boolean fail;
+
+        @Override
+        public void streamFrameRead(Http2StreamContext ctx, Http2StreamFrame frame) {
+            frames.add(frame);
+            contexts.add(ctx);
+            if (ctx.attachment() == null) {
+                ctx.attachment(String.valueOf(ctx.stream().id()));
+            }
+            if (fail) {
+                throw new IllegalStateException("test");
+            }
+        }
+
+        @Override
+        public void streamWritabilityChanged(Http2StreamContext ctx) {
+        }
+
+        @Override
+        public void streamExceptionCaught(Http2StreamContext ctx, Throwable cause) {
+            exceptions.add(cause);
+            exceptionContexts.add(ctx);
+        }
+
+        @Override
+        public void streamClosed(Http2StreamContext ctx) {
+            closed.add(ctx);
+            closedStates.add(ctx.stream().state());
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.memcache.binary;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.PrematureChannelClosureException;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.ArrayDeque;
+
+/**
+ * Batches the gets issued via {@link #get(ByteBuf)} into pipelines of quiet {@link BinaryMemcacheOpcodes#GETKQ}
+ * requests, each terminated by a {@link BinaryMemcacheOpcodes#NOOP}, so a multi-get costs one round trip.
+ * <p>
+ * All gets issued before the event loop of the channel runs its next task are written and flushed together. The
+ * server only answers hits of quiet requests, and answers in order, so every get which has no response once a later
+ * response arrives is a miss. Responses are correlated with their gets via the {@code opaque} field, which this
+ * handler sets to non-zero values. Responses to other requests pass through, as long as those requests keep the
+ * default {@code opaque} of {@code 0}.
+ * <p>
+ * This handler must be placed after a {@link BinaryMemcacheClientCodec} and a
+ * {@link BinaryMemcacheObjectAggregator}:
+ * <pre>
+ * pipeline.addLast(new BinaryMemcacheClientCodec());
+ * pipeline.addLast(new BinaryMemcacheObjectAggregator(maxContentLength));
+ * pipeline.addLast(multiGetHandler);
+ * </pre>
+ */
+@UnstableApi
+public final class BinaryMemcacheMultiGetHandler extends ChannelDuplexHandler {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+
+    private final int maxBatchSize;
+    // Gets which were not written yet.
+    private final ArrayDeque<PendingGet> pending = new ArrayDeque<PendingGet>();
+    // Written gets and NOOPs, in the order of their responses.
+    private final ArrayDeque<PendingGet> inFlight = new ArrayDeque<PendingGet>();
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            writeScheduled = false;
+            writePending();
+        }
+    };
+
+    private volatile ChannelHandlerContext ctx;
+    private int nextOpaque;
+    private boolean writeScheduled;
+    private boolean writing;
+    private boolean needsFlush;
+
+    /**
+     * Create a new instance which writes at most {@value #DEFAULT_MAX_BATCH_SIZE} gets before a NOOP.
+     */
+    public BinaryMemcacheMultiGetHandler() {
+        this(DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxBatchSize the maximum number of gets before a NOOP, which bounds how long the result of a miss is
+     *                     delayed by the hits after it.
+     */
+    public BinaryMemcacheMultiGetHandler(int maxBatchSize) {
+        this.maxBatchSize = ObjectUtil.checkPositive(maxBatchSize, "maxBatchSize");
+    }
+
+    /**
+     * Gets the value of the given key. This method may be called from any thread.
+     *
+     * @param key the key, which is released once it was written.
+     * @return the future of the response of the server, or of {@code null} if the key was not found. A response
+     *         may also have another status than {@link BinaryMemcacheResponseStatus#SUCCESS}, and must be released
+     *         by the caller.
+     */
+    public Future<FullBinaryMemcacheResponse> get(final ByteBuf key) {
+        ObjectUtil.checkNotNull(key, "key");
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            key.release();
+            throw new IllegalStateException("handler not added to a pipeline");
+        }
+        EventExecutor executor = ctx.executor();
+        final PendingGet get = new PendingGet(key, executor.<FullBinaryMemcacheResponse>newPromise());
+        if (executor.inEventLoop()) {
+            addPending(get);
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    addPending(get);
+                }
+            });
+        }
+        return get.promise;
+    }
+
+    private void addPending(PendingGet get) {
+        if (ctx == null || !ctx.channel().isActive()) {
+            get.key.release();
+            get.promise.tryFailure(new PrematureChannelClosureException("channel is not active"));
+            return;
+        }
+        pending.add(get);
+        if (pending.size() >= maxBatchSize) {
+            writeBatch();
+        }
+        if (!writeScheduled) {
+            writeScheduled = true;
+            ctx.executor().execute(writeTask);
+        }
+    }
+
+    private void writePending() {
+        // A write may run the tasks of some event loops, like the one of EmbeddedChannel, and so this task.
+        if (ctx == null || writing) {
+            return;
+        }
+        while (!pending.isEmpty()) {
+            writeBatch();
+        }
+        if (needsFlush) {
+            needsFlush = false;
+            ctx.flush();
+        }
+    }
+
+    private void writeBatch() {
+        writing = true;
+        try {
+            writeBatch0();
+        } finally {
+            writing = false;
+        }
+        needsFlush = true;
+    }
+
+    private void writeBatch0() {
+        for (int i = 0; i < maxBatchSize; i++) {
+            PendingGet get = pending.poll();
+            if (get == null) {
+                break;
+            }
+            get.opaque = nextOpaque();
+            BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest(get.key);
+            request.setOpcode(BinaryMemcacheOpcodes.GETKQ);
+            request.setOpaque(get.opaque);
+            get.key = null;
+            inFlight.add(get);
+            ctx.write(request).addListener(get);
+        }
+        PendingGet noop = new PendingGet(null, null);
+        noop.opaque = nextOpaque();
+        BinaryMemcacheRequest request = new DefaultBinaryMemcacheRequest();
+        request.setOpcode(BinaryMemcacheOpcodes.NOOP);
+        request.setOpaque(noop.opaque);
+        inFlight.add(noop);
+        // Without the NOOP response the misses of the batch would never complete.
+        ctx.write(request).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    private int nextOpaque() {
+        int opaque = ++nextOpaque;
+        if (opaque == 0) {
+            // 0 is left to requests of other handlers.
+            opaque = ++nextOpaque;
+        }
+        return opaque;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        failAll("handler removed");
+        this.ctx = null;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof FullBinaryMemcacheResponse) || !isInFlight(((FullBinaryMemcacheResponse) msg).opaque())) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        FullBinaryMemcacheResponse response = (FullBinaryMemcacheResponse) msg;
+        int opaque = response.opaque();
+        for (;;) {
+            PendingGet get = inFlight.poll();
+            if (get.opaque == opaque) {
+                if (get.promise == null || !get.promise.trySuccess(response)) {
+                    // The response of a NOOP or of a cancelled get.
+                    response.release();
+                }
+                return;
+            }
+            // The quiet get of a key which was not found.
+            if (get.promise != null) {
+                get.promise.trySuccess(null);
+            }
+        }
+    }
+
+    private boolean isInFlight(int opaque) {
+        PendingGet first = inFlight.peekFirst();
+        if (opaque == 0 || first == null) {
+            return false;
+        }
+        // The subtraction keeps working once the opaque wraps around.
+        return opaque - first.opaque >= 0 && inFlight.peekLast().opaque - opaque >= 0;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failAll("channel gone inactive");
+        ctx.fireChannelInactive();
+    }
+
+    private void failAll(String reason) {
+        int outstanding = pending.size() + inFlight.size();
+        if (outstanding == 0) {
+            return;
+        }
+        PrematureChannelClosureException cause = new PrematureChannelClosureException(
+                reason + " with " + outstanding + " outstanding get(s)");
+        for (;;) {
+            PendingGet get = pending.poll();
+            if (get == null) {
+                break;
+            }
+            ReferenceCountUtil.safeRelease(get.key);
+            get.promise.tryFailure(cause);
+        }
+        for (;;) {
+            PendingGet get = inFlight.poll();
+            if (get == null) {
+                break;
+            }
+            if (get.promise != null) {
+                get.promise.tryFailure(cause);
+            }
+        }
+    }
+
+    /**
+     * A get, or a NOOP if it has no promise. It fails its promise if its request could not be written.
+     */
+    private static final class PendingGet implements ChannelFutureListener {
+        final Promise<FullBinaryMemcacheResponse> promise;
+        ByteBuf key;
+        int opaque;
+
+        PendingGet(ByteBuf key, Promise<FullBinaryMemcacheResponse> promise) {
+            this.key = key;
+            this.promise = promise;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (!future.isSuccess()) {
+                promise.tryFailure(future.cause());
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.memcache.binary;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.PrematureChannelClosureException;
+import io.netty.util.CharsetUtil;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BinaryMemcacheMultiGetHandlerTest {
+
+    private EventLoopGroup group;
+    private Channel serverChannel;
+    private final Map<String, String> store = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger noops = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(2);
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new BinaryMemcacheServerCodec());
+                        ch.pipeline().addLast(new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE));
+                        ch.pipeline().addLast(new MemcacheServerStandIn());
+                    }
+                })
+                .bind(new LocalAddress("BinaryMemcacheMultiGetHandlerTest")).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    public void testBatchedGets() {
+        BinaryMemcacheMultiGetHandler handler = new BinaryMemcacheMultiGetHandler();
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        Future<FullBinaryMemcacheResponse> first = handler.get(key("a"));
+        Future<FullBinaryMemcacheResponse> second = handler.get(key("b"));
+        Future<FullBinaryMemcacheResponse> third = handler.get(key("c"));
+        assertNull(channel.readOutbound());
+        channel.runPendingTasks();
+
+        List<BinaryMemcacheRequest> requests = new ArrayList<BinaryMemcacheRequest>();
+        for (int i = 0; i < 4; i++) {
+            BinaryMemcacheRequest request = channel.readOutbound();
+            requests.add(request);
+        }
+        assertNull(channel.readOutbound());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(BinaryMemcacheOpcodes.GETKQ, requests.get(i).opcode());
+        }
+        assertEquals(BinaryMemcacheOpcodes.NOOP, requests.get(3).opcode());
+
+        // Only the hit of "b" and the NOOP are answered, so "a" is a miss once the response of "b" arrives.
+        FullBinaryMemcacheResponse hit = response(requests.get(1), "value");
+        channel.writeInbound(hit);
+        assertTrue(first.isSuccess());
+        assertNull(first.getNow());
+        assertSame(hit, second.getNow());
+        assertFalse(third.isDone());
+        channel.writeInbound(response(requests.get(3), null));
+        assertTrue(third.isSuccess());
+        assertNull(third.getNow());
+
+        // Responses of other requests pass through.
+        FullBinaryMemcacheResponse other = new DefaultFullBinaryMemcacheResponse(null, null);
+        channel.writeInbound(other);
+        assertSame(other, channel.readInbound());
+
+        for (BinaryMemcacheRequest request : requests) {
+            request.release();
+        }
+        hit.release();
+        other.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testMaxBatchSize() {
+        BinaryMemcacheMultiGetHandler handler = new BinaryMemcacheMultiGetHandler(2);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        for (int i = 0; i < 5; i++) {
+            handler.get(key("k" + i));
+        }
+        channel.runPendingTasks();
+        byte[] expected = {
+                BinaryMemcacheOpcodes.GETKQ, BinaryMemcacheOpcodes.GETKQ, BinaryMemcacheOpcodes.NOOP,
+                BinaryMemcacheOpcodes.GETKQ, BinaryMemcacheOpcodes.GETKQ, BinaryMemcacheOpcodes.NOOP,
+                BinaryMemcacheOpcodes.GETKQ, BinaryMemcacheOpcodes.NOOP
+        };
+        for (byte opcode : expected) {
+            BinaryMemcacheRequest request = channel.readOutbound();
+            //            assertEquals(opcode, request.opcode());
+            request.release();
+        }
+        assertNull(channel.readOutbound());
+        channel.finish();
+    }
+
+    @Test
+    public void testFailOnClose() {
+        BinaryMemcacheMultiGetHandler handler = new BinaryMemcacheMultiGetHandler();
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        Future<FullBinaryMemcacheResponse> written = handler.get(key("a"));
+        channel.runPendingTasks();
+        Future<FullBinaryMemcacheResponse> notWritten = handler.get(key("b"));
+        channel.close();
+
+        assertTrue(written.cause() instanceof PrematureChannelClosureException);
+        assertTrue(notWritten.cause() instanceof PrematureChannelClosureException);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test(timeout = 10000)
+    public void testMultiGetAgainstServer() throws Exception {
+        for (int i = 0; i < 100; i += 2) {
+            store.put("key-" + i, "value-" + i);
+        }
+        final BinaryMemcacheMultiGetHandler handler = new BinaryMemcacheMultiGetHandler(32);
+        Channel client = new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new BinaryMemcacheClientCodec());
+                        ch.pipeline().addLast(new BinaryMemcacheObjectAggregator(Integer.MAX_VALUE));
+                        ch.pipeline().addLast(handler);
+                    }
+                })
+                .connect(serverChannel.localAddress()).sync().channel();
+
+        // Issue the gets from the event loop, so they all go into the same pipeline.
+        final List<Future<FullBinaryMemcacheResponse>> futures = new ArrayList<Future<FullBinaryMemcacheResponse>>();
+        client.eventLoop().submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    futures.add(handler.get(key("key-" + i)));
+                }
+            }
+        }).sync();
+
+        for (int i = 0; i < 100; i++) {
+            FullBinaryMemcacheResponse response = futures.get(i).sync().getNow();
+            if (i % 2 == 0) {
+                assertEquals(BinaryMemcacheResponseStatus.SUCCESS, response.status());
+                assertEquals("key-" + i, response.key().toString(CharsetUtil.UTF_8));
+                assertEquals("value-" + i, response.content().toString(CharsetUtil.UTF_8));
+                response.release();
+            } else {
+                assertNull(response);
+            }
+        }
+        assertEquals(100 + 4, requests.get());
+        assertEquals(4, noops.get());
+
+        // Gets of other threads are batched as well.
+        Future<FullBinaryMemcacheResponse> hit = handler.get(key("key-0"));
+        Future<FullBinaryMemcacheResponse> miss = handler.get(key("key-1"));
+        FullBinaryMemcacheResponse response = hit.sync().getNow();
+        assertEquals("value-0", response.content().toString(CharsetUtil.UTF_8));
+        response.release();
+        assertNull(miss.sync().getNow());
+        client.close().sync();
+    }
+
+    private static ByteBuf key(String key) {
+        return Unpooled.copiedBuffer(key, CharsetUtil.UTF_8);
+    }
+
+    private static FullBinaryMemcacheResponse response(BinaryMemcacheRequest request, String value) {
+        FullBinaryMemcacheResponse response = new DefaultFullBinaryMemcacheResponse(
+                request.key() == null ? null : request.key().retainedDuplicate(), null,
+                value == null ? Unpooled.EMPTY_BUFFER : Unpooled.copiedBuffer(value, CharsetUtil.UTF_8));
+        response.setOpcode(request.opcode());
+        response.setOpaque(request.opaque());
+        return response;
+    }
+
+    /**
+     * Answers quiet and regular gets from the store like memcached does.
+     */
+    private final class MemcacheServerStandIn extends SimpleChannelInboundHandler<FullBinaryMemcacheRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullBinaryMemcacheRequest request) {
+            requests.incrementAndGet();
+            byte opcode = request.opcode();
+            if (opcode == BinaryMemcacheOpcodes.NOOP) {
+                noops.incrementAndGet();
+                ctx.writeAndFlush(response(request, null));
+                return;
+            }
+            String value = store.get(request.key().toString(CharsetUtil.UTF_8));
+            boolean quiet = opcode == BinaryMemcacheOpcodes.GETQ || opcode == BinaryMemcacheOpcodes.GETKQ;
+            if (value != null) {
+                ctx.write(response(request, value));
+            } else if (!quiet) {
+                FullBinaryMemcacheResponse response = response(request, null);
+                response.setStatus(BinaryMemcacheResponseStatus.KEY_ENOENT);
+                ctx.write(response);
+            }
+        }
+    }
+}
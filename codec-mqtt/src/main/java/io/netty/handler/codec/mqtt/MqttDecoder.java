@@ -13,139 +13,149 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
-
 package io.netty.handler.codec.mqtt;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.DecoderException;
-import io.netty.handler.codec.ReplayingDecoder;
-import io.netty.handler.codec.mqtt.MqttDecoder.DecoderState;
+import io.netty.handler.codec.mqtt.MqttProperties.BinaryProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.IntegerProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.MqttPropertyType;
+import io.netty.handler.codec.mqtt.MqttProperties.StringProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.UserProperty;
+import io.netty.handler.codec.mqtt.MqttSubscriptionOption.RetainedHandlingPolicy;
 import io.netty.util.CharsetUtil;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.getMqttVersion;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.isValidClientId;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.isValidMessageId;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.isValidPublishTopicName;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.resetUnusedFields;
+import static io.netty.handler.codec.mqtt.MqttCodecUtil.setMqttVersion;
 import static io.netty.handler.codec.mqtt.MqttCodecUtil.validateFixedHeader;
 
 /**
  * Decodes Mqtt messages from bytes, following
  * <a href="http://public.dhe.ibm.com/software/dw/webservices/ws-mqtt/mqtt-v3r1.html">
- *     the MQTT protocol specification v3.1</a>
+ *     the MQTT protocol specification v3.1</a>,
+ * <a href="http://docs.oasis-open.org/mqtt/mqtt/v3.1.1/os/mqtt-v3.1.1-os.html">v3.1.1</a> and
+ * <a href="https://docs.oasis-open.org/mqtt/mqtt/v5.0/os/mqtt-v5.0-os.html">v5.0</a>.
+ * <p>
+ * A message is only parsed once all of its remaining length is readable, so partial reads cost nothing but a
+ * look at the fixed header. The {@link MqttVersion} which is used for decoding is taken from the CONNECT message
+ * of the channel.
  */
-public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
+public final class MqttDecoder extends ByteToMessageDecoder {
 
     private static final int DEFAULT_MAX_BYTES_IN_MESSAGE = 8092;
 
-    /**
-     * States of the decoder.
-     * We start at READ_FIXED_HEADER, followed by
-     * READ_VARIABLE_HEADER and finally READ_PAYLOAD.
-     */
-    enum DecoderState {
-        READ_FIXED_HEADER,
-        READ_VARIABLE_HEADER,
-        READ_PAYLOAD,
-        BAD_MESSAGE,
-    }
+    private final int maxBytesInMessage;
 
     private MqttFixedHeader mqttFixedHeader;
     private Object variableHeader;
-    private int bytesRemainingInVariablePart;
-
-    private final int maxBytesInMessage;
+    private boolean badMessage;
 
     public MqttDecoder() {
       this(DEFAULT_MAX_BYTES_IN_MESSAGE);
     }
 
     public MqttDecoder(int maxBytesInMessage) {
-        super(DecoderState.READ_FIXED_HEADER);
         this.maxBytesInMessage = maxBytesInMessage;
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
-        switch (state()) {
-            case READ_FIXED_HEADER: try {
-                mqttFixedHeader = decodeFixedHeader(buffer);
-                bytesRemainingInVariablePart = mqttFixedHeader.remainingLength();
-                checkpoint(DecoderState.READ_VARIABLE_HEADER);
-                // fall through
-            } catch (Exception cause) {
-                out.add(invalidMessage(cause));
-                return;
-            }
+        if (badMessage) {
+            // Keep discarding until disconnection.
+            buffer.skipBytes(buffer.readableBytes());
+            return;
+        }
 
-            case READ_VARIABLE_HEADER:  try {
-                final Result<?> decodedVariableHeader = decodeVariableHeader(buffer, mqttFixedHeader);
-                variableHeader = decodedVariableHeader.value;
-                if (bytesRemainingInVariablePart > maxBytesInMessage) {
-                    throw new DecoderException("too large message: " + bytesRemainingInVariablePart + " bytes");
-                }
-                bytesRemainingInVariablePart -= decodedVariableHeader.numberOfBytesConsumed;
-                checkpoint(DecoderState.READ_PAYLOAD);
-                // fall through
-            } catch (Exception cause) {
-                out.add(invalidMessage(cause));
-                return;
-            }
+        final int startIndex = buffer.readerIndex();
+        final MqttVersion mqttVersion = getMqttVersion(ctx);
+        try {
+            mqttFixedHeader = decodeFixedHeader(buffer, mqttVersion);
+        } catch (Exception cause) {
+            out.add(invalidMessage(cause));
+            return;
+        }
+        if (mqttFixedHeader == null) {
+            // The remaining length is not complete yet.
+            buffer.readerIndex(startIndex);
+            return;
+        }
 
-            case READ_PAYLOAD: try {
-                final Result<?> decodedPayload =
-                        decodePayload(
-                                buffer,
-                                mqttFixedHeader.messageType(),
-                                bytesRemainingInVariablePart,
-                                variableHeader);
-                bytesRemainingInVariablePart -= decodedPayload.numberOfBytesConsumed;
-                if (bytesRemainingInVariablePart != 0) {
-                    throw new DecoderException(
-                            "non-zero remaining payload bytes: " +
-                                    bytesRemainingInVariablePart + " (" + mqttFixedHeader.messageType() + ')');
-                }
-                checkpoint(DecoderState.READ_FIXED_HEADER);
-                MqttMessage message = MqttMessageFactory.newMessage(
-                        mqttFixedHeader, variableHeader, decodedPayload.value);
+        final int bytesRemainingInVariablePart = mqttFixedHeader.remainingLength();
+        if (bytesRemainingInVariablePart > maxBytesInMessage) {
+            // Decode the variable header anyway, so the handler can tell whom to reject.
+            try {
+                variableHeader = decodeVariableHeader(ctx, buffer, mqttFixedHeader, mqttVersion);
+            } catch (IndexOutOfBoundsException e) {
+                buffer.readerIndex(startIndex);
                 mqttFixedHeader = null;
-                variableHeader = null;
-                out.add(message);
-                break;
+                return;
             } catch (Exception cause) {
                 out.add(invalidMessage(cause));
                 return;
             }
+            out.add(invalidMessage(
+                    new DecoderException("too large message: " + bytesRemainingInVariablePart + " bytes")));
+            return;
+        }
+        if (buffer.readableBytes() < bytesRemainingInVariablePart) {
+            buffer.readerIndex(startIndex);
+            mqttFixedHeader = null;
+            return;
+        }
 
-            case BAD_MESSAGE:
-                // Keep discarding until disconnection.
-                buffer.skipBytes(actualReadableBytes());
-                break;
-
-            default:
-                // Shouldn't reach here.
-                throw new Error();
+        final ByteBuf variablePart = buffer.readSlice(bytesRemainingInVariablePart);
+        try {
+            variableHeader = decodeVariableHeader(ctx, variablePart, mqttFixedHeader, mqttVersion);
+            final MqttVersion messageVersion = mqttFixedHeader.messageType() == MqttMessageType.CONNECT ?
+                    getMqttVersion(ctx) : mqttVersion;
+            final Object payload = decodePayload(
+                    variablePart, mqttFixedHeader.messageType(), variableHeader, messageVersion);
+            if (variablePart.isReadable()) {
+                throw new DecoderException(
+                        "non-zero remaining payload bytes: " +
+                                variablePart.readableBytes() + " (" + mqttFixedHeader.messageType() + ')');
+            }
+            MqttMessage message = MqttMessageFactory.newMessage(mqttFixedHeader, variableHeader, payload);
+            mqttFixedHeader = null;
+            variableHeader = null;
+            out.add(message);
+        } catch (Exception cause) {
+            out.add(invalidMessage(cause));
         }
     }
 
     private MqttMessage invalidMessage(Throwable cause) {
-      checkpoint(DecoderState.BAD_MESSAGE);
-      return MqttMessageFactory.newInvalidMessage(mqttFixedHeader, variableHeader, cause);
+        badMessage = true;
+        MqttMessage message = MqttMessageFactory.newInvalidMessage(mqttFixedHeader, variableHeader, cause);
+        mqttFixedHeader = null;
+        variableHeader = null;
+        return message;
     }
 
     /**
      * Decodes the fixed header. It's one byte for the flags and then variable bytes for the remaining length.
      *
      * @param buffer the buffer to decode from
-     * @return the fixed header
+     * @param mqttVersion the version of the channel
+     * @return the fixed header, or {@code null} if the remaining length is not readable yet
      */
-    private static MqttFixedHeader decodeFixedHeader(ByteBuf buffer) {
+    private static MqttFixedHeader decodeFixedHeader(ByteBuf buffer, MqttVersion mqttVersion) {
         short b1 = buffer.readUnsignedByte();
 
         MqttMessageType messageType = MqttMessageType.valueOf(b1 >> 4);
+        if (messageType == MqttMessageType.AUTH && mqttVersion != MqttVersion.MQTT_5) {
+            // The type of AUTH is reserved and forbidden before MQTT 5.
+            throw new IllegalArgumentException("unknown message type: " + messageType.value());
+        }
         boolean dupFlag = (b1 & 0x08) == 0x08;
         int qosLevel = (b1 & 0x06) >> 1;
         boolean retain = (b1 & 0x01) != 0;
@@ -155,6 +165,9 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         short digit;
         int loops = 0;
         do {
+            if (!buffer.isReadable()) {
+                return null;
+            }
             digit = buffer.readUnsignedByte();
             remainingLength += (digit & 127) * multiplier;
             multiplier *= 128;
@@ -172,54 +185,57 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
 
     /**
      * Decodes the variable header (if any)
+     * @param ctx the context which keeps the {@link MqttVersion} of the channel
      * @param buffer the buffer to decode from
      * @param mqttFixedHeader MqttFixedHeader of the same message
+     * @param mqttVersion the version of the channel
      * @return the variable header
      */
-    private static Result<?> decodeVariableHeader(ByteBuf buffer, MqttFixedHeader mqttFixedHeader) {
+    private static Object decodeVariableHeader(ChannelHandlerContext ctx, ByteBuf buffer,
+                                               MqttFixedHeader mqttFixedHeader, MqttVersion mqttVersion) {
         switch (mqttFixedHeader.messageType()) {
             case CONNECT:
-                return decodeConnectionVariableHeader(buffer);
+                return decodeConnectionVariableHeader(ctx, buffer);
 
             case CONNACK:
-                return decodeConnAckVariableHeader(buffer);
+                return decodeConnAckVariableHeader(buffer, mqttVersion);
 
             case SUBSCRIBE:
             case UNSUBSCRIBE:
             case SUBACK:
             case UNSUBACK:
+                return decodeMessageIdAndPropertiesVariableHeader(buffer, mqttVersion);
+
             case PUBACK:
             case PUBREC:
             case PUBCOMP:
             case PUBREL:
-                return decodeMessageIdVariableHeader(buffer);
+                return decodePubReplyMessage(buffer, mqttFixedHeader, mqttVersion);
 
             case PUBLISH:
-                return decodePublishVariableHeader(buffer, mqttFixedHeader);
+                return decodePublishVariableHeader(buffer, mqttFixedHeader, mqttVersion);
+
+            case DISCONNECT:
+            case AUTH:
+                return decodeReasonCodeAndPropertiesVariableHeader(buffer, mqttFixedHeader, mqttVersion);
 
             case PINGREQ:
             case PINGRESP:
-            case DISCONNECT:
                 // Empty variable header
-                return new Result<Object>(null, 0);
+                return null;
         }
-        return new Result<Object>(null, 0); //should never reach here
+        return null; //should never reach here
     }
 
-    private static Result<MqttConnectVariableHeader> decodeConnectionVariableHeader(ByteBuf buffer) {
-        final Result<String> protoString = decodeString(buffer);
-        int numberOfBytesConsumed = protoString.numberOfBytesConsumed;
-
+    private static MqttConnectVariableHeader decodeConnectionVariableHeader(ChannelHandlerContext ctx,
+                                                                            ByteBuf buffer) {
+        final String protoString = decodeString(buffer);
         final byte protocolLevel = buffer.readByte();
-        numberOfBytesConsumed += 1;
-
-        final MqttVersion mqttVersion = MqttVersion.fromProtocolNameAndLevel(protoString.value, protocolLevel);
+        final MqttVersion mqttVersion = MqttVersion.fromProtocolNameAndLevel(protoString, protocolLevel);
+        setMqttVersion(ctx, mqttVersion);
 
         final int b1 = buffer.readUnsignedByte();
-        numberOfBytesConsumed += 1;
-
-        final Result<Integer> keepAlive = decodeMsbLsb(buffer);
-        numberOfBytesConsumed += keepAlive.numberOfBytesConsumed;
+        final int keepAlive = decodeMsbLsb(buffer);
 
         final boolean hasUserName = (b1 & 0x80) == 0x80;
         final boolean hasPassword = (b1 & 0x40) == 0x40;
@@ -227,7 +243,7 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
         final int willQos = (b1 & 0x18) >> 3;
         final boolean willFlag = (b1 & 0x04) == 0x04;
         final boolean cleanSession = (b1 & 0x02) == 0x02;
-        if (mqttVersion == MqttVersion.MQTT_3_1_1) {
+        if (mqttVersion == MqttVersion.MQTT_3_1_1 || mqttVersion == MqttVersion.MQTT_5) {
             final boolean zeroReservedFlag = (b1 & 0x01) == 0x0;
             if (!zeroReservedFlag) {
                 // MQTT v3.1.1: The Server MUST validate that the reserved flag in the CONNECT Control Packet is
@@ -237,7 +253,8 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
             }
         }
 
-        final MqttConnectVariableHeader mqttConnectVariableHeader = new MqttConnectVariableHeader(
+        final MqttProperties properties = decodeProperties(buffer, mqttVersion);
+        return new MqttConnectVariableHeader(
                 mqttVersion.protocolName(),
                 mqttVersion.protocolLevel(),
                 hasUserName,
@@ -246,50 +263,90 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
                 willQos,
                 willFlag,
                 cleanSession,
-                keepAlive.value);
-        return new Result<MqttConnectVariableHeader>(mqttConnectVariableHeader, numberOfBytesConsumed);
+                keepAlive,
+                properties);
     }
 
-    private static Result<MqttConnAckVariableHeader> decodeConnAckVariableHeader(ByteBuf buffer) {
+    private static MqttConnAckVariableHeader decodeConnAckVariableHeader(ByteBuf buffer, MqttVersion mqttVersion) {
         final boolean sessionPresent = (buffer.readUnsignedByte() & 0x01) == 0x01;
         byte returnCode = buffer.readByte();
-        final int numberOfBytesConsumed = 2;
-        final MqttConnAckVariableHeader mqttConnAckVariableHeader =
-                new MqttConnAckVariableHeader(MqttConnectReturnCode.valueOf(returnCode), sessionPresent);
-        return new Result<MqttConnAckVariableHeader>(mqttConnAckVariableHeader, numberOfBytesConsumed);
+        final MqttProperties properties = decodeProperties(buffer, mqttVersion);
+        return new MqttConnAckVariableHeader(MqttConnectReturnCode.valueOf(returnCode), sessionPresent, properties);
+    }
+
+    private static MqttMessageIdVariableHeader decodeMessageIdAndPropertiesVariableHeader(
+            ByteBuf buffer,
+            MqttVersion mqttVersion) {
+        final int packetId = decodeMessageId(buffer);
+        if (mqttVersion == MqttVersion.MQTT_5) {
+            return new MqttMessageIdAndPropertiesVariableHeader(packetId, decodeProperties(buffer, mqttVersion));
+        }
+        return MqttMessageIdVariableHeader.from(packetId);
     }
 
-    private static Result<MqttMessageIdVariableHeader> decodeMessageIdVariableHeader(ByteBuf buffer) {
-        final Result<Integer> messageId = decodeMessageId(buffer);
-        return new Result<MqttMessageIdVariableHeader>(
-                MqttMessageIdVariableHeader.from(messageId.value),
-                messageId.numberOfBytesConsumed);
+    private static MqttMessageIdVariableHeader decodePubReplyMessage(
+            ByteBuf buffer,
+            MqttFixedHeader mqttFixedHeader,
+            MqttVersion mqttVersion) {
+        final int packetId = decodeMessageId(buffer);
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return MqttMessageIdVariableHeader.from(packetId);
+        }
+        // The reason code and the properties may be omitted if they are the defaults.
+        final byte reasonCode;
+        final MqttProperties properties;
+        if (mqttFixedHeader.remainingLength() > 2) {
+            reasonCode = buffer.readByte();
+            properties = mqttFixedHeader.remainingLength() > 3 ?
+                    decodeProperties(buffer, mqttVersion) : MqttProperties.NO_PROPERTIES;
+        } else {
+            reasonCode = MqttPubReplyMessageVariableHeader.REASON_CODE_OK;
+            properties = MqttProperties.NO_PROPERTIES;
+        }
+        return new MqttPubReplyMessageVariableHeader(packetId, reasonCode, properties);
+    }
+
+    private static MqttReasonCodeAndPropertiesVariableHeader decodeReasonCodeAndPropertiesVariableHeader(
+            ByteBuf buffer,
+            MqttFixedHeader mqttFixedHeader,
+            MqttVersion mqttVersion) {
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return null;
+        }
+        final byte reasonCode;
+        final MqttProperties properties;
+        if (mqttFixedHeader.remainingLength() > 0) {
+            reasonCode = buffer.readByte();
+            properties = mqttFixedHeader.remainingLength() > 1 ?
+                    decodeProperties(buffer, mqttVersion) : MqttProperties.NO_PROPERTIES;
+        } else {
+            reasonCode = 0;
+            properties = MqttProperties.NO_PROPERTIES;
+        }
+        return new MqttReasonCodeAndPropertiesVariableHeader(reasonCode, properties);
     }
 
-    private static Result<MqttPublishVariableHeader> decodePublishVariableHeader(
+    private static MqttPublishVariableHeader decodePublishVariableHeader(
             ByteBuf buffer,
-            MqttFixedHeader mqttFixedHeader) {
-        final Result<String> decodedTopic = decodeString(buffer);
-        if (!isValidPublishTopicName(decodedTopic.value)) {
-            throw new DecoderException("invalid publish topic name: " + decodedTopic.value + " (contains wildcards)");
+            MqttFixedHeader mqttFixedHeader,
+            MqttVersion mqttVersion) {
+        final String decodedTopic = decodeString(buffer);
+        if (!isValidPublishTopicName(decodedTopic)) {
+            throw new DecoderException("invalid publish topic name: " + decodedTopic + " (contains wildcards)");
         }
-        int numberOfBytesConsumed = decodedTopic.numberOfBytesConsumed;
 
         int messageId = -1;
         if (mqttFixedHeader.qosLevel().value() > 0) {
-            final Result<Integer> decodedMessageId = decodeMessageId(buffer);
-            messageId = decodedMessageId.value;
-            numberOfBytesConsumed += decodedMessageId.numberOfBytesConsumed;
+            messageId = decodeMessageId(buffer);
         }
-        final MqttPublishVariableHeader mqttPublishVariableHeader =
-                new MqttPublishVariableHeader(decodedTopic.value, messageId);
-        return new Result<MqttPublishVariableHeader>(mqttPublishVariableHeader, numberOfBytesConsumed);
+        final MqttProperties properties = decodeProperties(buffer, mqttVersion);
+        return new MqttPublishVariableHeader(decodedTopic, messageId, properties);
     }
 
-    private static Result<Integer> decodeMessageId(ByteBuf buffer) {
-        final Result<Integer> messageId = decodeMsbLsb(buffer);
-        if (!isValidMessageId(messageId.value)) {
-            throw new DecoderException("invalid messageId: " + messageId.value);
+    private static int decodeMessageId(ByteBuf buffer) {
+        final int messageId = decodeMsbLsb(buffer);
+        if (!isValidMessageId(messageId)) {
+            throw new DecoderException("invalid messageId: " + messageId);
         }
         return messageId;
     }
@@ -297,181 +354,244 @@ public final class MqttDecoder extends ReplayingDecoder<DecoderState> {
     /**
      * Decodes the payload.
      *
-     * @param buffer the buffer to decode from
+     * @param buffer the buffer to decode from, which ends with the message
      * @param messageType  type of the message being decoded
-     * @param bytesRemainingInVariablePart bytes remaining
      * @param variableHeader variable header of the same message
+     * @param mqttVersion the version of the channel
      * @return the payload
      */
-    private static Result<?> decodePayload(
+    private static Object decodePayload(
             ByteBuf buffer,
             MqttMessageType messageType,
-            int bytesRemainingInVariablePart,
-            Object variableHeader) {
+            Object variableHeader,
+            MqttVersion mqttVersion) {
         switch (messageType) {
             case CONNECT:
-                return decodeConnectionPayload(buffer, (MqttConnectVariableHeader) variableHeader);
+                return decodeConnectionPayload(buffer, (MqttConnectVariableHeader) variableHeader, mqttVersion);
 
             case SUBSCRIBE:
-                return decodeSubscribePayload(buffer, bytesRemainingInVariablePart);
+                return decodeSubscribePayload(buffer, mqttVersion);
 
             case SUBACK:
-                return decodeSubackPayload(buffer, bytesRemainingInVariablePart);
+                return decodeSubackPayload(buffer, mqttVersion);
 
             case UNSUBSCRIBE:
-                return decodeUnsubscribePayload(buffer, bytesRemainingInVariablePart);
+                return decodeUnsubscribePayload(buffer);
+
+            case UNSUBACK:
+                return decodeUnsubAckPayload(buffer, mqttVersion);
 
             case PUBLISH:
-                return decodePublishPayload(buffer, bytesRemainingInVariablePart);
+                return decodePublishPayload(buffer);
 
             default:
                 // unknown payload , no byte consumed
-                return new Result<Object>(null, 0);
+                return null;
         }
     }
 
-    private static Result<MqttConnectPayload> decodeConnectionPayload(
+    private static MqttConnectPayload decodeConnectionPayload(
             ByteBuf buffer,
-            MqttConnectVariableHeader mqttConnectVariableHeader) {
-        final Result<String> decodedClientId = decodeString(buffer);
-        final String decodedClientIdValue = decodedClientId.value;
-        final MqttVersion mqttVersion = MqttVersion.fromProtocolNameAndLevel(mqttConnectVariableHeader.name(),
-                (byte) mqttConnectVariableHeader.version());
-        if (!isValidClientId(mqttVersion, decodedClientIdValue)) {
-            throw new MqttIdentifierRejectedException("invalid clientIdentifier: " + decodedClientIdValue);
-        }
-        int numberOfBytesConsumed = decodedClientId.numberOfBytesConsumed;
-
-        Result<String> decodedWillTopic = null;
-        Result<byte[]> decodedWillMessage = null;
+            MqttConnectVariableHeader mqttConnectVariableHeader,
+            MqttVersion mqttVersion) {
+        final String decodedClientId = decodeString(buffer);
+        if (!isValidClientId(mqttVersion, decodedClientId)) {
+            throw new MqttIdentifierRejectedException("invalid clientIdentifier: " + decodedClientId);
+        }
+
+        MqttProperties willProperties = MqttProperties.NO_PROPERTIES;
+        String decodedWillTopic = null;
+        byte[] decodedWillMessage = null;
         if (mqttConnectVariableHeader.isWillFlag()) {
+            willProperties = decodeProperties(buffer, mqttVersion);
             decodedWillTopic = decodeString(buffer, 0, 32767);
-            numberOfBytesConsumed += decodedWillTopic.numberOfBytesConsumed;
             decodedWillMessage = decodeByteArray(buffer);
-            numberOfBytesConsumed += decodedWillMessage.numberOfBytesConsumed;
         }
-        Result<String> decodedUserName = null;
-        Result<byte[]> decodedPassword = null;
+        String decodedUserName = null;
+        byte[] decodedPassword = null;
         if (mqttConnectVariableHeader.hasUserName()) {
             decodedUserName = decodeString(buffer);
-            numberOfBytesConsumed += decodedUserName.numberOfBytesConsumed;
         }
         if (mqttConnectVariableHeader.hasPassword()) {
             decodedPassword = decodeByteArray(buffer);
-            numberOfBytesConsumed += decodedPassword.numberOfBytesConsumed;
         }
 
-        final MqttConnectPayload mqttConnectPayload =
-                new MqttConnectPayload(
-                        decodedClientId.value,
-                        decodedWillTopic != null ? decodedWillTopic.value : null,
-                        decodedWillMessage != null ? decodedWillMessage.value : null,
-                        decodedUserName != null ? decodedUserName.value : null,
-                        decodedPassword != null ? decodedPassword.value : null);
-        return new Result<MqttConnectPayload>(mqttConnectPayload, numberOfBytesConsumed);
+        return new MqttConnectPayload(
+                decodedClientId,
+                willProperties,
+                decodedWillTopic,
+                decodedWillMessage,
+                decodedUserName,
+                decodedPassword);
     }
 
-    private static Result<MqttSubscribePayload> decodeSubscribePayload(
-            ByteBuf buffer,
-            int bytesRemainingInVariablePart) {
+    private static MqttSubscribePayload decodeSubscribePayload(ByteBuf buffer, MqttVersion mqttVersion) {
         final List<MqttTopicSubscription> subscribeTopics = new ArrayList<MqttTopicSubscription>();
-        int numberOfBytesConsumed = 0;
-        while (numberOfBytesConsumed < bytesRemainingInVariablePart) {
-            final Result<String> decodedTopicName = decodeString(buffer);
-            numberOfBytesConsumed += decodedTopicName.numberOfBytesConsumed;
-            int qos = buffer.readUnsignedByte() & 0x03;
-            numberOfBytesConsumed++;
-            subscribeTopics.add(new MqttTopicSubscription(decodedTopicName.value, MqttQoS.valueOf(qos)));
-        }
-        return new Result<MqttSubscribePayload>(new MqttSubscribePayload(subscribeTopics), numberOfBytesConsumed);
+        while (buffer.isReadable()) {
+            final String decodedTopicName = decodeString(buffer);
+            final int options = buffer.readUnsignedByte();
+            final MqttQoS qos = MqttQoS.valueOf(options & 0x03);
+            if (mqttVersion == MqttVersion.MQTT_5) {
+                final MqttSubscriptionOption option = new MqttSubscriptionOption(
+                        qos,
+                        (options & 0x04) != 0,
+                        (options & 0x08) != 0,
+                        RetainedHandlingPolicy.valueOf((options & 0x30) >> 4));
+                subscribeTopics.add(new MqttTopicSubscription(decodedTopicName, option));
+            } else {
+                subscribeTopics.add(new MqttTopicSubscription(decodedTopicName, qos));
+            }
+        }
+        return new MqttSubscribePayload(subscribeTopics);
     }
 
-    private static Result<MqttSubAckPayload> decodeSubackPayload(
-            ByteBuf buffer,
-            int bytesRemainingInVariablePart) {
-        final List<Integer> grantedQos = new ArrayList<Integer>();
-        int numberOfBytesConsumed = 0;
-        while (numberOfBytesConsumed < bytesRemainingInVariablePart) {
+    private static MqttSubAckPayload decodeSubackPayload(ByteBuf buffer, MqttVersion mqttVersion) {
+        final List<Integer> grantedQos = new ArrayList<Integer>(buffer.readableBytes());
+        while (buffer.isReadable()) {
             int qos = buffer.readUnsignedByte();
-            if (qos != MqttQoS.FAILURE.value()) {
+            // MQTT 5 reason codes are more than a QoS.
+            if (mqttVersion != MqttVersion.MQTT_5 && qos != MqttQoS.FAILURE.value()) {
                 qos &= 0x03;
             }
-            numberOfBytesConsumed++;
             grantedQos.add(qos);
         }
-        return new Result<MqttSubAckPayload>(new MqttSubAckPayload(grantedQos), numberOfBytesConsumed);
+        return new MqttSubAckPayload(grantedQos);
     }
 
-    private static Result<MqttUnsubscribePayload> decodeUnsubscribePayload(
-            ByteBuf buffer,
-            int bytesRemainingInVariablePart) {
+    private static MqttUnsubAckPayload decodeUnsubAckPayload(ByteBuf buffer, MqttVersion mqttVersion) {
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return null;
+        }
+        final List<Short> reasonCodes = new ArrayList<Short>(buffer.readableBytes());
+        while (buffer.isReadable()) {
+            reasonCodes.add(buffer.readUnsignedByte());
+        }
+        return new MqttUnsubAckPayload(reasonCodes);
+    }
+
+    private static MqttUnsubscribePayload decodeUnsubscribePayload(ByteBuf buffer) {
         final List<String> unsubscribeTopics = new ArrayList<String>();
-        int numberOfBytesConsumed = 0;
-        while (numberOfBytesConsumed < bytesRemainingInVariablePart) {
-            final Result<String> decodedTopicName = decodeString(buffer);
-            numberOfBytesConsumed += decodedTopicName.numberOfBytesConsumed;
-            unsubscribeTopics.add(decodedTopicName.value);
-        }
-        return new Result<MqttUnsubscribePayload>(
-                new MqttUnsubscribePayload(unsubscribeTopics),
-                numberOfBytesConsumed);
+        while (buffer.isReadable()) {
+            unsubscribeTopics.add(decodeString(buffer));
+        }
+        return new MqttUnsubscribePayload(unsubscribeTopics);
+    }
+
+    private static ByteBuf decodePublishPayload(ByteBuf buffer) {
+        return buffer.readRetainedSlice(buffer.readableBytes());
+    }
+
+    private static MqttProperties decodeProperties(ByteBuf buffer, MqttVersion mqttVersion) {
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return MqttProperties.NO_PROPERTIES;
+        }
+        final int totalLength = decodeVariableByteInteger(buffer);
+        if (totalLength == 0) {
+            return MqttProperties.NO_PROPERTIES;
+        }
+        final int endIndex = buffer.readerIndex() + totalLength;
+        if (totalLength > buffer.readableBytes()) {
+            throw new DecoderException("properties length exceeds message: " + totalLength + " bytes");
+        }
+        final MqttProperties properties = new MqttProperties();
+        while (buffer.readerIndex() < endIndex) {
+            final int propertyId = decodeVariableByteInteger(buffer);
+            switch (MqttPropertyType.valueOf(propertyId)) {
+                case PAYLOAD_FORMAT_INDICATOR:
+                case REQUEST_PROBLEM_INFORMATION:
+                case REQUEST_RESPONSE_INFORMATION:
+                case MAXIMUM_QOS:
+                case RETAIN_AVAILABLE:
+                case WILDCARD_SUBSCRIPTION_AVAILABLE:
+                case SUBSCRIPTION_IDENTIFIER_AVAILABLE:
+                case SHARED_SUBSCRIPTION_AVAILABLE:
+                    properties.add(new IntegerProperty(propertyId, (int) buffer.readUnsignedByte()));
+                    break;
+                case SERVER_KEEP_ALIVE:
+                case RECEIVE_MAXIMUM:
+                case TOPIC_ALIAS_MAXIMUM:
+                case TOPIC_ALIAS:
+                    properties.add(new IntegerProperty(propertyId, decodeMsbLsb(buffer)));
+                    break;
+                case MESSAGE_EXPIRY_INTERVAL:
+                case SESSION_EXPIRY_INTERVAL:
+                case WILL_DELAY_INTERVAL:
+                case MAXIMUM_PACKET_SIZE:
+                    properties.add(new IntegerProperty(propertyId, buffer.readInt()));
+                    break;
+                case SUBSCRIPTION_IDENTIFIER:
+                    properties.add(new IntegerProperty(propertyId, decodeVariableByteInteger(buffer)));
+                    break;
+                case CONTENT_TYPE:
+                case RESPONSE_TOPIC:
+                case ASSIGNED_CLIENT_IDENTIFIER:
+                case AUTHENTICATION_METHOD:
+                case RESPONSE_INFORMATION:
+                case SERVER_REFERENCE:
+                case REASON_STRING:
+                    properties.add(new StringProperty(propertyId, decodeString(buffer)));
+                    break;
+                case USER_PROPERTY:
+                    final String key = decodeString(buffer);
+                    final String value = decodeString(buffer);
+                    properties.add(new UserProperty(key, value));
+                    break;
+                case CORRELATION_DATA:
+                case AUTHENTICATION_DATA:
+                    properties.add(new BinaryProperty(propertyId, decodeByteArray(buffer)));
+                    break;
+                default:
+                    // Shouldn't reach here.
+                    throw new DecoderException("unknown property type: " + propertyId);
+            }
+        }
+        if (buffer.readerIndex() != endIndex) {
+            throw new DecoderException("properties exceed their length: " + totalLength + " bytes");
+        }
+        return properties;
     }
 
-    private static Result<ByteBuf> decodePublishPayload(ByteBuf buffer, int bytesRemainingInVariablePart) {
-        ByteBuf b = buffer.readRetainedSlice(bytesRemainingInVariablePart);
-        return new Result<ByteBuf>(b, bytesRemainingInVariablePart);
+    private static int decodeVariableByteInteger(ByteBuf buffer) {
+        int result = 0;
+        int multiplier = 1;
+        short digit;
+        int loops = 0;
+        do {
+            digit = buffer.readUnsignedByte();
+            result += (digit & 127) * multiplier;
+            multiplier *= 128;
+            loops++;
+        } while ((digit & 128) != 0 && loops < 4);
+
+        if (loops == 4 && (digit & 128) != 0) {
+            throw new DecoderException("variable byte integer exceeds 4 digits");
+        }
+        return result;
     }
 
-    private static Result<String> decodeString(ByteBuf buffer) {
+    private static String decodeString(ByteBuf buffer) {
         return decodeString(buffer, 0, Integer.MAX_VALUE);
     }
 
-    private static Result<String> decodeString(ByteBuf buffer, int minBytes, int maxBytes) {
-        final Result<Integer> decodedSize = decodeMsbLsb(buffer);
-        int size = decodedSize.value;
-        int numberOfBytesConsumed = decodedSize.numberOfBytesConsumed;
+    private static String decodeString(ByteBuf buffer, int minBytes, int maxBytes) {
+        int size = decodeMsbLsb(buffer);
         if (size < minBytes || size > maxBytes) {
             buffer.skipBytes(size);
-            numberOfBytesConsumed += size;
-            return new Result<String>(null, numberOfBytesConsumed);
+            return null;
         }
         String s = buffer.toString(buffer.readerIndex(), size, CharsetUtil.UTF_8);
         buffer.skipBytes(size);
-        numberOfBytesConsumed += size;
-        return new Result<String>(s, numberOfBytesConsumed);
+        return s;
     }
 
-    private static Result<byte[]> decodeByteArray(ByteBuf buffer) {
-        final Result<Integer> decodedSize = decodeMsbLsb(buffer);
-        int size = decodedSize.value;
+    private static byte[] decodeByteArray(ByteBuf buffer) {
+        int size = decodeMsbLsb(buffer);
         byte[] bytes = new byte[size];
         buffer.readBytes(bytes);
-        return new Result<byte[]>(bytes, decodedSize.numberOfBytesConsumed + size);
+        return bytes;
     }
 
-    private static Result<Integer> decodeMsbLsb(ByteBuf buffer) {
-        return decodeMsbLsb(buffer, 0, 65535);
-    }
-
-    private static Result<Integer> decodeMsbLsb(ByteBuf buffer, int min, int max) {
-        short msbSize = buffer.readUnsignedByte();
-        short lsbSize = buffer.readUnsignedByte();
-        final int numberOfBytesConsumed = 2;
-        int result = msbSize << 8 | lsbSize;
-        if (result < min || result > max) {
-            result = -1;
-        }
-        return new Result<Integer>(result, numberOfBytesConsumed);
-    }
-
-    private static final class Result<T> {
-
-        private final T value;
-        private final int numberOfBytesConsumed;
-
-        Result(T value, int numberOfBytesConsumed) {
-            this.value = value;
-            this.numberOfBytesConsumed = numberOfBytesConsumed;
-        }
+    private static int decodeMsbLsb(ByteBuf buffer) {
+        return buffer.readUnsignedShort();
     }
 }
@@ -13,16 +13,19 @@
  * License for the specific language governing permissions and limitations
  * under the License.
  */
-
 package io.netty.handler.codec.mqtt;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToMessageEncoder;
-import io.netty.util.CharsetUtil;
+import io.netty.handler.codec.mqtt.MqttProperties.MqttProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.MqttPropertyType;
+import io.netty.handler.codec.mqtt.MqttProperties.StringPair;
 import io.netty.util.internal.EmptyArrays;
 
 import java.util.List;
@@ -31,7 +34,8 @@ import static io.netty.handler.codec.mqtt.MqttCodecUtil.*;
 
 /**
  * Encodes Mqtt messages into bytes following the protocol specification v3.1
- * as described here <a href="http://public.dhe.ibm.com/software/dw/webservices/ws-mqtt/mqtt-v3r1.html">MQTTV3.1</a>
+ * as described here <a href="http://public.dhe.ibm.com/software/dw/webservices/ws-mqtt/mqtt-v3r1.html">MQTTV3.1</a>,
+ * v3.1.1 or v5.0, depending on the {@link MqttVersion} of the CONNECT message of the channel.
  */
 @ChannelHandler.Sharable
 public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
@@ -42,7 +46,15 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
     @Override
     protected void encode(ChannelHandlerContext ctx, MqttMessage msg, List<Object> out) throws Exception {
-        out.add(doEncode(ctx.alloc(), msg));
+        final MqttVersion mqttVersion;
+        if (msg.fixedHeader().messageType() == MqttMessageType.CONNECT) {
+            MqttConnectVariableHeader variableHeader = (MqttConnectVariableHeader) msg.variableHeader();
+            mqttVersion = MqttVersion.fromProtocolNameAndLevel(variableHeader.name(), (byte) variableHeader.version());
+            setMqttVersion(ctx, mqttVersion);
+        } else {
+            mqttVersion = getMqttVersion(ctx);
+        }
+        out.add(doEncode(ctx.alloc(), mqttVersion, msg));
     }
 
     /**
@@ -54,36 +66,49 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
      * @return ByteBuf with encoded bytes
      */
     static ByteBuf doEncode(ByteBufAllocator byteBufAllocator, MqttMessage message) {
+        return doEncode(byteBufAllocator, MqttVersion.MQTT_3_1_1, message);
+    }
+
+    /**
+     * Encodes the given message for the given {@link MqttVersion}. A CONNECT message is always encoded with its
+     * own version.
+     */
+    static ByteBuf doEncode(ByteBufAllocator byteBufAllocator, MqttVersion mqttVersion, MqttMessage message) {
 
         switch (message.fixedHeader().messageType()) {
             case CONNECT:
                 return encodeConnectMessage(byteBufAllocator, (MqttConnectMessage) message);
 
             case CONNACK:
-                return encodeConnAckMessage(byteBufAllocator, (MqttConnAckMessage) message);
+                return encodeConnAckMessage(byteBufAllocator, mqttVersion, (MqttConnAckMessage) message);
 
             case PUBLISH:
-                return encodePublishMessage(byteBufAllocator, (MqttPublishMessage) message);
+                return encodePublishMessage(byteBufAllocator, mqttVersion, (MqttPublishMessage) message);
 
             case SUBSCRIBE:
-                return encodeSubscribeMessage(byteBufAllocator, (MqttSubscribeMessage) message);
+                return encodeSubscribeMessage(byteBufAllocator, mqttVersion, (MqttSubscribeMessage) message);
 
             case UNSUBSCRIBE:
-                return encodeUnsubscribeMessage(byteBufAllocator, (MqttUnsubscribeMessage) message);
+                return encodeUnsubscribeMessage(byteBufAllocator, mqttVersion, (MqttUnsubscribeMessage) message);
 
             case SUBACK:
-                return encodeSubAckMessage(byteBufAllocator, (MqttSubAckMessage) message);
+                return encodeSubAckMessage(byteBufAllocator, mqttVersion, (MqttSubAckMessage) message);
 
             case UNSUBACK:
+                return encodeUnsubAckMessage(byteBufAllocator, mqttVersion, message);
+
             case PUBACK:
             case PUBREC:
             case PUBREL:
             case PUBCOMP:
-                return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(byteBufAllocator, message);
+                return encodePubReplyMessage(byteBufAllocator, mqttVersion, message);
+
+            case DISCONNECT:
+            case AUTH:
+                return encodeReasonCodePlusPropertiesMessage(byteBufAllocator, mqttVersion, message);
 
             case PINGREQ:
             case PINGRESP:
-            case DISCONNECT:
                 return encodeMessageWithOnlySingleByteFixedHeader(byteBufAllocator, message);
 
             default:
@@ -104,7 +129,7 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
                 (byte) variableHeader.version());
 
         // as MQTT 3.1 & 3.1.1 spec, If the User Name Flag is set to 0, the Password Flag MUST be set to 0
-        if (!variableHeader.hasUserName() && variableHeader.hasPassword()) {
+        if (mqttVersion != MqttVersion.MQTT_5 && !variableHeader.hasUserName() && variableHeader.hasPassword()) {
             throw new DecoderException("Without a username, the password MUST be not set");
         }
 
@@ -113,23 +138,26 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         if (!isValidClientId(mqttVersion, clientIdentifier)) {
             throw new MqttIdentifierRejectedException("invalid clientIdentifier: " + clientIdentifier);
         }
-        byte[] clientIdentifierBytes = encodeStringUtf8(clientIdentifier);
-        payloadBufferSize += 2 + clientIdentifierBytes.length;
+        int clientIdentifierLength = ByteBufUtil.utf8Bytes(clientIdentifier);
+        payloadBufferSize += 2 + clientIdentifierLength;
 
-        // Will topic and message
+        // Will properties, topic and message
+        MqttProperties willProperties = payload.willProperties();
+        int willPropertiesLength = propertiesLength(mqttVersion, willProperties);
         String willTopic = payload.willTopic();
-        byte[] willTopicBytes = willTopic != null ? encodeStringUtf8(willTopic) : EmptyArrays.EMPTY_BYTES;
+        int willTopicLength = willTopic != null ? ByteBufUtil.utf8Bytes(willTopic) : 0;
         byte[] willMessage = payload.willMessageInBytes();
         byte[] willMessageBytes = willMessage != null ? willMessage : EmptyArrays.EMPTY_BYTES;
         if (variableHeader.isWillFlag()) {
-            payloadBufferSize += 2 + willTopicBytes.length;
+            payloadBufferSize += propertiesSize(mqttVersion, willPropertiesLength);
+            payloadBufferSize += 2 + willTopicLength;
             payloadBufferSize += 2 + willMessageBytes.length;
         }
 
         String userName = payload.userName();
-        byte[] userNameBytes = userName != null ? encodeStringUtf8(userName) : EmptyArrays.EMPTY_BYTES;
+        int userNameLength = userName != null ? ByteBufUtil.utf8Bytes(userName) : 0;
         if (variableHeader.hasUserName()) {
-            payloadBufferSize += 2 + userNameBytes.length;
+            payloadBufferSize += 2 + userNameLength;
         }
 
         byte[] password = payload.passwordInBytes();
@@ -140,7 +168,9 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
         // Fixed header
         byte[] protocolNameBytes = mqttVersion.protocolNameBytes();
-        int variableHeaderBufferSize = 2 + protocolNameBytes.length + 4;
+        int propertiesLength = propertiesLength(mqttVersion, variableHeader.properties());
+        int variableHeaderBufferSize = 2 + protocolNameBytes.length + 4 +
+                propertiesSize(mqttVersion, propertiesLength);
         int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
         int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
         ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variablePartSize);
@@ -153,19 +183,26 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         buf.writeByte(variableHeader.version());
         buf.writeByte(getConnVariableHeaderFlag(variableHeader));
         buf.writeShort(variableHeader.keepAliveTimeSeconds());
+        writeProperties(buf, mqttVersion, variableHeader.properties(), propertiesLength);
 
         // Payload
-        buf.writeShort(clientIdentifierBytes.length);
-        buf.writeBytes(clientIdentifierBytes, 0, clientIdentifierBytes.length);
+        writeString(buf, clientIdentifier, clientIdentifierLength);
         if (variableHeader.isWillFlag()) {
-            buf.writeShort(willTopicBytes.length);
-            buf.writeBytes(willTopicBytes, 0, willTopicBytes.length);
+            writeProperties(buf, mqttVersion, willProperties, willPropertiesLength);
+            if (willTopic != null) {
+                writeString(buf, willTopic, willTopicLength);
+            } else {
+                buf.writeShort(0);
+            }
             buf.writeShort(willMessageBytes.length);
             buf.writeBytes(willMessageBytes, 0, willMessageBytes.length);
         }
         if (variableHeader.hasUserName()) {
-            buf.writeShort(userNameBytes.length);
-            buf.writeBytes(userNameBytes, 0, userNameBytes.length);
+            if (userName != null) {
+                writeString(buf, userName, userNameLength);
+            } else {
+                buf.writeShort(0);
+            }
         }
         if (variableHeader.hasPassword()) {
             buf.writeShort(passwordBytes.length);
@@ -197,30 +234,36 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
     private static ByteBuf encodeConnAckMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttConnAckMessage message) {
-        ByteBuf buf = byteBufAllocator.buffer(4);
+        MqttProperties properties = message.variableHeader().properties();
+        int propertiesLength = propertiesLength(mqttVersion, properties);
+        int variablePartSize = 2 + propertiesSize(mqttVersion, propertiesLength);
+        ByteBuf buf = byteBufAllocator.buffer(1 + getVariableLengthInt(variablePartSize) + variablePartSize);
         buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
-        buf.writeByte(2);
+        writeVariableLengthInt(buf, variablePartSize);
         buf.writeByte(message.variableHeader().isSessionPresent() ? 0x01 : 0x00);
         buf.writeByte(message.variableHeader().connectReturnCode().byteValue());
+        writeProperties(buf, mqttVersion, properties, propertiesLength);
 
         return buf;
     }
 
     private static ByteBuf encodeSubscribeMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttSubscribeMessage message) {
-        int variableHeaderBufferSize = 2;
-        int payloadBufferSize = 0;
-
         MqttFixedHeader mqttFixedHeader = message.fixedHeader();
         MqttMessageIdVariableHeader variableHeader = message.variableHeader();
         MqttSubscribePayload payload = message.payload();
 
+        MqttProperties properties = propertiesOf(variableHeader);
+        int propertiesLength = propertiesLength(mqttVersion, properties);
+        int variableHeaderBufferSize = 2 + propertiesSize(mqttVersion, propertiesLength);
+        int payloadBufferSize = 0;
+
         for (MqttTopicSubscription topic : payload.topicSubscriptions()) {
-            String topicName = topic.topicName();
-            byte[] topicNameBytes = encodeStringUtf8(topicName);
-            payloadBufferSize += 2 + topicNameBytes.length;
+            payloadBufferSize += 2 + ByteBufUtil.utf8Bytes(topic.topicName());
             payloadBufferSize += 1;
         }
 
@@ -234,14 +277,25 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         // Variable Header
         int messageId = variableHeader.messageId();
         buf.writeShort(messageId);
+        writeProperties(buf, mqttVersion, properties, propertiesLength);
 
         // Payload
         for (MqttTopicSubscription topic : payload.topicSubscriptions()) {
-            String topicName = topic.topicName();
-            byte[] topicNameBytes = encodeStringUtf8(topicName);
-            buf.writeShort(topicNameBytes.length);
-            buf.writeBytes(topicNameBytes, 0, topicNameBytes.length);
-            buf.writeByte(topic.qualityOfService().value());
+            writeString(buf, topic.topicName());
+            if (mqttVersion == MqttVersion.MQTT_5) {
+                MqttSubscriptionOption option = topic.option();
+                int optionByte = option.qos().value();
+                if (option.isNoLocal()) {
+                    optionByte |= 0x04;
+                }
+                if (option.isRetainAsPublished()) {
+                    optionByte |= 0x08;
+                }
+                optionByte |= option.retainHandling().value() << 4;
+                buf.writeByte(optionByte);
+            } else {
+                buf.writeByte(topic.qualityOfService().value());
+            }
         }
 
         return buf;
@@ -249,17 +303,19 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
     private static ByteBuf encodeUnsubscribeMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttUnsubscribeMessage message) {
-        int variableHeaderBufferSize = 2;
-        int payloadBufferSize = 0;
-
         MqttFixedHeader mqttFixedHeader = message.fixedHeader();
         MqttMessageIdVariableHeader variableHeader = message.variableHeader();
         MqttUnsubscribePayload payload = message.payload();
 
+        MqttProperties properties = propertiesOf(variableHeader);
+        int propertiesLength = propertiesLength(mqttVersion, properties);
+        int variableHeaderBufferSize = 2 + propertiesSize(mqttVersion, propertiesLength);
+        int payloadBufferSize = 0;
+
         for (String topicName : payload.topics()) {
-            byte[] topicNameBytes = encodeStringUtf8(topicName);
-            payloadBufferSize += 2 + topicNameBytes.length;
+            payloadBufferSize += 2 + ByteBufUtil.utf8Bytes(topicName);
         }
 
         int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
@@ -272,12 +328,11 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         // Variable Header
         int messageId = variableHeader.messageId();
         buf.writeShort(messageId);
+        writeProperties(buf, mqttVersion, properties, propertiesLength);
 
         // Payload
         for (String topicName : payload.topics()) {
-            byte[] topicNameBytes = encodeStringUtf8(topicName);
-            buf.writeShort(topicNameBytes.length);
-            buf.writeBytes(topicNameBytes, 0, topicNameBytes.length);
+            writeString(buf, topicName);
         }
 
         return buf;
@@ -285,8 +340,11 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
 
     private static ByteBuf encodeSubAckMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttSubAckMessage message) {
-        int variableHeaderBufferSize = 2;
+        MqttProperties properties = propertiesOf(message.variableHeader());
+        int propertiesLength = propertiesLength(mqttVersion, properties);
+        int variableHeaderBufferSize = 2 + propertiesSize(mqttVersion, propertiesLength);
         int payloadBufferSize = message.payload().grantedQoSLevels().size();
         int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
         int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
@@ -294,6 +352,7 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
         writeVariableLengthInt(buf, variablePartSize);
         buf.writeShort(message.variableHeader().messageId());
+        writeProperties(buf, mqttVersion, properties, propertiesLength);
         for (int qos : message.payload().grantedQoSLevels()) {
             buf.writeByte(qos);
         }
@@ -301,18 +360,48 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         return buf;
     }
 
+    private static ByteBuf encodeUnsubAckMessage(
+            ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
+            MqttMessage message) {
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(byteBufAllocator, message);
+        }
+        MqttMessageIdVariableHeader variableHeader = (MqttMessageIdVariableHeader) message.variableHeader();
+        MqttProperties properties = propertiesOf(variableHeader);
+        int propertiesLength = propertiesLength(mqttVersion, properties);
+        MqttUnsubAckPayload payload = message.payload() instanceof MqttUnsubAckPayload ?
+                (MqttUnsubAckPayload) message.payload() : null;
+        int payloadBufferSize = payload == null ? 0 : payload.unsubscribeReasonCodes().size();
+        int variablePartSize = 2 + propertiesSize(mqttVersion, propertiesLength) + payloadBufferSize;
+        ByteBuf buf = byteBufAllocator.buffer(1 + getVariableLengthInt(variablePartSize) + variablePartSize);
+        buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
+        writeVariableLengthInt(buf, variablePartSize);
+        buf.writeShort(variableHeader.messageId());
+        writeProperties(buf, mqttVersion, properties, propertiesLength);
+        if (payload != null) {
+            for (Short reasonCode : payload.unsubscribeReasonCodes()) {
+                buf.writeByte(reasonCode);
+            }
+        }
+
+        return buf;
+    }
+
     private static ByteBuf encodePublishMessage(
             ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
             MqttPublishMessage message) {
         MqttFixedHeader mqttFixedHeader = message.fixedHeader();
         MqttPublishVariableHeader variableHeader = message.variableHeader();
-        ByteBuf payload = message.payload().duplicate();
+        ByteBuf payload = message.payload();
 
         String topicName = variableHeader.topicName();
-        byte[] topicNameBytes = encodeStringUtf8(topicName);
+        int topicNameLength = ByteBufUtil.utf8Bytes(topicName);
+        int propertiesLength = propertiesLength(mqttVersion, variableHeader.properties());
 
-        int variableHeaderBufferSize = 2 + topicNameBytes.length +
-                (mqttFixedHeader.qosLevel().value() > 0 ? 2 : 0);
+        int variableHeaderBufferSize = 2 + topicNameLength +
+                (mqttFixedHeader.qosLevel().value() > 0 ? 2 : 0) + propertiesSize(mqttVersion, propertiesLength);
         int payloadBufferSize = payload.readableBytes();
         int variablePartSize = variableHeaderBufferSize + payloadBufferSize;
         int fixedHeaderBufferSize = 1 + getVariableLengthInt(variablePartSize);
@@ -320,12 +409,79 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         ByteBuf buf = byteBufAllocator.buffer(fixedHeaderBufferSize + variablePartSize);
         buf.writeByte(getFixedHeaderByte1(mqttFixedHeader));
         writeVariableLengthInt(buf, variablePartSize);
-        buf.writeShort(topicNameBytes.length);
-        buf.writeBytes(topicNameBytes);
+        writeString(buf, topicName, topicNameLength);
         if (mqttFixedHeader.qosLevel().value() > 0) {
-            buf.writeShort(variableHeader.messageId());
+            buf.writeShort(variableHeader.packetId());
+        }
+        writeProperties(buf, mqttVersion, variableHeader.properties(), propertiesLength);
+        buf.writeBytes(payload, payload.readerIndex(), payloadBufferSize);
+
+        return buf;
+    }
+
+    private static ByteBuf encodePubReplyMessage(
+            ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
+            MqttMessage message) {
+        if (mqttVersion != MqttVersion.MQTT_5 ||
+                !(message.variableHeader() instanceof MqttPubReplyMessageVariableHeader)) {
+            return encodeMessageWithOnlySingleByteFixedHeaderAndMessageId(byteBufAllocator, message);
+        }
+        MqttPubReplyMessageVariableHeader variableHeader =
+                (MqttPubReplyMessageVariableHeader) message.variableHeader();
+        MqttProperties properties = variableHeader.properties();
+        // The reason code and the properties may be omitted if they are the defaults.
+        int variablePartSize = 2;
+        int propertiesLength = 0;
+        if (!properties.isEmpty()) {
+            propertiesLength = propertiesLength(mqttVersion, properties);
+            variablePartSize += 1 + propertiesSize(mqttVersion, propertiesLength);
+        } else if (variableHeader.reasonCode() != MqttPubReplyMessageVariableHeader.REASON_CODE_OK) {
+            variablePartSize += 1;
+        }
+        ByteBuf buf = byteBufAllocator.buffer(1 + getVariableLengthInt(variablePartSize) + variablePartSize);
+        buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
+        writeVariableLengthInt(buf, variablePartSize);
+        buf.writeShort(variableHeader.messageId());
+        if (variablePartSize > 2) {
+            buf.writeByte(variableHeader.reasonCode());
+        }
+        if (!properties.isEmpty()) {
+            writeProperties(buf, mqttVersion, properties, propertiesLength);
+        }
+
+        return buf;
+    }
+
+    private static ByteBuf encodeReasonCodePlusPropertiesMessage(
+            ByteBufAllocator byteBufAllocator,
+            MqttVersion mqttVersion,
+            MqttMessage message) {
+        if (mqttVersion != MqttVersion.MQTT_5 ||
+                !(message.variableHeader() instanceof MqttReasonCodeAndPropertiesVariableHeader)) {
+            return encodeMessageWithOnlySingleByteFixedHeader(byteBufAllocator, message);
+        }
+        MqttReasonCodeAndPropertiesVariableHeader variableHeader =
+                (MqttReasonCodeAndPropertiesVariableHeader) message.variableHeader();
+        MqttProperties properties = variableHeader.properties();
+        // The reason code and the properties may be omitted if they are the defaults.
+        int variablePartSize = 0;
+        int propertiesLength = 0;
+        if (!properties.isEmpty()) {
+            propertiesLength = propertiesLength(mqttVersion, properties);
+            variablePartSize = 1 + propertiesSize(mqttVersion, propertiesLength);
+        } else if (variableHeader.reasonCode() != 0) {
+            variablePartSize = 1;
+        }
+        ByteBuf buf = byteBufAllocator.buffer(1 + getVariableLengthInt(variablePartSize) + variablePartSize);
+        buf.writeByte(getFixedHeaderByte1(message.fixedHeader()));
+        writeVariableLengthInt(buf, variablePartSize);
+        if (variablePartSize > 0) {
+            buf.writeByte(variableHeader.reasonCode());
+        }
+        if (!properties.isEmpty()) {
+            writeProperties(buf, mqttVersion, properties, propertiesLength);
         }
-        buf.writeBytes(payload);
 
         return buf;
     }
@@ -358,6 +514,147 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         return buf;
     }
 
+    private static MqttProperties propertiesOf(MqttMessageIdVariableHeader variableHeader) {
+        return variableHeader instanceof MqttMessageIdAndPropertiesVariableHeader ?
+                ((MqttMessageIdAndPropertiesVariableHeader) variableHeader).properties() :
+                MqttProperties.NO_PROPERTIES;
+    }
+
+    /**
+     * Returns the number of bytes of the given properties without their length prefix, which are only written for
+     * {@link MqttVersion#MQTT_5}.
+     */
+    private static int propertiesLength(MqttVersion mqttVersion, MqttProperties properties) {
+        if (mqttVersion != MqttVersion.MQTT_5 || properties.isEmpty()) {
+            return 0;
+        }
+        int length = 0;
+        for (MqttProperty<?> property : properties.listAll()) {
+            final int propertyId = property.propertyId();
+            length += getVariableLengthInt(propertyId);
+            switch (MqttPropertyType.valueOf(propertyId)) {
+                case PAYLOAD_FORMAT_INDICATOR:
+                case REQUEST_PROBLEM_INFORMATION:
+                case REQUEST_RESPONSE_INFORMATION:
+                case MAXIMUM_QOS:
+                case RETAIN_AVAILABLE:
+                case WILDCARD_SUBSCRIPTION_AVAILABLE:
+                case SUBSCRIPTION_IDENTIFIER_AVAILABLE:
+                case SHARED_SUBSCRIPTION_AVAILABLE:
+                    length += 1;
+                    break;
+                case SERVER_KEEP_ALIVE:
+                case RECEIVE_MAXIMUM:
+                case TOPIC_ALIAS_MAXIMUM:
+                case TOPIC_ALIAS:
+                    length += 2;
+                    break;
+                case MESSAGE_EXPIRY_INTERVAL:
+                case SESSION_EXPIRY_INTERVAL:
+                case WILL_DELAY_INTERVAL:
+                case MAXIMUM_PACKET_SIZE:
+                    length += 4;
+                    break;
+                case SUBSCRIPTION_IDENTIFIER:
+                    length += getVariableLengthInt((Integer) property.value());
+                    break;
+                case CONTENT_TYPE:
+                case RESPONSE_TOPIC:
+                case ASSIGNED_CLIENT_IDENTIFIER:
+                case AUTHENTICATION_METHOD:
+                case RESPONSE_INFORMATION:
+                case SERVER_REFERENCE:
+                case REASON_STRING:
+                    length += 2 + ByteBufUtil.utf8Bytes((String) property.value());
+                    break;
+                case USER_PROPERTY:
+                    StringPair pair = (StringPair) property.value();
+                    length += 4 + ByteBufUtil.utf8Bytes(pair.key) + ByteBufUtil.utf8Bytes(pair.value);
+                    break;
+                case CORRELATION_DATA:
+                case AUTHENTICATION_DATA:
+                    length += 2 + ((byte[]) property.value()).length;
+                    break;
+                default:
+                    // Shouldn't reach here.
+                    throw new EncoderException("unknown property type: " + propertyId);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes of properties with the given length, including their length prefix.
+     */
+    private static int propertiesSize(MqttVersion mqttVersion, int propertiesLength) {
+        return mqttVersion == MqttVersion.MQTT_5 ? getVariableLengthInt(propertiesLength) + propertiesLength : 0;
+    }
+
+    private static void writeProperties(ByteBuf buf, MqttVersion mqttVersion, MqttProperties properties,
+                                        int propertiesLength) {
+        if (mqttVersion != MqttVersion.MQTT_5) {
+            return;
+        }
+        writeVariableLengthInt(buf, propertiesLength);
+        if (propertiesLength == 0) {
+            return;
+        }
+        for (MqttProperty<?> property : properties.listAll()) {
+            final int propertyId = property.propertyId();
+            writeVariableLengthInt(buf, propertyId);
+            switch (MqttPropertyType.valueOf(propertyId)) {
+                case PAYLOAD_FORMAT_INDICATOR:
+                case REQUEST_PROBLEM_INFORMATION:
+                case REQUEST_RESPONSE_INFORMATION:
+                case MAXIMUM_QOS:
+                case RETAIN_AVAILABLE:
+                case WILDCARD_SUBSCRIPTION_AVAILABLE:
+                case SUBSCRIPTION_IDENTIFIER_AVAILABLE:
+                case SHARED_SUBSCRIPTION_AVAILABLE:
+                    buf.writeByte((Integer) property.value());
+                    break;
+                case SERVER_KEEP_ALIVE:
+                case RECEIVE_MAXIMUM:
+                case TOPIC_ALIAS_MAXIMUM:
+                case TOPIC_ALIAS:
+                    buf.writeShort((Integer) property.value());
+                    break;
+                case MESSAGE_EXPIRY_INTERVAL:
+                case SESSION_EXPIRY_INTERVAL:
+                case WILL_DELAY_INTERVAL:
+                case MAXIMUM_PACKET_SIZE:
+                    buf.writeInt((Integer) property.value());
+                    break;
+                case SUBSCRIPTION_IDENTIFIER:
+                    writeVariableLengthInt(buf, (Integer) property.value());
+                    break;
+                case CONTENT_TYPE:
+                case RESPONSE_TOPIC:
+                case ASSIGNED_CLIENT_IDENTIFIER:
+                case AUTHENTICATION_METHOD:
+                case RESPONSE_INFORMATION:
+                case SERVER_REFERENCE:
+                case REASON_STRING:
+                    writeString(buf, (String) property.value());
+                    break;
+                case USER_PROPERTY:
+                    StringPair pair = (StringPair) property.value();
+                    writeString(buf, pair.key);
+                    writeString(buf, pair.value);
+                    break;
+                case CORRELATION_DATA:
+                case AUTHENTICATION_DATA:
+                    byte[] bytes = (byte[]) property.value();
+                    buf.writeShort(bytes.length);
+                    buf.writeBytes(bytes);
+                    break;
+                default:
+                    // Shouldn't reach here.
+                    throw new EncoderException("unknown property type: " + propertyId);
+            }
+        }
+    }
+
     private static int getFixedHeaderByte1(MqttFixedHeader header) {
         int ret = 0;
         ret |= header.messageType().value() << 4;
@@ -391,7 +688,15 @@ public final class MqttEncoder extends MessageToMessageEncoder<MqttMessage> {
         return count;
     }
 
-    private static byte[] encodeStringUtf8(String s) {
-      return s.getBytes(CharsetUtil.UTF_8);
+    private static void writeString(ByteBuf buf, String s) {
+        writeString(buf, s, ByteBufUtil.utf8Bytes(s));
+    }
+
+    /**
+     * Writes the given string with its UTF-8 length prefix, without copying it into a {@code byte[]} first.
+     */
+    private static void writeString(ByteBuf buf, String s, int utf8Length) {
+        buf.writeShort(utf8Length);
+        ByteBufUtil.reserveAndWriteUtf8(buf, s, utf8Length);
     }
 }
@@ -33,7 +33,16 @@ public enum MqttMessageType {
     UNSUBACK(11),
     PINGREQ(12),
     PINGRESP(13),
-    DISCONNECT(14);
+    DISCONNECT(14),
+    AUTH(15);
+
+    private static final MqttMessageType[] VALUES = new MqttMessageType[16];
+
+    static {
+        for (MqttMessageType type : values()) {
+            VALUES[type.value] = type;
+        }
+    }
 
     private final int value;
 
@@ -46,12 +55,11 @@ public enum MqttMessageType {
     }
 
     public static MqttMessageType valueOf(int type) {
-        for (MqttMessageType t : values()) {
-            if (t.value == type) {
-                return t;
-            }
+        MqttMessageType t = type > 0 && type < VALUES.length ? VALUES[type] : null;
+        if (t == null) {
+            throw new IllegalArgumentException("unknown message type: " + type);
         }
-        throw new IllegalArgumentException("unknown message type: " + type);
+        return t;
     }
 }
 
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Properties of MQTT 5 variable headers and will messages, see
+ * <a href="https://docs.oasis-open.org/mqtt/mqtt/v5.0/os/mqtt-v5.0-os.html#_Toc3901027">MQTT 5 Properties</a>.
+ */
+public final class MqttProperties {
+
+    /**
+     * The identifiers of the MQTT 5 properties.
+     */
+    public enum MqttPropertyType {
+        PAYLOAD_FORMAT_INDICATOR(0x01),
+        MESSAGE_EXPIRY_INTERVAL(0x02),
+        CONTENT_TYPE(0x03),
+        RESPONSE_TOPIC(0x08),
+        CORRELATION_DATA(0x09),
+        SUBSCRIPTION_IDENTIFIER(0x0B),
+        SESSION_EXPIRY_INTERVAL(0x11),
+        ASSIGNED_CLIENT_IDENTIFIER(0x12),
+        SERVER_KEEP_ALIVE(0x13),
+        AUTHENTICATION_METHOD(0x15),
+        AUTHENTICATION_DATA(0x16),
+        REQUEST_PROBLEM_INFORMATION(0x17),
+        WILL_DELAY_INTERVAL(0x18),
+        REQUEST_RESPONSE_INFORMATION(0x19),
+        RESPONSE_INFORMATION(0x1A),
+        SERVER_REFERENCE(0x1C),
+        REASON_STRING(0x1F),
+        RECEIVE_MAXIMUM(0x21),
+        TOPIC_ALIAS_MAXIMUM(0x22),
+        TOPIC_ALIAS(0x23),
+        MAXIMUM_QOS(0x24),
+        RETAIN_AVAILABLE(0x25),
+        USER_PROPERTY(0x26),
+        MAXIMUM_PACKET_SIZE(0x27),
+        WILDCARD_SUBSCRIPTION_AVAILABLE(0x28),
+        SUBSCRIPTION_IDENTIFIER_AVAILABLE(0x29),
+        SHARED_SUBSCRIPTION_AVAILABLE(0x2A);
+
+        private static final MqttPropertyType[] VALUES = new MqttPropertyType[0x2B];
+
+        static {
+            for (MqttPropertyType type : values()) {
+                VALUES[type.value] = type;
+            }
+        }
+
+        private final int value;
+
+        MqttPropertyType(int value) {
+            this.value = value;
+        }
+
+        public int value() {
+            return value;
+        }
+
+        public static MqttPropertyType valueOf(int type) {
+            MqttPropertyType t = type >= 0 && type < VALUES.length ? VALUES[type] : null;
+            if (t == null) {
+                throw new IllegalArgumentException("unknown property type: " + type);
+            }
+            return t;
+        }
+    }
+
+    /**
+     * An empty instance which can not be modified.
+     */
+    public static final MqttProperties NO_PROPERTIES = new MqttProperties(false);
+
+    /**
+     * Returns the given properties, or {@link #NO_PROPERTIES} if they are {@code null}.
+     */
+    static MqttProperties withEmptyDefaults(MqttProperties properties) {
+        return properties == null ? NO_PROPERTIES : properties;
+    }
+
+    /**
+     * Base class of all properties.
+     *
+     * @param <T> the type of the value
+     */
+    public abstract static class MqttProperty<T> {
+        final T value;
+        final int propertyId;
+
+        MqttProperty(int propertyId, T value) {
+            this.propertyId = propertyId;
+            this.value = value;
+        }
+
+        public T value() {
+            return value;
+        }
+
+        public int propertyId() {
+            return propertyId;
+        }
+
+        @Override
+        public int hashCode() {
+            return propertyId + 31 * value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            MqttProperty<?> that = (MqttProperty<?>) obj;
+            return propertyId == that.propertyId && value.equals(that.value);
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(StringUtil.simpleClassName(this))
+                .append('[')
+                .append("id=").append(propertyId)
+                .append(", value=").append(value)
+                .append(']')
+                .toString();
+        }
+    }
+
+    /**
+     * A property whose value is a byte, a two or four byte integer or a variable byte integer.
+     */
+    public static final class IntegerProperty extends MqttProperty<Integer> {
+        public IntegerProperty(int propertyId, Integer value) {
+            super(propertyId, ObjectUtil.checkNotNull(value, "value"));
+        }
+    }
+
+    /**
+     * A property whose value is an UTF-8 encoded string.
+     */
+    public static final class StringProperty extends MqttProperty<String> {
+        public StringProperty(int propertyId, String value) {
+            super(propertyId, ObjectUtil.checkNotNull(value, "value"));
+        }
+    }
+
+    /**
+     * A property whose value is binary data.
+     */
+    public static final class BinaryProperty extends MqttProperty<byte[]> {
+        public BinaryProperty(int propertyId, byte[] value) {
+            super(propertyId, ObjectUtil.checkNotNull(value, "value"));
+        }
+
+        @Override
+        public int hashCode() {
+            return propertyId + 31 * Arrays.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BinaryProperty)) {
+                return false;
+            }
+            BinaryProperty that = (BinaryProperty) obj;
+            return propertyId == that.propertyId && Arrays.equals(value, that.value);
+        }
+
+        @Override
+        public String toString() {
+            return new StringBuilder(StringUtil.simpleClassName(this))
+                .append('[')
+                .append("id=").append(propertyId)
+                .append(", value=").append(value.length).append(" bytes")
+                .append(']')
+                .toString();
+        }
+    }
+
+    /**
+     * A key and a value of an {@link UserProperty}.
+     */
+    public static final class StringPair {
+        public final String key;
+        public final String value;
+
+        public StringPair(String key, String value) {
+            this.key = ObjectUtil.checkNotNull(key, "key");
+            this.value = ObjectUtil.checkNotNull(value, "value");
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() + 31 * value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof StringPair)) {
+                return false;
+            }
+            StringPair that = (StringPair) obj;
+            return key.equals(that.key) && value.equals(that.value);
+        }
+
+        @Override
+        public String toString() {
+            return key + '=' + value;
+        }
+    }
+
+    /**
+     * A {@link MqttPropertyType#USER_PROPERTY}, which may occur several times in the same properties.
+     */
+    public static final class UserProperty extends MqttProperty<StringPair> {
+        public UserProperty(String key, String value) {
+            super(MqttPropertyType.USER_PROPERTY.value, new StringPair(key, value));
+        }
+    }
+
+    private final boolean canModify;
+    private IntObjectHashMap<MqttProperty<?>> props;
+    // properties which may occur more than once.
+    private List<UserProperty> userProperties;
+    private List<IntegerProperty> subscriptionIds;
+
+    /**
+     * Creates an empty instance.
+     */
+    public MqttProperties() {
+        this(true);
+    }
+
+    private MqttProperties(boolean canModify) {
+        this.canModify = canModify;
+    }
+
+    /**
+     * Adds the given property. {@link MqttPropertyType#USER_PROPERTY} and
+     * {@link MqttPropertyType#SUBSCRIPTION_IDENTIFIER} are collected, other properties replace a previous
+     * property with the same identifier.
+     */
+    public void add(MqttProperty<?> property) {
+        if (!canModify) {
+            throw new UnsupportedOperationException("adding property to immutable properties");
+        }
+        if (property.propertyId == MqttPropertyType.USER_PROPERTY.value) {
+            if (userProperties == null) {
+                userProperties = new ArrayList<UserProperty>(2);
+            }
+            userProperties.add((UserProperty) property);
+        } else if (property.propertyId == MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value) {
+            if (subscriptionIds == null) {
+                subscriptionIds = new ArrayList<IntegerProperty>(1);
+            }
+            subscriptionIds.add((IntegerProperty) property);
+        } else {
+            if (props == null) {
+                props = new IntObjectHashMap<MqttProperty<?>>(4);
+            }
+            props.put(property.propertyId, property);
+        }
+    }
+
+    /**
+     * Returns the property with the given identifier, or the first of them if it may occur several times, or
+     * {@code null} if there is none.
+     */
+    public MqttProperty<?> getProperty(int propertyId) {
+        if (propertyId == MqttPropertyType.USER_PROPERTY.value) {
+            return userProperties == null ? null : userProperties.get(0);
+        }
+        if (propertyId == MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value) {
+            return subscriptionIds == null ? null : subscriptionIds.get(0);
+        }
+        return props == null ? null : props.get(propertyId);
+    }
+
+    /**
+     * Returns all properties with the given identifier.
+     */
+    public List<? extends MqttProperty<?>> getProperties(int propertyId) {
+        if (propertyId == MqttPropertyType.USER_PROPERTY.value) {
+            return userProperties == null ? Collections.<UserProperty>emptyList() : userProperties;
+        }
+        if (propertyId == MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value) {
+            return subscriptionIds == null ? Collections.<IntegerProperty>emptyList() : subscriptionIds;
+        }
+        MqttProperty<?> property = props == null ? null : props.get(propertyId);
+        return property == null ? Collections.<MqttProperty<?>>emptyList() : Collections.singletonList(property);
+    }
+
+    /**
+     * Returns all properties.
+     */
+    public Collection<? extends MqttProperty<?>> listAll() {
+        if (userProperties == null && subscriptionIds == null) {
+            return props == null ? Collections.<MqttProperty<?>>emptyList() : props.values();
+        }
+        List<MqttProperty<?>> all = new ArrayList<MqttProperty<?>>();
+        if (props != null) {
+            all.addAll(props.values());
+        }
+        if (subscriptionIds != null) {
+            all.addAll(subscriptionIds);
+        }
+        if (userProperties != null) {
+            all.addAll(userProperties);
+        }
+        return all;
+    }
+
+    public boolean isEmpty() {
+        return (props == null || props.isEmpty()) && userProperties == null && subscriptionIds == null;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(StringUtil.simpleClassName(this))
+            .append('[')
+            .append(listAll())
+            .append(']')
+            .toString();
+    }
+}
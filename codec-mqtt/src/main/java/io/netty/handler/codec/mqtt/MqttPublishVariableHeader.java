@@ -25,10 +25,16 @@ public final class MqttPublishVariableHeader {
 
     private final String topicName;
     private final int packetId;
+    private final MqttProperties properties;
 
     public MqttPublishVariableHeader(String topicName, int packetId) {
+        this(topicName, packetId, MqttProperties.NO_PROPERTIES);
+    }
+
+    public MqttPublishVariableHeader(String topicName, int packetId, MqttProperties properties) {
         this.topicName = topicName;
         this.packetId = packetId;
+        this.properties = MqttProperties.withEmptyDefaults(properties);
     }
 
     public String topicName() {
@@ -47,12 +53,17 @@ public final class MqttPublishVariableHeader {
         return packetId;
     }
 
+    public MqttProperties properties() {
+        return properties;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(StringUtil.simpleClassName(this))
             .append('[')
             .append("topicName=").append(topicName)
             .append(", packetId=").append(packetId)
+            .append(", properties=").append(properties)
             .append(']')
             .toString();
     }
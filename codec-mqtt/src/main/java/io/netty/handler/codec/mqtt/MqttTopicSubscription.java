@@ -25,11 +25,15 @@ import io.netty.util.internal.StringUtil;
 public final class MqttTopicSubscription {
 
     private final String topicFilter;
-    private final MqttQoS qualityOfService;
+    private final MqttSubscriptionOption option;
 
     public MqttTopicSubscription(String topicFilter, MqttQoS qualityOfService) {
+        this(topicFilter, MqttSubscriptionOption.onlyFromQos(qualityOfService));
+    }
+
+    public MqttTopicSubscription(String topicFilter, MqttSubscriptionOption option) {
         this.topicFilter = topicFilter;
-        this.qualityOfService = qualityOfService;
+        this.option = option;
     }
 
     public String topicName() {
@@ -37,7 +41,11 @@ public final class MqttTopicSubscription {
     }
 
     public MqttQoS qualityOfService() {
-        return qualityOfService;
+        return option.qos();
+    }
+
+    public MqttSubscriptionOption option() {
+        return option;
     }
 
     @Override
@@ -45,7 +53,7 @@ public final class MqttTopicSubscription {
         return new StringBuilder(StringUtil.simpleClassName(this))
             .append('[')
             .append("topicFilter=").append(topicFilter)
-            .append(", qualityOfService=").append(qualityOfService)
+            .append(", option=").append(option)
             .append(']')
             .toString();
     }
@@ -0,0 +1,438 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An index of MQTT topic filters which finds the subscribers of a topic name without visiting every
+ * subscription, following the matching rules of
+ * <a href="http://docs.oasis-open.org/mqtt/mqtt/v3.1.1/os/mqtt-v3.1.1-os.html#_Toc398718106">MQTT 3.1.1</a>:
+ * {@code +} matches exactly one topic level, {@code #} matches any number of trailing levels including the parent
+ * level, and topic names starting with {@code $} are not matched by filters starting with a wildcard.
+ * <p>
+ * Matching never blocks and does not allocate: it walks the nodes without locking and hands the subscriber set of
+ * each matching filter to a {@link SubscriptionVisitor}. {@link #subscribe(String, Object)} and
+ * {@link #unsubscribe(String, Object)} are serialized. They update the children of a level in place and only copy
+ * them when the table has to grow or shrink, so adding a child costs amortized constant time however wide its level
+ * is. Every change copies the subscriber set of its filter, which makes it linear in the number of subscribers of
+ * that filter.
+ *
+ * @param <T> the type of the subscribers, which must implement {@link Object#equals(Object)} and
+ *            {@link Object#hashCode()}
+ */
+public final class MqttTopicTrie<T> {
+
+    /**
+     * Receives the subscribers of the topic filters which match a topic name.
+     *
+     * @param <T> the type of the subscribers
+     */
+    public interface SubscriptionVisitor<T> {
+        /**
+         * Called once for every matching topic filter.
+         *
+         * @param subscribers the non-empty and unmodifiable subscribers of the filter
+         */
+        void visit(Set<T> subscribers);
+    }
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private final Node<T> root = new Node<T>();
+    private int size;
+
+    /**
+     * Adds the given subscriber to the given topic filter.
+     *
+     * @return {@code true} if the subscriber was not subscribed to the filter before
+     * @throws IllegalArgumentException if the filter is not a valid MQTT topic filter
+     */
+    public boolean subscribe(String topicFilter, T subscriber) {
+        validateTopicFilter(topicFilter);
+        ObjectUtil.checkNotNull(subscriber, "subscriber");
+        synchronized (root) {
+            Node<T> node = root;
+            int start = 0;
+            for (;;) {
+                int end = levelEnd(topicFilter, start);
+                node = node.getOrAddChild(topicFilter.substring(start, end));
+                if (end == topicFilter.length()) {
+                    break;
+                }
+                start = end + 1;
+            }
+            Set<T> subscribers = node.subscribers;
+            if (subscribers.contains(subscriber)) {
+                return false;
+            }
+            Set<T> copy = new LinkedHashSet<T>(subscribers);
+            copy.add(subscriber);
+            node.subscribers = Collections.unmodifiableSet(copy);
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * Removes the given subscriber from the given topic filter.
+     *
+     * @return {@code true} if the subscriber was subscribed to the filter
+     * @throws IllegalArgumentException if the filter is not a valid MQTT topic filter
+     */
+    public boolean unsubscribe(String topicFilter, T subscriber) {
+        validateTopicFilter(topicFilter);
+        ObjectUtil.checkNotNull(subscriber, "subscriber");
+        synchronized (root) {
+            return unsubscribe(root, topicFilter, 0, subscriber);
+        }
+    }
+
+    private boolean unsubscribe(Node<T> node, String topicFilter, int start, T subscriber) {
+        int end = levelEnd(topicFilter, start);
+        String level = topicFilter.substring(start, end);
+        Node<T> child = node.getChild(level);
+        if (child == null) {
+            return false;
+        }
+        if (end == topicFilter.length()) {
+            Set<T> subscribers = child.subscribers;
+            if (!subscribers.contains(subscriber)) {
+                return false;
+            }
+            if (subscribers.size() == 1) {
+                child.subscribers = Collections.emptySet();
+            } else {
+                Set<T> copy = new LinkedHashSet<T>(subscribers);
+                copy.remove(subscriber);
+                child.subscribers = Collections.unmodifiableSet(copy);
+            }
+            size--;
+        } else if (!unsubscribe(child, topicFilter, end + 1, subscriber)) {
+            return false;
+        }
+        if (child.isEmpty()) {
+            node.removeChild(level);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of subscriptions, counting a subscriber once for every filter it is subscribed to.
+     */
+    public int size() {
+        synchronized (root) {
+            return size;
+        }
+    }
+
+    /**
+     * Calls the given visitor with the subscribers of every topic filter which matches the given topic name.
+     * A subscriber which is subscribed to several matching filters is part of several visited sets.
+     *
+     * @param topicName a topic name as found in a PUBLISH message, which does not contain wildcards
+     * @return the number of matching topic filters
+     */
+    public int forEachMatch(String topicName, SubscriptionVisitor<T> visitor) {
+        ObjectUtil.checkNotNull(visitor, "visitor");
+        // Filters which start with a wildcard do not match topics which start with '$', like '$SYS/'.
+        boolean system = !topicName.isEmpty() && topicName.charAt(0) == '$';
+        return match(root, topicName, 0, !system, visitor);
+    }
+
+    /**
+     * Returns all subscribers of the topic filters which match the given topic name. Unlike
+     * {@link #forEachMatch(String, SubscriptionVisitor)} this allocates a new set.
+     */
+    public Set<T> match(String topicName) {
+        final Set<T> matches = new HashSet<T>();
+        forEachMatch(topicName, new SubscriptionVisitor<T>() {
+            @Override
+            public void visit(Set<T> subscribers) {
+                matches.addAll(subscribers);
+            }
+        });
+        return matches;
+    }
+
+    private static <T> int match(Node<T> node, String topicName, int start, boolean wildcards,
+                                 SubscriptionVisitor<T> visitor) {
+        int matches = 0;
+        if (wildcards) {
+            // '#' also matches the parent level, so it matches whether levels are left or not.
+            Node<T> multiLevel = node.multiLevel;
+            if (multiLevel != null && visitSubscribers(multiLevel, visitor)) {
+                matches++;
+            }
+        }
+        int length = topicName.length();
+        if (start > length) {
+            if (visitSubscribers(node, visitor)) {
+                matches++;
+            }
+            return matches;
+        }
+        int end = levelEnd(topicName, start);
+        Node<T> child = node.children.get(topicName, start, end);
+        if (child != null) {
+            matches += match(child, topicName, end + 1, true, visitor);
+        }
+        if (wildcards) {
+            Node<T> singleLevel = node.singleLevel;
+            if (singleLevel != null) {
+                matches += match(singleLevel, topicName, end + 1, true, visitor);
+            }
+        }
+        return matches;
+    }
+
+    private static <T> boolean visitSubscribers(Node<T> node, SubscriptionVisitor<T> visitor) {
+        Set<T> subscribers = node.subscribers;
+        if (subscribers.isEmpty()) {
+            return false;
+        }
+        visitor.visit(subscribers);
+        return true;
+    }
+
+    private static int levelEnd(String topic, int start) {
+        int end = topic.indexOf('/', start);
+        return end < 0 ? topic.length() : end;
+    }
+
+    private static void validateTopicFilter(String topicFilter) {
+        ObjectUtil.checkNotNull(topicFilter, "topicFilter");
+        if (topicFilter.isEmpty()) {
+            throw new IllegalArgumentException("empty topic filter");
+        }
+        int length = topicFilter.length();
+        for (int i = 0; i < length; i++) {
+            char c = topicFilter.charAt(i);
+            if (c != '+' && c != '#') {
+                continue;
+            }
+            // A wildcard must occupy an entire level, and '#' must be the last level.
+            boolean startsLevel = i == 0 || topicFilter.charAt(i - 1) == '/';
+            boolean endsLevel = i == length - 1 || topicFilter.charAt(i + 1) == '/';
+            if (!startsLevel || !endsLevel || c == '#' && i != length - 1) {
+                throw new IllegalArgumentException("invalid topic filter: " + topicFilter);
+            }
+        }
+    }
+
+    /**
+     * A level of the trie. All fields are only written while holding the lock of the trie. Readers see immutable
+     * subscriber sets and children tables which are only changed by atomically replacing single slots.
+     */
+    private static final class Node<T> {
+        volatile ChildTable<T> children = ChildTable.empty();
+        volatile Node<T> singleLevel;
+        volatile Node<T> multiLevel;
+        volatile Set<T> subscribers = Collections.emptySet();
+
+        Node<T> getChild(String level) {
+            if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+                return singleLevel;
+            }
+            if (MULTI_LEVEL_WILDCARD.equals(level)) {
+                return multiLevel;
+            }
+            return children.get(level, 0, level.length());
+        }
+
+        Node<T> getOrAddChild(String level) {
+            Node<T> child = getChild(level);
+            if (child != null) {
+                return child;
+            }
+            child = new Node<T>();
+            if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+                singleLevel = child;
+            } else if (MULTI_LEVEL_WILDCARD.equals(level)) {
+                multiLevel = child;
+            } else {
+                children = children.with(level, child);
+            }
+            return child;
+        }
+
+        void removeChild(String level) {
+            if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+                singleLevel = null;
+            } else if (MULTI_LEVEL_WILDCARD.equals(level)) {
+                multiLevel = null;
+            } else {
+                children = children.without(level);
+            }
+        }
+
+        boolean isEmpty() {
+            return subscribers.isEmpty() && children.size == 0 && singleLevel == null && multiLevel == null;
+        }
+    }
+
+    /**
+     * An open addressing hash table of the children of a {@link Node}, which can be searched with a region of a topic
+     * name so matching does not need to create a {@link String} for every level.
+     * <p>
+     * Writers hold the lock of the trie and change the table in place by replacing single slots, so a concurrent
+     * reader sees every child which is neither added nor removed at the same time. Removed children leave a
+     * {@link #REMOVED} marker behind to keep probe sequences intact. {@link #with(String, Node)} and
+     * {@link #without(String)} return a new table once it has to grow or shrink, which drops the markers.
+     */
+    private static final class ChildTable<T> {
+        @SuppressWarnings("rawtypes")
+        private static final Child REMOVED = new Child<Object>(null, null);
+        @SuppressWarnings("rawtypes")
+        private static final ChildTable EMPTY = new ChildTable(1);
+        private static final int MIN_CAPACITY = 8;
+
+        final AtomicReferenceArray<Child<T>> slots;
+        // Only accessed while holding the lock of the trie.
+        int size;
+        // The number of slots which are not null, including the removed ones.
+        private int used;
+
+        @SuppressWarnings("unchecked")
+        static <T> ChildTable<T> empty() {
+            return EMPTY;
+        }
+
+        private ChildTable(int capacity) {
+            slots = new AtomicReferenceArray<Child<T>>(capacity);
+        }
+
+        Node<T> get(String topic, int start, int end) {
+            AtomicReferenceArray<Child<T>> slots = this.slots;
+            int mask = slots.length() - 1;
+            int length = end - start;
+            for (int i = hash(topic, start, end) & mask;; i = i + 1 & mask) {
+                Child<T> child = slots.get(i);
+                if (child == null) {
+                    return null;
+                }
+                String key = child.level;
+                if (key != null && key.length() == length && key.regionMatches(0, topic, start, length)) {
+                    return child.node;
+                }
+            }
+        }
+
+        /**
+         * Adds a child which is not part of this table yet, and returns this table or a larger copy.
+         */
+        ChildTable<T> with(String level, Node<T> node) {
+            // Keep the load factor, including removed slots, at or below 0.5 so probe sequences stay short.
+            if (used + 1 << 1 > slots.length()) {
+                ChildTable<T> table = new ChildTable<T>(capacity(size + 1));
+                copyTo(table);
+                table.put(level, node);
+                return table;
+            }
+            put(level, node);
+            return this;
+        }
+
+        /**
+         * Removes the given child, and returns this table or a smaller copy.
+         */
+        ChildTable<T> without(String level) {
+            if (size == 1) {
+                return empty();
+            }
+            int mask = slots.length() - 1;
+            for (int i = hash(level, 0, level.length()) & mask;; i = i + 1 & mask) {
+                Child<T> child = slots.get(i);
+                if (child == null) {
+                    return this;
+                }
+                if (level.equals(child.level)) {
+                    slots.set(i, ChildTable.<T>removed());
+                    size--;
+                    break;
+                }
+            }
+            if (slots.length() > MIN_CAPACITY && size << 3 < slots.length()) {
+                ChildTable<T> table = new ChildTable<T>(capacity(size));
+                copyTo(table);
+                return table;
+            }
+            return this;
+        }
+
+        private void copyTo(ChildTable<T> table) {
+            for (int i = 0; i < slots.length(); i++) {
+                Child<T> child = slots.get(i);
+                if (child != null && child.level != null) {
+                    table.put(child.level, child.node);
+                }
+            }
+        }
+
+        private void put(String level, Node<T> node) {
+            int mask = slots.length() - 1;
+            int i = hash(level, 0, level.length()) & mask;
+            Child<T> child;
+            while ((child = slots.get(i)) != null && child.level != null) {
+                i = i + 1 & mask;
+            }
+            if (child == null) {
+                used++;
+            }
+            slots.set(i, new Child<T>(level, node));
+            size++;
+        }
+
+        private static int capacity(int size) {
+            return Math.max(MIN_CAPACITY, Integer.highestOneBit(size) << 2);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Child<T> removed() {
+            return REMOVED;
+        }
+
+        private static int hash(String s, int start, int end) {
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + s.charAt(i);
+            }
+            // Spread the bits as the table only uses the low ones.
+            return h ^ h >>> 16;
+        }
+    }
+
+    /**
+     * An entry of a {@link ChildTable}. Its fields are final so a reader which sees the entry also sees the fully
+     * constructed node.
+     */
+    private static final class Child<T> {
+        final String level;
+        final Node<T> node;
+
+        Child(String level, Node<T> node) {
+            this.level = level;
+            this.node = node;
+        }
+    }
+}
@@ -18,17 +18,27 @@ package io.netty.handler.codec.mqtt;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.mqtt.MqttProperties.BinaryProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.IntegerProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.MqttPropertyType;
+import io.netty.handler.codec.mqtt.MqttProperties.StringProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.UserProperty;
+import io.netty.handler.codec.mqtt.MqttSubscriptionOption.RetainedHandlingPolicy;
 import io.netty.util.CharsetUtil;
+import io.netty.util.DefaultAttributeMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -67,6 +77,8 @@ public class MqttCodecTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         when(ctx.channel()).thenReturn(channel);
+        when(channel.attr(MqttCodecUtil.MQTT_VERSION_KEY)).thenReturn(
+                new DefaultAttributeMap().attr(MqttCodecUtil.MQTT_VERSION_KEY));
     }
 
     @Test
@@ -450,6 +462,229 @@ public class MqttCodecTest {
         }
     }
 
+    @Test
+    public void testFragmentedMessages() throws Exception {
+        final MqttPublishMessage publish = createPublishMessage();
+        ByteBuf bytes = ALLOCATOR.buffer();
+        bytes.writeBytes(MqttEncoder.doEncode(ALLOCATOR, createConnAckMessage()));
+        bytes.writeBytes(MqttEncoder.doEncode(ALLOCATOR, publish));
+        bytes.writeBytes(MqttEncoder.doEncode(ALLOCATOR, createMessageWithFixedHeader(MqttMessageType.PINGRESP)));
+
+        EmbeddedChannel ch = new EmbeddedChannel(new MqttDecoder());
+        while (bytes.isReadable()) {
+            ch.writeInbound(bytes.readRetainedSlice(1));
+        }
+        bytes.release();
+
+        MqttConnAckMessage connAck = ch.readInbound();
+        assertTrue(connAck.decoderResult().isSuccess());
+        assertTrue(connAck.variableHeader().isSessionPresent());
+
+        MqttPublishMessage decodedPublish = ch.readInbound();
+        try {
+            validatePublishVariableHeader(publish.variableHeader(), decodedPublish.variableHeader());
+            validatePublishPayload(publish.payload(), decodedPublish.payload());
+        } finally {
+            decodedPublish.release();
+            publish.release();
+        }
+
+        MqttMessage pingResp = ch.readInbound();
+        assertEquals(MqttMessageType.PINGRESP, pingResp.fixedHeader().messageType());
+        assertFalse(ch.finish());
+    }
+
+    @Test
+    public void testConnectMessageForMqtt5() throws Exception {
+        MqttProperties props = new MqttProperties();
+        props.add(new IntegerProperty(MqttPropertyType.SESSION_EXPIRY_INTERVAL.value(), 10));
+        props.add(new StringProperty(MqttPropertyType.AUTHENTICATION_METHOD.value(), "Plain"));
+        props.add(new UserProperty("tenant", "netty"));
+        props.add(new UserProperty("tenant", "mqtt"));
+        MqttProperties willProps = new MqttProperties();
+        willProps.add(new IntegerProperty(MqttPropertyType.WILL_DELAY_INTERVAL.value(), 100));
+        willProps.add(new BinaryProperty(MqttPropertyType.CORRELATION_DATA.value(), new byte[] { 1, 2, 3 }));
+
+        final MqttConnectMessage message = new MqttConnectMessage(
+                new MqttFixedHeader(MqttMessageType.CONNECT, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttConnectVariableHeader(MqttVersion.MQTT_5.protocolName(), MqttVersion.MQTT_5.protocolLevel(),
+                        true, true, false, 1, true, true, KEEP_ALIVE_SECONDS, props),
+                new MqttConnectPayload(CLIENT_ID, willProps, WILL_TOPIC, WILL_MESSAGE.getBytes(CharsetUtil.UTF_8),
+                        USER_NAME, PASSWORD.getBytes(CharsetUtil.UTF_8)));
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, message);
+
+        final List<Object> out = new LinkedList<Object>();
+        mqttDecoder.decode(ctx, byteBuf, out);
+
+        assertEquals("Expected one object but got " + out.size(), 1, out.size());
+
+        final MqttConnectMessage decodedMessage = (MqttConnectMessage) out.get(0);
+        assertTrue(decodedMessage.decoderResult().isSuccess());
+        validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+        validateConnectVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        validateConnectPayload(message.payload(), decodedMessage.payload());
+        validateProperties(props, decodedMessage.variableHeader().properties());
+        validateProperties(willProps, decodedMessage.payload().willProperties());
+        assertEquals(MqttVersion.MQTT_5, MqttCodecUtil.getMqttVersion(ctx));
+    }
+
+    @Test
+    public void testConnAckMessageForMqtt5() throws Exception {
+        MqttProperties props = new MqttProperties();
+        props.add(new StringProperty(MqttPropertyType.ASSIGNED_CLIENT_IDENTIFIER.value(), "client-1"));
+        props.add(new IntegerProperty(MqttPropertyType.TOPIC_ALIAS_MAXIMUM.value(), 8));
+        props.add(new IntegerProperty(MqttPropertyType.MAXIMUM_QOS.value(), 1));
+        final MqttConnAckMessage message = new MqttConnAckMessage(
+                new MqttFixedHeader(MqttMessageType.CONNACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttConnAckVariableHeader(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_BUSY, false, props));
+
+        final MqttConnAckMessage decodedMessage = (MqttConnAckMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateConnAckVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        validateProperties(props, decodedMessage.variableHeader().properties());
+    }
+
+    @Test
+    public void testPublishMessageForMqtt5() throws Exception {
+        MqttProperties props = new MqttProperties();
+        props.add(new IntegerProperty(MqttPropertyType.PAYLOAD_FORMAT_INDICATOR.value(), 1));
+        props.add(new IntegerProperty(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL.value(), 3600));
+        props.add(new IntegerProperty(MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value(), 300));
+        props.add(new IntegerProperty(MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value(), 1));
+        props.add(new StringProperty(MqttPropertyType.CONTENT_TYPE.value(), "text/plain"));
+        final MqttPublishMessage message = new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("/abc", 1234, props),
+                Unpooled.copiedBuffer("whatever", CharsetUtil.UTF_8));
+
+        final MqttPublishMessage decodedMessage = (MqttPublishMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        try {
+            validatePublishVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+            validatePublishPayload(message.payload(), decodedMessage.payload());
+            validateProperties(props, decodedMessage.variableHeader().properties());
+        } finally {
+            message.release();
+            decodedMessage.release();
+        }
+    }
+
+    @Test
+    public void testPubAckMessageForMqtt5() throws Exception {
+        MqttProperties props = new MqttProperties();
+        props.add(new StringProperty(MqttPropertyType.REASON_STRING.value(), "no subscribers"));
+        final MqttMessage message = new MqttPubAckMessage(
+                new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttPubReplyMessageVariableHeader(12345, (byte) 0x10, props));
+
+        MqttPubReplyMessageVariableHeader decodedHeader = (MqttPubReplyMessageVariableHeader)
+                encodeAndDecode(MqttVersion.MQTT_5, message).variableHeader();
+        assertEquals(12345, decodedHeader.messageId());
+        assertEquals(0x10, decodedHeader.reasonCode());
+        validateProperties(props, decodedHeader.properties());
+
+        // The reason code and the properties are omitted for a success without properties.
+        final MqttMessage successMessage = new MqttPubAckMessage(
+                new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttPubReplyMessageVariableHeader(
+                        1, MqttPubReplyMessageVariableHeader.REASON_CODE_OK, MqttProperties.NO_PROPERTIES));
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, MqttVersion.MQTT_5, successMessage);
+        try {
+            assertEquals(4, byteBuf.readableBytes());
+        } finally {
+            byteBuf.release();
+        }
+    }
+
+    @Test
+    public void testSubscribeAndSubAckMessagesForMqtt5() throws Exception {
+        MqttProperties props = new MqttProperties();
+        props.add(new IntegerProperty(MqttPropertyType.SUBSCRIPTION_IDENTIFIER.value(), 6));
+        List<MqttTopicSubscription> topicSubscriptions = new LinkedList<MqttTopicSubscription>();
+        topicSubscriptions.add(new MqttTopicSubscription("/abc", new MqttSubscriptionOption(
+                MqttQoS.AT_LEAST_ONCE, true, false, RetainedHandlingPolicy.DONT_SEND_AT_SUBSCRIBE)));
+        topicSubscriptions.add(new MqttTopicSubscription("/def", new MqttSubscriptionOption(
+                MqttQoS.EXACTLY_ONCE, false, true, RetainedHandlingPolicy.SEND_AT_SUBSCRIBE_IF_NOT_YET_EXISTS)));
+        final MqttSubscribeMessage message = new MqttSubscribeMessage(
+                new MqttFixedHeader(MqttMessageType.SUBSCRIBE, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttMessageIdAndPropertiesVariableHeader(12345, props),
+                new MqttSubscribePayload(topicSubscriptions));
+
+        final MqttSubscribeMessage decodedMessage = (MqttSubscribeMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateMessageIdVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        validateProperties(props,
+                ((MqttMessageIdAndPropertiesVariableHeader) decodedMessage.variableHeader()).properties());
+        validateSubscribePayload(message.payload(), decodedMessage.payload());
+        for (int i = 0; i < topicSubscriptions.size(); i++) {
+            assertEquals(topicSubscriptions.get(i).option(),
+                    decodedMessage.payload().topicSubscriptions().get(i).option());
+        }
+
+        // MQTT 5 reason codes are not masked like the granted QoS of older versions.
+        final MqttSubAckMessage subAck = new MqttSubAckMessage(
+                new MqttFixedHeader(MqttMessageType.SUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttMessageIdAndPropertiesVariableHeader(12345, MqttProperties.NO_PROPERTIES),
+                new MqttSubAckPayload(1, 0x87, 0x97));
+        final MqttSubAckMessage decodedSubAck = (MqttSubAckMessage) encodeAndDecode(MqttVersion.MQTT_5, subAck);
+        validateSubAckPayload(subAck.payload(), decodedSubAck.payload());
+    }
+
+    @Test
+    public void testUnsubAckMessageForMqtt5() throws Exception {
+        final MqttUnsubAckMessage message = new MqttUnsubAckMessage(
+                new MqttFixedHeader(MqttMessageType.UNSUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttMessageIdAndPropertiesVariableHeader(12345, MqttProperties.NO_PROPERTIES),
+                new MqttUnsubAckPayload((short) 0x00, (short) 0x11));
+
+        final MqttUnsubAckMessage decodedMessage = (MqttUnsubAckMessage) encodeAndDecode(MqttVersion.MQTT_5, message);
+        validateMessageIdVariableHeader(message.variableHeader(), decodedMessage.variableHeader());
+        assertEquals(message.payload().unsubscribeReasonCodes(), decodedMessage.payload().unsubscribeReasonCodes());
+    }
+
+    @Test
+    public void testDisconnectMessageForMqtt5() throws Exception {
+        MqttProperties props = new MqttProperties();
+        props.add(new StringProperty(MqttPropertyType.SERVER_REFERENCE.value(), "other.example.com"));
+        final MqttMessage message = new MqttMessage(
+                new MqttFixedHeader(MqttMessageType.DISCONNECT, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttReasonCodeAndPropertiesVariableHeader((byte) 0x9C, props));
+
+        MqttReasonCodeAndPropertiesVariableHeader decodedHeader = (MqttReasonCodeAndPropertiesVariableHeader)
+                encodeAndDecode(MqttVersion.MQTT_5, message).variableHeader();
+        assertEquals((byte) 0x9C, decodedHeader.reasonCode());
+        validateProperties(props, decodedHeader.properties());
+    }
+
+    @Test
+    public void testAuthMessageForMqtt5() throws Exception {
+        MqttProperties props = new MqttProperties();
+        props.add(new StringProperty(MqttPropertyType.AUTHENTICATION_METHOD.value(), "SCRAM-SHA-1"));
+        props.add(new BinaryProperty(MqttPropertyType.AUTHENTICATION_DATA.value(), new byte[] { 4, 5 }));
+        final MqttMessage message = new MqttMessage(
+                new MqttFixedHeader(MqttMessageType.AUTH, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                new MqttReasonCodeAndPropertiesVariableHeader((byte) 0x18, props));
+
+        MqttReasonCodeAndPropertiesVariableHeader decodedHeader = (MqttReasonCodeAndPropertiesVariableHeader)
+                encodeAndDecode(MqttVersion.MQTT_5, message).variableHeader();
+        assertEquals((byte) 0x18, decodedHeader.reasonCode());
+        validateProperties(props, decodedHeader.properties());
+    }
+
+    private MqttMessage encodeAndDecode(MqttVersion mqttVersion, MqttMessage message) throws Exception {
+        MqttCodecUtil.setMqttVersion(ctx, mqttVersion);
+        ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, mqttVersion, message);
+        try {
+            final List<Object> out = new LinkedList<Object>();
+            mqttDecoder.decode(ctx, byteBuf, out);
+
+            assertEquals("Expected one object but got " + out.size(), 1, out.size());
+            final MqttMessage decodedMessage = (MqttMessage) out.get(0);
+            assertTrue(decodedMessage.decoderResult().isSuccess());
+            validateFixedHeaders(message.fixedHeader(), decodedMessage.fixedHeader());
+            return decodedMessage;
+        } finally {
+            byteBuf.release();
+        }
+    }
+
     private void testMessageWithOnlyFixedHeader(MqttMessage message) throws Exception {
         ByteBuf byteBuf = MqttEncoder.doEncode(ALLOCATOR, message);
 
@@ -683,6 +918,15 @@ public class MqttCodecTest {
                 actual.topics().toArray());
     }
 
+    private static void validateProperties(MqttProperties expected, MqttProperties actual) {
+        assertEquals("MqttProperties mismatch ",
+                new HashSet<MqttProperties.MqttProperty<?>>(expected.listAll()),
+                new HashSet<MqttProperties.MqttProperty<?>>(actual.listAll()));
+        assertEquals("MqttProperties user properties mismatch ",
+                expected.getProperties(MqttPropertyType.USER_PROPERTY.value()),
+                actual.getProperties(MqttPropertyType.USER_PROPERTY.value()));
+    }
+
     private static void validateDecoderExceptionTooLargeMessage(MqttMessage message) {
         assertNull("MqttMessage payload expected null ", message.payload());
         assertTrue(message.decoderResult().isFailure());
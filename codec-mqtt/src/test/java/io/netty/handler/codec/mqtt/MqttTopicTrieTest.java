@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.mqtt;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class MqttTopicTrieTest {
+
+    @Test
+    public void testExactMatch() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<String>();
+        assertTrue(trie.subscribe("sport/tennis/player1", "a"));
+        assertFalse(trie.subscribe("sport/tennis/player1", "a"));
+        assertTrue(trie.subscribe("sport/tennis/player1", "b"));
+        assertTrue(trie.subscribe("sport/tennis", "c"));
+
+        assertEquals(set("a", "b"), trie.match("sport/tennis/player1"));
+        assertEquals(set("c"), trie.match("sport/tennis"));
+        assertEquals(set(), trie.match("sport/tennis/player2"));
+        assertEquals(set(), trie.match("sport"));
+        assertEquals(3, trie.size());
+    }
+
+    @Test
+    public void testSingleLevelWildcard() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<String>();
+        trie.subscribe("sport/tennis/+", "a");
+        trie.subscribe("sport/+", "b");
+        trie.subscribe("+/+", "c");
+        trie.subscribe("/+", "d");
+        trie.subscribe("+", "e");
+
+        assertEquals(set("a"), trie.match("sport/tennis/player1"));
+        assertEquals(set(), trie.match("sport/tennis/player1/ranking"));
+        assertEquals(set("b", "c"), trie.match("sport/"));
+        assertEquals(set("e"), trie.match("sport"));
+        assertEquals(set("c", "d"), trie.match("/finance"));
+    }
+
+    @Test
+    public void testMultiLevelWildcard() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<String>();
+        trie.subscribe("sport/tennis/player1/#", "a");
+        trie.subscribe("sport/#", "b");
+        trie.subscribe("#", "c");
+        trie.subscribe("sport/+/player1/#", "d");
+
+        assertEquals(set("a", "b", "c", "d"), trie.match("sport/tennis/player1"));
+        assertEquals(set("a", "b", "c", "d"), trie.match("sport/tennis/player1/score/wimbledon"));
+        assertEquals(set("b", "c"), trie.match("sport"));
+        assertEquals(set("c"), trie.match("finance"));
+    }
+
+    @Test
+    public void testSystemTopics() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<String>();
+        trie.subscribe("#", "a");
+        trie.subscribe("+/monitor/Clients", "b");
+        trie.subscribe("$SYS/#", "c");
+        trie.subscribe("$SYS/monitor/+", "d");
+
+        assertEquals(set("c", "d"), trie.match("$SYS/monitor/Clients"));
+        assertEquals(set("a", "b"), trie.match("SYS/monitor/Clients"));
+    }
+
+    @Test
+    public void testForEachMatchVisitsEveryFilter() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<String>();
+        trie.subscribe("a/b", "x");
+        trie.subscribe("a/+", "x");
+        trie.subscribe("a/#", "y");
+        final Set<Set<String>> visited = new HashSet<Set<String>>();
+        int matches = trie.forEachMatch("a/b", new MqttTopicTrie.SubscriptionVisitor<String>() {
+            @Override
+            public void visit(Set<String> subscribers) {
+                visited.add(subscribers);
+            }
+        });
+        assertEquals(3, matches);
+        assertEquals(new HashSet<Set<String>>(Arrays.asList(set("x"), set("y"))), visited);
+    }
+
+    @Test
+    public void testUnsubscribe() {
+        MqttTopicTrie<String> trie = new MqttTopicTrie<String>();
+        trie.subscribe("a/b/c", "x");
+        trie.subscribe("a/b/c", "y");
+        trie.subscribe("a/+", "z");
+
+        assertFalse(trie.unsubscribe("a/b", "x"));
+        assertFalse(trie.unsubscribe("a/b/c", "z"));
+        assertTrue(trie.unsubscribe("a/b/c", "x"));
+        assertEquals(set("y"), trie.match("a/b/c"));
+        assertTrue(trie.unsubscribe("a/b/c", "y"));
+        assertEquals(set(), trie.match("a/b/c"));
+        assertTrue(trie.unsubscribe("a/+", "z"));
+        assertEquals(0, trie.size());
+        assertEquals(set(), trie.match("a/b"));
+
+        // The trie can be used again after all nodes were removed.
+        assertTrue(trie.subscribe("a/b/c", "x"));
+        assertEquals(set("x"), trie.match("a/b/c"));
+    }
+
+    @Test
+    public void testManyLevels() {
+        MqttTopicTrie<Integer> trie = new MqttTopicTrie<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            trie.subscribe("devices/" + i + "/temperature", i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Collections.singleton(i), trie.match("devices/" + i + "/temperature"));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(trie.unsubscribe("devices/" + i + "/temperature", i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? Collections.<Integer>emptySet() : Collections.singleton(i),
+                    trie.match("devices/" + i + "/temperature"));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testWideLevel() {
+        // Adding a child must not copy all its siblings, or this takes quadratic time.
+        int devices = 200000;
+        MqttTopicTrie<Integer> trie = new MqttTopicTrie<Integer>();
+        for (int i = 0; i < devices; i++) {
+            assertTrue(trie.subscribe("devices/" + i + "/#", i));
+        }
+        assertEquals(devices, trie.size());
+        for (int i = 0; i < devices; i += 997) {
+            assertEquals(Collections.singleton(i), trie.match("devices/" + i + "/temperature"));
+        }
+        assertEquals(Collections.<Integer>emptySet(), trie.match("devices/" + devices + "/temperature"));
+
+        for (int i = 0; i < devices; i++) {
+            if (i % 1000 != 0) {
+                assertTrue(trie.unsubscribe("devices/" + i + "/#", i));
+            }
+        }
+        assertEquals(devices / 1000, trie.size());
+        for (int i = 0; i < devices; i += 250) {
+            assertEquals(i % 1000 == 0 ? Collections.singleton(i) : Collections.<Integer>emptySet(),
+                    trie.match("devices/" + i));
+        }
+
+        // Removed children can be added again.
+        assertTrue(trie.subscribe("devices/1/#", 1));
+        assertEquals(Collections.singleton(1), trie.match("devices/1/temperature"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMultiLevelWildcardNotLast() {
+        new MqttTopicTrie<String>().subscribe("sport/#/ranking", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWildcardNotWholeLevel() {
+        new MqttTopicTrie<String>().subscribe("sport+", "a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyFilter() {
+        new MqttTopicTrie<String>().subscribe("", "a");
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentMatchAndSubscribe() throws Throwable {
+        final MqttTopicTrie<Integer> trie = new MqttTopicTrie<Integer>();
+        trie.subscribe("fixed/#", -1);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (done.getCount() > 0) {
+                        if (!trie.match("fixed/a/b").contains(-1)) {
+                            throw new AssertionError("lost subscription");
+                        }
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 2000; i++) {
+            trie.subscribe("fixed/" + i, i);
+            trie.subscribe("fixed/" + i + "/+", i);
+        }
+        for (int i = 0; i < 2000; i++) {
+            trie.unsubscribe("fixed/" + i, i);
+        }
+        done.countDown();
+        reader.join();
+        if (error.get() != null) {
+            throw error.get();
+        }
+        assertEquals(2001, trie.size());
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+}
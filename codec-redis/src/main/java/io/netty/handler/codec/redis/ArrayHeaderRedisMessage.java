@@ -52,6 +52,13 @@ public class ArrayHeaderRedisMessage implements RedisMessage {
         return length == RedisConstants.NULL_VALUE;
     }
 
+    /**
+     * Returns the type of the aggregate this header starts.
+     */
+    RedisMessageType type() {
+        return RedisMessageType.ARRAY_HEADER;
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(StringUtil.simpleClassName(this))
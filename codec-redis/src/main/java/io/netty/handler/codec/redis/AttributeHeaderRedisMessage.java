@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.redis;
+
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Header of RESP3 attributes, which annotate the reply that follows them. The {@code length} is the number
+ * of key-value pairs, so the attributes consist of twice as many messages.
+ */
+@UnstableApi
+public final class AttributeHeaderRedisMessage extends ArrayHeaderRedisMessage {
+
+    /**
+     * Creates a {@link AttributeHeaderRedisMessage} for the given {@code length}.
+     */
+    public AttributeHeaderRedisMessage(long length) {
+        super(length);
+    }
+
+    @Override
+    RedisMessageType type() {
+        return RedisMessageType.ATTRIBUTE_HEADER;
+    }
+}
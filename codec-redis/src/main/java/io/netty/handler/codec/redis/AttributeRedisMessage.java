@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.redis;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.util.Map;
+
+/**
+ * Attributes of <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3</a>, which annotate the reply
+ * that follows them. {@link RedisArrayAggregator} passes them on as a separate message right before that reply,
+ * even if the reply is part of an aggregate.
+ */
+@UnstableApi
+public final class AttributeRedisMessage extends MapRedisMessage {
+
+    /**
+     * Creates a {@link AttributeRedisMessage} for the given {@code children}.
+     *
+     * @param children the children, in the order in which they should be encoded.
+     */
+    public AttributeRedisMessage(Map<RedisMessage, RedisMessage> children) {
+        super(children);
+    }
+}
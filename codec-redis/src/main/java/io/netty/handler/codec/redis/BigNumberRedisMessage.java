@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.redis;
+
+import io.netty.util.internal.UnstableApi;
+
+import java.math.BigInteger;
+
+/**
+ * Big numbers of <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3</a>. The number is kept in
+ * its decimal representation and only parsed by {@link #bigIntegerValue()}.
+ */
+@UnstableApi
+public final class BigNumberRedisMessage extends AbstractStringRedisMessage {
+
+    /**
+     * Creates a {@link BigNumberRedisMessage} from the decimal representation of a number.
+     *
+     * @param content the message content, must not be {@code null}.
+     */
+    public BigNumberRedisMessage(String content) {
+        super(content);
+    }
+
+    /**
+     * Creates a {@link BigNumberRedisMessage} for the given {@code value}.
+     */
+    public BigNumberRedisMessage(BigInteger value) {
+        super(value.toString());
+    }
+
+    /**
+     * Returns the value of this message as {@link BigInteger}.
+     */
+    public BigInteger bigIntegerValue() {
+        return new BigInteger(content());
+    }
+}
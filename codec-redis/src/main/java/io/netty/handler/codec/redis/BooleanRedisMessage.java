@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.redis;
+
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Booleans of <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3</a>.
+ */
+@UnstableApi
+public final class BooleanRedisMessage implements RedisMessage {
+
+    /**
+     * The {@link BooleanRedisMessage} for {@code true}.
+     */
+    public static final BooleanRedisMessage TRUE = new BooleanRedisMessage(true);
+
+    /**
+     * The {@link BooleanRedisMessage} for {@code false}.
+     */
+    public static final BooleanRedisMessage FALSE = new BooleanRedisMessage(false);
+
+    private final boolean value;
+
+    private BooleanRedisMessage(boolean value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the {@link BooleanRedisMessage} for the given {@code value}.
+     */
+    public static BooleanRedisMessage valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * Get boolean value of this {@link BooleanRedisMessage}.
+     *
+     * @return boolean value
+     */
+    public boolean value() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(StringUtil.simpleClassName(this))
+                .append('[')
+                .append("value=")
+                .append(value)
+                .append(']').toString();
+    }
+}
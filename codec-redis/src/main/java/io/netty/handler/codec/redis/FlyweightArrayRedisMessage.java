@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.redis;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+import java.nio.charset.Charset;
+
+/**
+ * An array, set, push or map whose elements are all non-aggregate types, decoded by {@link RedisDecoder} as a
+ * single view over the received bytes instead of one {@link RedisMessage} per element.
+ * <p>
+ * The {@link #content()} holds the encoded elements, without the header of the aggregate. Decoding allocates
+ * this message and one {@code int[]} of element offsets, instead of one {@link RedisMessage} per element. The
+ * accessors of this class parse the elements on demand. The elements
+ * of a map are its keys and values in turn, so key {@code n} is element {@code 2 * n} and its value is element
+ * {@code 2 * n + 1}.
+ */
+@UnstableApi
+public final class FlyweightArrayRedisMessage extends DefaultByteBufHolder implements RedisMessage {
+
+    private final RedisMessageType type;
+    // For each element: the offset of its type prefix and the offset of its payload, followed by the end offset.
+    private final int[] offsets;
+
+    FlyweightArrayRedisMessage(RedisMessageType type, ByteBuf content, int[] offsets) {
+        super(content);
+        this.type = ObjectUtil.checkNotNull(type, "type");
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the type of the aggregate, which is one of {@link RedisMessageType#ARRAY_HEADER},
+     * {@link RedisMessageType#SET_HEADER}, {@link RedisMessageType#PUSH_HEADER} or
+     * {@link RedisMessageType#MAP_HEADER}.
+     */
+    public RedisMessageType type() {
+        return type;
+    }
+
+    /**
+     * Returns the number of elements, which is twice the number of entries for maps.
+     */
+    public int size() {
+        return offsets.length >>> 1;
+    }
+
+    /**
+     * Returns the type of the element at {@code index}.
+     */
+    public RedisMessageType elementType(int index) {
+        // The elements were validated by the decoder already.
+        return RedisMessageType.valueOf(content().getByte(start(index)), true);
+    }
+
+    /**
+     * Returns {@code true} if the element at {@code index} is a null bulk string or a RESP3 null.
+     */
+    public boolean isNull(int index) {
+        ByteBuf content = content();
+        int start = start(index);
+        switch (content.getByte(start)) {
+        case '_':
+            return true;
+        case '$':
+            return content.getByte(start + 1) == '-';
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns the payload of the element at {@code index} without its type prefix, length and trailing
+     * {@code CRLF}, or {@code null} if the element is null. The returned buffer is a slice of {@link #content()}
+     * which is neither retained nor copied.
+     */
+    public ByteBuf element(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        int payload = offsets[(index << 1) + 1];
+        return content().slice(content().readerIndex() + payload, end(index) - payload);
+    }
+
+    /**
+     * Returns the value of the {@link RedisMessageType#INTEGER} element at {@code index}.
+     */
+    public long integerValue(int index) {
+        if (elementType(index) != RedisMessageType.INTEGER) {
+            throw new RedisCodecException("element " + index + " is not an integer: " + elementType(index));
+        }
+        ByteBuf content = content();
+        int i = content.readerIndex() + offsets[(index << 1) + 1];
+        int end = content.readerIndex() + end(index);
+        boolean negative = content.getByte(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            value = value * 10 + (content.getByte(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Decodes the payload of the element at {@code index} with the given {@link Charset}, or returns {@code null}
+     * if the element is null.
+     */
+    public String toString(int index, Charset charset) {
+        if (isNull(index)) {
+            return null;
+        }
+        int payload = offsets[(index << 1) + 1];
+        return content().toString(content().readerIndex() + payload, end(index) - payload, charset);
+    }
+
+    /**
+     * Decodes the payload of the element at {@code index} as UTF-8, or returns {@code null} if the element is null.
+     */
+    public String toString(int index) {
+        return toString(index, CharsetUtil.UTF_8);
+    }
+
+    private int start(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index + " (expected: 0-" + (size() - 1) + ')');
+        }
+        return content().readerIndex() + offsets[index << 1];
+    }
+
+    private int end(int index) {
+        // every element ends with CRLF
+        return offsets[(index + 1) << 1] - RedisConstants.EOL_LENGTH;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(StringUtil.simpleClassName(this))
+                .append('[')
+                .append("type=")
+                .append(type)
+                .append(", size=")
+                .append(size())
+                .append(']').toString();
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage copy() {
+        return (FlyweightArrayRedisMessage) super.copy();
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage duplicate() {
+        return (FlyweightArrayRedisMessage) super.duplicate();
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage retainedDuplicate() {
+        return (FlyweightArrayRedisMessage) super.retainedDuplicate();
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage replace(ByteBuf content) {
+        return new FlyweightArrayRedisMessage(type, content, offsets);
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public FlyweightArrayRedisMessage touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
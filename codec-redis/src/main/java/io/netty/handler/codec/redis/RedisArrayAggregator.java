@@ -24,11 +24,19 @@ import io.netty.util.internal.UnstableApi;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
- * Aggregates {@link RedisMessage} parts into {@link ArrayRedisMessage}. This decoder
+ * Aggregates {@link RedisMessage} parts into {@link ArrayRedisMessage}, {@link PushRedisMessage},
+ * {@link SetRedisMessage}, {@link MapRedisMessage} and {@link AttributeRedisMessage}. This decoder
  * should be used together with {@link RedisDecoder}.
+ * <p>
+ * An {@link AttributeRedisMessage} is not added to the aggregate it is part of, but passed on by itself before
+ * the message it annotates.
  */
 @UnstableApi
 public final class RedisArrayAggregator extends MessageToMessageDecoder<RedisMessage> {
@@ -46,13 +54,14 @@ public final class RedisArrayAggregator extends MessageToMessageDecoder<RedisMes
             ReferenceCountUtil.retain(msg);
         }
 
-        while (!depths.isEmpty()) {
+        // attributes are passed on as they are, so they do not count as children of the current aggregation.
+        while (!(msg instanceof AttributeRedisMessage) && !depths.isEmpty()) {
             AggregateState current = depths.peek();
             current.children.add(msg);
 
             // if current aggregation completed, go to parent aggregation.
             if (current.children.size() == current.length) {
-                msg = new ArrayRedisMessage(current.children);
+                msg = current.newMessage();
                 depths.pop();
             } else {
                 // not aggregated yet. try next time.
@@ -64,18 +73,25 @@ public final class RedisArrayAggregator extends MessageToMessageDecoder<RedisMes
     }
 
     private RedisMessage decodeRedisArrayHeader(ArrayHeaderRedisMessage header) {
+        final RedisMessageType type = header.type();
         if (header.isNull()) {
+            if (type != RedisMessageType.ARRAY_HEADER) {
+                throw new CodecException("bad length: " + header.length());
+            }
             return ArrayRedisMessage.NULL_INSTANCE;
         } else if (header.length() == 0L) {
-            return ArrayRedisMessage.EMPTY_INSTANCE;
+            return type == RedisMessageType.ARRAY_HEADER ? ArrayRedisMessage.EMPTY_INSTANCE
+                                                         : new AggregateState(type, 0).newMessage();
         } else if (header.length() > 0L) {
             // Currently, this codec doesn't support `long` length for arrays because Java's List.size() is int.
-            if (header.length() > Integer.MAX_VALUE) {
-                throw new CodecException("this codec doesn't support longer length than " + Integer.MAX_VALUE);
+            final boolean pairs = type == RedisMessageType.MAP_HEADER || type == RedisMessageType.ATTRIBUTE_HEADER;
+            if (header.length() > (pairs ? Integer.MAX_VALUE >>> 1 : Integer.MAX_VALUE)) {
+                throw new CodecException("this codec doesn't support longer length than " +
+                                         (pairs ? Integer.MAX_VALUE >>> 1 : Integer.MAX_VALUE));
             }
 
             // start aggregating array
-            depths.push(new AggregateState((int) header.length()));
+            depths.push(new AggregateState(type, (int) (pairs ? header.length() << 1 : header.length())));
             return null;
         } else {
             throw new CodecException("bad length: " + header.length());
@@ -83,11 +99,45 @@ public final class RedisArrayAggregator extends MessageToMessageDecoder<RedisMes
     }
 
     private static final class AggregateState {
+        private final RedisMessageType type;
         private final int length;
         private final List<RedisMessage> children;
-        AggregateState(int length) {
+        AggregateState(RedisMessageType type, int length) {
+            this.type = type;
             this.length = length;
             this.children = new ArrayList<RedisMessage>(length);
         }
+
+        RedisMessage newMessage() {
+            switch (type) {
+            case PUSH_HEADER:
+                return new PushRedisMessage(children);
+            case SET_HEADER: {
+                Set<RedisMessage> set = new LinkedHashSet<RedisMessage>(children.size());
+                for (RedisMessage child : children) {
+                    if (!set.add(child)) {
+                        ReferenceCountUtil.release(child);
+                    }
+                }
+                return new SetRedisMessage(set);
+            }
+            case MAP_HEADER:
+            case ATTRIBUTE_HEADER: {
+                Map<RedisMessage, RedisMessage> map = new LinkedHashMap<RedisMessage, RedisMessage>(children.size());
+                for (int i = 0; i < children.size(); i += 2) {
+                    RedisMessage key = children.get(i);
+                    RedisMessage value = children.get(i + 1);
+                    if (map.containsKey(key)) {
+                        // keep the first key and the last value, like a Map would do.
+                        ReferenceCountUtil.release(key);
+                    }
+                    ReferenceCountUtil.release(map.put(key, value));
+                }
+                return type == RedisMessageType.MAP_HEADER ? new MapRedisMessage(map) : new AttributeRedisMessage(map);
+            }
+            default:
+                return new ArrayRedisMessage(children);
+            }
+        }
     }
 }
@@ -20,37 +20,62 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.util.ByteProcessor;
 import io.netty.util.CharsetUtil;
+import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.UnstableApi;
 
 import java.util.List;
 
 /**
  * Decodes the Redis protocol into {@link RedisMessage} objects following
- * <a href="http://redis.io/topics/protocol">RESP (REdis Serialization Protocol)</a>.
+ * <a href="http://redis.io/topics/protocol">RESP (REdis Serialization Protocol)</a>, and optionally
+ * <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3</a>.
  *
  * {@link RedisMessage} parts can be aggregated to {@link RedisMessage} using
  * {@link RedisArrayAggregator} or processed directly.
+ * <p>
+ * The types added by RESP3 are only decoded if {@code decodeResp3} is {@code true}. Otherwise their prefixes are
+ * handled like any other unknown prefix, so they start an inline command if those are decoded.
+ * <p>
+ * If {@code maxFlyweightArrayLength} is positive, arrays, sets, pushes and maps which have at most that many elements
+ * and contain only non-aggregate elements are decoded into a single {@link FlyweightArrayRedisMessage} once all their
+ * bytes were received, instead of a header followed by one message per element. Aggregates which do not qualify, for
+ * example because they are nested or contain a bulk string longer than {@code maxInlineMessageLength}, are decoded as
+ * usual. Streamed aggregates of RESP3, which have an unknown length, are not supported.
  */
 @UnstableApi
 public final class RedisDecoder extends ByteToMessageDecoder {
 
+    private static final int FLYWEIGHT_INCOMPLETE = -1;
+    private static final int FLYWEIGHT_UNSUPPORTED = -2;
+
     private final ToPositiveLongProcessor toPositiveLongProcessor = new ToPositiveLongProcessor();
 
     private final boolean decodeInlineCommands;
     private final int maxInlineMessageLength;
     private final RedisMessagePool messagePool;
+    private final int maxFlyweightArrayLength;
+    private final boolean decodeResp3;
 
     // current decoding states
     private State state = State.DECODE_TYPE;
     private RedisMessageType type;
     private int remainingBulkLength;
 
+    // current flyweight aggregate, offsets are relative to the reader index.
+    private long flyweightLength;
+    private int[] flyweightOffsets;
+    private int flyweightElements;
+    private int flyweightPosition;
+    private int flyweightPayload;
+
     private enum State {
         DECODE_TYPE,
         DECODE_INLINE, // SIMPLE_STRING, ERROR, INTEGER
         DECODE_LENGTH, // BULK_STRING, ARRAY_HEADER
         DECODE_BULK_STRING_EOL,
         DECODE_BULK_STRING_CONTENT,
+        DECODE_BLOB, // BLOB_ERROR, VERBATIM_STRING
+        DECODE_FLYWEIGHT,
     }
 
     /**
@@ -85,6 +110,33 @@ public final class RedisDecoder extends ByteToMessageDecoder {
      * @param decodeInlineCommands if {@code true}, inline commands will be decoded.
      */
     public RedisDecoder(int maxInlineMessageLength, RedisMessagePool messagePool, boolean decodeInlineCommands) {
+        this(maxInlineMessageLength, messagePool, decodeInlineCommands, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param maxInlineMessageLength the maximum length of inline message.
+     * @param messagePool the predefined message pool.
+     * @param decodeInlineCommands if {@code true}, inline commands will be decoded.
+     * @param maxFlyweightArrayLength the maximum number of elements of aggregates which are decoded into a
+     *                                {@link FlyweightArrayRedisMessage}, or {@code 0} to disable flyweight decoding.
+     */
+    public RedisDecoder(int maxInlineMessageLength, RedisMessagePool messagePool, boolean decodeInlineCommands,
+                        int maxFlyweightArrayLength) {
+        this(maxInlineMessageLength, messagePool, decodeInlineCommands, maxFlyweightArrayLength, false);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param maxInlineMessageLength the maximum length of inline message.
+     * @param messagePool the predefined message pool.
+     * @param decodeInlineCommands if {@code true}, inline commands will be decoded.
+     * @param maxFlyweightArrayLength the maximum number of elements of aggregates which are decoded into a
+     *                                {@link FlyweightArrayRedisMessage}, or {@code 0} to disable flyweight decoding.
+     * @param decodeResp3 if {@code true}, the types added by RESP3 will be decoded.
+     */
+    public RedisDecoder(int maxInlineMessageLength, RedisMessagePool messagePool, boolean decodeInlineCommands,
+                        int maxFlyweightArrayLength, boolean decodeResp3) {
         if (maxInlineMessageLength <= 0 || maxInlineMessageLength > RedisConstants.REDIS_MESSAGE_MAX_LENGTH) {
             throw new RedisCodecException("maxInlineMessageLength: " + maxInlineMessageLength +
                                           " (expected: <= " + RedisConstants.REDIS_MESSAGE_MAX_LENGTH + ")");
@@ -92,6 +144,9 @@ public final class RedisDecoder extends ByteToMessageDecoder {
         this.maxInlineMessageLength = maxInlineMessageLength;
         this.messagePool = messagePool;
         this.decodeInlineCommands = decodeInlineCommands;
+        this.maxFlyweightArrayLength = ObjectUtil.checkPositiveOrZero(maxFlyweightArrayLength,
+                                                                      "maxFlyweightArrayLength");
+        this.decodeResp3 = decodeResp3;
     }
 
     @Override
@@ -124,6 +179,16 @@ public final class RedisDecoder extends ByteToMessageDecoder {
                         return;
                     }
                     break;
+                case DECODE_BLOB:
+                    if (!decodeBlob(in, out)) {
+                        return;
+                    }
+                    break;
+                case DECODE_FLYWEIGHT:
+                    if (!decodeFlyweight(in, out)) {
+                        return;
+                    }
+                    break;
                 default:
                     throw new RedisCodecException("Unknown state: " + state);
                 }
@@ -140,6 +205,9 @@ public final class RedisDecoder extends ByteToMessageDecoder {
     private void resetDecoder() {
         state = State.DECODE_TYPE;
         remainingBulkLength = 0;
+        flyweightOffsets = null;
+        flyweightElements = 0;
+        flyweightPosition = 0;
     }
 
     private boolean decodeType(ByteBuf in) throws Exception {
@@ -147,7 +215,7 @@ public final class RedisDecoder extends ByteToMessageDecoder {
             return false;
         }
 
-        type = RedisMessageType.readFrom(in, decodeInlineCommands);
+        type = RedisMessageType.readFrom(in, decodeInlineCommands, decodeResp3);
         state = type.isInline() ? State.DECODE_INLINE : State.DECODE_LENGTH;
         return true;
     }
@@ -177,7 +245,21 @@ public final class RedisDecoder extends ByteToMessageDecoder {
         }
         switch (type) {
         case ARRAY_HEADER:
-            out.add(new ArrayHeaderRedisMessage(length));
+        case SET_HEADER:
+        case PUSH_HEADER:
+        case MAP_HEADER:
+            final long elements = type == RedisMessageType.MAP_HEADER ? length << 1 : length;
+            if (length > 0 && length <= maxFlyweightArrayLength && elements <= maxFlyweightArrayLength) {
+                flyweightLength = length;
+                flyweightOffsets = new int[(int) (elements << 1) + 1];
+                state = State.DECODE_FLYWEIGHT;
+                return decodeFlyweight(in, out);
+            }
+            out.add(newAggregateHeader(type, length));
+            resetDecoder();
+            return true;
+        case ATTRIBUTE_HEADER:
+            out.add(newAggregateHeader(type, length));
             resetDecoder();
             return true;
         case BULK_STRING:
@@ -187,11 +269,139 @@ public final class RedisDecoder extends ByteToMessageDecoder {
             }
             remainingBulkLength = (int) length; // range(int) is already checked.
             return decodeBulkString(in, out);
+        case BLOB_ERROR:
+        case VERBATIM_STRING:
+            if (length < 0 || length > RedisConstants.REDIS_MESSAGE_MAX_LENGTH) {
+                throw new RedisCodecException("length: " + length + " (expected: 0-" +
+                                              RedisConstants.REDIS_MESSAGE_MAX_LENGTH + ")");
+            }
+            remainingBulkLength = (int) length; // range(int) is already checked.
+            state = State.DECODE_BLOB;
+            return decodeBlob(in, out);
         default:
             throw new RedisCodecException("bad type: " + type);
         }
     }
 
+    private static RedisMessage newAggregateHeader(RedisMessageType type, long length) {
+        switch (type) {
+        case SET_HEADER:
+            return new SetHeaderRedisMessage(length);
+        case PUSH_HEADER:
+            return new PushHeaderRedisMessage(length);
+        case MAP_HEADER:
+            return new MapHeaderRedisMessage(length);
+        case ATTRIBUTE_HEADER:
+            return new AttributeHeaderRedisMessage(length);
+        default:
+            return new ArrayHeaderRedisMessage(length);
+        }
+    }
+
+    // !{length}\r\n <here> {data...}\r\n
+    private boolean decodeBlob(ByteBuf in, List<Object> out) throws Exception {
+        if (in.readableBytes() < remainingBulkLength + RedisConstants.EOL_LENGTH) {
+            return false;
+        }
+        ByteBuf content = in.readSlice(remainingBulkLength);
+        readEndOfLine(in);
+        // Only call retain after readEndOfLine(...) and the validation of the message as both may throw an exception.
+        out.add(type == RedisMessageType.BLOB_ERROR ? new BlobErrorRedisMessage(content).retain()
+                                                    : new VerbatimStringRedisMessage(content).retain());
+        resetDecoder();
+        return true;
+    }
+
+    // *{length}\r\n <here> {elements...}
+    private boolean decodeFlyweight(ByteBuf in, List<Object> out) throws Exception {
+        final int base = in.readerIndex();
+        final int elements = flyweightOffsets.length >>> 1;
+        while (flyweightElements < elements) {
+            final int end = scanElement(in, base + flyweightPosition);
+            if (end == FLYWEIGHT_INCOMPLETE) {
+                return false;
+            }
+            if (end == FLYWEIGHT_UNSUPPORTED) {
+                // nothing was consumed yet, so decode the elements one by one.
+                out.add(newAggregateHeader(type, flyweightLength));
+                resetDecoder();
+                return true;
+            }
+            flyweightOffsets[flyweightElements << 1] = flyweightPosition;
+            flyweightOffsets[(flyweightElements << 1) + 1] = flyweightPayload - base;
+            flyweightPosition = end - base;
+            flyweightElements++;
+        }
+        flyweightOffsets[elements << 1] = flyweightPosition;
+        out.add(new FlyweightArrayRedisMessage(type, in.readRetainedSlice(flyweightPosition), flyweightOffsets));
+        resetDecoder();
+        return true;
+    }
+
+    /**
+     * Finds the end of the element which starts at {@code start} and stores the start of its payload in
+     * {@link #flyweightPayload}, or returns {@link #FLYWEIGHT_INCOMPLETE} or {@link #FLYWEIGHT_UNSUPPORTED}.
+     */
+    private int scanElement(ByteBuf in, int start) {
+        final int writerIndex = in.writerIndex();
+        if (start >= writerIndex) {
+            return FLYWEIGHT_INCOMPLETE;
+        }
+        final RedisMessageType elementType = RedisMessageType.valueOf(in.getByte(start), decodeResp3);
+        switch (elementType) {
+        case SIMPLE_STRING:
+        case ERROR:
+        case INTEGER:
+        case NULL:
+        case BOOLEAN:
+        case DOUBLE:
+        case BIG_NUMBER: {
+            final int lfIndex = in.indexOf(start + 1, writerIndex, (byte) '\n');
+            if (lfIndex < 0) {
+                return writerIndex - start > maxInlineMessageLength ? FLYWEIGHT_UNSUPPORTED : FLYWEIGHT_INCOMPLETE;
+            }
+            checkEndOfLine(in, lfIndex - 1);
+            flyweightPayload = start + RedisConstants.TYPE_LENGTH;
+            return lfIndex + 1;
+        }
+        case BULK_STRING:
+        case BLOB_ERROR:
+        case VERBATIM_STRING: {
+            final int lfIndex = in.indexOf(start + 1, writerIndex, (byte) '\n');
+            if (lfIndex < 0) {
+                return writerIndex - start > RedisConstants.LONG_MAX_LENGTH + RedisConstants.TYPE_LENGTH +
+                                             RedisConstants.EOL_LENGTH ? FLYWEIGHT_UNSUPPORTED : FLYWEIGHT_INCOMPLETE;
+            }
+            checkEndOfLine(in, lfIndex - 1);
+            flyweightPayload = lfIndex + 1;
+            final long length = parseRedisNumber(in, start + RedisConstants.TYPE_LENGTH, lfIndex - 1);
+            if (length == RedisConstants.NULL_VALUE && elementType == RedisMessageType.BULK_STRING) {
+                return lfIndex + 1;
+            }
+            if (length < 0 || length > maxInlineMessageLength) {
+                // let the regular decoding report or stream it.
+                return FLYWEIGHT_UNSUPPORTED;
+            }
+            final int end = lfIndex + 1 + (int) length + RedisConstants.EOL_LENGTH;
+            if (end > writerIndex) {
+                return FLYWEIGHT_INCOMPLETE;
+            }
+            checkEndOfLine(in, end - RedisConstants.EOL_LENGTH);
+            return end;
+        }
+        default:
+            return FLYWEIGHT_UNSUPPORTED;
+        }
+    }
+
+    private static void checkEndOfLine(ByteBuf in, int index) {
+        final short delim = in.getShort(index);
+        if (RedisConstants.EOL_SHORT != delim) {
+            final byte[] bytes = RedisCodecUtil.shortToBytes(delim);
+            throw new RedisCodecException("delimiter: [" + bytes[0] + "," + bytes[1] + "] (expected: \\r\\n)");
+        }
+    }
+
     private boolean decodeBulkString(ByteBuf in, List<Object> out) throws Exception {
         switch (remainingBulkLength) {
         case RedisConstants.NULL_VALUE: // $-1\r\n
@@ -268,6 +478,17 @@ public final class RedisDecoder extends ByteToMessageDecoder {
             IntegerRedisMessage cached = messagePool.getInteger(content);
             return cached != null ? cached : new IntegerRedisMessage(parseRedisNumber(content));
         }
+        case NULL:
+            if (content.isReadable()) {
+                throw new RedisCodecException("bad null: " + content.toString(CharsetUtil.US_ASCII));
+            }
+            return NullRedisMessage.INSTANCE;
+        case BOOLEAN:
+            return BooleanRedisMessage.valueOf(parseRedisBoolean(content));
+        case DOUBLE:
+            return new DoubleRedisMessage(parseRedisDouble(content));
+        case BIG_NUMBER:
+            return new BigNumberRedisMessage(parseRedisBigNumber(content));
         default:
             throw new RedisCodecException("bad type: " + messageType);
         }
@@ -286,6 +507,75 @@ public final class RedisDecoder extends ByteToMessageDecoder {
         return data;
     }
 
+    private static boolean parseRedisBoolean(ByteBuf content) {
+        if (content.readableBytes() == 1) {
+            switch (content.getByte(content.readerIndex())) {
+            case 't':
+                return true;
+            case 'f':
+                return false;
+            default:
+                break;
+            }
+        }
+        throw new RedisCodecException("bad boolean: " + content.toString(CharsetUtil.US_ASCII));
+    }
+
+    private static double parseRedisDouble(ByteBuf content) {
+        final String value = content.toString(CharsetUtil.US_ASCII);
+        if ("inf".equals(value) || "+inf".equals(value)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if ("-inf".equals(value)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if ("nan".equals(value)) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new RedisCodecException("bad double: " + value);
+        }
+    }
+
+    private static String parseRedisBigNumber(ByteBuf content) {
+        final int readableBytes = content.readableBytes();
+        final int start = readableBytes > 0 && content.getByte(content.readerIndex()) == '-' ? 1 : 0;
+        if (readableBytes <= start) {
+            throw new RedisCodecException("no number to parse: " + content.toString(CharsetUtil.US_ASCII));
+        }
+        for (int i = start; i < readableBytes; i++) {
+            final byte value = content.getByte(content.readerIndex() + i);
+            if (value < '0' || value > '9') {
+                throw new RedisCodecException("bad byte in number: " + value);
+            }
+        }
+        return content.toString(CharsetUtil.US_ASCII);
+    }
+
+    private static long parseRedisNumber(ByteBuf in, int start, int end) {
+        final boolean negative = start < end && in.getByte(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end) {
+            throw new RedisCodecException("no number to parse: " + in.toString(start, end - start,
+                                                                                CharsetUtil.US_ASCII));
+        }
+        if (end - i > RedisConstants.POSITIVE_LONG_MAX_LENGTH) {
+            throw new RedisCodecException("too many characters to be a valid RESP Integer: " +
+                                          in.toString(start, end - start, CharsetUtil.US_ASCII));
+        }
+        long result = 0;
+        for (; i < end; i++) {
+            final byte value = in.getByte(i);
+            if (value < '0' || value > '9') {
+                throw new RedisCodecException("bad byte in number: " + value);
+            }
+            result = result * 10 + (value - '0');
+        }
+        return negative ? -result : result;
+    }
+
     private long parseRedisNumber(ByteBuf byteBuf) {
         final int readableBytes = byteBuf.readableBytes();
         final boolean negative = readableBytes > 0 && byteBuf.getByte(byteBuf.readerIndex()) == '-';
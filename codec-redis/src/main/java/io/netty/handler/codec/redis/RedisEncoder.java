@@ -18,22 +18,43 @@ package io.netty.handler.codec.redis;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.CodecException;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseNotifier;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.UnstableApi;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Encodes {@link RedisMessage} into bytes following
- * <a href="http://redis.io/topics/protocol">RESP (REdis Serialization Protocol)</a>.
+ * <a href="http://redis.io/topics/protocol">RESP (REdis Serialization Protocol)</a> and
+ * <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3</a>.
+ * <p>
+ * If {@code maxBatchSize} is positive, messages which are written until the next {@link ChannelHandlerContext#flush()}
+ * are encoded into a shared buffer of up to {@code maxBatchSize} bytes, so pipelined commands are written with a few
+ * large buffers instead of several small buffers per command. Messages whose encoding is larger than
+ * {@code maxBatchSize} are written on their own, without copying their content.
  */
 @UnstableApi
 public class RedisEncoder extends MessageToMessageEncoder<RedisMessage> {
 
+    private static final int MIN_BATCH_CAPACITY = 256;
+    private static final int DOUBLE_MAX_LENGTH = 32;
+
     private final RedisMessagePool messagePool;
+    private final int maxBatchSize;
+
+    private ByteBuf batch;
+    private List<ChannelPromise> batchPromises;
 
     /**
      * Creates a new instance with default {@code messagePool}.
@@ -47,7 +68,95 @@ public class RedisEncoder extends MessageToMessageEncoder<RedisMessage> {
      * @param messagePool the predefined message pool.
      */
     public RedisEncoder(RedisMessagePool messagePool) {
+        this(messagePool, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     * @param messagePool the predefined message pool.
+     * @param maxBatchSize the maximum number of bytes which are encoded into a shared buffer before it is written,
+     *                     or {@code 0} to write every message on its own.
+     */
+    public RedisEncoder(RedisMessagePool messagePool, int maxBatchSize) {
         this.messagePool = ObjectUtil.checkNotNull(messagePool, "messagePool");
+        this.maxBatchSize = ObjectUtil.checkPositiveOrZero(maxBatchSize, "maxBatchSize");
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (maxBatchSize == 0) {
+            super.write(ctx, msg, promise);
+            return;
+        }
+        if (!acceptOutboundMessage(msg)) {
+            writeBatch(ctx);
+            ctx.write(msg, promise);
+            return;
+        }
+        final RedisMessage message = (RedisMessage) msg;
+        final int length;
+        try {
+            length = encodedLength(message);
+        } catch (Throwable cause) {
+            ReferenceCountUtil.release(msg);
+            throw new EncoderException(cause);
+        }
+        if (length > maxBatchSize) {
+            // write large messages on their own, so their content does not need to be copied.
+            writeBatch(ctx);
+            super.write(ctx, msg, promise);
+            return;
+        }
+        if (batch != null && batch.readableBytes() + length > maxBatchSize) {
+            writeBatch(ctx);
+        }
+        if (batch == null) {
+            batch = ctx.alloc().ioBuffer(Math.min(maxBatchSize, Math.max(MIN_BATCH_CAPACITY, length)));
+        }
+        final int writerIndex = batch.writerIndex();
+        try {
+            encodeTo(batch, message);
+        } catch (Throwable cause) {
+            batch.writerIndex(writerIndex);
+            throw cause instanceof EncoderException ? (EncoderException) cause : new EncoderException(cause);
+        } finally {
+            ReferenceCountUtil.release(msg);
+        }
+        if (!promise.isVoid()) {
+            if (batchPromises == null) {
+                batchPromises = new ArrayList<ChannelPromise>(4);
+            }
+            batchPromises.add(promise);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        writeBatch(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        writeBatch(ctx);
+    }
+
+    private void writeBatch(ChannelHandlerContext ctx) {
+        final ByteBuf buf = batch;
+        if (buf == null) {
+            return;
+        }
+        batch = null;
+        if (batchPromises == null || batchPromises.isEmpty()) {
+            ctx.write(buf, ctx.voidPromise());
+        } else if (batchPromises.size() == 1) {
+            ctx.write(buf, batchPromises.get(0));
+            batchPromises.clear();
+        } else {
+            ChannelPromise[] promises = batchPromises.toArray(new ChannelPromise[0]);
+            batchPromises.clear();
+            ctx.write(buf).addListener(new PromiseNotifier<Void, ChannelFuture>(promises));
+        }
     }
 
     @Override
@@ -78,8 +187,25 @@ public class RedisEncoder extends MessageToMessageEncoder<RedisMessage> {
             writeBulkStringHeader(allocator, (BulkStringHeaderRedisMessage) msg, out);
         } else if (msg instanceof ArrayHeaderRedisMessage) {
             writeArrayHeader(allocator, (ArrayHeaderRedisMessage) msg, out);
+        } else if (msg instanceof PushRedisMessage) {
+            writeArrayMessage(allocator, RedisMessageType.PUSH_HEADER, (ArrayRedisMessage) msg, out);
         } else if (msg instanceof ArrayRedisMessage) {
-            writeArrayMessage(allocator, (ArrayRedisMessage) msg, out);
+            writeArrayMessage(allocator, RedisMessageType.ARRAY_HEADER, (ArrayRedisMessage) msg, out);
+        } else if (msg instanceof SetRedisMessage) {
+            writeSetMessage(allocator, (SetRedisMessage) msg, out);
+        } else if (msg instanceof MapRedisMessage) {
+            writeMapMessage(allocator, (MapRedisMessage) msg, out);
+        } else if (msg instanceof BlobErrorRedisMessage) {
+            writeBlob(allocator, RedisMessageType.BLOB_ERROR, ((BlobErrorRedisMessage) msg).content(), out);
+        } else if (msg instanceof VerbatimStringRedisMessage) {
+            writeBlob(allocator, RedisMessageType.VERBATIM_STRING, ((VerbatimStringRedisMessage) msg).content(), out);
+        } else if (msg instanceof FlyweightArrayRedisMessage) {
+            writeFlyweightArrayMessage(allocator, (FlyweightArrayRedisMessage) msg, out);
+        } else if (msg instanceof NullRedisMessage || msg instanceof BooleanRedisMessage ||
+                   msg instanceof DoubleRedisMessage || msg instanceof BigNumberRedisMessage) {
+            ByteBuf buf = allocator.ioBuffer(encodedLength(msg));
+            encodeTo(buf, msg);
+            out.add(buf);
         } else {
             throw new CodecException("unknown message type: " + msg);
         }
@@ -150,14 +276,7 @@ public class RedisEncoder extends MessageToMessageEncoder<RedisMessage> {
             buf.writeShort(RedisConstants.EOL_SHORT);
             out.add(buf);
         } else {
-            ByteBuf headerBuf = allocator.ioBuffer(RedisConstants.TYPE_LENGTH + RedisConstants.LONG_MAX_LENGTH +
-                                                   RedisConstants.EOL_LENGTH);
-            RedisMessageType.BULK_STRING.writeTo(headerBuf);
-            headerBuf.writeBytes(numberToBytes(msg.content().readableBytes()));
-            headerBuf.writeShort(RedisConstants.EOL_SHORT);
-            out.add(headerBuf);
-            out.add(msg.content().retain());
-            out.add(allocator.ioBuffer(RedisConstants.EOL_LENGTH).writeShort(RedisConstants.EOL_SHORT));
+            writeBlob(allocator, RedisMessageType.BULK_STRING, msg.content(), out);
         }
     }
 
@@ -165,41 +284,303 @@ public class RedisEncoder extends MessageToMessageEncoder<RedisMessage> {
      * Write array header only without body. Use this if you want to write arrays as streaming.
      */
     private void writeArrayHeader(ByteBufAllocator allocator, ArrayHeaderRedisMessage msg, List<Object> out) {
-        writeArrayHeader(allocator, msg.isNull(), msg.length(), out);
+        writeArrayHeader(allocator, msg.type(), msg.isNull(), msg.length(), out);
     }
 
     /**
      * Write full constructed array message.
      */
-    private void writeArrayMessage(ByteBufAllocator allocator, ArrayRedisMessage msg, List<Object> out) {
+    private void writeArrayMessage(ByteBufAllocator allocator, RedisMessageType type, ArrayRedisMessage msg,
+                                   List<Object> out) {
         if (msg.isNull()) {
-            writeArrayHeader(allocator, msg.isNull(), RedisConstants.NULL_VALUE, out);
+            writeArrayHeader(allocator, type, msg.isNull(), RedisConstants.NULL_VALUE, out);
         } else {
-            writeArrayHeader(allocator, msg.isNull(), msg.children().size(), out);
+            writeArrayHeader(allocator, type, msg.isNull(), msg.children().size(), out);
             for (RedisMessage child : msg.children()) {
                 writeRedisMessage(allocator, child, out);
             }
         }
     }
 
-    private void writeArrayHeader(ByteBufAllocator allocator, boolean isNull, long length, List<Object> out) {
+    private void writeSetMessage(ByteBufAllocator allocator, SetRedisMessage msg, List<Object> out) {
+        writeArrayHeader(allocator, RedisMessageType.SET_HEADER, false, msg.children().size(), out);
+        for (RedisMessage child : msg.children()) {
+            writeRedisMessage(allocator, child, out);
+        }
+    }
+
+    private void writeMapMessage(ByteBufAllocator allocator, MapRedisMessage msg, List<Object> out) {
+        writeArrayHeader(allocator, msg instanceof AttributeRedisMessage ? RedisMessageType.ATTRIBUTE_HEADER
+                                                                         : RedisMessageType.MAP_HEADER,
+                         false, msg.children().size(), out);
+        for (Map.Entry<RedisMessage, RedisMessage> entry : msg.children().entrySet()) {
+            writeRedisMessage(allocator, entry.getKey(), out);
+            writeRedisMessage(allocator, entry.getValue(), out);
+        }
+    }
+
+    private void writeFlyweightArrayMessage(ByteBufAllocator allocator, FlyweightArrayRedisMessage msg,
+                                            List<Object> out) {
+        writeArrayHeader(allocator, msg.type(), false, aggregateLength(msg), out);
+        out.add(msg.content().retain());
+    }
+
+    private void writeBlob(ByteBufAllocator allocator, RedisMessageType type, ByteBuf content, List<Object> out) {
+        ByteBuf headerBuf = allocator.ioBuffer(RedisConstants.TYPE_LENGTH + RedisConstants.LONG_MAX_LENGTH +
+                                               RedisConstants.EOL_LENGTH);
+        type.writeTo(headerBuf);
+        headerBuf.writeBytes(numberToBytes(content.readableBytes()));
+        headerBuf.writeShort(RedisConstants.EOL_SHORT);
+        out.add(headerBuf);
+        out.add(content.retain());
+        out.add(allocator.ioBuffer(RedisConstants.EOL_LENGTH).writeShort(RedisConstants.EOL_SHORT));
+    }
+
+    private void writeArrayHeader(ByteBufAllocator allocator, RedisMessageType type, boolean isNull, long length,
+                                  List<Object> out) {
         if (isNull) {
             final ByteBuf buf = allocator.ioBuffer(RedisConstants.TYPE_LENGTH + RedisConstants.NULL_LENGTH +
                                                    RedisConstants.EOL_LENGTH);
-            RedisMessageType.ARRAY_HEADER.writeTo(buf);
+            type.writeTo(buf);
             buf.writeShort(RedisConstants.NULL_SHORT);
             buf.writeShort(RedisConstants.EOL_SHORT);
             out.add(buf);
         } else {
             final ByteBuf buf = allocator.ioBuffer(RedisConstants.TYPE_LENGTH + RedisConstants.LONG_MAX_LENGTH +
                                                    RedisConstants.EOL_LENGTH);
-            RedisMessageType.ARRAY_HEADER.writeTo(buf);
+            type.writeTo(buf);
             buf.writeBytes(numberToBytes(length));
             buf.writeShort(RedisConstants.EOL_SHORT);
             out.add(buf);
         }
     }
 
+    private static int aggregateLength(FlyweightArrayRedisMessage msg) {
+        return msg.type() == RedisMessageType.MAP_HEADER ? msg.size() >>> 1 : msg.size();
+    }
+
+    /**
+     * Returns the number of bytes {@link #encodeTo(ByteBuf, RedisMessage)} writes for the given message, or an upper
+     * bound of it for doubles.
+     */
+    private static int encodedLength(RedisMessage msg) {
+        if (msg instanceof InlineCommandRedisMessage) {
+            return ByteBufUtil.utf8Bytes(((InlineCommandRedisMessage) msg).content()) + RedisConstants.EOL_LENGTH;
+        } else if (msg instanceof AbstractStringRedisMessage) {
+            // SimpleStringRedisMessage, ErrorRedisMessage and BigNumberRedisMessage
+            return RedisConstants.TYPE_LENGTH + ByteBufUtil.utf8Bytes(((AbstractStringRedisMessage) msg).content()) +
+                   RedisConstants.EOL_LENGTH;
+        } else if (msg instanceof IntegerRedisMessage) {
+            return numberLength(((IntegerRedisMessage) msg).value());
+        } else if (msg instanceof BulkStringHeaderRedisMessage) {
+            BulkStringHeaderRedisMessage header = (BulkStringHeaderRedisMessage) msg;
+            return header.isNull() ? RedisConstants.TYPE_LENGTH + RedisConstants.NULL_LENGTH
+                                   : numberLength(header.bulkStringLength());
+        } else if (msg instanceof ArrayHeaderRedisMessage) {
+            return numberLength(((ArrayHeaderRedisMessage) msg).length());
+        } else if (msg instanceof FullBulkStringRedisMessage) {
+            FullBulkStringRedisMessage bulkString = (FullBulkStringRedisMessage) msg;
+            return bulkString.isNull() ? RedisConstants.TYPE_LENGTH + RedisConstants.NULL_LENGTH +
+                                         RedisConstants.EOL_LENGTH
+                                       : blobLength(bulkString.content());
+        } else if (msg instanceof BulkStringRedisContent) {
+            return ((BulkStringRedisContent) msg).content().readableBytes() +
+                   (msg instanceof LastBulkStringRedisContent ? RedisConstants.EOL_LENGTH : 0);
+        } else if (msg instanceof ArrayRedisMessage) {
+            ArrayRedisMessage array = (ArrayRedisMessage) msg;
+            if (array.isNull()) {
+                return numberLength(RedisConstants.NULL_VALUE);
+            }
+            long length = numberLength(array.children().size());
+            for (RedisMessage child : ((ArrayRedisMessage) msg).children()) {
+                length += encodedLength(child);
+            }
+            return saturatedCast(length);
+        } else if (msg instanceof SetRedisMessage) {
+            long length = numberLength(((SetRedisMessage) msg).children().size());
+            for (RedisMessage child : ((SetRedisMessage) msg).children()) {
+                length += encodedLength(child);
+            }
+            return saturatedCast(length);
+        } else if (msg instanceof MapRedisMessage) {
+            long length = numberLength(((MapRedisMessage) msg).children().size());
+            for (Map.Entry<RedisMessage, RedisMessage> entry : ((MapRedisMessage) msg).children().entrySet()) {
+                length += encodedLength(entry.getKey()) + encodedLength(entry.getValue());
+            }
+            return saturatedCast(length);
+        } else if (msg instanceof BlobErrorRedisMessage) {
+            return blobLength(((BlobErrorRedisMessage) msg).content());
+        } else if (msg instanceof VerbatimStringRedisMessage) {
+            return blobLength(((VerbatimStringRedisMessage) msg).content());
+        } else if (msg instanceof FlyweightArrayRedisMessage) {
+            FlyweightArrayRedisMessage array = (FlyweightArrayRedisMessage) msg;
+            return saturatedCast((long) numberLength(aggregateLength(array)) + array.content().readableBytes());
+        } else if (msg instanceof NullRedisMessage) {
+            return RedisConstants.TYPE_LENGTH + RedisConstants.EOL_LENGTH;
+        } else if (msg instanceof BooleanRedisMessage) {
+            return RedisConstants.TYPE_LENGTH + 1 + RedisConstants.EOL_LENGTH;
+        } else if (msg instanceof DoubleRedisMessage) {
+            return RedisConstants.TYPE_LENGTH + DOUBLE_MAX_LENGTH + RedisConstants.EOL_LENGTH;
+        } else {
+            throw new CodecException("unknown message type: " + msg);
+        }
+    }
+
+    private static int blobLength(ByteBuf content) {
+        return saturatedCast((long) numberLength(content.readableBytes()) + content.readableBytes() +
+                             RedisConstants.EOL_LENGTH);
+    }
+
+    /**
+     * Returns the length of a type prefix followed by the given number and {@code CRLF}.
+     */
+    private static int numberLength(long value) {
+        int length = RedisConstants.TYPE_LENGTH + RedisConstants.EOL_LENGTH + 1;
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return RedisConstants.TYPE_LENGTH + RedisConstants.LONG_MAX_LENGTH + RedisConstants.EOL_LENGTH;
+            }
+            value = -value;
+            length++;
+        }
+        for (; value >= 10; value /= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int saturatedCast(long length) {
+        return (int) Math.min(length, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Encodes the given message into {@code buf}, copying all its content.
+     */
+    private void encodeTo(ByteBuf buf, RedisMessage msg) {
+        if (msg instanceof InlineCommandRedisMessage) {
+            encodeString(buf, RedisMessageType.INLINE_COMMAND, ((InlineCommandRedisMessage) msg).content());
+        } else if (msg instanceof SimpleStringRedisMessage) {
+            encodeString(buf, RedisMessageType.SIMPLE_STRING, ((SimpleStringRedisMessage) msg).content());
+        } else if (msg instanceof ErrorRedisMessage) {
+            encodeString(buf, RedisMessageType.ERROR, ((ErrorRedisMessage) msg).content());
+        } else if (msg instanceof BigNumberRedisMessage) {
+            encodeString(buf, RedisMessageType.BIG_NUMBER, ((BigNumberRedisMessage) msg).content());
+        } else if (msg instanceof IntegerRedisMessage) {
+            encodeNumber(buf, RedisMessageType.INTEGER, ((IntegerRedisMessage) msg).value());
+        } else if (msg instanceof FullBulkStringRedisMessage) {
+            FullBulkStringRedisMessage bulkString = (FullBulkStringRedisMessage) msg;
+            if (bulkString.isNull()) {
+                encodeNull(buf, RedisMessageType.BULK_STRING);
+            } else {
+                encodeBlob(buf, RedisMessageType.BULK_STRING, bulkString.content());
+            }
+        } else if (msg instanceof BulkStringRedisContent) {
+            ByteBuf content = ((BulkStringRedisContent) msg).content();
+            buf.writeBytes(content, content.readerIndex(), content.readableBytes());
+            if (msg instanceof LastBulkStringRedisContent) {
+                buf.writeShort(RedisConstants.EOL_SHORT);
+            }
+        } else if (msg instanceof BulkStringHeaderRedisMessage) {
+            BulkStringHeaderRedisMessage header = (BulkStringHeaderRedisMessage) msg;
+            RedisMessageType.BULK_STRING.writeTo(buf);
+            if (header.isNull()) {
+                buf.writeShort(RedisConstants.NULL_SHORT);
+            } else {
+                buf.writeBytes(numberToBytes(header.bulkStringLength()));
+                buf.writeShort(RedisConstants.EOL_SHORT);
+            }
+        } else if (msg instanceof ArrayHeaderRedisMessage) {
+            ArrayHeaderRedisMessage header = (ArrayHeaderRedisMessage) msg;
+            if (header.isNull()) {
+                encodeNull(buf, header.type());
+            } else {
+                encodeNumber(buf, header.type(), header.length());
+            }
+        } else if (msg instanceof ArrayRedisMessage) {
+            ArrayRedisMessage array = (ArrayRedisMessage) msg;
+            RedisMessageType type = msg instanceof PushRedisMessage ? RedisMessageType.PUSH_HEADER
+                                                                    : RedisMessageType.ARRAY_HEADER;
+            if (array.isNull()) {
+                encodeNull(buf, type);
+            } else {
+                encodeNumber(buf, type, array.children().size());
+                for (RedisMessage child : array.children()) {
+                    encodeTo(buf, child);
+                }
+            }
+        } else if (msg instanceof SetRedisMessage) {
+            SetRedisMessage set = (SetRedisMessage) msg;
+            encodeNumber(buf, RedisMessageType.SET_HEADER, set.children().size());
+            for (RedisMessage child : set.children()) {
+                encodeTo(buf, child);
+            }
+        } else if (msg instanceof MapRedisMessage) {
+            MapRedisMessage map = (MapRedisMessage) msg;
+            encodeNumber(buf, msg instanceof AttributeRedisMessage ? RedisMessageType.ATTRIBUTE_HEADER
+                                                                   : RedisMessageType.MAP_HEADER,
+                         map.children().size());
+            for (Map.Entry<RedisMessage, RedisMessage> entry : map.children().entrySet()) {
+                encodeTo(buf, entry.getKey());
+                encodeTo(buf, entry.getValue());
+            }
+        } else if (msg instanceof BlobErrorRedisMessage) {
+            encodeBlob(buf, RedisMessageType.BLOB_ERROR, ((BlobErrorRedisMessage) msg).content());
+        } else if (msg instanceof VerbatimStringRedisMessage) {
+            encodeBlob(buf, RedisMessageType.VERBATIM_STRING, ((VerbatimStringRedisMessage) msg).content());
+        } else if (msg instanceof FlyweightArrayRedisMessage) {
+            FlyweightArrayRedisMessage array = (FlyweightArrayRedisMessage) msg;
+            encodeNumber(buf, array.type(), aggregateLength(array));
+            buf.writeBytes(array.content(), array.content().readerIndex(), array.content().readableBytes());
+        } else if (msg instanceof NullRedisMessage) {
+            RedisMessageType.NULL.writeTo(buf);
+            buf.writeShort(RedisConstants.EOL_SHORT);
+        } else if (msg instanceof BooleanRedisMessage) {
+            RedisMessageType.BOOLEAN.writeTo(buf);
+            buf.writeByte(((BooleanRedisMessage) msg).value() ? 't' : 'f');
+            buf.writeShort(RedisConstants.EOL_SHORT);
+        } else if (msg instanceof DoubleRedisMessage) {
+            RedisMessageType.DOUBLE.writeTo(buf);
+            buf.writeCharSequence(doubleToString(((DoubleRedisMessage) msg).value()), CharsetUtil.US_ASCII);
+            buf.writeShort(RedisConstants.EOL_SHORT);
+        } else {
+            throw new CodecException("unknown message type: " + msg);
+        }
+    }
+
+    private static void encodeString(ByteBuf buf, RedisMessageType type, String content) {
+        type.writeTo(buf);
+        ByteBufUtil.writeUtf8(buf, content);
+        buf.writeShort(RedisConstants.EOL_SHORT);
+    }
+
+    private void encodeNumber(ByteBuf buf, RedisMessageType type, long value) {
+        type.writeTo(buf);
+        buf.writeBytes(numberToBytes(value));
+        buf.writeShort(RedisConstants.EOL_SHORT);
+    }
+
+    private static void encodeNull(ByteBuf buf, RedisMessageType type) {
+        type.writeTo(buf);
+        buf.writeShort(RedisConstants.NULL_SHORT);
+        buf.writeShort(RedisConstants.EOL_SHORT);
+    }
+
+    private void encodeBlob(ByteBuf buf, RedisMessageType type, ByteBuf content) {
+        encodeNumber(buf, type, content.readableBytes());
+        buf.writeBytes(content, content.readerIndex(), content.readableBytes());
+        buf.writeShort(RedisConstants.EOL_SHORT);
+    }
+
+    private static String doubleToString(double value) {
+        if (Double.isNaN(value)) {
+            return "nan";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        return Double.toString(value);
+    }
+
     private byte[] numberToBytes(long value) {
         byte[] bytes = messagePool.getByteBufOfInteger(value);
         return bytes != null ? bytes : RedisCodecUtil.longToAsciiBytes(value);
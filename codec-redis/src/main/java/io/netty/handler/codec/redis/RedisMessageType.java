@@ -19,7 +19,8 @@ import io.netty.buffer.ByteBuf;
 import io.netty.util.internal.UnstableApi;
 
 /**
- * Type of <a href="http://redis.io/topics/protocol">RESP (REdis Serialization Protocol)</a>.
+ * Type of <a href="http://redis.io/topics/protocol">RESP (REdis Serialization Protocol)</a>, including the types
+ * added by <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3</a>.
  */
 @UnstableApi
 public enum RedisMessageType {
@@ -29,7 +30,17 @@ public enum RedisMessageType {
     ERROR((byte) '-', true),
     INTEGER((byte) ':', true),
     BULK_STRING((byte) '$', false),
-    ARRAY_HEADER((byte) '*', false);
+    ARRAY_HEADER((byte) '*', false),
+    NULL((byte) '_', true),
+    BOOLEAN((byte) '#', true),
+    DOUBLE((byte) ',', true),
+    BIG_NUMBER((byte) '(', true),
+    BLOB_ERROR((byte) '!', false),
+    VERBATIM_STRING((byte) '=', false),
+    MAP_HEADER((byte) '%', false),
+    SET_HEADER((byte) '~', false),
+    PUSH_HEADER((byte) '>', false),
+    ATTRIBUTE_HEADER((byte) '|', false);
 
     private final Byte value;
     private final boolean inline;
@@ -58,8 +69,16 @@ public enum RedisMessageType {
      * Determine {@link RedisMessageType} based on the type prefix {@code byte} read from given the buffer.
      */
     public static RedisMessageType readFrom(ByteBuf in, boolean decodeInlineCommands) {
+        return readFrom(in, decodeInlineCommands, false);
+    }
+
+    /**
+     * Determine {@link RedisMessageType} based on the type prefix {@code byte} read from given the buffer. The
+     * prefixes of the types added by RESP3 are only recognized if {@code decodeResp3} is {@code true}.
+     */
+    static RedisMessageType readFrom(ByteBuf in, boolean decodeInlineCommands, boolean decodeResp3) {
         final int initialIndex = in.readerIndex();
-        final RedisMessageType type = valueOf(in.readByte());
+        final RedisMessageType type = valueOf(in.readByte(), decodeResp3);
         if (type == INLINE_COMMAND) {
             if (!decodeInlineCommands) {
                 throw new RedisCodecException("Decoding of inline commands is disabled");
@@ -80,7 +99,7 @@ public enum RedisMessageType {
         out.writeByte(value.byteValue());
     }
 
-    private static RedisMessageType valueOf(byte value) {
+    static RedisMessageType valueOf(byte value, boolean resp3) {
         switch (value) {
         case '+':
             return SIMPLE_STRING;
@@ -92,6 +111,33 @@ public enum RedisMessageType {
             return BULK_STRING;
         case '*':
             return ARRAY_HEADER;
+        default:
+            return resp3 ? valueOfResp3(value) : INLINE_COMMAND;
+        }
+    }
+
+    private static RedisMessageType valueOfResp3(byte value) {
+        switch (value) {
+        case '_':
+            return NULL;
+        case '#':
+            return BOOLEAN;
+        case ',':
+            return DOUBLE;
+        case '(':
+            return BIG_NUMBER;
+        case '!':
+            return BLOB_ERROR;
+        case '=':
+            return VERBATIM_STRING;
+        case '%':
+            return MAP_HEADER;
+        case '~':
+            return SET_HEADER;
+        case '>':
+            return PUSH_HEADER;
+        case '|':
+            return ATTRIBUTE_HEADER;
         default:
             return INLINE_COMMAND;
         }
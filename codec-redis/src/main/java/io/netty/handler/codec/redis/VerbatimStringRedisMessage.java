@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.redis;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.util.CharsetUtil;
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Verbatim strings of <a href="https://github.com/antirez/RESP3/blob/master/spec.md">RESP3</a>. The
+ * {@link #content()} starts with the three characters of the format, for example {@code txt} or {@code mkd},
+ * followed by a colon and the actual text.
+ */
+@UnstableApi
+public final class VerbatimStringRedisMessage extends DefaultByteBufHolder implements RedisMessage {
+
+    private static final int FORMAT_LENGTH = 3;
+
+    /**
+     * Creates a {@link VerbatimStringRedisMessage} for the given {@code content}.
+     *
+     * @param content the content including the format prefix, must not be {@code null}.
+     */
+    public VerbatimStringRedisMessage(ByteBuf content) {
+        super(content);
+        if (content.readableBytes() <= FORMAT_LENGTH ||
+            content.getByte(content.readerIndex() + FORMAT_LENGTH) != ':') {
+            throw new RedisCodecException("verbatim string without format: " + content);
+        }
+    }
+
+    /**
+     * Returns the format of the text, for example {@code txt} or {@code mkd}.
+     */
+    public String format() {
+        return content().toString(content().readerIndex(), FORMAT_LENGTH, CharsetUtil.US_ASCII);
+    }
+
+    /**
+     * Returns a slice of {@link #content()} which only contains the text without the format prefix.
+     */
+    public ByteBuf text() {
+        return content().slice(content().readerIndex() + FORMAT_LENGTH + 1,
+                               content().readableBytes() - FORMAT_LENGTH - 1);
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder(StringUtil.simpleClassName(this))
+                .append('[')
+                .append("content=")
+                .append(content())
+                .append(']').toString();
+    }
+
+    @Override
+    public VerbatimStringRedisMessage copy() {
+        return (VerbatimStringRedisMessage) super.copy();
+    }
+
+    @Override
+    public VerbatimStringRedisMessage duplicate() {
+        return (VerbatimStringRedisMessage) super.duplicate();
+    }
+
+    @Override
+    public VerbatimStringRedisMessage retainedDuplicate() {
+        return (VerbatimStringRedisMessage) super.retainedDuplicate();
+    }
+
+    @Override
+    public VerbatimStringRedisMessage replace(ByteBuf content) {
+        return new VerbatimStringRedisMessage(content);
+    }
+
+    @Override
+    public VerbatimStringRedisMessage retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public VerbatimStringRedisMessage retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public VerbatimStringRedisMessage touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public VerbatimStringRedisMessage touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+}
@@ -26,7 +26,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static io.netty.handler.codec.redis.RedisCodecTestUtil.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -37,6 +39,8 @@ import static org.junit.Assert.*;
  */
 public class RedisDecoderTest {
 
+    private static final String[] RESP3_PREFIXES = { "_", "#", ",", "(", "!", "=", "%", "~", ">", "|" };
+
     private EmbeddedChannel channel;
 
     @Before
@@ -51,6 +55,14 @@ public class RedisDecoderTest {
                 new RedisArrayAggregator());
     }
 
+    private static EmbeddedChannel newResp3Channel() {
+        return new EmbeddedChannel(
+                new RedisDecoder(RedisConstants.REDIS_INLINE_MESSAGE_MAX_LENGTH, FixedRedisMessagePool.INSTANCE,
+                                 false, 0, true),
+                new RedisBulkStringAggregator(),
+                new RedisArrayAggregator());
+    }
+
     @After
     public void teardown() throws Exception {
         assertFalse(channel.finish());
@@ -307,6 +319,180 @@ public class RedisDecoderTest {
         ReferenceCountUtil.release(childBuf);
     }
 
+    @Test
+    public void shouldDecodeResp3Scalars() {
+        channel = newResp3Channel();
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(byteBufOf("_\r\n#t\r\n#f\r\n,3.25\r\n,-inf\r\n"));
+        buf.writeBytes(byteBufOf("(3492890328409238509324850943850943825024385\r\n"));
+        buf.writeBytes(byteBufOf("!21\r\nSYNTAX invalid syntax\r\n=15\r\ntxt:Some string\r\n"));
+        assertTrue(channel.writeInbound(buf));
+
+        assertThat(channel.<RedisMessage>readInbound(), is((RedisMessage) NullRedisMessage.INSTANCE));
+        assertThat(channel.<RedisMessage>readInbound(), is((RedisMessage) BooleanRedisMessage.TRUE));
+        assertThat(channel.<RedisMessage>readInbound(), is((RedisMessage) BooleanRedisMessage.FALSE));
+        assertThat(channel.<DoubleRedisMessage>readInbound().value(), is(3.25));
+        assertThat(channel.<DoubleRedisMessage>readInbound().value(), is(Double.NEGATIVE_INFINITY));
+        assertThat(channel.<BigNumberRedisMessage>readInbound().content(),
+                   is("3492890328409238509324850943850943825024385"));
+
+        BlobErrorRedisMessage blobError = channel.readInbound();
+        assertThat(stringOf(blobError.content()), is("SYNTAX invalid syntax"));
+        blobError.release();
+
+        VerbatimStringRedisMessage verbatim = channel.readInbound();
+        assertThat(verbatim.format(), is("txt"));
+        assertThat(stringOf(verbatim.text()), is("Some string"));
+        verbatim.release();
+    }
+
+    @Test(expected = DecoderException.class)
+    public void shouldNotDecodeVerbatimStringWithoutFormat() {
+        channel = newResp3Channel();
+        channel.writeInbound(byteBufOf("=3\r\ntxt\r\n"));
+    }
+
+    @Test
+    public void shouldDecodeResp3Aggregates() {
+        channel = newResp3Channel();
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeBytes(byteBufOf("%2\r\n+first\r\n:1\r\n+second\r\n~2\r\n$1\r\na\r\n#t\r\n"));
+        buf.writeBytes(byteBufOf(">2\r\n+message\r\n+hello\r\n"));
+        assertTrue(channel.writeInbound(buf));
+
+        MapRedisMessage map = channel.readInbound();
+        assertThat(map.children().size(), is(2));
+        Iterator<Map.Entry<RedisMessage, RedisMessage>> entries = map.children().entrySet().iterator();
+        Map.Entry<RedisMessage, RedisMessage> entry = entries.next();
+        assertThat(((SimpleStringRedisMessage) entry.getKey()).content(), is("first"));
+        assertThat(((IntegerRedisMessage) entry.getValue()).value(), is(1L));
+        entry = entries.next();
+        assertThat(((SimpleStringRedisMessage) entry.getKey()).content(), is("second"));
+        SetRedisMessage set = (SetRedisMessage) entry.getValue();
+        assertThat(set.children().size(), is(2));
+        Iterator<RedisMessage> members = set.children().iterator();
+        assertThat(stringOf(((FullBulkStringRedisMessage) members.next()).content()), is("a"));
+        assertThat(members.next(), is((RedisMessage) BooleanRedisMessage.TRUE));
+        ReferenceCountUtil.release(map);
+
+        PushRedisMessage push = channel.readInbound();
+        assertThat(push.children().size(), is(2));
+        assertThat(((SimpleStringRedisMessage) push.children().get(1)).content(), is("hello"));
+        ReferenceCountUtil.release(push);
+    }
+
+    @Test
+    public void shouldPassOnAttributesBeforeTheirReply() {
+        channel = newResp3Channel();
+        assertTrue(channel.writeInbound(byteBufOf("*2\r\n:1\r\n|1\r\n+ttl\r\n:3600\r\n:2\r\n")));
+
+        AttributeRedisMessage attribute = channel.readInbound();
+        assertThat(attribute.children().size(), is(1));
+        RedisMessage key = attribute.children().keySet().iterator().next();
+        assertThat(((SimpleStringRedisMessage) key).content(), is("ttl"));
+        assertThat(((IntegerRedisMessage) attribute.children().get(key)).value(), is(3600L));
+        ReferenceCountUtil.release(attribute);
+
+        ArrayRedisMessage array = channel.readInbound();
+        assertThat(array.children().size(), is(2));
+        assertThat(((IntegerRedisMessage) array.children().get(1)).value(), is(2L));
+        ReferenceCountUtil.release(array);
+    }
+
+    @Test
+    public void shouldNotDecodeResp3PrefixesByDefault() {
+        for (String prefix : RESP3_PREFIXES) {
+            try {
+                channel.writeInbound(byteBufOf(prefix));
+                fail("Decoded RESP3 prefix " + prefix);
+            } catch (DecoderException expected) {
+                assertThat(expected.getMessage(), containsString("inline commands is disabled"));
+            }
+        }
+    }
+
+    @Test
+    public void shouldDecodeResp3PrefixesAsInlineCommands() {
+        channel = newChannel(true);
+        for (String prefix : RESP3_PREFIXES) {
+            assertTrue(channel.writeInbound(byteBufOf(prefix + "1\r\n")));
+            InlineCommandRedisMessage msg = channel.readInbound();
+            assertThat(msg.content(), is(prefix + '1'));
+        }
+    }
+
+    @Test
+    public void shouldNotDecodeResp3ElementsInArrayByDefault() {
+        channel = newChannel(true);
+        assertTrue(channel.writeInbound(byteBufOf("*2\r\n:1\r\n#t\r\n")));
+        ArrayRedisMessage array = channel.readInbound();
+        assertThat(array.children().size(), is(2));
+        assertThat(((InlineCommandRedisMessage) array.children().get(1)).content(), is("#t"));
+        ReferenceCountUtil.release(array);
+    }
+
+    @Test
+    public void shouldDecodeFlyweightArray() {
+        EmbeddedChannel channel = newFlyweightChannel(4);
+        assertFalse(channel.writeInbound(byteBufOf("*4\r\n$3\r\nGET\r\n:-42\r\n$-1")));
+        assertFalse(channel.writeInbound(byteBufOf("\r\n$5\r\nhel")));
+        assertTrue(channel.writeInbound(byteBufOf("lo\r\n+OK\r\n")));
+
+        FlyweightArrayRedisMessage msg = channel.readInbound();
+        assertThat(msg.type(), is(RedisMessageType.ARRAY_HEADER));
+        assertThat(msg.size(), is(4));
+        assertThat(msg.elementType(0), is(RedisMessageType.BULK_STRING));
+        assertThat(msg.toString(0), is("GET"));
+        assertThat(msg.integerValue(1), is(-42L));
+        assertTrue(msg.isNull(2));
+        assertThat(msg.element(2), is(nullValue()));
+        assertThat(stringOf(msg.element(3)), is("hello"));
+        msg.release();
+
+        SimpleStringRedisMessage ok = channel.readInbound();
+        assertThat(ok.content(), is("OK"));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void shouldDecodeFlyweightMap() {
+        EmbeddedChannel channel = newFlyweightChannel(4);
+        assertTrue(channel.writeInbound(byteBufOf("%2\r\n+a\r\n:1\r\n+b\r\n:2\r\n")));
+
+        FlyweightArrayRedisMessage msg = channel.readInbound();
+        assertThat(msg.type(), is(RedisMessageType.MAP_HEADER));
+        assertThat(msg.size(), is(4));
+        assertThat(msg.toString(2), is("b"));
+        assertThat(msg.integerValue(3), is(2L));
+        msg.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void shouldNotDecodeNestedOrLongArraysAsFlyweight() {
+        EmbeddedChannel channel = newFlyweightChannel(2);
+        assertTrue(channel.writeInbound(byteBufOf("*2\r\n:1\r\n*2\r\n:2\r\n:3\r\n*3\r\n:1\r\n:2\r\n:3\r\n")));
+
+        ArrayRedisMessage nested = channel.readInbound();
+        assertThat(nested.children().size(), is(2));
+        FlyweightArrayRedisMessage inner = (FlyweightArrayRedisMessage) nested.children().get(1);
+        assertThat(inner.integerValue(1), is(3L));
+        ReferenceCountUtil.release(nested);
+
+        ArrayRedisMessage tooLong = channel.readInbound();
+        assertThat(tooLong.children().size(), is(3));
+        ReferenceCountUtil.release(tooLong);
+        assertFalse(channel.finish());
+    }
+
+    private static EmbeddedChannel newFlyweightChannel(int maxFlyweightArrayLength) {
+        return new EmbeddedChannel(
+                new RedisDecoder(RedisConstants.REDIS_INLINE_MESSAGE_MAX_LENGTH, FixedRedisMessagePool.INSTANCE,
+                                 false, maxFlyweightArrayLength, true),
+                new RedisBulkStringAggregator(),
+                new RedisArrayAggregator());
+    }
+
     @Test
     public void testPredefinedMessagesNotEqual() {
         // both EMPTY_INSTANCE and NULL_INSTANCE have EMPTY_BUFFER as their 'data',
@@ -18,13 +18,19 @@ package io.netty.handler.codec.redis;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
@@ -182,6 +188,97 @@ public class RedisEncoderTest {
         written.release();
     }
 
+    @Test
+    public void shouldEncodeResp3Scalars() {
+        assertThat(channel.writeOutbound(NullRedisMessage.INSTANCE, BooleanRedisMessage.FALSE,
+                                         new DoubleRedisMessage(1.5), new DoubleRedisMessage(Double.NaN),
+                                         new BigNumberRedisMessage(new BigInteger("-12345678901234567890")),
+                                         new BlobErrorRedisMessage(byteBufOf("ERR oops").retain()),
+                                         new VerbatimStringRedisMessage(byteBufOf("txt:hi").retain())), is(true));
+
+        ByteBuf written = readAll(channel);
+        assertThat(stringOf(written), is("_\r\n#f\r\n,1.5\r\n,nan\r\n(-12345678901234567890\r\n" +
+                                         "!8\r\nERR oops\r\n=6\r\ntxt:hi\r\n"));
+        written.release();
+    }
+
+    @Test
+    public void shouldEncodeResp3Aggregates() {
+        Map<RedisMessage, RedisMessage> entries = new LinkedHashMap<RedisMessage, RedisMessage>();
+        entries.put(new SimpleStringRedisMessage("key"), new IntegerRedisMessage(1));
+        Set<RedisMessage> members = new LinkedHashSet<RedisMessage>();
+        members.add(new SimpleStringRedisMessage("a"));
+        List<RedisMessage> children = new ArrayList<RedisMessage>();
+        children.add(new SimpleStringRedisMessage("pubsub"));
+
+        assertThat(channel.writeOutbound(new AttributeRedisMessage(new LinkedHashMap<RedisMessage, RedisMessage>()),
+                                         new MapRedisMessage(entries), new SetRedisMessage(members),
+                                         new PushRedisMessage(children)), is(true));
+
+        ByteBuf written = readAll(channel);
+        assertThat(stringOf(written), is("|0\r\n%1\r\n+key\r\n:1\r\n~1\r\n+a\r\n>1\r\n+pubsub\r\n"));
+        written.release();
+    }
+
+    @Test
+    public void shouldEncodeFlyweightArrayAsDecoded() {
+        String encoded = "%2\r\n+a\r\n$1\r\nb\r\n:1\r\n_\r\n";
+        EmbeddedChannel decoder = new EmbeddedChannel(new RedisDecoder(
+                RedisConstants.REDIS_INLINE_MESSAGE_MAX_LENGTH, FixedRedisMessagePool.INSTANCE, false, 8, true));
+        assertTrue(decoder.writeInbound(byteBufOf(encoded)));
+        FlyweightArrayRedisMessage msg = decoder.readInbound();
+        assertFalse(decoder.finish());
+
+        assertThat(channel.writeOutbound(msg), is(true));
+        ByteBuf written = readAll(channel);
+        assertThat(stringOf(written), is(encoded));
+        written.release();
+    }
+
+    @Test
+    public void shouldBatchPipelinedMessages() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RedisEncoder(FixedRedisMessagePool.INSTANCE, 64));
+        List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+        for (int i = 0; i < 3; i++) {
+            List<RedisMessage> command = new ArrayList<RedisMessage>();
+            command.add(new FullBulkStringRedisMessage(byteBufOf("GET").retain()));
+            command.add(new FullBulkStringRedisMessage(byteBufOf("key" + i).retain()));
+            futures.add(channel.write(new ArrayRedisMessage(command)));
+        }
+        ByteBuf large = Unpooled.buffer().writeZero(100);
+        futures.add(channel.write(new FullBulkStringRedisMessage(large)));
+        futures.add(channel.write(new IntegerRedisMessage(1)));
+        assertThat(channel.outboundMessages().size(), is(0));
+        channel.flush();
+
+        // the first two commands, the third command, the large bulk string in three buffers and the integer
+        assertThat(channel.outboundMessages().size(), is(6));
+        ByteBuf first = channel.readOutbound();
+        assertThat(stringOf(first), is("*2\r\n$3\r\nGET\r\n$4\r\nkey0\r\n*2\r\n$3\r\nGET\r\n$4\r\nkey1\r\n"));
+        first.release();
+        ByteBuf written = readAll(channel);
+        assertThat(written.readableBytes(), is(23 + 6 + 100 + 2 + 4));
+        written.release();
+        for (ChannelFuture future : futures) {
+            assertTrue(future.isSuccess());
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void shouldWriteBatchWhenRemoved() {
+        EmbeddedChannel channel = new EmbeddedChannel(new RedisEncoder(FixedRedisMessagePool.INSTANCE, 1024));
+        ChannelFuture future = channel.write(new SimpleStringRedisMessage("OK"));
+        channel.pipeline().removeFirst();
+        channel.flush();
+
+        assertTrue(future.isSuccess());
+        ByteBuf written = readAll(channel);
+        assertThat(stringOf(written), is("+OK\r\n"));
+        written.release();
+        assertFalse(channel.finish());
+    }
+
     private static ByteBuf readAll(EmbeddedChannel channel) {
         ByteBuf buf = Unpooled.buffer();
         ByteBuf read;
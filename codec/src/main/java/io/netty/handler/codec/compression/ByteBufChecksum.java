@@ -20,6 +20,7 @@ import io.netty.util.ByteProcessor;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.zip.Adler32;
@@ -30,17 +31,38 @@ import java.util.zip.Checksum;
  * {@link Checksum} implementation which can directly act on a {@link ByteBuf}.
  *
  * Implementations may optimize access patterns depending on if the {@link ByteBuf} is backed by a
- * byte array ({@link ByteBuf#hasArray()} is {@code true}) or not.
+ * byte array ({@link ByteBuf#hasArray()} is {@code true}) or not. Buffers which consist of several
+ * components, like a {@link io.netty.buffer.CompositeByteBuf}, are processed component by component
+ * without copying them.
  */
 abstract class ByteBufChecksum implements Checksum {
     private static final Method ADLER32_UPDATE_METHOD;
     private static final Method CRC32_UPDATE_METHOD;
+    private static final Constructor<?> CRC32C_CONSTRUCTOR;
+    private static final Method CRC32C_UPDATE_METHOD;
 
     static {
         // See if we can use fast-path when using ByteBuf that is not heap based as Adler32 and CRC32 added support
         // for update(ByteBuffer) in JDK8.
         ADLER32_UPDATE_METHOD = updateByteBuffer(new Adler32());
         CRC32_UPDATE_METHOD = updateByteBuffer(new CRC32());
+
+        // JDK9 added java.util.zip.CRC32C which is an intrinsic on most platforms.
+        Constructor<?> crc32cConstructor = null;
+        Method crc32cUpdateMethod = null;
+        if (PlatformDependent.javaVersion() >= 9) {
+            try {
+                Constructor<?> constructor = Class.forName("java.util.zip.CRC32C").getConstructor();
+                crc32cUpdateMethod = updateByteBuffer((Checksum) constructor.newInstance());
+                if (crc32cUpdateMethod != null) {
+                    crc32cConstructor = constructor;
+                }
+            } catch (Throwable ignore) {
+                crc32cUpdateMethod = null;
+            }
+        }
+        CRC32C_CONSTRUCTOR = crc32cConstructor;
+        CRC32C_UPDATE_METHOD = crc32cUpdateMethod;
     }
 
     private final ByteProcessor updateProcessor = new ByteProcessor() {
@@ -78,17 +100,53 @@ abstract class ByteBufChecksum implements Checksum {
         return new SlowByteBufChecksum(checksum);
     }
 
+    /**
+     * Returns a new CRC32-C checksum, which uses {@code java.util.zip.CRC32C} if available and {@link Crc32c}
+     * otherwise.
+     */
+    static ByteBufChecksum newCrc32c() {
+        if (CRC32C_CONSTRUCTOR != null) {
+            try {
+                return new ReflectiveByteBufChecksum((Checksum) CRC32C_CONSTRUCTOR.newInstance(), CRC32C_UPDATE_METHOD);
+            } catch (Throwable ignore) {
+                // Fall back to the pure Java implementation.
+            }
+        }
+        return new Crc32c();
+    }
+
     /**
      * @see #update(byte[], int, int)
      */
     public void update(ByteBuf b, int off, int len) {
         if (b.hasArray()) {
             update(b.array(), b.arrayOffset() + off, len);
+        } else if (b.nioBufferCount() > 1) {
+            for (ByteBuffer buffer : b.nioBuffers(off, len)) {
+                update(buffer);
+            }
+        } else if (b.nioBufferCount() == 1) {
+            update(CompressionUtil.safeNioBuffer(b, off, len));
         } else {
             b.forEachByte(off, len, updateProcessor);
         }
     }
 
+    /**
+     * Updates the checksum with the remaining bytes of the given {@link ByteBuffer}, like
+     * {@code Checksum.update(ByteBuffer)} of JDK9 does. The position of the buffer is set to its limit.
+     */
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                update(buffer.get(i));
+            }
+        }
+        buffer.position(buffer.limit());
+    }
+
     private static final class ReflectiveByteBufChecksum extends SlowByteBufChecksum {
         private final Method method;
 
@@ -98,12 +156,12 @@ abstract class ByteBufChecksum implements Checksum {
         }
 
         @Override
-        public void update(ByteBuf b, int off, int len) {
-            if (b.hasArray()) {
-                update(b.array(), b.arrayOffset() + off, len);
+        public void update(ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                super.update(buffer);
             } else {
                 try {
-                    method.invoke(checksum, CompressionUtil.safeNioBuffer(b, off, len));
+                    method.invoke(checksum, buffer);
                 } catch (Throwable cause) {
                     throw new Error();
                 }
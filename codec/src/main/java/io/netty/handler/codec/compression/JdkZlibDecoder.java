@@ -18,8 +18,13 @@ package io.netty.handler.codec.compression;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.internal.EmptyArrays;
 import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.zip.CRC32;
 import java.util.zip.DataFormatException;
@@ -28,8 +33,15 @@ import java.util.zip.Inflater;
 
 /**
  * Decompress a {@link ByteBuf} using the inflate algorithm.
+ * <p>
+ * The {@link Inflater} is only acquired once the first {@link ByteBuf} is decompressed and is given back to a
+ * per-thread cache once this decoder is removed, see {@link JdkZlibPool}. On Java 11+ direct {@link ByteBuf}s are
+ * decompressed without copying them to a heap array first. The output is always written into the array of a heap
+ * {@link ByteBuf}.
  */
 public class JdkZlibDecoder extends ZlibDecoder {
+    private static final Method SET_INPUT_BYTE_BUFFER_METHOD = setInputByteBuffer();
+
     private static final int FHCRC = 0x02;
     private static final int FEXTRA = 0x04;
     private static final int FNAME = 0x08;
@@ -37,6 +49,7 @@ public class JdkZlibDecoder extends ZlibDecoder {
     private static final int FRESERVED = 0xE0;
 
     private Inflater inflater;
+    private boolean nowrap;
     private final byte[] dictionary;
 
     // GZIP related
@@ -149,15 +162,14 @@ public class JdkZlibDecoder extends ZlibDecoder {
         this.decompressConcatenated = decompressConcatenated;
         switch (wrapper) {
             case GZIP:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = ByteBufChecksum.wrapChecksum(new CRC32());
                 break;
             case NONE:
-                inflater = new Inflater(true);
+                nowrap = true;
                 crc = null;
                 break;
             case ZLIB:
-                inflater = new Inflater();
                 crc = null;
                 break;
             case ZLIB_OR_NONE:
@@ -171,6 +183,38 @@ public class JdkZlibDecoder extends ZlibDecoder {
         this.dictionary = dictionary;
     }
 
+    /**
+     * Resolves {@code Inflater.setInput(ByteBuffer)} once. Netty is compiled for Java 6, which can neither call the
+     * Java 11 method directly nor link a {@code MethodHandle.invokeExact} call, so it is invoked through reflection.
+     */
+    private static Method setInputByteBuffer() {
+        if (PlatformDependent.javaVersion() >= 11) {
+            Inflater inflater = new Inflater();
+            try {
+                Method method = Inflater.class.getDeclaredMethod("setInput", ByteBuffer.class);
+                // Make sure the method can be invoked before using it for every direct buffer.
+                method.invoke(inflater, ByteBuffer.allocateDirect(0));
+                return method;
+            } catch (Throwable ignore) {
+                return null;
+            } finally {
+                inflater.end();
+            }
+        }
+        return null;
+    }
+
+    private static void setInput(Inflater inflater, ByteBuffer input) {
+        try {
+            SET_INPUT_BYTE_BUFFER_METHOD.invoke(inflater, input);
+        } catch (InvocationTargetException e) {
+            PlatformDependent.throwException(e.getCause());
+        } catch (IllegalAccessException e) {
+            // Can not happen as the method was invoked once already.
+            throw new Error(e);
+        }
+    }
+
     @Override
     public boolean isClosed() {
         return finished;
@@ -195,10 +239,12 @@ public class JdkZlibDecoder extends ZlibDecoder {
                 return;
             }
 
-            boolean nowrap = !looksLikeZlib(in.getShort(in.readerIndex()));
-            inflater = new Inflater(nowrap);
+            nowrap = !looksLikeZlib(in.getShort(in.readerIndex()));
             decideZlibOrNone = false;
         }
+        if (inflater == null) {
+            inflater = JdkZlibPool.inflater(nowrap);
+        }
 
         if (crc != null) {
             switch (gzipState) {
@@ -218,8 +264,13 @@ public class JdkZlibDecoder extends ZlibDecoder {
             readableBytes = in.readableBytes();
         }
 
+        boolean nioInput = false;
         if (in.hasArray()) {
             inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), readableBytes);
+        } else if (SET_INPUT_BYTE_BUFFER_METHOD != null) {
+            // Java 11+ can read the input from a direct ByteBuffer, so we do not need to copy it.
+            setInput(inflater, CompressionUtil.safeNioBuffer(in, in.readerIndex(), readableBytes));
+            nioInput = true;
         } else {
             byte[] array = new byte[readableBytes];
             in.getBytes(in.readerIndex(), array);
@@ -262,6 +313,11 @@ public class JdkZlibDecoder extends ZlibDecoder {
             }
 
             in.skipBytes(readableBytes - inflater.getRemaining());
+            if (nioInput) {
+                // Do not keep a reference to the memory of the ByteBuf.
+                nioInput = false;
+                inflater.setInput(EmptyArrays.EMPTY_BYTES);
+            }
 
             if (readFooter) {
                 gzipState = GzipState.FOOTER_START;
@@ -278,6 +334,9 @@ public class JdkZlibDecoder extends ZlibDecoder {
         } catch (DataFormatException e) {
             throw new DecompressionException("decompression failure", e);
         } finally {
+            if (nioInput) {
+                inflater.setInput(EmptyArrays.EMPTY_BYTES);
+            }
 
             if (decompressed.isReadable()) {
                 out.add(decompressed);
@@ -296,7 +355,8 @@ public class JdkZlibDecoder extends ZlibDecoder {
     protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
         super.handlerRemoved0(ctx);
         if (inflater != null) {
-            inflater.end();
+            JdkZlibPool.release(inflater, nowrap);
+            inflater = null;
         }
     }
 
@@ -22,28 +22,40 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.ChannelPromiseNotifier;
 import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.EmptyArrays;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SuppressJava6Requirement;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
 /**
  * Compresses a {@link ByteBuf} using the deflate algorithm.
+ * <p>
+ * The {@link Deflater} is only acquired once the first {@link ByteBuf} is compressed and is given back to a per-thread
+ * cache once the stream is finished, see {@link JdkZlibPool}. On Java 11+ direct {@link ByteBuf}s are compressed
+ * without copying them to a heap array first. The output is always written into the array of a heap {@link ByteBuf}.
  */
 public class JdkZlibEncoder extends ZlibEncoder {
 
+    private static final Method SET_INPUT_BYTE_BUFFER_METHOD = setInputByteBuffer();
+
     private final ZlibWrapper wrapper;
-    private final Deflater deflater;
+    private final int compressionLevel;
+    private final byte[] dictionary;
+    private Deflater deflater;
     private volatile boolean finished;
     private volatile ChannelHandlerContext ctx;
 
     /*
      * GZIP support
      */
-    private final CRC32 crc = new CRC32();
+    private final ByteBufChecksum crc = ByteBufChecksum.wrapChecksum(new CRC32());
     private static final byte[] gzipHeader = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
     private boolean writeHeader = true;
 
@@ -106,7 +118,8 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         this.wrapper = wrapper;
-        deflater = new Deflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        this.compressionLevel = compressionLevel;
+        dictionary = null;
     }
 
     /**
@@ -145,8 +158,60 @@ public class JdkZlibEncoder extends ZlibEncoder {
         ObjectUtil.checkNotNull(dictionary, "dictionary");
 
         wrapper = ZlibWrapper.ZLIB;
-        deflater = new Deflater(compressionLevel);
-        deflater.setDictionary(dictionary);
+        this.compressionLevel = compressionLevel;
+        this.dictionary = dictionary.clone();
+    }
+
+    /**
+     * Resolves {@code Deflater.setInput(ByteBuffer)} once. Netty is compiled for Java 6, which can neither call the
+     * Java 11 method directly nor link a {@code MethodHandle.invokeExact} call, so it is invoked through reflection.
+     */
+    private static Method setInputByteBuffer() {
+        if (PlatformDependent.javaVersion() >= 11) {
+            Deflater deflater = new Deflater();
+            try {
+                Method method = Deflater.class.getDeclaredMethod("setInput", ByteBuffer.class);
+                // Make sure the method can be invoked before using it for every direct buffer.
+                method.invoke(deflater, ByteBuffer.allocateDirect(0));
+                return method;
+            } catch (Throwable ignore) {
+                return null;
+            } finally {
+                deflater.end();
+            }
+        }
+        return null;
+    }
+
+    private static void setInput(Deflater deflater, ByteBuffer input) {
+        try {
+            SET_INPUT_BYTE_BUFFER_METHOD.invoke(deflater, input);
+        } catch (InvocationTargetException e) {
+            PlatformDependent.throwException(e.getCause());
+        } catch (IllegalAccessException e) {
+            // Can not happen as the method was invoked once already.
+            throw new Error(e);
+        }
+    }
+
+    private Deflater deflater() {
+        Deflater deflater = this.deflater;
+        if (deflater == null) {
+            deflater = JdkZlibPool.deflater(compressionLevel, wrapper != ZlibWrapper.ZLIB);
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            this.deflater = deflater;
+        }
+        return deflater;
+    }
+
+    private void releaseDeflater() {
+        Deflater deflater = this.deflater;
+        if (deflater != null) {
+            this.deflater = null;
+            JdkZlibPool.release(deflater, compressionLevel, wrapper != ZlibWrapper.ZLIB);
+        }
     }
 
     @Override
@@ -198,20 +263,6 @@ public class JdkZlibEncoder extends ZlibEncoder {
             return;
         }
 
-        int offset;
-        byte[] inAry;
-        if (uncompressed.hasArray()) {
-            // if it is backed by an array we not need to to do a copy at all
-            inAry = uncompressed.array();
-            offset = uncompressed.arrayOffset() + uncompressed.readerIndex();
-            // skip all bytes as we will consume all of them
-            uncompressed.skipBytes(len);
-        } else {
-            inAry = new byte[len];
-            uncompressed.readBytes(inAry);
-            offset = 0;
-        }
-
         if (writeHeader) {
             writeHeader = false;
             if (wrapper == ZlibWrapper.GZIP) {
@@ -220,12 +271,36 @@ public class JdkZlibEncoder extends ZlibEncoder {
         }
 
         if (wrapper == ZlibWrapper.GZIP) {
-            crc.update(inAry, offset, len);
+            crc.update(uncompressed, uncompressed.readerIndex(), len);
+        }
+
+        Deflater deflater = deflater();
+        if (uncompressed.hasArray()) {
+            // if it is backed by an array we not need to to do a copy at all
+            deflater.setInput(uncompressed.array(), uncompressed.arrayOffset() + uncompressed.readerIndex(), len);
+            deflateInput(deflater, out);
+        } else if (SET_INPUT_BYTE_BUFFER_METHOD != null) {
+            // Java 11+ can read the input from a direct ByteBuffer, so we do not need to copy it either.
+            setInput(deflater, CompressionUtil.safeNioBuffer(uncompressed, uncompressed.readerIndex(), len));
+            try {
+                deflateInput(deflater, out);
+            } finally {
+                // Do not keep a reference to the memory of the ByteBuf.
+                deflater.setInput(EmptyArrays.EMPTY_BYTES);
+            }
+        } else {
+            byte[] inAry = new byte[len];
+            uncompressed.getBytes(uncompressed.readerIndex(), inAry);
+            deflater.setInput(inAry, 0, len);
+            deflateInput(deflater, out);
         }
+        // skip all bytes as we consumed all of them
+        uncompressed.skipBytes(len);
+    }
 
-        deflater.setInput(inAry, offset, len);
+    private void deflateInput(Deflater deflater, ByteBuf out) {
         for (;;) {
-            deflate(out);
+            deflate(deflater, out);
             if (deflater.needsInput()) {
                 // Consumed everything
                 break;
@@ -293,10 +368,11 @@ public class JdkZlibEncoder extends ZlibEncoder {
             footer.writeBytes(gzipHeader);
         }
 
+        Deflater deflater = deflater();
         deflater.finish();
 
         while (!deflater.finished()) {
-            deflate(footer);
+            deflate(deflater, footer);
             if (!footer.isWritable()) {
                 // no more space so write it to the channel and continue
                 ctx.write(footer);
@@ -315,14 +391,14 @@ public class JdkZlibEncoder extends ZlibEncoder {
             footer.writeByte(uncBytes >>> 16);
             footer.writeByte(uncBytes >>> 24);
         }
-        deflater.end();
+        releaseDeflater();
         return ctx.writeAndFlush(footer, promise);
     }
 
     @SuppressJava6Requirement(reason = "Usage guarded by java version check")
-    private void deflate(ByteBuf out) {
+    private static void deflate(Deflater deflater, ByteBuf out) {
         if (PlatformDependent.javaVersion() < 7) {
-            deflateJdk6(out);
+            deflateJdk6(deflater, out);
         }
         int numBytes;
         do {
@@ -333,7 +409,7 @@ public class JdkZlibEncoder extends ZlibEncoder {
         } while (numBytes > 0);
     }
 
-    private void deflateJdk6(ByteBuf out) {
+    private static void deflateJdk6(Deflater deflater, ByteBuf out) {
         int numBytes;
         do {
             int writerIndex = out.writerIndex();
@@ -347,4 +423,9 @@ public class JdkZlibEncoder extends ZlibEncoder {
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
     }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseDeflater();
+    }
 }
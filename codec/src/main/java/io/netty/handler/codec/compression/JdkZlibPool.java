@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Caches the {@link Deflater}s and {@link Inflater}s of {@link JdkZlibEncoder} and {@link JdkZlibDecoder} per
+ * thread, so their native memory is only allocated once per thread instead of once per stream.
+ * <p>
+ * Each thread caches at most {@code io.netty.jdkzlib.maxCachedPerThread} instances per compression level and
+ * wrapper. A value of {@code 0} disables the caches. The most recently released instance is reused first, as its
+ * memory is the most likely to still be in the CPU cache.
+ */
+final class JdkZlibPool {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(JdkZlibPool.class);
+
+    static final int MAX_CACHED_PER_THREAD = Math.max(0,
+            SystemPropertyUtil.getInt("io.netty.jdkzlib.maxCachedPerThread", 4));
+
+    private static final FastThreadLocal<Caches> CACHES = new FastThreadLocal<Caches>() {
+        @Override
+        protected Caches initialValue() {
+            return new Caches();
+        }
+
+        @Override
+        protected void onRemoval(Caches caches) {
+            caches.end();
+        }
+    };
+
+    static {
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.jdkzlib.maxCachedPerThread: {}", MAX_CACHED_PER_THREAD);
+        }
+    }
+
+    private JdkZlibPool() { }
+
+    /**
+     * Returns a {@link Deflater} with the given settings which must be given back via
+     * {@link #release(Deflater, int, boolean)} once it is not used anymore.
+     */
+    static Deflater deflater(int compressionLevel, boolean nowrap) {
+        if (MAX_CACHED_PER_THREAD > 0) {
+            Deflater deflater = CACHES.get().deflaters[deflaterIndex(compressionLevel, nowrap)].pollFirst();
+            if (deflater != null) {
+                return deflater;
+            }
+        }
+        return new Deflater(compressionLevel, nowrap);
+    }
+
+    /**
+     * Resets the given {@link Deflater} and caches it, or frees its native memory if the cache of the current thread
+     * is full.
+     */
+    static void release(Deflater deflater, int compressionLevel, boolean nowrap) {
+        if (MAX_CACHED_PER_THREAD > 0) {
+            ArrayDeque<Deflater> cache = CACHES.get().deflaters[deflaterIndex(compressionLevel, nowrap)];
+            if (cache.size() < MAX_CACHED_PER_THREAD) {
+                deflater.reset();
+                cache.addFirst(deflater);
+                return;
+            }
+        }
+        deflater.end();
+    }
+
+    /**
+     * Returns an {@link Inflater} with the given settings which must be given back via
+     * {@link #release(Inflater, boolean)} once it is not used anymore.
+     */
+    static Inflater inflater(boolean nowrap) {
+        if (MAX_CACHED_PER_THREAD > 0) {
+            Inflater inflater = CACHES.get().inflaters[nowrap ? 1 : 0].pollFirst();
+            if (inflater != null) {
+                return inflater;
+            }
+        }
+        return new Inflater(nowrap);
+    }
+
+    /**
+     * Resets the given {@link Inflater} and caches it, or frees its native memory if the cache of the current thread
+     * is full.
+     */
+    static void release(Inflater inflater, boolean nowrap) {
+        if (MAX_CACHED_PER_THREAD > 0) {
+            ArrayDeque<Inflater> cache = CACHES.get().inflaters[nowrap ? 1 : 0];
+            if (cache.size() < MAX_CACHED_PER_THREAD) {
+                inflater.reset();
+                cache.addFirst(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+
+    private static int deflaterIndex(int compressionLevel, boolean nowrap) {
+        return compressionLevel << 1 | (nowrap ? 1 : 0);
+    }
+
+    private static final class Caches {
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Deflater>[] deflaters = new ArrayDeque[20];
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Inflater>[] inflaters = new ArrayDeque[2];
+
+        Caches() {
+            for (int i = 0; i < deflaters.length; i++) {
+                deflaters[i] = new ArrayDeque<Deflater>(MAX_CACHED_PER_THREAD);
+            }
+            for (int i = 0; i < inflaters.length; i++) {
+                inflaters[i] = new ArrayDeque<Inflater>(MAX_CACHED_PER_THREAD);
+            }
+        }
+
+        void end() {
+            for (ArrayDeque<Deflater> cache : deflaters) {
+                for (Deflater deflater : cache) {
+                    deflater.end();
+                }
+                cache.clear();
+            }
+            for (ArrayDeque<Inflater> cache : inflaters) {
+                for (Inflater inflater : cache) {
+                    inflater.end();
+                }
+                cache.clear();
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import net.jpountz.lz4.LZ4Exception;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4FastDecompressor;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.zip.Checksum;
 
@@ -43,6 +44,11 @@ import static io.netty.handler.codec.compression.Lz4Constants.*;
  *  * Magic * Token *  Compressed *  Decompressed *  Checksum *  +  *  LZ4 compressed *
  *  *       *       *    length   *     length    *           *     *      block      *
  *  * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *     * * * * * * * * * *
+ *
+ * In streaming mode (see {@link #Lz4FrameDecoder(LZ4Factory, Checksum, boolean)}) compressed blocks are decompressed
+ * into a window buffer which is shared by consecutive blocks and reused once all slices of it were released, instead
+ * of allocating a new buffer per block. Non-compressed blocks are passed on as soon as their data is received if no
+ * checksum needs to be validated.
  */
 public class Lz4FrameDecoder extends ByteToMessageDecoder {
     /**
@@ -87,6 +93,16 @@ public class Lz4FrameDecoder extends ByteToMessageDecoder {
      */
     private int currentChecksum;
 
+    /**
+     * {@code true} if data is passed on as soon as possible.
+     */
+    private final boolean streaming;
+
+    /**
+     * Buffer which compressed blocks are decompressed into in streaming mode.
+     */
+    private ByteBuf window;
+
     /**
      * Creates the fastest LZ4 decoder.
      *
@@ -137,8 +153,25 @@ public class Lz4FrameDecoder extends ByteToMessageDecoder {
      *                  You may set {@code null} if you do not want to validate checksum of each block
      */
     public Lz4FrameDecoder(LZ4Factory factory, Checksum checksum) {
+        this(factory, checksum, false);
+    }
+
+    /**
+     * Creates a new customizable LZ4 decoder.
+     *
+     * @param factory   user customizable {@link LZ4Factory} instance
+     *                  which may be JNI bindings to the original C implementation, a pure Java implementation
+     *                  or a Java implementation that uses the {@link sun.misc.Unsafe}
+     * @param checksum  the {@link Checksum} instance to use to check data for integrity.
+     *                  You may set {@code null} if you do not want to validate checksum of each block
+     * @param streaming if {@code true}, compressed blocks are decompressed into a shared window buffer instead of a
+     *                  new buffer per block, and non-compressed blocks are passed on as soon as their data is
+     *                  received if {@code checksum} is {@code null}
+     */
+    public Lz4FrameDecoder(LZ4Factory factory, Checksum checksum, boolean streaming) {
         decompressor = ObjectUtil.checkNotNull(factory, "factory").fastDecompressor();
         this.checksum = checksum == null ? null : ByteBufChecksum.wrapChecksum(checksum);
+        this.streaming = streaming;
     }
 
     @Override
@@ -204,6 +237,19 @@ public class Lz4FrameDecoder extends ByteToMessageDecoder {
                 decompressedLength = this.decompressedLength;
                 currentChecksum = this.currentChecksum;
 
+                if (streaming && blockType == BLOCK_TYPE_NON_COMPRESSED && checksum == null) {
+                    final int length = Math.min(in.readableBytes(), compressedLength);
+                    if (length > 0) {
+                        out.add(in.readRetainedSlice(length));
+                        compressedLength -= length;
+                        this.compressedLength = compressedLength;
+                    }
+                    if (compressedLength == 0) {
+                        currentState = State.INIT_BLOCK;
+                    }
+                    break;
+                }
+
                 if (in.readableBytes() < compressedLength) {
                     break;
                 }
@@ -219,10 +265,20 @@ public class Lz4FrameDecoder extends ByteToMessageDecoder {
                             uncompressed = in.retainedSlice(in.readerIndex(), decompressedLength);
                             break;
                         case BLOCK_TYPE_COMPRESSED:
-                            uncompressed = ctx.alloc().buffer(decompressedLength, decompressedLength);
+                            uncompressed = streaming ? windowSlice(ctx, decompressedLength) :
+                                    ctx.alloc().buffer(decompressedLength, decompressedLength);
 
-                            decompressor.decompress(CompressionUtil.safeNioBuffer(in),
-                                    uncompressed.internalNioBuffer(uncompressed.writerIndex(), decompressedLength));
+                            // lz4-java ignores ByteBuffer.arrayOffset(), which is not 0 for the NIO buffers of
+                            // derived heap buffers, so wrap the arrays instead of slicing them.
+                            ByteBuffer src = in.hasArray() ?
+                                    ByteBuffer.wrap(in.array(), in.arrayOffset() + in.readerIndex(), compressedLength) :
+                                    CompressionUtil.safeNioBuffer(in);
+                            ByteBuffer dst = uncompressed.hasArray() ?
+                                    ByteBuffer.wrap(uncompressed.array(),
+                                            uncompressed.arrayOffset() + uncompressed.writerIndex(),
+                                            decompressedLength) :
+                                    uncompressed.internalNioBuffer(uncompressed.writerIndex(), decompressedLength);
+                            decompressor.decompress(src, dst);
                             // Update the writerIndex now to reflect what we decompressed.
                             uncompressed.writerIndex(uncompressed.writerIndex() + decompressedLength);
                             break;
@@ -261,6 +317,36 @@ public class Lz4FrameDecoder extends ByteToMessageDecoder {
         }
     }
 
+    /**
+     * Returns an empty retained slice of {@link #window} which can hold {@code length} bytes.
+     */
+    private ByteBuf windowSlice(ChannelHandlerContext ctx, int length) {
+        ByteBuf window = this.window;
+        if (window != null && window.writableBytes() < length && window.capacity() >= length &&
+                window.refCnt() == 1) {
+            // Nobody uses the slices anymore, start from the beginning.
+            window.clear();
+        }
+        if (window == null || window.writableBytes() < length) {
+            if (window != null) {
+                window.release();
+            }
+            final int capacity = Math.max(length, DEFAULT_BLOCK_SIZE);
+            window = this.window = ctx.alloc().buffer(capacity, capacity);
+        }
+        ByteBuf slice = window.retainedSlice(window.writerIndex(), length);
+        window.writerIndex(window.writerIndex() + length);
+        return slice.clear();
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (window != null) {
+            window.release();
+            window = null;
+        }
+    }
+
     /**
      * Returns {@code true} if and only if the end of the compressed stream
      * has been reached.
@@ -15,12 +15,11 @@
  */
 package io.netty.handler.codec.compression;
 
-import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
 import net.jpountz.xxhash.StreamingXXHash32;
-import net.jpountz.xxhash.XXHash32;
-import net.jpountz.xxhash.XXHashFactory;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.zip.Checksum;
 
 /**
@@ -39,69 +38,208 @@ import java.util.zip.Checksum;
  * with direct byte buffers (allocating an array and making a JNI call for every byte
  * checksummed might be considered sub-optimal by some).
  *
- * Block version of xxHash32 ({@link XXHash32}), however, does provide
- * {@link XXHash32#hash(ByteBuffer, int)} method that is efficient and does exactly
- * what we need, with a caveat that we can only invoke it once before having to reset.
- * This, however, is fine for our purposes, given the way we use it in
- * {@link Lz4FrameEncoder} and {@link Lz4FrameDecoder}:
- * {@code reset()}, followed by one {@code update()}, followed by {@code getValue()}.
+ * This class implements xxHash32, based on Yann Collet's work available at
+ * <a href="https://github.com/Cyan4973/xxHash">Github</a>, in Java instead. The input is read a 32-bit word at a
+ * time, directly from byte arrays and {@link ByteBuffer}s, and may be passed in several updates. As the per-call
+ * overhead of the native implementation is avoided, small blocks are hashed considerably faster.
  */
 public final class Lz4XXHash32 extends ByteBufChecksum {
 
-    private static final XXHash32 XXHASH32 = XXHashFactory.fastestInstance().hash32();
+    // Used for byte arrays and the memory of direct buffers.
+    private static final boolean UNSAFE_ARRAY_ACCESS = PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned();
+
+    private static final int PRIME1 = 0x9E3779B1;
+    private static final int PRIME2 = 0x85EBCA77;
+    private static final int PRIME3 = 0xC2B2AE3D;
+    private static final int PRIME4 = 0x27D4EB2F;
+    private static final int PRIME5 = 0x165667B1;
+
+    private static final int STRIPE_LENGTH = 16;
 
     private final int seed;
-    private boolean used;
-    private int value;
+    private final byte[] pending = new byte[STRIPE_LENGTH];
+    private int pendingLength;
+    private long totalLength;
+    private int v1;
+    private int v2;
+    private int v3;
+    private int v4;
 
     @SuppressWarnings("WeakerAccess")
     public Lz4XXHash32(int seed) {
         this.seed = seed;
+        reset();
     }
 
     @Override
     public void update(int b) {
-        throw new UnsupportedOperationException();
+        pending[pendingLength++] = (byte) b;
+        totalLength++;
+        if (pendingLength == STRIPE_LENGTH) {
+            processPending();
+        }
     }
 
     @Override
     public void update(byte[] b, int off, int len) {
-        if (used) {
-            throw new IllegalStateException();
+        totalLength += len;
+        final int end = off + len;
+        if (pendingLength > 0) {
+            int n = Math.min(len, STRIPE_LENGTH - pendingLength);
+            System.arraycopy(b, off, pending, pendingLength, n);
+            pendingLength += n;
+            off += n;
+            if (pendingLength < STRIPE_LENGTH) {
+                return;
+            }
+            processPending();
         }
-        value = XXHASH32.hash(b, off, len, seed);
-        used = true;
+
+        int v1 = this.v1;
+        int v2 = this.v2;
+        int v3 = this.v3;
+        int v4 = this.v4;
+        for (; off <= end - STRIPE_LENGTH; off += STRIPE_LENGTH) {
+            v1 = round(v1, getIntLE(b, off));
+            v2 = round(v2, getIntLE(b, off + 4));
+            v3 = round(v3, getIntLE(b, off + 8));
+            v4 = round(v4, getIntLE(b, off + 12));
+        }
+        this.v1 = v1;
+        this.v2 = v2;
+        this.v3 = v3;
+        this.v4 = v4;
+
+        pendingLength = end - off;
+        System.arraycopy(b, off, pending, 0, pendingLength);
     }
 
     @Override
-    public void update(ByteBuf b, int off, int len) {
-        if (used) {
-            throw new IllegalStateException();
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            super.update(buffer);
+            return;
+        }
+        int off = buffer.position();
+        final int end = buffer.limit();
+        totalLength += end - off;
+        if (pendingLength > 0) {
+            int n = Math.min(end - off, STRIPE_LENGTH - pendingLength);
+            for (int i = 0; i < n; i++) {
+                pending[pendingLength++] = buffer.get(off++);
+            }
+            if (pendingLength < STRIPE_LENGTH) {
+                buffer.position(end);
+                return;
+            }
+            processPending();
         }
-        if (b.hasArray()) {
-            value = XXHASH32.hash(b.array(), b.arrayOffset() + off, len, seed);
+
+        int v1 = this.v1;
+        int v2 = this.v2;
+        int v3 = this.v3;
+        int v4 = this.v4;
+        if (UNSAFE_ARRAY_ACCESS && buffer.isDirect()) {
+            final long address = PlatformDependent.directBufferAddress(buffer);
+            for (; off <= end - STRIPE_LENGTH; off += STRIPE_LENGTH) {
+                v1 = round(v1, getIntLE(address + off));
+                v2 = round(v2, getIntLE(address + off + 4));
+                v3 = round(v3, getIntLE(address + off + 8));
+                v4 = round(v4, getIntLE(address + off + 12));
+            }
         } else {
-            value = XXHASH32.hash(CompressionUtil.safeNioBuffer(b, off, len), seed);
+            final ByteBuffer le = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            for (; off <= end - STRIPE_LENGTH; off += STRIPE_LENGTH) {
+                v1 = round(v1, le.getInt(off));
+                v2 = round(v2, le.getInt(off + 4));
+                v3 = round(v3, le.getInt(off + 8));
+                v4 = round(v4, le.getInt(off + 12));
+            }
+        }
+        this.v1 = v1;
+        this.v2 = v2;
+        this.v3 = v3;
+        this.v4 = v4;
+
+        while (off < end) {
+            pending[pendingLength++] = buffer.get(off++);
         }
-        used = true;
+        buffer.position(end);
+    }
+
+    private void processPending() {
+        v1 = round(v1, getIntLE(pending, 0));
+        v2 = round(v2, getIntLE(pending, 4));
+        v3 = round(v3, getIntLE(pending, 8));
+        v4 = round(v4, getIntLE(pending, 12));
+        pendingLength = 0;
     }
 
     @Override
     public long getValue() {
-        if (!used) {
-            throw new IllegalStateException();
+        int hash;
+        if (totalLength >= STRIPE_LENGTH) {
+            hash = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) +
+                    Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+        } else {
+            hash = seed + PRIME5;
         }
+        hash += (int) totalLength;
+
+        int i = 0;
+        for (; i <= pendingLength - 4; i += 4) {
+            hash += getIntLE(pending, i) * PRIME3;
+            hash = Integer.rotateLeft(hash, 17) * PRIME4;
+        }
+        for (; i < pendingLength; i++) {
+            hash += (pending[i] & 0xFF) * PRIME5;
+            hash = Integer.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 15;
+        hash *= PRIME2;
+        hash ^= hash >>> 13;
+        hash *= PRIME3;
+        hash ^= hash >>> 16;
+
         /*
          * If you look carefully, you'll notice that the most significant nibble
          * is being discarded; we believe this to be a bug, but this is what
          * StreamingXXHash32#asChecksum() implementation of getValue() does,
          * so we have to retain this behaviour for compatibility reasons.
          */
-        return value & 0xFFFFFFFL;
+        return hash & 0xFFFFFFFL;
     }
 
     @Override
     public void reset() {
-        used = false;
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+        totalLength = 0;
+        pendingLength = 0;
+    }
+
+    private static int round(int acc, int input) {
+        acc += input * PRIME2;
+        acc = Integer.rotateLeft(acc, 13);
+        return acc * PRIME1;
+    }
+
+    private static int getIntLE(long address) {
+        int value = PlatformDependent.getInt(address);
+        return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? Integer.reverseBytes(value) : value;
+    }
+
+    private static int getIntLE(byte[] array, int index) {
+        if (UNSAFE_ARRAY_ACCESS) {
+            int value = PlatformDependent.getInt(array, index);
+            return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? Integer.reverseBytes(value) : value;
+        }
+        return array[index] & 0xFF |
+               (array[index + 1] & 0xFF) << 8 |
+               (array[index + 2] & 0xFF) << 16 |
+               array[index + 3] << 24;
     }
 }
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.PromiseCombiner;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.UnstableApi;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Runs an encoder, usually a compressing one like the {@code HttpContentCompressor} or the
+ * {@code PerMessageDeflateEncoder}, on a dedicated {@link EventExecutorGroup} for all messages whose content is at
+ * least {@code offloadThreshold} bytes, so compressing large messages does not delay the other {@link Channel}s
+ * which are served by the same event loop.
+ * <p>
+ * The encoder is wrapped by this handler and must not be added to the pipeline itself. All events which are
+ * handled by the encoder are processed in the order in which they were triggered, so writes keep their order and
+ * their promises are notified once the encoded messages were written, no matter on which thread they were encoded.
+ * Messages smaller than the threshold are encoded on the event loop as long as no other message is waiting.
+ * <p>
+ * The size of the messages which wait to be encoded is accounted for in the writability of the {@link Channel}:
+ * once more than {@link ChannelConfig#getWriteBufferHighWaterMark()} bytes are waiting, the user-defined
+ * writability flag {@link #WRITABILITY_INDEX} is cleared, and it is set again once less than
+ * {@link ChannelConfig#getWriteBufferLowWaterMark()} bytes are waiting.
+ */
+@UnstableApi
+public class OffloadingCompressionHandler extends ChannelDuplexHandler {
+
+    /**
+     * The index of the user-defined writability flag which is used to apply backpressure.
+     *
+     * @see ChannelOutboundBuffer#setUserDefinedWritability(int, boolean)
+     */
+    public static final int WRITABILITY_INDEX = 31;
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(OffloadingCompressionHandler.class);
+
+    private static final int READ = 0;
+    private static final int READ_COMPLETE = 1;
+    private static final int INACTIVE = 2;
+    private static final int WRITE = 3;
+    private static final int FLUSH = 4;
+    private static final int CLOSE = 5;
+
+    private final ChannelHandler encoder;
+    private final EventExecutorGroup compressionGroup;
+    private final int offloadThreshold;
+    private final ArrayDeque<PendingEvent> pendingEvents = new ArrayDeque<PendingEvent>();
+
+    private ChannelHandlerContext ctx;
+    private EventExecutor compressionExecutor;
+    private EmbeddedChannel encoderChannel;
+    private boolean offloading;
+    private boolean removed;
+    private boolean unwritable;
+    private long pendingBytes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param encoder the encoder which is wrapped. A new instance is needed for every {@link Channel} unless it is
+     *                {@linkplain Sharable sharable}.
+     * @param compressionGroup the {@link EventExecutorGroup} which encodes the large messages.
+     * @param offloadThreshold the minimum number of readable bytes of a message which is encoded by the
+     *                         {@code compressionGroup}.
+     */
+    public OffloadingCompressionHandler(ChannelHandler encoder, EventExecutorGroup compressionGroup,
+                                        int offloadThreshold) {
+        this.encoder = ObjectUtil.checkNotNull(encoder, "encoder");
+        this.compressionGroup = ObjectUtil.checkNotNull(compressionGroup, "compressionGroup");
+        this.offloadThreshold = checkPositive(offloadThreshold, "offloadThreshold");
+    }
+
+    /**
+     * Returns the number of bytes which wait to be encoded.
+     */
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        compressionExecutor = compressionGroup.next();
+        Channel channel = ctx.channel();
+        encoderChannel = new EmbeddedChannel(
+                channel.id(), channel.metadata().hasDisconnect(), channel.config(), encoder);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        removed = true;
+        for (;;) {
+            PendingEvent event = pendingEvents.poll();
+            if (event == null) {
+                break;
+            }
+            switch (event.type) {
+                case READ:
+                    // The encoder is still busy with the offloaded message, so pass the message on as it is.
+                    ctx.fireChannelRead(event.msg);
+                    break;
+                case WRITE:
+                    ReferenceCountUtil.release(event.msg);
+                    event.promise.tryFailure(new IllegalStateException(
+                            "OffloadingCompressionHandler was removed before the message was encoded"));
+                    break;
+                default:
+                    handle(event);
+                    break;
+            }
+        }
+        pendingBytes = 0;
+        setWritable(true);
+        if (!offloading) {
+            // Otherwise the channel is finished once the offloaded message was encoded.
+            encoderChannel.finishAndReleaseAll();
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (offloading) {
+            pendingEvents.add(new PendingEvent(READ, msg, null, 0));
+        } else {
+            read(msg);
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        if (offloading) {
+            pendingEvents.add(new PendingEvent(READ_COMPLETE, null, null, 0));
+        } else {
+            ctx.fireChannelReadComplete();
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (offloading) {
+            pendingEvents.add(new PendingEvent(INACTIVE, null, null, 0));
+        } else {
+            ctx.fireChannelInactive();
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        int size = sizeOf(msg);
+        if (offloading) {
+            incrementPendingBytes(size);
+            pendingEvents.add(new PendingEvent(WRITE, msg, promise, size));
+        } else if (size >= offloadThreshold) {
+            incrementPendingBytes(size);
+            offload(msg, promise, size);
+        } else {
+            encode(msg, promise);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (offloading) {
+            pendingEvents.add(new PendingEvent(FLUSH, null, null, 0));
+        } else {
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (offloading) {
+            pendingEvents.add(new PendingEvent(CLOSE, null, promise, 0));
+        } else {
+            ctx.close(promise);
+        }
+    }
+
+    private void handle(PendingEvent event) {
+        switch (event.type) {
+            case READ:
+                read(event.msg);
+                break;
+            case READ_COMPLETE:
+                ctx.fireChannelReadComplete();
+                break;
+            case INACTIVE:
+                ctx.fireChannelInactive();
+                break;
+            case WRITE:
+                if (event.size >= offloadThreshold) {
+                    offload(event.msg, event.promise, event.size);
+                } else {
+                    decrementPendingBytes(event.size);
+                    encode(event.msg, event.promise);
+                }
+                break;
+            case FLUSH:
+                ctx.flush();
+                break;
+            case CLOSE:
+                ctx.close(event.promise);
+                break;
+            default:
+                throw new Error();
+        }
+    }
+
+    private void handlePendingEvents() {
+        while (!offloading) {
+            PendingEvent event = pendingEvents.poll();
+            if (event == null) {
+                break;
+            }
+            handle(event);
+        }
+    }
+
+    private void read(Object msg) {
+        try {
+            encoderChannel.writeInbound(msg);
+        } catch (Throwable cause) {
+            ctx.fireExceptionCaught(cause);
+        }
+        for (;;) {
+            Object decoded = encoderChannel.readInbound();
+            if (decoded == null) {
+                break;
+            }
+            ctx.fireChannelRead(decoded);
+        }
+        // Forward anything the encoder wrote in response to the inbound message.
+        if (!encoderChannel.outboundMessages().isEmpty()) {
+            for (;;) {
+                Object encoded = encoderChannel.readOutbound();
+                if (encoded == null) {
+                    break;
+                }
+                ctx.write(encoded);
+            }
+            ctx.flush();
+        }
+    }
+
+    private void encode(Object msg, ChannelPromise promise) {
+        try {
+            encoderChannel.writeOutbound(msg);
+        } catch (Throwable cause) {
+            encoderChannel.releaseOutbound();
+            promise.tryFailure(cause);
+            return;
+        }
+        writeEncoded(promise);
+    }
+
+    private void offload(final Object msg, final ChannelPromise promise, final int size) {
+        offloading = true;
+        try {
+            compressionExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Throwable cause = null;
+                    try {
+                        encoderChannel.writeOutbound(msg);
+                    } catch (Throwable t) {
+                        cause = t;
+                    }
+                    final Throwable encodeCause = cause;
+                    try {
+                        ctx.executor().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                offloadComplete(promise, size, encodeCause);
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        logger.warn("Failed to hand an encoded message back to the event loop.", e);
+                        encoderChannel.finishAndReleaseAll();
+                        promise.tryFailure(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The compression executor was shut down, fall back to encoding on the event loop.
+            offloading = false;
+            decrementPendingBytes(size);
+            encode(msg, promise);
+        }
+    }
+
+    private void offloadComplete(ChannelPromise promise, int size, Throwable cause) {
+        offloading = false;
+        if (removed) {
+            encoderChannel.finishAndReleaseAll();
+            promise.tryFailure(new IllegalStateException(
+                    "OffloadingCompressionHandler was removed before the message was written"));
+            return;
+        }
+        decrementPendingBytes(size);
+        if (cause != null) {
+            encoderChannel.releaseOutbound();
+            promise.tryFailure(cause);
+        } else {
+            writeEncoded(promise);
+        }
+        handlePendingEvents();
+    }
+
+    private void writeEncoded(ChannelPromise promise) {
+        int size = encoderChannel.outboundMessages().size();
+        if (size == 0) {
+            promise.trySuccess();
+        } else if (size == 1) {
+            ctx.write(encoderChannel.readOutbound(), promise);
+        } else if (promise.isVoid()) {
+            for (;;) {
+                Object encoded = encoderChannel.readOutbound();
+                if (encoded == null) {
+                    break;
+                }
+                ctx.write(encoded, promise);
+            }
+        } else {
+            PromiseCombiner combiner = new PromiseCombiner(ctx.executor());
+            for (;;) {
+                Object encoded = encoderChannel.readOutbound();
+                if (encoded == null) {
+                    break;
+                }
+                combiner.add(ctx.write(encoded));
+            }
+            combiner.finish(promise);
+        }
+    }
+
+    private void incrementPendingBytes(int size) {
+        pendingBytes += size;
+        if (!unwritable && pendingBytes > ctx.channel().config().getWriteBufferHighWaterMark()) {
+            setWritable(false);
+        }
+    }
+
+    private void decrementPendingBytes(int size) {
+        pendingBytes -= size;
+        if (unwritable && pendingBytes < ctx.channel().config().getWriteBufferLowWaterMark()) {
+            setWritable(true);
+        }
+    }
+
+    private void setWritable(boolean writable) {
+        if (unwritable == !writable) {
+            return;
+        }
+        unwritable = !writable;
+        ChannelOutboundBuffer buffer = ctx.channel().unsafe().outboundBuffer();
+        if (buffer != null) {
+            buffer.setUserDefinedWritability(WRITABILITY_INDEX, writable);
+        }
+    }
+
+    private static int sizeOf(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+
+    private static final class PendingEvent {
+        final int type;
+        final Object msg;
+        final ChannelPromise promise;
+        final int size;
+
+        PendingEvent(int type, Object msg, ChannelPromise promise, int size) {
+            this.type = type;
+            this.msg = msg;
+            this.promise = promise;
+            this.size = size;
+        }
+    }
+}
@@ -16,6 +16,11 @@
 package io.netty.handler.codec.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.internal.EmptyArrays;
+import io.netty.util.internal.PlatformDependent;
+
+import java.util.Arrays;
 
 /**
  * Uncompresses an input {@link ByteBuf} encoded with Snappy compression into an
@@ -25,9 +30,29 @@ import io.netty.buffer.ByteBuf;
  */
 public final class Snappy {
 
+    private static final boolean UNSAFE_ARRAY_ACCESS = PlatformDependent.hasUnsafe() && PlatformDependent.isUnaligned();
+
     private static final int MAX_HT_SIZE = 1 << 14;
+    // The hash table stores the input indices as shorts and copies can only use offsets of up to 2 bytes, so larger
+    // inputs are encoded in independent blocks.
+    private static final int MAX_BLOCK_SIZE = Short.MAX_VALUE;
+    private static final int MAX_CACHED_INPUT_SIZE = 1 << 16;
     private static final int MIN_COMPRESSIBLE_BYTES = 15;
 
+    // Scratch space of the encoder, shared by all instances used by the same thread so it is not kept per connection.
+    private static final FastThreadLocal<short[]> HASH_TABLE = new FastThreadLocal<short[]>() {
+        @Override
+        protected short[] initialValue() {
+            return new short[MAX_HT_SIZE];
+        }
+    };
+    private static final FastThreadLocal<byte[]> INPUT_ARRAY = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return EmptyArrays.EMPTY_BYTES;
+        }
+    };
+
     // used as a return value to indicate that we haven't yet read our full preamble
     private static final int PREAMBLE_NOT_FULL = -1;
     private static final int NOT_ENOUGH_INPUT = -1;
@@ -68,23 +93,48 @@ public final class Snappy {
             }
         }
 
-        int inIndex = in.readerIndex();
-        final int baseIndex = inIndex;
+        final byte[] array;
+        final int base;
+        if (in.hasArray()) {
+            array = in.array();
+            base = in.arrayOffset() + in.readerIndex();
+        } else {
+            // Copying the input once is a lot cheaper than reading it through the ByteBuf for every probe.
+            array = inputArray(length);
+            in.getBytes(in.readerIndex(), array, 0, length);
+            base = 0;
+        }
+        encode(array, base, out, length);
+        in.skipBytes(length);
+    }
 
-        final short[] table = getHashTable(length);
-        final int shift = Integer.numberOfLeadingZeros(table.length) + 1;
+    private static void encode(final byte[] array, final int base, final ByteBuf out, final int length) {
+        for (int offset = 0; offset < length; offset += MAX_BLOCK_SIZE) {
+            encodeBlock(array, base + offset, out, Math.min(MAX_BLOCK_SIZE, length - offset));
+        }
+    }
+
+    private static void encodeBlock(final byte[] array, final int base, final ByteBuf out, final int length) {
+        final int htSize = hashTableSize(length);
+        final short[] table = getHashTable(htSize);
+        final int shift = Integer.numberOfLeadingZeros(htSize) + 1;
 
-        int nextEmit = inIndex;
+        // All indices are relative to base.
+        int inIndex = 0;
+        int nextEmit = 0;
 
-        if (length - inIndex >= MIN_COMPRESSIBLE_BYTES) {
-            int nextHash = hash(in, ++inIndex, shift);
+        if (length >= MIN_COMPRESSIBLE_BYTES) {
+            int nextBytes = getInt(array, base + ++inIndex);
+            int nextHash = hash(nextBytes, shift);
             outer: while (true) {
                 int skip = 32;
 
                 int candidate;
                 int nextIndex = inIndex;
+                int bytes;
                 do {
                     inIndex = nextIndex;
+                    bytes = nextBytes;
                     int hash = nextHash;
                     int bytesBetweenHashLookups = skip++ >> 5;
                     nextIndex = inIndex + bytesBetweenHashLookups;
@@ -94,75 +144,115 @@ public final class Snappy {
                         break outer;
                     }
 
-                    nextHash = hash(in, nextIndex, shift);
+                    nextBytes = getInt(array, base + nextIndex);
+                    nextHash = hash(nextBytes, shift);
 
-                    candidate = baseIndex + table[hash];
+                    candidate = table[hash];
 
-                    table[hash] = (short) (inIndex - baseIndex);
+                    table[hash] = (short) inIndex;
                 }
-                while (in.getInt(inIndex) != in.getInt(candidate));
+                while (bytes != getInt(array, base + candidate));
 
-                encodeLiteral(in, out, inIndex - nextEmit);
+                encodeLiteral(array, base + nextEmit, out, inIndex - nextEmit);
 
                 int insertTail;
                 do {
-                    int base = inIndex;
-                    int matched = 4 + findMatchingLength(in, candidate + 4, inIndex + 4, length);
+                    int start = inIndex;
+                    int matched = 4 + findMatchingLength(
+                            array, base + candidate + 4, base + inIndex + 4, base + length);
                     inIndex += matched;
-                    int offset = base - candidate;
-                    encodeCopy(out, offset, matched);
-                    in.readerIndex(in.readerIndex() + matched);
+                    encodeCopy(out, start - candidate, matched);
                     insertTail = inIndex - 1;
                     nextEmit = inIndex;
                     if (inIndex >= length - 4) {
                         break outer;
                     }
 
-                    int prevHash = hash(in, insertTail, shift);
-                    table[prevHash] = (short) (inIndex - baseIndex - 1);
-                    int currentHash = hash(in, insertTail + 1, shift);
-                    candidate = baseIndex + table[currentHash];
-                    table[currentHash] = (short) (inIndex - baseIndex);
+                    int prevHash = hash(getInt(array, base + insertTail), shift);
+                    table[prevHash] = (short) (inIndex - 1);
+                    bytes = getInt(array, base + insertTail + 1);
+                    int currentHash = hash(bytes, shift);
+                    candidate = table[currentHash];
+                    table[currentHash] = (short) inIndex;
                 }
-                while (in.getInt(insertTail + 1) == in.getInt(candidate));
+                while (bytes == getInt(array, base + candidate));
 
-                nextHash = hash(in, insertTail + 2, shift);
+                nextBytes = getInt(array, base + insertTail + 2);
+                nextHash = hash(nextBytes, shift);
                 ++inIndex;
             }
         }
 
         // If there are any remaining characters, write them out as a literal
         if (nextEmit < length) {
-            encodeLiteral(in, out, length - nextEmit);
+            encodeLiteral(array, base + nextEmit, out, length - nextEmit);
+        }
+    }
+
+    /**
+     * Returns an array which can hold at least {@code length} bytes of input. Arrays of up to
+     * {@link #MAX_CACHED_INPUT_SIZE} bytes are reused by subsequent calls of the same thread.
+     */
+    private static byte[] inputArray(int length) {
+        byte[] array = INPUT_ARRAY.get();
+        if (array.length >= length) {
+            return array;
+        }
+        array = new byte[length];
+        if (length <= MAX_CACHED_INPUT_SIZE) {
+            INPUT_ARRAY.set(array);
         }
+        return array;
     }
 
     /**
-     * Hashes the 4 bytes located at index, shifting the resulting hash into
+     * Reads 4 bytes in big endian order, like {@link ByteBuf#getInt(int)} does.
+     */
+    private static int getInt(byte[] array, int index) {
+        if (UNSAFE_ARRAY_ACCESS) {
+            int value = PlatformDependent.getInt(array, index);
+            return PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ? value : Integer.reverseBytes(value);
+        }
+        return (array[index] & 0xff) << 24 |
+               (array[index + 1] & 0xff) << 16 |
+               (array[index + 2] & 0xff) << 8 |
+               array[index + 3] & 0xff;
+    }
+
+    /**
+     * Hashes the given 4 bytes, shifting the resulting hash into
      * the appropriate range for our hash table.
      *
-     * @param in The input buffer to read 4 bytes from
-     * @param index The index to read at
+     * @param bytes The 4 bytes to hash
      * @param shift The shift value, for ensuring that the resulting value is
      *     withing the range of our hash table size
-     * @return A 32-bit hash of 4 bytes located at index
+     * @return A 32-bit hash of the 4 bytes
      */
-    private static int hash(ByteBuf in, int index, int shift) {
-        return in.getInt(index) * 0x1e35a7bd >>> shift;
+    private static int hash(int bytes, int shift) {
+        return bytes * 0x1e35a7bd >>> shift;
     }
 
     /**
-     * Creates an appropriately sized hashtable for the given input size
+     * Returns the appropriate hashtable size for the given input size.
      *
      * @param inputSize The size of our input, ie. the number of bytes we need to encode
-     * @return An appropriately sized empty hashtable
+     * @return The number of slots of the hashtable to use
      */
-    private static short[] getHashTable(int inputSize) {
+    private static int hashTableSize(int inputSize) {
         int htSize = 256;
         while (htSize < MAX_HT_SIZE && htSize < inputSize) {
             htSize <<= 1;
         }
-        return new short[htSize];
+        return htSize;
+    }
+
+    /**
+     * Returns the hashtable of the current thread, with its first {@code htSize} slots cleared.
+     */
+    private static short[] getHashTable(int htSize) {
+        short[] table = HASH_TABLE.get();
+        Arrays.fill(table, 0, htSize, (short) 0);
+        return table;
     }
 
     /**
@@ -170,22 +260,31 @@ public final class Snappy {
      * maxIndex to find how long our matched copy overlaps with an already-written
      * literal value.
      *
-     * @param in The input buffer to scan over
+     * @param array The input array to scan over
      * @param minIndex The index in the input buffer to start scanning from
      * @param inIndex The index of the start of our copy
-     * @param maxIndex The length of our input buffer
+     * @param maxIndex The end index of our input
      * @return The number of bytes for which our candidate copy is a repeat of
      */
-    private static int findMatchingLength(ByteBuf in, int minIndex, int inIndex, int maxIndex) {
+    private static int findMatchingLength(byte[] array, int minIndex, int inIndex, int maxIndex) {
         int matched = 0;
 
-        while (inIndex <= maxIndex - 4 &&
-                in.getInt(inIndex) == in.getInt(minIndex + matched)) {
-            inIndex += 4;
-            matched += 4;
+        if (UNSAFE_ARRAY_ACCESS) {
+            while (inIndex <= maxIndex - 8) {
+                long diff = PlatformDependent.getLong(array, inIndex) ^
+                        PlatformDependent.getLong(array, minIndex + matched);
+                if (diff != 0) {
+                    // The first differing byte is the lowest non-zero byte of the XOR in little endian order, and
+                    // the highest in big endian order.
+                    return matched + ((PlatformDependent.BIG_ENDIAN_NATIVE_ORDER ?
+                            Long.numberOfLeadingZeros(diff) : Long.numberOfTrailingZeros(diff)) >>> 3);
+                }
+                inIndex += 8;
+                matched += 8;
+            }
         }
 
-        while (inIndex < maxIndex && in.getByte(minIndex + matched) == in.getByte(inIndex)) {
+        while (inIndex < maxIndex && array[minIndex + matched] == array[inIndex]) {
             ++inIndex;
             ++matched;
         }
@@ -221,6 +320,11 @@ public final class Snappy {
      * @param length The length of the literal to copy
      */
     static void encodeLiteral(ByteBuf in, ByteBuf out, int length) {
+        writeLiteralTag(out, length);
+        out.writeBytes(in, length);
+    }
+
+    private static void writeLiteralTag(ByteBuf out, int length) {
         if (length < 61) {
             out.writeByte(length - 1 << 2);
         } else {
@@ -231,8 +335,11 @@ public final class Snappy {
                 out.writeByte(length - 1 >> i * 8 & 0x0ff);
             }
         }
+    }
 
-        out.writeBytes(in, length);
+    private static void encodeLiteral(byte[] array, int index, ByteBuf out, int length) {
+        writeLiteralTag(out, length);
+        out.writeBytes(array, index, length);
     }
 
     private static void encodeCopyWithOffset(ByteBuf out, int offset, int length) {
@@ -357,10 +464,11 @@ public final class Snappy {
      * read).
      *
      * @param in The input buffer to read the preamble from
-     * @return The calculated length based on the input buffer, or 0 if
-     *   no preamble is able to be calculated
+     * @return The calculated length based on the input buffer, or {@link #PREAMBLE_NOT_FULL} if
+     *   the input buffer does not contain the whole preamble yet, in which case nothing is consumed
      */
     private static int readPreamble(ByteBuf in) {
+        final int readerIndex = in.readerIndex();
         int length = 0;
         int byteIndex = 0;
         while (in.isReadable()) {
@@ -375,7 +483,8 @@ public final class Snappy {
             }
         }
 
-        return 0;
+        in.readerIndex(readerIndex);
+        return PREAMBLE_NOT_FULL;
     }
 
     /**
@@ -604,7 +713,7 @@ public final class Snappy {
      * @param data The input data to calculate the CRC32C checksum of
      */
     static int calculateChecksum(ByteBuf data, int offset, int length) {
-        Crc32c crc32 = new Crc32c();
+        ByteBufChecksum crc32 = ByteBufChecksum.newCrc32c();
         try {
             crc32.update(data, offset, length);
             return maskChecksum((int) crc32.getValue());
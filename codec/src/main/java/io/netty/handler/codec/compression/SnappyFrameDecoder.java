@@ -21,6 +21,7 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 
 import java.util.List;
 
+import static io.netty.handler.codec.compression.Snappy.maskChecksum;
 import static io.netty.handler.codec.compression.Snappy.validateChecksum;
 
 /**
@@ -33,6 +34,11 @@ import static io.netty.handler.codec.compression.Snappy.validateChecksum;
  * or if you would prefer the safety that checksum validation brings, please
  * use the {@link #SnappyFrameDecoder(boolean)} constructor with the argument
  * set to {@code true}.
+ * <p>
+ * By default each chunk is only decoded once it was received completely. In streaming mode (see
+ * {@link #SnappyFrameDecoder(boolean, boolean)}) the data of a chunk is decoded and passed on as soon as it is
+ * received, so at most a single literal or copy of a chunk is kept in the cumulation. Compressed chunks are decoded
+ * into a window buffer which is reused for the next chunk once all slices of it were released.
  */
 public class SnappyFrameDecoder extends ByteToMessageDecoder {
 
@@ -46,13 +52,22 @@ public class SnappyFrameDecoder extends ByteToMessageDecoder {
 
     private static final int SNAPPY_IDENTIFIER_LEN = 6;
     private static final int MAX_UNCOMPRESSED_DATA_SIZE = 65536 + 4;
+    private static final int MAX_DECOMPRESSED_DATA_SIZE = 65536;
 
     private final Snappy snappy = new Snappy();
     private final boolean validateChecksums;
+    private final boolean streaming;
+    private final ByteBufChecksum crc;
 
     private boolean started;
     private boolean corrupted;
 
+    // State of the chunk which is currently decoded in streaming mode.
+    private ChunkType chunkType;
+    private int chunkRemaining;
+    private int chunkChecksum;
+    private ByteBuf window;
+
     /**
      * Creates a new snappy-framed decoder with validation of checksums
      * turned OFF. To turn checksum validation on, please use the alternate
@@ -72,7 +87,25 @@ public class SnappyFrameDecoder extends ByteToMessageDecoder {
      *        {@link DecompressionException} will be thrown
      */
     public SnappyFrameDecoder(boolean validateChecksums) {
+        this(validateChecksums, false);
+    }
+
+    /**
+     * Creates a new snappy-framed decoder.
+     *
+     * @param validateChecksums
+     *        If true, the checksum field will be validated against the actual
+     *        uncompressed data, and if the checksums do not match, a suitable
+     *        {@link DecompressionException} will be thrown
+     * @param streaming
+     *        If true, the data of a chunk is passed on as soon as it is decoded instead of once the whole chunk was
+     *        received. Note that checksums can only be validated at the end of a chunk, so the data of a corrupted
+     *        chunk may already have been passed on before the {@link DecompressionException} is thrown.
+     */
+    public SnappyFrameDecoder(boolean validateChecksums, boolean streaming) {
         this.validateChecksums = validateChecksums;
+        this.streaming = streaming;
+        crc = streaming && validateChecksums ? ByteBufChecksum.newCrc32c() : null;
     }
 
     @Override
@@ -83,6 +116,11 @@ public class SnappyFrameDecoder extends ByteToMessageDecoder {
         }
 
         try {
+            if (chunkType != null) {
+                decodeChunk(in, out);
+                return;
+            }
+
             int idx = in.readerIndex();
             final int inSize = in.readableBytes();
             if (inSize < 4) {
@@ -123,6 +161,13 @@ public class SnappyFrameDecoder extends ByteToMessageDecoder {
                         throw new DecompressionException("Received RESERVED_SKIPPABLE tag before STREAM_IDENTIFIER");
                     }
 
+                    if (streaming) {
+                        in.skipBytes(4);
+                        startChunk(chunkType, chunkLength, 0);
+                        decodeChunk(in, out);
+                        break;
+                    }
+
                     if (inSize < 4 + chunkLength) {
                         // TODO: Don't keep skippable bytes
                         return;
@@ -144,6 +189,11 @@ public class SnappyFrameDecoder extends ByteToMessageDecoder {
                         throw new DecompressionException("Received UNCOMPRESSED_DATA larger than 65540 bytes");
                     }
 
+                    if (streaming) {
+                        startStreamingDataChunk(ctx, in, out, chunkType, chunkLength);
+                        break;
+                    }
+
                     if (inSize < 4 + chunkLength) {
                         return;
                     }
@@ -162,6 +212,11 @@ public class SnappyFrameDecoder extends ByteToMessageDecoder {
                         throw new DecompressionException("Received COMPRESSED_DATA tag before STREAM_IDENTIFIER");
                     }
 
+                    if (streaming) {
+                        startStreamingDataChunk(ctx, in, out, chunkType, chunkLength);
+                        break;
+                    }
+
                     if (inSize < 4 + chunkLength) {
                         return;
                     }
@@ -198,6 +253,121 @@ public class SnappyFrameDecoder extends ByteToMessageDecoder {
         }
     }
 
+    private void startStreamingDataChunk(ChannelHandlerContext ctx, ByteBuf in, List<Object> out,
+                                         ChunkType chunkType, int chunkLength) {
+        if (chunkLength < 4) {
+            throw new DecompressionException("Received " + chunkType + " without checksum");
+        }
+        if (in.readableBytes() < 8) {
+            return;
+        }
+        in.skipBytes(4);
+        int checksum = in.readIntLE();
+        if (chunkType == ChunkType.COMPRESSED_DATA) {
+            prepareWindow(ctx);
+        }
+        startChunk(chunkType, chunkLength - 4, checksum);
+        decodeChunk(in, out);
+    }
+
+    private void startChunk(ChunkType chunkType, int length, int checksum) {
+        this.chunkType = chunkType;
+        chunkRemaining = length;
+        chunkChecksum = checksum;
+    }
+
+    /**
+     * Makes sure {@link #window} can hold a whole decompressed chunk. The current window is reused if nobody else
+     * holds a reference to it anymore.
+     */
+    private void prepareWindow(ChannelHandlerContext ctx) {
+        ByteBuf window = this.window;
+        if (window != null) {
+            if (window.refCnt() == 1) {
+                window.clear();
+                return;
+            }
+            // Someone still uses slices of the window, so leave it to them.
+            window.release();
+        }
+        this.window = ctx.alloc().buffer(MAX_DECOMPRESSED_DATA_SIZE);
+    }
+
+    /**
+     * Decodes as much of the current chunk as possible in streaming mode.
+     */
+    private void decodeChunk(ByteBuf in, List<Object> out) {
+        final int length = Math.min(in.readableBytes(), chunkRemaining);
+        switch (chunkType) {
+            case RESERVED_SKIPPABLE:
+                in.skipBytes(length);
+                chunkRemaining -= length;
+                break;
+            case UNCOMPRESSED_DATA:
+                if (length > 0) {
+                    ByteBuf data = in.readRetainedSlice(length);
+                    chunkRemaining -= length;
+                    if (crc != null) {
+                        crc.update(data, data.readerIndex(), length);
+                    }
+                    out.add(data);
+                }
+                break;
+            case COMPRESSED_DATA:
+                if (length > 0) {
+                    final ByteBuf window = this.window;
+                    final int start = window.writerIndex();
+                    final ByteBuf compressed = in.slice(in.readerIndex(), length);
+                    snappy.decode(compressed, window);
+                    if (length == chunkRemaining && compressed.isReadable()) {
+                        throw new DecompressionException("Received truncated COMPRESSED_DATA");
+                    }
+                    in.skipBytes(compressed.readerIndex());
+                    chunkRemaining -= compressed.readerIndex();
+
+                    final int decoded = window.writerIndex() - start;
+                    if (decoded > 0) {
+                        if (crc != null) {
+                            crc.update(window, start, decoded);
+                        }
+                        out.add(window.retainedSlice(start, decoded));
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+
+        if (chunkRemaining == 0) {
+            finishChunk();
+        }
+    }
+
+    private void finishChunk() {
+        if (crc != null && chunkType != ChunkType.RESERVED_SKIPPABLE) {
+            final int actualChecksum = maskChecksum((int) crc.getValue());
+            crc.reset();
+            if (actualChecksum != chunkChecksum) {
+                throw new DecompressionException(
+                        "mismatching checksum: " + Integer.toHexString(actualChecksum) +
+                                " (expected: " + Integer.toHexString(chunkChecksum) + ')');
+            }
+        }
+        if (chunkType == ChunkType.COMPRESSED_DATA) {
+            snappy.reset();
+        }
+        chunkType = null;
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        if (window != null) {
+            window.release();
+            window = null;
+        }
+        super.handlerRemoved0(ctx);
+    }
+
     private static void checkByte(byte actual, byte expect) {
         if (actual != expect) {
             throw new DecompressionException("Unexpected stream identifier contents. Mismatched snappy " +
@@ -16,11 +16,13 @@
 package io.netty.handler.codec.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import net.jpountz.xxhash.XXHashFactory;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 import java.util.zip.Adler32;
 import java.util.zip.CRC32;
@@ -50,6 +52,59 @@ public class ByteBufChecksumTest {
         testUpdate(buf);
     }
 
+    @Test
+    public void testCompositeByteBufUpdate() {
+        CompositeByteBuf buf = Unpooled.compositeBuffer();
+        buf.addComponent(true, Unpooled.wrappedBuffer(BYTE_ARRAY, 0, 100));
+        buf.addComponent(true, Unpooled.directBuffer(500).writeBytes(BYTE_ARRAY, 100, 500));
+        buf.addComponent(true, Unpooled.wrappedBuffer(BYTE_ARRAY, 600, BYTE_ARRAY.length - 600));
+        testUpdate(buf);
+    }
+
+    @Test
+    public void testReadOnlyHeapByteBufUpdate() {
+        testUpdate(Unpooled.wrappedBuffer(BYTE_ARRAY).asReadOnly());
+    }
+
+    @Test
+    public void testLz4XXHash32ReadOnlyHeapByteBuffer() {
+        Checksum expected = xxHash32(DEFAULT_SEED);
+        expected.update(BYTE_ARRAY, 0, BYTE_ARRAY.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(BYTE_ARRAY).asReadOnlyBuffer();
+        assertFalse(buffer.hasArray());
+        assertFalse(buffer.isDirect());
+        Lz4XXHash32 checksum = new Lz4XXHash32(DEFAULT_SEED);
+        checksum.update(buffer);
+        assertEquals(expected.getValue(), checksum.getValue());
+    }
+
+    @Test
+    public void testLz4XXHash32InSeveralUpdates() {
+        Random random = new Random();
+        ByteBuf direct = Unpooled.directBuffer(BYTE_ARRAY.length).writeBytes(BYTE_ARRAY);
+        try {
+            for (int length : new int[] { 0, 1, 15, 16, 17, 100, BYTE_ARRAY.length }) {
+                Checksum expected = xxHash32(DEFAULT_SEED);
+                expected.update(BYTE_ARRAY, 0, length);
+
+                Lz4XXHash32 heap = new Lz4XXHash32(DEFAULT_SEED);
+                Lz4XXHash32 nio = new Lz4XXHash32(DEFAULT_SEED);
+                int off = 0;
+                while (off < length) {
+                    int n = Math.min(length - off, random.nextInt(40));
+                    heap.update(BYTE_ARRAY, off, n);
+                    nio.update(direct, off, n);
+                    off += n;
+                }
+                assertEquals(expected.getValue(), heap.getValue());
+                assertEquals(expected.getValue(), nio.getValue());
+            }
+        } finally {
+            direct.release();
+        }
+    }
+
     private static void testUpdate(ByteBuf buf) {
         try {
             // all variations of xxHash32: slow and naive, optimised, wrapped optimised;
@@ -62,6 +117,10 @@ public class ByteBufChecksumTest {
             // CRC32 and Adler32, special-cased to use ReflectiveByteBufChecksum
             testUpdate(new CRC32(), ByteBufChecksum.wrapChecksum(new CRC32()), buf);
             testUpdate(new Adler32(), ByteBufChecksum.wrapChecksum(new Adler32()), buf);
+
+            // CRC32-C, bulk updates against the byte-wise table based implementation
+            testUpdate(new ByteWiseChecksum(new Crc32c()), new Crc32c(), buf);
+            testUpdate(new ByteWiseChecksum(new Crc32c()), ByteBufChecksum.newCrc32c(), buf);
         } finally {
             buf.release();
         }
@@ -87,4 +146,37 @@ public class ByteBufChecksumTest {
     private static Checksum xxHash32(int seed) {
         return XXHashFactory.fastestInstance().newStreamingHash32(seed).asChecksum();
     }
+
+    /**
+     * Passes every byte on one by one to the underlying {@link Checksum}.
+     */
+    private static final class ByteWiseChecksum implements Checksum {
+        private final Checksum checksum;
+
+        ByteWiseChecksum(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(int b) {
+            checksum.update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                checksum.update(b[i]);
+            }
+        }
+
+        @Override
+        public long getValue() {
+            return checksum.getValue();
+        }
+
+        @Override
+        public void reset() {
+            checksum.reset();
+        }
+    }
 }
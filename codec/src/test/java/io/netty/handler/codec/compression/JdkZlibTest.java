@@ -26,6 +26,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Queue;
+import java.util.zip.Deflater;
 
 import static org.junit.Assert.*;
 
@@ -90,4 +91,58 @@ public class JdkZlibTest extends ZlibTest {
             chDecoderGZip.close();
         }
     }
+
+    @Test
+    public void testPooledDeflaterIsReset() {
+        // Other tests may have cached deflaters on this thread already
+        JdkZlibPool.release(new Deflater(6, true), 6, true);
+        JdkZlibPool.release(new Deflater(6, true), 6, true);
+
+        Deflater deflater = JdkZlibPool.deflater(6, true);
+        deflater.setInput(new byte[] { 1, 2, 3 });
+        deflater.finish();
+        deflater.deflate(new byte[16]);
+        JdkZlibPool.release(deflater, 6, true);
+
+        Deflater pooled = JdkZlibPool.deflater(6, true);
+        try {
+            assertSame(deflater, pooled);
+            assertEquals(0, pooled.getTotalIn());
+            assertFalse(pooled.finished());
+            Deflater other = JdkZlibPool.deflater(6, false);
+            assertNotSame(deflater, other);
+            JdkZlibPool.release(other, 6, false);
+        } finally {
+            JdkZlibPool.release(pooled, 6, true);
+        }
+    }
+
+    @Test
+    public void testReusedDeflaterProducesSameOutput() {
+        byte[] data = "Hello, World, Hello, World".getBytes(CharsetUtil.US_ASCII);
+        ByteBuf first = encodeGzip(data);
+        ByteBuf second = encodeGzip(data);
+        try {
+            assertEquals(first, second);
+        } finally {
+            first.release();
+            second.release();
+        }
+    }
+
+    private ByteBuf encodeGzip(byte[] data) {
+        EmbeddedChannel channel = new EmbeddedChannel(createEncoder(ZlibWrapper.GZIP));
+        assertTrue(channel.writeOutbound(Unpooled.directBuffer().writeBytes(data)));
+        assertTrue(channel.finish());
+        ByteBuf out = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            out.writeBytes(buf);
+            buf.release();
+        }
+        return out;
+    }
 }
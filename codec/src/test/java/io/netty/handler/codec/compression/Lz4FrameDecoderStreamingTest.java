@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import net.jpountz.lz4.LZ4Factory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static io.netty.handler.codec.compression.Lz4Constants.*;
+import static org.junit.Assert.*;
+
+public class Lz4FrameDecoderStreamingTest extends Lz4FrameDecoderTest {
+
+    public Lz4FrameDecoderStreamingTest() throws Exception {
+    }
+
+    @Override
+    public void initChannel() {
+        channel = new EmbeddedChannel(new Lz4FrameDecoder(LZ4Factory.fastestInstance(),
+                new Lz4XXHash32(DEFAULT_SEED), true));
+    }
+
+    @Test
+    public void testNonCompressedBlockIsPassedOnEarly() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Lz4FrameDecoder(LZ4Factory.fastestInstance(), null, true));
+        byte[] data = {
+                0x4C, 0x5A, 0x34, 0x42, 0x6C, 0x6F, 0x63, 0x6B,  // magic bytes
+                0x16,                                            // token
+                0x05, 0x00, 0x00, 0x00, 0x05, 0x00, 0x00, 0x00,  // compr. and decompr. length
+                (byte) 0x86, (byte) 0xE4, 0x79, 0x0F,            // checksum
+                0x4E, 0x65, 0x74, 0x74, 0x79                     // data
+        };
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(Arrays.copyOf(data, HEADER_LENGTH + 3))));
+        ByteBuf buf = channel.readInbound();
+        assertEquals("Net", buf.toString(CharsetUtil.US_ASCII));
+        buf.release();
+
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(data, HEADER_LENGTH + 3, 2)));
+        buf = channel.readInbound();
+        assertEquals("ty", buf.toString(CharsetUtil.US_ASCII));
+        buf.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testWindowIsShared() {
+        ByteBuf compressed = compress(1024, 256);
+        assertTrue(channel.writeInbound(compressed));
+        List<ByteBuf> decompressed = new ArrayList<ByteBuf>();
+        for (;;) {
+            ByteBuf buf = channel.readInbound();
+            if (buf == null) {
+                break;
+            }
+            decompressed.add(buf);
+        }
+        assertEquals(4, decompressed.size());
+        ByteBuf window = decompressed.get(0).unwrap();
+        for (ByteBuf buf : decompressed) {
+            assertSame(window, buf.unwrap());
+            assertEquals(256, buf.readableBytes());
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testWindowIsReusedOnceReleased() {
+        ByteBuf compressed = compress(DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+        assertTrue(channel.writeInbound(compressed.retainedDuplicate()));
+        ByteBuf first = channel.readInbound();
+
+        // The first window is still used, so a new one is needed.
+        assertTrue(channel.writeInbound(compressed.retainedDuplicate()));
+        ByteBuf second = channel.readInbound();
+        assertNotSame(first.unwrap(), second.unwrap());
+        first.release();
+        ByteBuf window = second.unwrap();
+        second.release();
+
+        assertTrue(channel.writeInbound(compressed));
+        ByteBuf third = channel.readInbound();
+        assertSame(window, third.unwrap());
+        assertEquals(DEFAULT_BLOCK_SIZE, third.readableBytes());
+        third.release();
+    }
+
+    private static ByteBuf compress(int length, int blockSize) {
+        EmbeddedChannel encoder = new EmbeddedChannel(
+                new Lz4FrameEncoder(LZ4Factory.fastestInstance(), false, blockSize, new Lz4XXHash32(DEFAULT_SEED)));
+        byte[] text = new byte[length];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + i % 7);
+        }
+        // Do not finish the encoder, so the stream is not closed.
+        assertTrue(encoder.writeOutbound(Unpooled.wrappedBuffer(text)));
+        ByteBuf compressed = Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = encoder.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            compressed.writeBytes(buf);
+            buf.release();
+        }
+        encoder.finishAndReleaseAll();
+        return compressed;
+    }
+}
@@ -46,6 +46,13 @@ public class Lz4FrameDecoderTest extends AbstractDecoderTest {
         channel = new EmbeddedChannel(new Lz4FrameDecoder(true));
     }
 
+    @Test
+    public void testDerivedHeapBuffer() throws Exception {
+        ByteBuf data = Unpooled.buffer().writeZero(16).writeBytes(compressedBytesLarge);
+        // The NIO buffer of the slice has an array offset of 16.
+        testDecompression(WRAPPED_BYTES_LARGE, data.slice(16, compressedBytesLarge.length));
+    }
+
     @Test
     public void testUnexpectedBlockIdentifier() throws Exception {
         expected.expect(DecompressionException.class);
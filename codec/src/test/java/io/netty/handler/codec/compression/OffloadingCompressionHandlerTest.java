@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OffloadingCompressionHandlerTest {
+
+    private EventLoopGroup group;
+    private EventExecutorGroup compressionGroup;
+    private Channel serverChannel;
+    private final LinkedBlockingQueue<ByteBuf> received = new LinkedBlockingQueue<ByteBuf>();
+
+    @Before
+    public void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        compressionGroup = new DefaultEventExecutorGroup(1);
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(LocalServerChannel.class)
+                .childHandler(new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        received.add((ByteBuf) msg);
+                    }
+                })
+                .bind(new LocalAddress("OffloadingCompressionHandlerTest")).sync().channel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serverChannel.close().sync();
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        compressionGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        for (ByteBuf buf : received) {
+            buf.release();
+        }
+    }
+
+    private Channel connect(RecordingEncoder encoder, int highWaterMark) throws Exception {
+        return connect(encoder, highWaterMark, new ChannelInboundHandlerAdapter());
+    }
+
+    private Channel connect(final RecordingEncoder encoder, int highWaterMark, final ChannelHandler next)
+            throws Exception {
+        return new Bootstrap()
+                .group(group)
+                .channel(LocalChannel.class)
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(highWaterMark / 2,
+                        highWaterMark))
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new OffloadingCompressionHandler(encoder, compressionGroup, 1024));
+                        ch.pipeline().addLast(next);
+                    }
+                })
+                .connect(serverChannel.localAddress()).sync().channel();
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteOrderAndPromises() throws Exception {
+        RecordingEncoder encoder = new RecordingEncoder();
+        final Channel channel = connect(encoder, 64 * 1024);
+
+        final int[] sizes = { 10, 4096, 20, 30, 8192, 1024, 40 };
+        List<ChannelFuture> futures = channel.eventLoop().submit(new Callable<List<ChannelFuture>>() {
+            @Override
+            public List<ChannelFuture> call() {
+                List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+                for (int i = 0; i < sizes.length; i++) {
+                    futures.add(channel.write(Unpooled.buffer().writeZero(sizes[i] - 1).writeByte(i)));
+                }
+                channel.flush();
+                return futures;
+            }
+        }).sync().getNow();
+
+        for (ChannelFuture future : futures) {
+            assertTrue(future.sync().isSuccess());
+        }
+        for (int i = 0; i < sizes.length; i++) {
+            ByteBuf buf = received.poll(5, TimeUnit.SECONDS);
+            try {
+                assertEquals(sizes[i], buf.readableBytes());
+                assertEquals(i, buf.getByte(buf.writerIndex() - 1));
+            } finally {
+                buf.release();
+            }
+            Thread thread = encoder.threads.poll();
+            assertEquals(sizes[i] >= 1024, compressionGroup.next().inEventLoop(thread));
+        }
+        channel.close().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testBackpressure() throws Exception {
+        final Channel channel = connect(new RecordingEncoder(), 4096);
+        final CountDownLatch latch = new CountDownLatch(1);
+        compressionGroup.next().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+        boolean writable = channel.eventLoop().submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                for (int i = 0; i < 8; i++) {
+                    futures.add(channel.writeAndFlush(Unpooled.buffer().writeZero(2048)));
+                }
+                return channel.isWritable();
+            }
+        }).sync().getNow();
+        assertFalse(writable);
+
+        latch.countDown();
+        for (ChannelFuture future : futures) {
+            assertTrue(future.sync().isSuccess());
+        }
+        writable = channel.eventLoop().submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return channel.isWritable();
+            }
+        }).sync().getNow();
+        assertTrue(writable);
+        channel.close().sync();
+    }
+
+    @Test(timeout = 10000)
+    public void testInboundMessagesForwardedWhenRemovedWhileOffloading() throws Exception {
+        final LinkedBlockingQueue<Object> reads = new LinkedBlockingQueue<Object>();
+        final Channel channel = connect(new RecordingEncoder(), 64 * 1024, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                reads.add(msg);
+            }
+        });
+        final CountDownLatch latch = new CountDownLatch(1);
+        compressionGroup.next().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final ByteBuf inbound = Unpooled.buffer().writeByte(1);
+        ChannelFuture future;
+        try {
+            future = channel.eventLoop().submit(new Callable<ChannelFuture>() {
+                @Override
+                public ChannelFuture call() {
+                    ChannelFuture future = channel.writeAndFlush(Unpooled.buffer().writeZero(2048));
+                    // Queued behind the offloaded write.
+                    channel.pipeline().fireChannelRead(inbound);
+                    channel.pipeline().remove(OffloadingCompressionHandler.class);
+                    return future;
+                }
+            }).sync().getNow();
+
+            assertSame(inbound, reads.poll(5, TimeUnit.SECONDS));
+            assertEquals(1, inbound.refCnt());
+            inbound.release();
+        } finally {
+            latch.countDown();
+        }
+        assertFalse(future.await().isSuccess());
+        channel.close().sync();
+    }
+
+    private static final class RecordingEncoder extends MessageToMessageEncoder<ByteBuf> {
+        final LinkedBlockingQueue<Thread> threads = new LinkedBlockingQueue<Thread>();
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+            threads.add(Thread.currentThread());
+            out.add(msg.retain());
+        }
+    }
+}
@@ -182,4 +182,57 @@ public class SnappyFrameDecoderTest {
             channel.finishAndReleaseAll();
         }
     }
+
+    @Test
+    public void testStreamingPassesOnDataBeforeChunkIsComplete() throws Exception {
+        byte[] data = new byte[4096];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 13);
+        }
+        EmbeddedChannel encoder = new EmbeddedChannel(new SnappyFrameEncoder());
+        assertTrue(encoder.writeOutbound(Unpooled.wrappedBuffer(data)));
+        ByteBuf compressed = Unpooled.buffer();
+        ByteBuf msg;
+        while ((msg = encoder.readOutbound()) != null) {
+            compressed.writeBytes(msg);
+            msg.release();
+        }
+        assertFalse(encoder.finish());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new SnappyFrameDecoder(true, true));
+        ByteBuf decompressed = Unpooled.buffer();
+        int messages = 0;
+        try {
+            while (compressed.isReadable()) {
+                channel.writeInbound(compressed.readRetainedSlice(1));
+                while ((msg = channel.readInbound()) != null) {
+                    decompressed.writeBytes(msg);
+                    msg.release();
+                    messages++;
+                }
+            }
+            assertTrue(messages > 1);
+            assertEquals(Unpooled.wrappedBuffer(data), decompressed);
+        } finally {
+            compressed.release();
+            decompressed.release();
+            assertFalse(channel.finishAndReleaseAll());
+        }
+    }
+
+    @Test(expected = DecompressionException.class)
+    public void testStreamingInvalidChecksumThrowsException() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new SnappyFrameDecoder(true, true));
+        try {
+            // checksum here is presented as 282986f0 (little endian)
+            ByteBuf in = Unpooled.wrappedBuffer(new byte[]{
+                    (byte) 0xff, 0x06, 0x00, 0x00, 0x73, 0x4e, 0x61, 0x50, 0x70, 0x59,
+                    0x01, 0x09, 0x00, 0x00, -0x10, 0x6f, -0x68, -0x7e, 'n', 'e', 't', 't', 'y'
+            });
+
+            channel.writeInbound(in);
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
 }
@@ -322,4 +322,34 @@ public class SnappyTest {
             expectedDecompressed.release();
         }
     }
+
+    @Test
+    public void testEncodeAndDecodeLargeInput() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 200000; i++) {
+            sb.append("Netty is an asynchronous event-driven network application framework ").append(i).append('\n');
+        }
+        byte[] data = sb.toString().getBytes(CharsetUtil.US_ASCII);
+
+        // Larger than Short.MAX_VALUE, so the input must be encoded in several blocks.
+        testEncodeAndDecode(Unpooled.wrappedBuffer(data), data);
+        testEncodeAndDecode(Unpooled.directBuffer(data.length).writeBytes(data), data);
+    }
+
+    private void testEncodeAndDecode(ByteBuf in, byte[] data) {
+        ByteBuf compressed = Unpooled.buffer();
+        ByteBuf decompressed = Unpooled.buffer(data.length);
+        try {
+            snappy.encode(in, compressed, data.length);
+            assertTrue(compressed.readableBytes() < data.length);
+            snappy.reset();
+            snappy.decode(compressed, decompressed);
+            assertEquals(Unpooled.wrappedBuffer(data), decompressed);
+        } finally {
+            in.release();
+            compressed.release();
+            decompressed.release();
+            snappy.reset();
+        }
+    }
 }
@@ -18,15 +18,16 @@ package io.netty.util;
 
 import io.netty.util.concurrent.FastThreadLocal;
 import io.netty.util.internal.ObjectPool;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.SystemPropertyUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.lang.ref.WeakReference;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static io.netty.util.internal.MathUtil.safeFindNextPositivePowerOfTwo;
 import static java.lang.Math.max;
@@ -34,6 +35,11 @@ import static java.lang.Math.min;
 
 /**
  * Light-weight object pool based on a thread-local stack.
+ * <p>
+ * Objects recycled by the thread that obtained them are pushed onto its stack directly. Objects recycled by any other
+ * thread are offered to a bounded multi-producer / single-consumer queue owned by the stack and moved to the stack
+ * once it runs empty, so the memory retained for cross-thread recycling does not depend on the number of threads that
+ * recycle.
  *
  * @param <T> the type of the pooled object
  */
@@ -48,14 +54,11 @@ public abstract class Recycler<T> {
             // NOOP
         }
     };
-    private static final AtomicInteger ID_GENERATOR = new AtomicInteger(Integer.MIN_VALUE);
-    private static final int OWN_THREAD_ID = ID_GENERATOR.getAndIncrement();
     private static final int DEFAULT_INITIAL_MAX_CAPACITY_PER_THREAD = 4 * 1024; // Use 4k instances as default.
     private static final int DEFAULT_MAX_CAPACITY_PER_THREAD;
     private static final int INITIAL_CAPACITY;
     private static final int MAX_SHARED_CAPACITY_FACTOR;
     private static final int MAX_DELAYED_QUEUES_PER_THREAD;
-    private static final int LINK_CAPACITY;
     private static final int RATIO;
 
     static {
@@ -74,14 +77,13 @@ public abstract class Recycler<T> {
                 SystemPropertyUtil.getInt("io.netty.recycler.maxSharedCapacityFactor",
                         2));
 
+        // Only used to decide if recycling from other threads is allowed at all (a value of 0 disables it) as all
+        // threads share the same bounded queue per stack.
         MAX_DELAYED_QUEUES_PER_THREAD = max(0,
                 SystemPropertyUtil.getInt("io.netty.recycler.maxDelayedQueuesPerThread",
                         // We use the same value as default EventLoop number
                         NettyRuntime.availableProcessors() * 2));
 
-        LINK_CAPACITY = safeFindNextPositivePowerOfTwo(
-                max(SystemPropertyUtil.getInt("io.netty.recycler.linkCapacity", 16), 16));
-
         // By default we allow one push to a Recycler for each 8th try on handles that were never recycled before.
         // This should help to slowly increase the capacity of the recycler while not be too sensitive to allocation
         // bursts.
@@ -91,12 +93,10 @@ public abstract class Recycler<T> {
             if (DEFAULT_MAX_CAPACITY_PER_THREAD == 0) {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: disabled");
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: disabled");
-                logger.debug("-Dio.netty.recycler.linkCapacity: disabled");
                 logger.debug("-Dio.netty.recycler.ratio: disabled");
             } else {
                 logger.debug("-Dio.netty.recycler.maxCapacityPerThread: {}", DEFAULT_MAX_CAPACITY_PER_THREAD);
                 logger.debug("-Dio.netty.recycler.maxSharedCapacityFactor: {}", MAX_SHARED_CAPACITY_FACTOR);
-                logger.debug("-Dio.netty.recycler.linkCapacity: {}", LINK_CAPACITY);
                 logger.debug("-Dio.netty.recycler.ratio: {}", RATIO);
             }
         }
@@ -105,25 +105,14 @@ public abstract class Recycler<T> {
     }
 
     private final int maxCapacityPerThread;
-    private final int maxSharedCapacityFactor;
+    private final int maxSharedCapacity;
     private final int interval;
-    private final int maxDelayedQueuesPerThread;
 
     private final FastThreadLocal<Stack<T>> threadLocal = new FastThreadLocal<Stack<T>>() {
         @Override
         protected Stack<T> initialValue() {
-            return new Stack<T>(Recycler.this, Thread.currentThread(), maxCapacityPerThread, maxSharedCapacityFactor,
-                    interval, maxDelayedQueuesPerThread);
-        }
-
-        @Override
-        protected void onRemoval(Stack<T> value) {
-            // Let us remove the WeakOrderQueue from the WeakHashMap directly if its safe to remove some overhead
-            if (value.threadRef.get() == Thread.currentThread()) {
-               if (DELAYED_RECYCLED.isSet()) {
-                   DELAYED_RECYCLED.get().remove(value);
-               }
-            }
+            return new Stack<T>(Recycler.this, Thread.currentThread(), maxCapacityPerThread, maxSharedCapacity,
+                    interval);
         }
     };
 
@@ -139,17 +128,27 @@ public abstract class Recycler<T> {
         this(maxCapacityPerThread, maxSharedCapacityFactor, RATIO, MAX_DELAYED_QUEUES_PER_THREAD);
     }
 
+    /**
+     * Create a new instance.
+     *
+     * @param maxCapacityPerThread      the maximum number of objects pooled per thread.
+     * @param maxSharedCapacityFactor   the factor by which {@code maxCapacityPerThread} is divided to compute the
+     *                                  maximum number of objects that other threads may hand back to a thread until
+     *                                  it picks them up.
+     * @param ratio                     only one out of {@code ratio} objects that were never recycled before is pooled.
+     * @param maxDelayedQueuesPerThread {@code 0} to drop objects which are recycled by another thread than the one
+     *                                  that obtained them. Any other value allows to recycle from other threads.
+     */
     protected Recycler(int maxCapacityPerThread, int maxSharedCapacityFactor,
                        int ratio, int maxDelayedQueuesPerThread) {
         interval = safeFindNextPositivePowerOfTwo(ratio);
         if (maxCapacityPerThread <= 0) {
             this.maxCapacityPerThread = 0;
-            this.maxSharedCapacityFactor = 1;
-            this.maxDelayedQueuesPerThread = 0;
+            this.maxSharedCapacity = 0;
         } else {
             this.maxCapacityPerThread = maxCapacityPerThread;
-            this.maxSharedCapacityFactor = max(1, maxSharedCapacityFactor);
-            this.maxDelayedQueuesPerThread = max(0, maxDelayedQueuesPerThread);
+            this.maxSharedCapacity = maxDelayedQueuesPerThread <= 0 ? 0 :
+                    max(2, maxCapacityPerThread / max(1, maxSharedCapacityFactor));
         }
     }
 
@@ -198,12 +197,18 @@ public abstract class Recycler<T> {
     public interface Handle<T> extends ObjectPool.Handle<T>  { }
 
     private static final class DefaultHandle<T> implements Handle<T> {
-        int lastRecycledId;
-        int recycleId;
+        private static final int STATE_CLAIMED = 0;
+        private static final int STATE_AVAILABLE = 1;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<DefaultHandle> STATE_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(DefaultHandle.class, "state");
 
+        // Only ever accessed by the thread that owns the stack.
         boolean hasBeenRecycled;
 
-        Stack<?> stack;
+        private volatile int state; // STATE_CLAIMED by default
+        final Stack<?> stack;
         Object value;
 
         DefaultHandle(Stack<?> stack) {
@@ -215,266 +220,26 @@ public abstract class Recycler<T> {
             if (object != value) {
                 throw new IllegalArgumentException("object does not belong to handle");
             }
-
-            Stack<?> stack = this.stack;
-            if (lastRecycledId != recycleId || stack == null) {
+            if (STATE_UPDATER.getAndSet(this, STATE_AVAILABLE) != STATE_CLAIMED) {
                 throw new IllegalStateException("recycled already");
             }
-
             stack.push(this);
         }
-    }
-
-    private static final FastThreadLocal<Map<Stack<?>, WeakOrderQueue>> DELAYED_RECYCLED =
-            new FastThreadLocal<Map<Stack<?>, WeakOrderQueue>>() {
-        @Override
-        protected Map<Stack<?>, WeakOrderQueue> initialValue() {
-            return new WeakHashMap<Stack<?>, WeakOrderQueue>();
-        }
-    };
-
-    // a queue that makes only moderate guarantees about visibility: items are seen in the correct order,
-    // but we aren't absolutely guaranteed to ever see anything at all, thereby keeping the queue cheap to maintain
-    private static final class WeakOrderQueue extends WeakReference<Thread> {
-
-        static final WeakOrderQueue DUMMY = new WeakOrderQueue();
-
-        // Let Link extend AtomicInteger for intrinsics. The Link itself will be used as writerIndex.
-        @SuppressWarnings("serial")
-        static final class Link extends AtomicInteger {
-            final DefaultHandle<?>[] elements = new DefaultHandle[LINK_CAPACITY];
-
-            int readIndex;
-            Link next;
-        }
-
-        // Its important this does not hold any reference to either Stack or WeakOrderQueue.
-        private static final class Head {
-            private final AtomicInteger availableSharedCapacity;
-
-            Link link;
-
-            Head(AtomicInteger availableSharedCapacity) {
-                this.availableSharedCapacity = availableSharedCapacity;
-            }
-
-            /**
-             * Reclaim all used space and also unlink the nodes to prevent GC nepotism.
-             */
-            void reclaimAllSpaceAndUnlink() {
-                Link head = link;
-                link = null;
-                int reclaimSpace = 0;
-                while (head != null) {
-                    reclaimSpace += LINK_CAPACITY;
-                    Link next = head.next;
-                    // Unlink to help GC and guard against GC nepotism.
-                    head.next = null;
-                    head = next;
-                }
-                if (reclaimSpace > 0) {
-                    reclaimSpace(reclaimSpace);
-                }
-            }
-
-            private void reclaimSpace(int space) {
-                availableSharedCapacity.addAndGet(space);
-            }
-
-            void relink(Link link) {
-                reclaimSpace(LINK_CAPACITY);
-                this.link = link;
-            }
-
-            /**
-             * Creates a new {@link} and returns it if we can reserve enough space for it, otherwise it
-             * returns {@code null}.
-             */
-            Link newLink() {
-                return reserveSpaceForLink(availableSharedCapacity) ? new Link() : null;
-            }
-
-            static boolean reserveSpaceForLink(AtomicInteger availableSharedCapacity) {
-                for (;;) {
-                    int available = availableSharedCapacity.get();
-                    if (available < LINK_CAPACITY) {
-                        return false;
-                    }
-                    if (availableSharedCapacity.compareAndSet(available, available - LINK_CAPACITY)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        // chain of data items
-        private final Head head;
-        private Link tail;
-        // pointer to another queue of delayed items for the same stack
-        private WeakOrderQueue next;
-        private final int id = ID_GENERATOR.getAndIncrement();
-        private final int interval;
-        private int handleRecycleCount;
-
-        private WeakOrderQueue() {
-            super(null);
-            head = new Head(null);
-            interval = 0;
-        }
-
-        private WeakOrderQueue(Stack<?> stack, Thread thread) {
-            super(thread);
-            tail = new Link();
-
-            // Its important that we not store the Stack itself in the WeakOrderQueue as the Stack also is used in
-            // the WeakHashMap as key. So just store the enclosed AtomicInteger which should allow to have the
-            // Stack itself GCed.
-            head = new Head(stack.availableSharedCapacity);
-            head.link = tail;
-            interval = stack.interval;
-            handleRecycleCount = interval; // Start at interval so the first one will be recycled.
-        }
-
-        static WeakOrderQueue newQueue(Stack<?> stack, Thread thread) {
-            // We allocated a Link so reserve the space
-            if (!Head.reserveSpaceForLink(stack.availableSharedCapacity)) {
-                return null;
-            }
-            final WeakOrderQueue queue = new WeakOrderQueue(stack, thread);
-            // Done outside of the constructor to ensure WeakOrderQueue.this does not escape the constructor and so
-            // may be accessed while its still constructed.
-            stack.setHead(queue);
-
-            return queue;
-        }
-
-        WeakOrderQueue getNext() {
-            return next;
-        }
-
-        void setNext(WeakOrderQueue next) {
-            assert next != this;
-            this.next = next;
-        }
-
-        void reclaimAllSpaceAndUnlink() {
-            head.reclaimAllSpaceAndUnlink();
-            this.next = null;
-        }
-
-        void add(DefaultHandle<?> handle) {
-            handle.lastRecycledId = id;
-
-            // While we also enforce the recycling ratio one we transfer objects from the WeakOrderQueue to the Stack
-            // we better should enforce it as well early. Missing to do so may let the WeakOrderQueue grow very fast
-            // without control if the Stack
-            if (handleRecycleCount < interval) {
-                handleRecycleCount++;
-                // Drop the item to prevent recycling to aggressive.
-                return;
-            }
-            handleRecycleCount = 0;
-
-            Link tail = this.tail;
-            int writeIndex;
-            if ((writeIndex = tail.get()) == LINK_CAPACITY) {
-                Link link = head.newLink();
-                if (link == null) {
-                    // Drop it.
-                    return;
-                }
-                // We allocate a Link so reserve the space
-                this.tail = tail = tail.next = link;
-
-                writeIndex = tail.get();
-            }
-            tail.elements[writeIndex] = handle;
-            handle.stack = null;
-            // we lazy set to ensure that setting stack to null appears before we unnull it in the owning thread;
-            // this also means we guarantee visibility of an element in the queue if we see the index updated
-            tail.lazySet(writeIndex + 1);
-        }
-
-        boolean hasFinalData() {
-            return tail.readIndex != tail.get();
-        }
-
-        // transfer as many items as we can from this queue to the stack, returning true if any were transferred
-        @SuppressWarnings("rawtypes")
-        boolean transfer(Stack<?> dst) {
-            Link head = this.head.link;
-            if (head == null) {
-                return false;
-            }
-
-            if (head.readIndex == LINK_CAPACITY) {
-                if (head.next == null) {
-                    return false;
-                }
-                head = head.next;
-                this.head.relink(head);
-            }
-
-            final int srcStart = head.readIndex;
-            int srcEnd = head.get();
-            final int srcSize = srcEnd - srcStart;
-            if (srcSize == 0) {
-                return false;
-            }
-
-            final int dstSize = dst.size;
-            final int expectedCapacity = dstSize + srcSize;
-
-            if (expectedCapacity > dst.elements.length) {
-                final int actualCapacity = dst.increaseCapacity(expectedCapacity);
-                srcEnd = min(srcStart + actualCapacity - dstSize, srcEnd);
-            }
-
-            if (srcStart != srcEnd) {
-                final DefaultHandle[] srcElems = head.elements;
-                final DefaultHandle[] dstElems = dst.elements;
-                int newDstSize = dstSize;
-                for (int i = srcStart; i < srcEnd; i++) {
-                    DefaultHandle<?> element = srcElems[i];
-                    if (element.recycleId == 0) {
-                        element.recycleId = element.lastRecycledId;
-                    } else if (element.recycleId != element.lastRecycledId) {
-                        throw new IllegalStateException("recycled already");
-                    }
-                    srcElems[i] = null;
-
-                    if (dst.dropHandle(element)) {
-                        // Drop the object.
-                        continue;
-                    }
-                    element.stack = dst;
-                    dstElems[newDstSize ++] = element;
-                }
-
-                if (srcEnd == LINK_CAPACITY && head.next != null) {
-                    // Add capacity back as the Link is GCed.
-                    this.head.relink(head.next);
-                }
 
-                head.readIndex = srcEnd;
-                if (dst.size == newDstSize) {
-                    return false;
-                }
-                dst.size = newDstSize;
-                return true;
-            } else {
-                // The destination stack is full already.
-                return false;
-            }
+        void toClaimed() {
+            assert state == STATE_AVAILABLE;
+            // Only the owning thread ever sees this handle again, the happens-before with any later recycle()
+            // is provided by however the object was handed over to the recycling thread.
+            STATE_UPDATER.lazySet(this, STATE_CLAIMED);
         }
     }
 
     private static final class Stack<T> {
 
-        // we keep a queue of per-thread queues, which is appended to once only, each time a new thread other
-        // than the stack owner recycles: when we run out of items in our stack we iterate this collection
-        // to scavenge those that can be reused. this permits us to incur minimal thread synchronisation whilst
-        // still recycling all items.
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Stack, Queue> QUEUE_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Stack.class, Queue.class, "sharedQueue");
+
         final Recycler<T> parent;
 
         // We store the Thread in a WeakReference as otherwise we may be the only ones that still hold a strong
@@ -484,162 +249,85 @@ public abstract class Recycler<T> {
         // the user will store a reference to the DefaultHandle somewhere and never clear this reference (or not clear
         // it in a timely manner).
         final WeakReference<Thread> threadRef;
-        final AtomicInteger availableSharedCapacity;
-        private final int maxDelayedQueues;
 
         private final int maxCapacity;
+        private final int maxSharedCapacity;
         private final int interval;
         DefaultHandle<?>[] elements;
         int size;
         private int handleRecycleCount;
-        private WeakOrderQueue cursor, prev;
-        private volatile WeakOrderQueue head;
 
-        Stack(Recycler<T> parent, Thread thread, int maxCapacity, int maxSharedCapacityFactor,
-              int interval, int maxDelayedQueues) {
+        // Handles recycled by other threads. Created lazily by the first thread that recycles a handle of this stack
+        // as most stacks never see any cross-thread recycling.
+        private volatile Queue<DefaultHandle<?>> sharedQueue;
+
+        Stack(Recycler<T> parent, Thread thread, int maxCapacity, int maxSharedCapacity, int interval) {
             this.parent = parent;
             threadRef = new WeakReference<Thread>(thread);
             this.maxCapacity = maxCapacity;
-            availableSharedCapacity = new AtomicInteger(max(maxCapacity / maxSharedCapacityFactor, LINK_CAPACITY));
+            this.maxSharedCapacity = maxSharedCapacity;
             elements = new DefaultHandle[min(INITIAL_CAPACITY, maxCapacity)];
             this.interval = interval;
             handleRecycleCount = interval; // Start at interval so the first one will be recycled.
-            this.maxDelayedQueues = maxDelayedQueues;
-        }
-
-        // Marked as synchronized to ensure this is serialized.
-        synchronized void setHead(WeakOrderQueue queue) {
-            queue.setNext(head);
-            head = queue;
-        }
-
-        int increaseCapacity(int expectedCapacity) {
-            int newCapacity = elements.length;
-            int maxCapacity = this.maxCapacity;
-            do {
-                newCapacity <<= 1;
-            } while (newCapacity < expectedCapacity && newCapacity < maxCapacity);
-
-            newCapacity = min(newCapacity, maxCapacity);
-            if (newCapacity != elements.length) {
-                elements = Arrays.copyOf(elements, newCapacity);
-            }
-
-            return newCapacity;
         }
 
         @SuppressWarnings({ "unchecked", "rawtypes" })
         DefaultHandle<T> pop() {
             int size = this.size;
             if (size == 0) {
-                if (!scavenge()) {
-                    return null;
-                }
-                size = this.size;
-                if (size <= 0) {
-                    // double check, avoid races
+                size = scavenge();
+                if (size == 0) {
                     return null;
                 }
             }
             size --;
             DefaultHandle ret = elements[size];
             elements[size] = null;
-            // As we already set the element[size] to null we also need to store the updated size before we do
-            // any validation. Otherwise we may see a null value when later try to pop again without a new element
-            // added before.
             this.size = size;
-
-            if (ret.lastRecycledId != ret.recycleId) {
-                throw new IllegalStateException("recycled multiple times");
-            }
-            ret.recycleId = 0;
-            ret.lastRecycledId = 0;
+            ret.toClaimed();
             return ret;
         }
 
-        private boolean scavenge() {
-            // continue an existing scavenge, if any
-            if (scavengeSome()) {
-                return true;
-            }
-
-            // reset our scavenge cursor
-            prev = null;
-            cursor = head;
-            return false;
-        }
-
-        private boolean scavengeSome() {
-            WeakOrderQueue prev;
-            WeakOrderQueue cursor = this.cursor;
-            if (cursor == null) {
-                prev = null;
-                cursor = head;
-                if (cursor == null) {
-                    return false;
-                }
-            } else {
-                prev = this.prev;
+        /**
+         * Moves the handles which were recycled by other threads to the stack and returns the new size of it.
+         */
+        private int scavenge() {
+            Queue<DefaultHandle<?>> sharedQueue = this.sharedQueue;
+            if (sharedQueue == null) {
+                return 0;
             }
-
-            boolean success = false;
-            do {
-                if (cursor.transfer(this)) {
-                    success = true;
+            DefaultHandle<?>[] elements = this.elements;
+            int size = this.size;
+            while (size < maxCapacity) {
+                DefaultHandle<?> handle = sharedQueue.poll();
+                if (handle == null) {
                     break;
                 }
-                WeakOrderQueue next = cursor.getNext();
-                if (cursor.get() == null) {
-                    // If the thread associated with the queue is gone, unlink it, after
-                    // performing a volatile read to confirm there is no data left to collect.
-                    // We never unlink the first queue, as we don't want to synchronize on updating the head.
-                    if (cursor.hasFinalData()) {
-                        for (;;) {
-                            if (cursor.transfer(this)) {
-                                success = true;
-                            } else {
-                                break;
-                            }
-                        }
-                    }
-
-                    if (prev != null) {
-                        // Ensure we reclaim all space before dropping the WeakOrderQueue to be GC'ed.
-                        cursor.reclaimAllSpaceAndUnlink();
-                        prev.setNext(next);
-                    }
-                } else {
-                    prev = cursor;
+                if (dropHandle(handle)) {
+                    continue;
                 }
-
-                cursor = next;
-
-            } while (cursor != null && !success);
-
-            this.prev = prev;
-            this.cursor = cursor;
-            return success;
+                if (size == elements.length) {
+                    elements = this.elements = Arrays.copyOf(elements, min(size << 1, maxCapacity));
+                }
+                elements[size ++] = handle;
+            }
+            this.size = size;
+            return size;
         }
 
         void push(DefaultHandle<?> item) {
-            Thread currentThread = Thread.currentThread();
-            if (threadRef.get() == currentThread) {
+            if (threadRef.get() == Thread.currentThread()) {
                 // The current Thread is the thread that belongs to the Stack, we can try to push the object now.
                 pushNow(item);
             } else {
                 // The current Thread is not the one that belongs to the Stack
-                // (or the Thread that belonged to the Stack was collected already), we need to signal that the push
-                // happens later.
-                pushLater(item, currentThread);
+                // (or the Thread that belonged to the Stack was collected already), hand the object over to the
+                // owner via the shared queue.
+                pushLater(item);
             }
         }
 
         private void pushNow(DefaultHandle<?> item) {
-            if ((item.recycleId | item.lastRecycledId) != 0) {
-                throw new IllegalStateException("recycled already");
-            }
-            item.recycleId = item.lastRecycledId = OWN_THREAD_ID;
-
             int size = this.size;
             if (size >= maxCapacity || dropHandle(item)) {
                 // Hit the maximum capacity or should drop - drop the possibly youngest object.
@@ -653,42 +341,21 @@ public abstract class Recycler<T> {
             this.size = size + 1;
         }
 
-        private void pushLater(DefaultHandle<?> item, Thread thread) {
-            if (maxDelayedQueues == 0) {
+        @SuppressWarnings("unchecked")
+        private void pushLater(DefaultHandle<?> item) {
+            if (maxSharedCapacity == 0) {
                 // We don't support recycling across threads and should just drop the item on the floor.
                 return;
             }
-
-            // we don't want to have a ref to the queue as the value in our weak map
-            // so we null it out; to ensure there are no races with restoring it later
-            // we impose a memory ordering here (no-op on x86)
-            Map<Stack<?>, WeakOrderQueue> delayedRecycled = DELAYED_RECYCLED.get();
-            WeakOrderQueue queue = delayedRecycled.get(this);
-            if (queue == null) {
-                if (delayedRecycled.size() >= maxDelayedQueues) {
-                    // Add a dummy queue so we know we should drop the object
-                    delayedRecycled.put(this, WeakOrderQueue.DUMMY);
-                    return;
-                }
-                // Check if we already reached the maximum number of delayed queues and if we can allocate at all.
-                if ((queue = newWeakOrderQueue(thread)) == null) {
-                    // drop object
-                    return;
+            Queue<DefaultHandle<?>> sharedQueue = this.sharedQueue;
+            if (sharedQueue == null) {
+                sharedQueue = PlatformDependent.newFixedMpscQueue(maxSharedCapacity);
+                if (!QUEUE_UPDATER.compareAndSet(this, null, sharedQueue)) {
+                    sharedQueue = this.sharedQueue;
                 }
-                delayedRecycled.put(this, queue);
-            } else if (queue == WeakOrderQueue.DUMMY) {
-                // drop object
-                return;
             }
-
-            queue.add(item);
-        }
-
-        /**
-         * Allocate a new {@link WeakOrderQueue} or return {@code null} if not possible.
-         */
-        private WeakOrderQueue newWeakOrderQueue(Thread thread) {
-            return WeakOrderQueue.newQueue(this, thread);
+            // If the queue is full the owner did not pick up the handles yet, so just drop the object.
+            sharedQueue.offer(item);
         }
 
         boolean dropHandle(DefaultHandle<?> handle) {
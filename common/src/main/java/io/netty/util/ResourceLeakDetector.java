@@ -26,13 +26,18 @@ import io.netty.util.internal.logging.InternalLoggerFactory;
 import java.lang.ref.WeakReference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
@@ -53,8 +58,22 @@ public class ResourceLeakDetector<T> {
     // There is a minor performance benefit in TLR if this is a power of 2.
     private static final int DEFAULT_SAMPLING_INTERVAL = 128;
 
+    private static final String PROP_ALLOCATION_SITES = "io.netty.leakDetection.allocationSites";
+    private static final String PROP_SITE_SAMPLING_INTERVAL = "io.netty.leakDetection.siteSamplingInterval";
+    private static final int DEFAULT_SITE_SAMPLING_INTERVAL = 4096;
+    private static final String PROP_MAX_SITES = "io.netty.leakDetection.maxSites";
+    private static final int DEFAULT_MAX_SITES = 1024;
+    private static final String PROP_SITE_REPORT_INTERVAL = "io.netty.leakDetection.siteReportIntervalMillis";
+    private static final long DEFAULT_SITE_REPORT_INTERVAL = 60000;
+    // The number of stack frames that identify an allocation site and the number of sites included in a report.
+    private static final int SITE_FRAMES = 16;
+    private static final int SITE_REPORT_TOP = 5;
+
     private static final int TARGET_RECORDS;
     static final int SAMPLING_INTERVAL;
+    static final int SITE_SAMPLING_INTERVAL;
+    private static final int MAX_SITES;
+    private static final long SITE_REPORT_INTERVAL_NANOS;
 
     /**
      * Represents the level of resource leak detection.
@@ -98,6 +117,7 @@ public class ResourceLeakDetector<T> {
     }
 
     private static Level level;
+    private static volatile boolean allocationSiteTracking;
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ResourceLeakDetector.class);
 
@@ -124,11 +144,24 @@ public class ResourceLeakDetector<T> {
 
         TARGET_RECORDS = SystemPropertyUtil.getInt(PROP_TARGET_RECORDS, DEFAULT_TARGET_RECORDS);
         SAMPLING_INTERVAL = SystemPropertyUtil.getInt(PROP_SAMPLING_INTERVAL, DEFAULT_SAMPLING_INTERVAL);
+        SITE_SAMPLING_INTERVAL = Math.max(1,
+                SystemPropertyUtil.getInt(PROP_SITE_SAMPLING_INTERVAL, DEFAULT_SITE_SAMPLING_INTERVAL));
+        MAX_SITES = Math.max(1, SystemPropertyUtil.getInt(PROP_MAX_SITES, DEFAULT_MAX_SITES));
+        SITE_REPORT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+                SystemPropertyUtil.getLong(PROP_SITE_REPORT_INTERVAL, DEFAULT_SITE_REPORT_INTERVAL)));
 
         ResourceLeakDetector.level = level;
+        allocationSiteTracking = SystemPropertyUtil.getBoolean(PROP_ALLOCATION_SITES, false);
         if (logger.isDebugEnabled()) {
             logger.debug("-D{}: {}", PROP_LEVEL, level.name().toLowerCase());
             logger.debug("-D{}: {}", PROP_TARGET_RECORDS, TARGET_RECORDS);
+            logger.debug("-D{}: {}", PROP_ALLOCATION_SITES, allocationSiteTracking);
+            if (allocationSiteTracking) {
+                logger.debug("-D{}: {}", PROP_SITE_SAMPLING_INTERVAL, SITE_SAMPLING_INTERVAL);
+                logger.debug("-D{}: {}", PROP_MAX_SITES, MAX_SITES);
+                logger.debug("-D{}: {}", PROP_SITE_REPORT_INTERVAL,
+                        TimeUnit.NANOSECONDS.toMillis(SITE_REPORT_INTERVAL_NANOS));
+            }
         }
     }
 
@@ -161,6 +194,29 @@ public class ResourceLeakDetector<T> {
         return level;
     }
 
+    /**
+     * Enables or disables allocation site tracking, which replaces the per-leak reports of the {@link Level#SIMPLE}
+     * level. Instead of capturing a stack trace per tracked object, a sampled allocation is only attributed to an
+     * allocation site (identified by a hash of the top-most stack frames) and leaks are counted per site. The sites
+     * which leaked the most are reported periodically via {@link #reportLeakingSites(String, String)}.
+     * <p>
+     * As only one out of {@code io.netty.leakDetection.siteSamplingInterval} allocations is sampled and the number of
+     * distinct sites is bounded by {@code io.netty.leakDetection.maxSites}, the overhead is low enough to keep it
+     * enabled in production.
+     */
+    public static void setAllocationSiteTracking(boolean enabled) {
+        allocationSiteTracking = enabled;
+    }
+
+    /**
+     * Returns {@code true} if allocation site tracking is enabled.
+     *
+     * @see #setAllocationSiteTracking(boolean)
+     */
+    public static boolean isAllocationSiteTracking() {
+        return allocationSiteTracking;
+    }
+
     /** the collection of active resources */
     private final Set<DefaultResourceLeak<?>> allLeaks =
             Collections.newSetFromMap(new ConcurrentHashMap<DefaultResourceLeak<?>, Boolean>());
@@ -169,8 +225,18 @@ public class ResourceLeakDetector<T> {
     private final Set<String> reportedLeaks =
             Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
+    /** the allocation sites of sampled resources, keyed by their id */
+    private final ConcurrentMap<Integer, AllocationSite> allocationSites =
+            new ConcurrentHashMap<Integer, AllocationSite>();
+    // Used for all allocations once the number of distinct sites reached MAX_SITES.
+    private final AllocationSite overflowSite = new AllocationSite(
+            "\t<more than " + MAX_SITES + " allocation sites, increase " + PROP_MAX_SITES + '>' + NEWLINE);
+    private final AtomicLong lastSiteReport = new AtomicLong(System.nanoTime() - SITE_REPORT_INTERVAL_NANOS);
+    private volatile boolean unreportedSiteLeaks;
+
     private final String resourceType;
     private final int samplingInterval;
+    private final int siteSamplingInterval;
 
     /**
      * @deprecated use {@link ResourceLeakDetectorFactory#newResourceLeakDetector(Class, int, long)}.
@@ -219,8 +285,24 @@ public class ResourceLeakDetector<T> {
      */
     @Deprecated
     public ResourceLeakDetector(String resourceType, int samplingInterval, long maxActive) {
+        this(Math.max(samplingInterval, SITE_SAMPLING_INTERVAL), resourceType, samplingInterval);
+    }
+
+    /**
+     * Creates a new instance which samples one out of {@code siteSamplingInterval} allocations if allocation sites
+     * are tracked.
+     * <p>
+     * This constructor is visible for testing!
+     */
+    ResourceLeakDetector(Class<?> resourceType, int samplingInterval, int siteSamplingInterval) {
+        this(ObjectUtil.checkPositive(siteSamplingInterval, "siteSamplingInterval"), simpleClassName(resourceType),
+                samplingInterval);
+    }
+
+    private ResourceLeakDetector(int siteSamplingInterval, String resourceType, int samplingInterval) {
         this.resourceType = ObjectUtil.checkNotNull(resourceType, "resourceType");
         this.samplingInterval = samplingInterval;
+        this.siteSamplingInterval = siteSamplingInterval;
     }
 
     /**
@@ -254,14 +336,72 @@ public class ResourceLeakDetector<T> {
         }
 
         if (level.ordinal() < Level.PARANOID.ordinal()) {
+            if (level == Level.SIMPLE && allocationSiteTracking) {
+                if ((PlatformDependent.threadLocalRandom().nextInt(siteSamplingInterval)) == 0) {
+                    reportLeak();
+                    return new DefaultResourceLeak(obj, refQueue, allLeaks, allocationSite());
+                }
+                return null;
+            }
             if ((PlatformDependent.threadLocalRandom().nextInt(samplingInterval)) == 0) {
                 reportLeak();
-                return new DefaultResourceLeak(obj, refQueue, allLeaks);
+                return new DefaultResourceLeak(obj, refQueue, allLeaks, null);
             }
             return null;
         }
         reportLeak();
-        return new DefaultResourceLeak(obj, refQueue, allLeaks);
+        return new DefaultResourceLeak(obj, refQueue, allLeaks, null);
+    }
+
+    /**
+     * Returns the {@link AllocationSite} of the caller of {@link #track(Object)} and counts the allocation.
+     */
+    private AllocationSite allocationSite() {
+        StackTraceElement[] frames = new Throwable().getStackTrace();
+        String[] exclusions = excludedMethods.get();
+        int[] siteFrames = new int[SITE_FRAMES];
+        int numFrames = 0;
+        int id = 1;
+        for (int i = 0; i < frames.length && numFrames < SITE_FRAMES; i++) {
+            StackTraceElement element = frames[i];
+            if (element.getClassName().equals(ResourceLeakDetector.class.getName()) ||
+                    isExcluded(element, exclusions)) {
+                continue;
+            }
+            id = 31 * id + element.getClassName().hashCode();
+            id = 31 * id + element.getMethodName().hashCode();
+            id = 31 * id + element.getLineNumber();
+            siteFrames[numFrames++] = i;
+        }
+
+        AllocationSite site = allocationSites.get(id);
+        if (site == null) {
+            if (allocationSites.size() >= MAX_SITES) {
+                site = overflowSite;
+            } else {
+                StringBuilder buf = new StringBuilder(numFrames * 128);
+                for (int i = 0; i < numFrames; i++) {
+                    buf.append('\t').append(frames[siteFrames[i]]).append(NEWLINE);
+                }
+                site = new AllocationSite(buf.toString());
+                AllocationSite old = allocationSites.putIfAbsent(id, site);
+                if (old != null) {
+                    site = old;
+                }
+            }
+        }
+        site.tracked.incrementAndGet();
+        return site;
+    }
+
+    private static boolean isExcluded(StackTraceElement element, String[] exclusions) {
+        for (int k = 0; k < exclusions.length; k += 2) {
+            if (exclusions[k].equals(element.getClassName())
+                    && exclusions[k + 1].equals(element.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void clearRefQueue() {
@@ -301,6 +441,12 @@ public class ResourceLeakDetector<T> {
                 continue;
             }
 
+            if (ref.site != null) {
+                ref.site.leaked.incrementAndGet();
+                unreportedSiteLeaks = true;
+                continue;
+            }
+
             String records = ref.toString();
             if (reportedLeaks.add(records)) {
                 if (records.isEmpty()) {
@@ -310,6 +456,39 @@ public class ResourceLeakDetector<T> {
                 }
             }
         }
+
+        if (unreportedSiteLeaks) {
+            long last = lastSiteReport.get();
+            long now = System.nanoTime();
+            if (now - last >= SITE_REPORT_INTERVAL_NANOS && lastSiteReport.compareAndSet(last, now)) {
+                unreportedSiteLeaks = false;
+                reportLeakingSites(resourceType, leakingSitesReport());
+            }
+        }
+    }
+
+    private String leakingSitesReport() {
+        List<AllocationSite> sites = new ArrayList<AllocationSite>(allocationSites.size() + 1);
+        for (AllocationSite site: allocationSites.values()) {
+            if (site.snapshot() > 0) {
+                sites.add(site);
+            }
+        }
+        if (overflowSite.snapshot() > 0) {
+            sites.add(overflowSite);
+        }
+        Collections.sort(sites, AllocationSite.MOST_LEAKED_FIRST);
+
+        StringBuilder buf = new StringBuilder(NEWLINE);
+        buf.append("Top leaking allocation sites (").append(sites.size()).append(" in total, sampled 1 out of ")
+           .append(siteSamplingInterval).append(" allocations):").append(NEWLINE);
+        for (int i = 0; i < sites.size() && i < SITE_REPORT_TOP; i++) {
+            AllocationSite site = sites.get(i);
+            buf.append('#').append(i + 1).append(": ").append(site.leakedSnapshot).append(" leaked of ")
+               .append(site.tracked.get()).append(" sampled").append(NEWLINE).append(site.frames);
+        }
+        buf.setLength(buf.length() - NEWLINE.length());
+        return buf.toString();
     }
 
     /**
@@ -336,6 +515,18 @@ public class ResourceLeakDetector<T> {
                 resourceType, PROP_LEVEL, Level.ADVANCED.name().toLowerCase(), simpleClassName(this));
     }
 
+    /**
+     * This method is called periodically while leaks are detected and allocation site tracking is enabled. It can be
+     * overridden for tracking the sites that leak the most.
+     *
+     * @see #setAllocationSiteTracking(boolean)
+     */
+    protected void reportLeakingSites(String resourceType, String report) {
+        logger.error("LEAK: {}.release() was not called before it's garbage-collected. " +
+                "See https://netty.io/wiki/reference-counted-objects.html for more information.{}",
+                resourceType, report);
+    }
+
     /**
      * @deprecated This method will no longer be invoked by {@link ResourceLeakDetector}.
      */
@@ -364,11 +555,14 @@ public class ResourceLeakDetector<T> {
 
         private final Set<DefaultResourceLeak<?>> allLeaks;
         private final int trackedHash;
+        // Only set if allocation site tracking is used, in which case no records are kept.
+        final AllocationSite site;
 
         DefaultResourceLeak(
                 Object referent,
                 ReferenceQueue<Object> refQueue,
-                Set<DefaultResourceLeak<?>> allLeaks) {
+                Set<DefaultResourceLeak<?>> allLeaks,
+                AllocationSite site) {
             super(referent, refQueue);
 
             assert referent != null;
@@ -378,9 +572,12 @@ public class ResourceLeakDetector<T> {
             // be collected via the WeakReference.
             trackedHash = System.identityHashCode(referent);
             allLeaks.add(this);
-            // Create a new Record so we always have the creation stacktrace included.
-            headUpdater.set(this, new Record(Record.BOTTOM));
+            if (site == null) {
+                // Create a new Record so we always have the creation stacktrace included.
+                headUpdater.set(this, new Record(Record.BOTTOM));
+            }
             this.allLeaks = allLeaks;
+            this.site = site;
         }
 
         @Override
@@ -588,6 +785,31 @@ public class ResourceLeakDetector<T> {
         } while (!excludedMethods.compareAndSet(oldMethods, newMethods));
     }
 
+    private static final class AllocationSite {
+        static final Comparator<AllocationSite> MOST_LEAKED_FIRST = new Comparator<AllocationSite>() {
+            @Override
+            public int compare(AllocationSite o1, AllocationSite o2) {
+                long l1 = o1.leakedSnapshot;
+                long l2 = o2.leakedSnapshot;
+                return l1 < l2 ? 1 : l1 == l2 ? 0 : -1;
+            }
+        };
+
+        final String frames;
+        final AtomicLong tracked = new AtomicLong();
+        final AtomicLong leaked = new AtomicLong();
+        // Only accessed by the thread that builds a report, so the order stays stable while sorting.
+        long leakedSnapshot;
+
+        AllocationSite(String frames) {
+            this.frames = frames;
+        }
+
+        long snapshot() {
+            return leakedSnapshot = leaked.get();
+        }
+    }
+
     private static final class Record extends Throwable {
         private static final long serialVersionUID = 6065153674892850720L;
 
@@ -189,14 +189,39 @@ public class RecyclerTest {
         assertNotSame(recycler.get(), o2);
     }
 
+    @Test
+    public void testRecycleAtDifferentThreadNeverDropsPreviouslyRecycled() throws Exception {
+        final Recycler<HandledObject> recycler = newRecycler(256);
+        HandledObject o = recycler.get();
+        // Recycle once from the owning thread so the object is pooled from now on.
+        o.recycle();
+        assertSame(o, recycler.get());
+
+        for (int i = 0; i < 16; i++) {
+            final HandledObject object = o;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    object.recycle();
+                }
+            };
+            thread.start();
+            thread.join();
+
+            o = recycler.get();
+            assertSame(object, o);
+        }
+    }
+
     @Test
     public void testMaxCapacityWithRecycleAtDifferentThread() throws Exception {
-        final int maxCapacity = 4; // Choose the number smaller than WeakOrderQueue.LINK_CAPACITY
+        // The shared capacity of the stack is max(2, maxCapacity / 2), so the other thread overflows it.
+        final int maxCapacity = 4;
         final Recycler<HandledObject> recycler = newRecycler(maxCapacity);
 
-        // Borrow 2 * maxCapacity objects.
-        // Return the half from the same thread.
-        // Return the other half from the different thread.
+        // Borrow 3 * maxCapacity objects.
+        // Return maxCapacity objects from the same thread.
+        // Return the rest from the different thread.
 
         final HandledObject[] array = new HandledObject[maxCapacity * 3];
         for (int i = 0; i < array.length; i ++) {
@@ -272,7 +297,7 @@ public class RecyclerTest {
             recycler.get();
         }
 
-        // The implementation uses maxCapacity / 2 as limit per WeakOrderQueue
+        // The implementation uses maxCapacity / 2 as limit for objects recycled by other threads
         assertTrue("The instances count (" +  instancesCount.get() + ") must be <= array.length (" + array.length
                 + ") - maxCapacity (" + maxCapacity + ") / 2 as we not pool all new handles" +
                 " internally", array.length - maxCapacity / 2 <= instancesCount.get());
@@ -23,8 +23,54 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.assertTrue;
+
 public class ResourceLeakDetectorTest {
 
+    @Test(timeout = 60000)
+    public void testAllocationSiteTracking() throws Throwable {
+        final AtomicReference<String> report = new AtomicReference<String>();
+        ResourceLeakDetector<Resource> detector = new ResourceLeakDetector<Resource>(Resource.class, 1, 1) {
+            @Override
+            protected void reportTracedLeak(String resourceType, String records) {
+                throw new AssertionError("Leak should be reported per allocation site only");
+            }
+
+            @Override
+            protected void reportUntracedLeak(String resourceType) {
+                throw new AssertionError("Leak should be reported per allocation site only");
+            }
+
+            @Override
+            protected void reportLeakingSites(String resourceType, String sites) {
+                report.compareAndSet(null, sites);
+            }
+        };
+        ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        boolean siteTracking = ResourceLeakDetector.isAllocationSiteTracking();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.SIMPLE);
+        ResourceLeakDetector.setAllocationSiteTracking(true);
+        try {
+            while (report.get() == null) {
+                leakResource(detector);
+                System.gc();
+                Thread.sleep(10);
+
+                // Tracking a new resource reports the previous leaks.
+                DefaultResource resource = new DefaultResource();
+                assertTrue(detector.track(resource).close(resource));
+            }
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+            ResourceLeakDetector.setAllocationSiteTracking(siteTracking);
+        }
+        assertTrue(report.get(), report.get().contains("leakResource"));
+    }
+
+    private static void leakResource(ResourceLeakDetector<Resource> detector) {
+        detector.track(new DefaultResource());
+    }
+
     @Test(timeout = 60000)
     public void testConcurrentUsage() throws Throwable {
         final AtomicBoolean finished = new AtomicBoolean();
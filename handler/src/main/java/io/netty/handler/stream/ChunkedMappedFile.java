@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A {@link ChunkedInput} that fetches data from a file chunk by chunk by mapping it into memory with
+ * {@link FileChannel#map(MapMode, long, long)}.
+ * <p>
+ * Unlike {@link ChunkedFile} and {@link ChunkedNioFile}, the returned chunks are slices of the mapping, so the
+ * file content is not copied into a newly allocated buffer first. This is useful if the content needs to be
+ * copied by another handler anyway, for example when it is encrypted by a {@code SslHandler}. The file is mapped
+ * in windows of at most {@code mapSize} bytes, and a window is unmapped once all of its chunks were released.
+ * <p>
+ * The file must not be truncated while it is transferred, as accessing a mapping beyond the end of the file
+ * may crash the JVM on some platforms. If your operating system supports
+ * <a href="http://en.wikipedia.org/wiki/Zero-copy">zero-copy file transfer</a>
+ * such as {@code sendfile()} and the content does not need to be modified, you might want to use
+ * {@link FileRegion} instead.
+ */
+public class ChunkedMappedFile implements ChunkedInput<ByteBuf> {
+
+    /**
+     * The default maximum number of bytes which are mapped at once.
+     */
+    public static final int DEFAULT_MAP_SIZE = 16 * 1024 * 1024;
+
+    private final FileChannel in;
+    private final long startOffset;
+    private final long endOffset;
+    private final int chunkSize;
+    private final int mapSize;
+    private long offset;
+    private MappedRegion region;
+    private long regionOffset;
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     */
+    public ChunkedMappedFile(File in) throws IOException {
+        this(new RandomAccessFile(in, "r").getChannel());
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(File in, int chunkSize) throws IOException {
+        this(new RandomAccessFile(in, "r").getChannel(), chunkSize);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     */
+    public ChunkedMappedFile(FileChannel in) throws IOException {
+        this(in, ChunkedStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(FileChannel in, int chunkSize) throws IOException {
+        this(in, 0, in.size(), chunkSize);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param offset the offset of the file where the transfer begins
+     * @param length the number of bytes to transfer
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     */
+    public ChunkedMappedFile(FileChannel in, long offset, long length, int chunkSize) throws IOException {
+        this(in, offset, length, chunkSize, DEFAULT_MAP_SIZE);
+    }
+
+    /**
+     * Creates a new instance that fetches data from the specified file.
+     *
+     * @param offset the offset of the file where the transfer begins
+     * @param length the number of bytes to transfer
+     * @param chunkSize the number of bytes to fetch on each
+     *                  {@link #readChunk(ChannelHandlerContext)} call
+     * @param mapSize the maximum number of bytes which are mapped at once
+     */
+    public ChunkedMappedFile(FileChannel in, long offset, long length, int chunkSize, int mapSize)
+            throws IOException {
+        ObjectUtil.checkNotNull(in, "in");
+        ObjectUtil.checkPositiveOrZero(offset, "offset");
+        ObjectUtil.checkPositiveOrZero(length, "length");
+        ObjectUtil.checkPositive(chunkSize, "chunkSize");
+        ObjectUtil.checkPositive(mapSize, "mapSize");
+        if (!in.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        this.in = in;
+        this.chunkSize = chunkSize;
+        this.mapSize = Math.max(mapSize, chunkSize);
+        this.offset = startOffset = offset;
+        endOffset = offset + length;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer began.
+     */
+    public long startOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer will end.
+     */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Returns the offset in the file where the transfer is happening currently.
+     */
+    public long currentOffset() {
+        return offset;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return !(offset < endOffset && in.isOpen());
+    }
+
+    @Override
+    public void close() throws Exception {
+        releaseRegion();
+        in.close();
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+        long offset = this.offset;
+        if (offset >= endOffset) {
+            return null;
+        }
+        if (region == null) {
+            long size = Math.min(mapSize, Math.min(endOffset, in.size()) - offset);
+            if (size <= 0) {
+                throw new EOFException("Underlying file size " + in.size() + " smaller then requested end offset "
+                        + endOffset);
+            }
+            region = new MappedRegion(in.map(MapMode.READ_ONLY, offset, size));
+            regionOffset = offset;
+        }
+        int index = (int) (offset - regionOffset);
+        int chunkSize = Math.min(this.chunkSize, region.capacity() - index);
+        ByteBuf chunk = region.retainedSlice(index, chunkSize);
+        this.offset += chunkSize;
+        if (index + chunkSize == region.capacity()) {
+            // The region stays mapped until all of its chunks are released
+            releaseRegion();
+        }
+        return chunk;
+    }
+
+    @Override
+    public long length() {
+        return endOffset - startOffset;
+    }
+
+    @Override
+    public long progress() {
+        return offset - startOffset;
+    }
+
+    private void releaseRegion() {
+        if (region != null) {
+            region.release();
+            region = null;
+        }
+    }
+
+    /**
+     * Wraps a mapping and unmaps it once it was released.
+     */
+    private static final class MappedRegion extends CompositeByteBuf {
+        private final MappedByteBuffer mapped;
+
+        MappedRegion(MappedByteBuffer mapped) {
+            super(UnpooledByteBufAllocator.DEFAULT, true, 1, Unpooled.wrappedBuffer(mapped));
+            this.mapped = mapped;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            PlatformDependent.freeDirectBuffer(mapped);
+        }
+    }
+}
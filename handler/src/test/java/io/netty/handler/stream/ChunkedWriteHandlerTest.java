@@ -106,6 +106,32 @@ public class ChunkedWriteHandlerTest {
         check(new ChunkedNioFile(TMP), new ChunkedNioFile(TMP), new ChunkedNioFile(TMP));
     }
 
+    @Test
+    public void testChunkedMappedFile() throws IOException {
+        check(new ChunkedMappedFile(TMP));
+
+        check(new ChunkedMappedFile(TMP), new ChunkedMappedFile(TMP), new ChunkedMappedFile(TMP));
+    }
+
+    @Test
+    public void testChunkedMappedFileSmallMapSize() throws Exception {
+        FileChannel in = new RandomAccessFile(TMP, "r").getChannel();
+        check(new ChunkedMappedFile(in, 0, BYTES.length, 1000, 3000));
+
+        // Chunks stay readable after the input was closed, until they are released
+        ChunkedMappedFile input = new ChunkedMappedFile(new RandomAccessFile(TMP, "r").getChannel(),
+                100, 5000, 1000, 3000);
+        ByteBuf first = input.readChunk(ByteBufAllocator.DEFAULT);
+        ByteBuf second = input.readChunk(ByteBufAllocator.DEFAULT);
+        input.close();
+        assertEquals(1000, first.readableBytes());
+        assertEquals(BYTES[100], first.getByte(0));
+        first.release();
+        assertEquals(BYTES[1100], second.getByte(0));
+        assertEquals(BYTES[2099], second.getByte(999));
+        assertTrue(second.release());
+    }
+
     @Test
     public void testChunkedNioFileLeftPositionUnchanged() throws IOException {
         FileChannel in = null;
@@ -288,6 +314,11 @@ public class ChunkedWriteHandlerTest {
         checkFirstFailed(new ChunkedNioFile(TMP));
     }
 
+    @Test
+    public void testWriteFailureChunkedMappedFile() throws IOException {
+        checkFirstFailed(new ChunkedMappedFile(TMP));
+    }
+
     @Test
     public void testWriteFailureUnchunkedData() throws IOException {
         checkFirstFailed(Unpooled.wrappedBuffer(BYTES));
@@ -315,6 +346,11 @@ public class ChunkedWriteHandlerTest {
         checkSkipFailed(new ChunkedNioFile(TMP), new ChunkedFile(TMP));
     }
 
+    @Test
+    public void testSkipAfterFailedChunkedMappedFile() throws IOException {
+        checkSkipFailed(new ChunkedMappedFile(TMP), new ChunkedFile(TMP));
+    }
+
     // See https://github.com/netty/netty/issues/8700.
     @Test
     public void testFailureWhenLastChunkFailed() throws IOException {
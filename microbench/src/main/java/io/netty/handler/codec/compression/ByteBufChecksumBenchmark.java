@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.handler.codec.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static io.netty.handler.codec.compression.Lz4Constants.DEFAULT_SEED;
+
+/**
+ * Compares the {@link ByteBufChecksum} implementations for heap, direct and composite buffers.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ByteBufChecksumBenchmark extends AbstractMicrobenchmark {
+
+    public enum BufferType {
+        HEAP,
+        DIRECT,
+        COMPOSITE
+    }
+
+    private static final XXHash32 NATIVE_XXHASH32 = XXHashFactory.fastestInstance().hash32();
+
+    @Param({ "64", "1024", "65536" })
+    public int size;
+
+    @Param
+    public BufferType bufferType;
+
+    private ByteBuf buffer;
+    private final Crc32c crc32cTable = new Crc32c();
+    private final ByteBufChecksum crc32c = ByteBufChecksum.newCrc32c();
+    private final ByteBufChecksum crc32 = ByteBufChecksum.wrapChecksum(new CRC32());
+    private final Lz4XXHash32 xxHash32 = new Lz4XXHash32(DEFAULT_SEED);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        switch (bufferType) {
+            case HEAP:
+                buffer = Unpooled.wrappedBuffer(bytes);
+                break;
+            case DIRECT:
+                buffer = Unpooled.directBuffer(size).writeBytes(bytes);
+                break;
+            case COMPOSITE:
+                CompositeByteBuf composite = Unpooled.compositeBuffer();
+                composite.addComponent(true, Unpooled.directBuffer(size / 2).writeBytes(bytes, 0, size / 2));
+                composite.addComponent(true, Unpooled.directBuffer(size - size / 2)
+                        .writeBytes(bytes, size / 2, size - size / 2));
+                buffer = composite;
+                break;
+            default:
+                throw new Error();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public long crc32cByteWise() {
+        // How Crc32c processed every buffer before it supported bulk updates.
+        crc32cTable.reset();
+        for (int i = buffer.readerIndex(); i < buffer.writerIndex(); i++) {
+            crc32cTable.update(buffer.getByte(i));
+        }
+        return crc32cTable.getValue();
+    }
+
+    @Benchmark
+    public long crc32cTable() {
+        crc32cTable.reset();
+        crc32cTable.update(buffer, buffer.readerIndex(), buffer.readableBytes());
+        return crc32cTable.getValue();
+    }
+
+    @Benchmark
+    public long crc32c() {
+        crc32c.reset();
+        crc32c.update(buffer, buffer.readerIndex(), buffer.readableBytes());
+        return crc32c.getValue();
+    }
+
+    @Benchmark
+    public long crc32() {
+        crc32.reset();
+        crc32.update(buffer, buffer.readerIndex(), buffer.readableBytes());
+        return crc32.getValue();
+    }
+
+    @Benchmark
+    public long xxHash32() {
+        xxHash32.reset();
+        xxHash32.update(buffer, buffer.readerIndex(), buffer.readableBytes());
+        return xxHash32.getValue();
+    }
+
+    @Benchmark
+    public int xxHash32Native() {
+        // How Lz4XXHash32 hashed a buffer before, the composite buffer needs to be copied.
+        if (buffer.hasArray()) {
+            return NATIVE_XXHASH32.hash(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(),
+                    buffer.readableBytes(), DEFAULT_SEED);
+        }
+        return NATIVE_XXHASH32.hash(CompressionUtil.safeNioBuffer(buffer), DEFAULT_SEED);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.handler.codec.http.websocketx;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares masking a WebSocket payload 8 bytes at a time via {@link WebSocketUtil#mask} with the former masking
+ * 4 bytes at a time via {@link ByteBuf#getInt(int)} and {@link ByteBuf#setInt(int, int)}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class WebSocketMaskBenchmark extends AbstractMicrobenchmark {
+
+    private static final int MASK = 0x9A3C51F7;
+
+    @Param({ "16", "1024", "65536", "1048576" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean direct;
+
+    private ByteBuf src;
+    private ByteBuf dst;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] bytes = new byte[size];
+        PlatformDependent.threadLocalRandom().nextBytes(bytes);
+        src = (direct ? Unpooled.directBuffer(size) : Unpooled.buffer(size)).writeBytes(bytes);
+        dst = direct ? Unpooled.directBuffer(size) : Unpooled.buffer(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        src.release();
+        dst.release();
+    }
+
+    @Benchmark
+    public ByteBuf intWise() {
+        int i = 0;
+        for (; i + 3 < size; i += 4) {
+            dst.setInt(i, src.getInt(i) ^ MASK);
+        }
+        for (; i < size; i++) {
+            dst.setByte(i, src.getByte(i) ^ MASK >>> 24 - (i & 3) * 8);
+        }
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuf longWise() {
+        WebSocketUtil.mask(src, 0, dst, 0, size, MASK);
+        return dst;
+    }
+}
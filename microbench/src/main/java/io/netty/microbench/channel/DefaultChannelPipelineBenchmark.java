@@ -18,7 +18,10 @@ package io.netty.microbench.channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.microbench.util.AbstractMicrobenchmark;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -56,18 +59,66 @@ public class DefaultChannelPipelineBenchmark extends AbstractMicrobenchmark {
         }
     };
 
-    @Param({ "4" })
+    private static final ChannelHandler NOOP_OUTBOUND_HANDLER = new ChannelOutboundHandlerAdapter() {
+        @Override
+        public boolean isSharable() {
+            return true;
+        }
+    };
+
+    private static final ChannelHandler CONSUMING_READ_HANDLER = new ChannelInboundHandlerAdapter() {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            // NOOP
+        }
+
+        @Override
+        public boolean isSharable() {
+            return true;
+        }
+    };
+
+    private static final ChannelHandler CONSUMING_WRITE_HANDLER = new ChannelOutboundHandlerAdapter() {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            // NOOP
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            // NOOP
+        }
+
+        @Override
+        public boolean isSharable() {
+            return true;
+        }
+    };
+
+    private static final Object MSG = new Object();
+
+    @Param({ "4", "32" })
     public int extraHandlers;
 
+    @Param({ "false", "true" })
+    public boolean precompute;
+
     private ChannelPipeline pipeline;
+    private ChannelPromise voidPromise;
 
     @Setup(Level.Iteration)
     public void setup() {
-        pipeline = new EmbeddedChannel().pipeline();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.config().setOption(ChannelOption.PRECOMPUTE_PIPELINE_CONTEXTS, precompute);
+        pipeline = channel.pipeline();
+        pipeline.addLast(CONSUMING_WRITE_HANDLER);
         for (int i = 0; i < extraHandlers; i++) {
             pipeline.addLast(NOOP_HANDLER);
+            pipeline.addLast(NOOP_OUTBOUND_HANDLER);
         }
         pipeline.addLast(CONSUMING_HANDLER);
+        pipeline.addLast(CONSUMING_READ_HANDLER);
+        voidPromise = channel.voidPromise();
     }
 
     @TearDown
@@ -81,4 +132,19 @@ public class DefaultChannelPipelineBenchmark extends AbstractMicrobenchmark {
             hole.consume(pipeline.fireChannelReadComplete());
         }
     }
+
+    @Benchmark
+    public void propagateChannelRead(Blackhole hole) {
+        for (int i = 0; i < 100; i++) {
+            hole.consume(pipeline.fireChannelRead(MSG));
+        }
+    }
+
+    @Benchmark
+    public void propagateWriteAndFlush(Blackhole hole) {
+        for (int i = 0; i < 100; i++) {
+            hole.consume(pipeline.write(MSG, voidPromise));
+        }
+        hole.consume(pipeline.flush());
+    }
 }
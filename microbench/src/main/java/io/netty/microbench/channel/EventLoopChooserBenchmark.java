@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.channel;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.LoadAwareEventLoopChooserFactory;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.concurrent.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency distribution of short-lived request / response exchanges while a few long-lived connections
+ * keep their {@link io.netty.channel.EventLoop} busy. The long-lived connections are opened in a pattern that makes
+ * round-robin registration place all of them on the same {@link io.netty.channel.EventLoop}, so every n-th short-lived
+ * connection competes with them.
+ */
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class EventLoopChooserBenchmark extends AbstractMicrobenchmark {
+
+    private static final int CHILD_EVENT_LOOPS = 4;
+    private static final byte LIGHT = 0;
+    private static final byte HEAVY = 1;
+
+    @Param({ "roundRobin", "loadAware" })
+    public String chooser;
+
+    @Param({ "8" })
+    public int longLivedConnections;
+
+    @Param({ "50" })
+    public int heavyWorkMicros;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup childGroup;
+    private EventLoopGroup clientGroup;
+    private Channel serverChannel;
+    private final List<Channel> longLived = new ArrayList<Channel>();
+    private final Semaphore serverChildClosed = new Semaphore(0);
+    private Bootstrap bootstrap;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        bossGroup = new NioEventLoopGroup(1);
+        childGroup = new NioEventLoopGroup(CHILD_EVENT_LOOPS);
+        clientGroup = new NioEventLoopGroup(2);
+
+        ServerBootstrap sb = new ServerBootstrap()
+                .group(bossGroup, childGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ServerHandler(serverChildClosed, TimeUnit.MICROSECONDS.toNanos(heavyWorkMicros)));
+        if ("loadAware".equals(chooser)) {
+            sb.childEventLoopChooserFactory(LoadAwareEventLoopChooserFactory.INSTANCE);
+        }
+        serverChannel = sb.bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+        bootstrap = new Bootstrap()
+                .group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .remoteAddress(serverChannel.localAddress());
+
+        // Skew the connection lifetimes: open one batch of connections per child EventLoop and only keep the first
+        // connection of each batch open.
+        for (int i = 0; i < longLivedConnections; i++) {
+            for (int j = 0; j < CHILD_EVENT_LOOPS; j++) {
+                Channel ch = bootstrap.clone().handler(new PingPongHandler()).connect().sync().channel();
+                if (j == 0) {
+                    longLived.add(ch);
+                } else {
+                    ch.close().sync();
+                    serverChildClosed.acquire();
+                }
+            }
+        }
+        for (Channel ch: longLived) {
+            ch.writeAndFlush(ch.alloc().buffer(1).writeByte(HEAVY));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (Channel ch: longLived) {
+            ch.close().sync();
+        }
+        longLived.clear();
+        serverChannel.close().sync();
+        clientGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        childGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+        bossGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+
+    @Benchmark
+    public Object shortLivedRequest() throws Exception {
+        Promise<Object> response = clientGroup.next().newPromise();
+        Channel ch = bootstrap.clone().handler(new ResponseHandler(response)).connect().sync().channel();
+        try {
+            ch.writeAndFlush(ch.alloc().buffer(1).writeByte(LIGHT));
+            return response.sync().getNow();
+        } finally {
+            ch.close().sync();
+            serverChildClosed.acquire();
+        }
+    }
+
+    @ChannelHandler.Sharable
+    private static final class ServerHandler extends ChannelInboundHandlerAdapter {
+        private final Semaphore closed;
+        private final long heavyWorkNanos;
+
+        ServerHandler(Semaphore closed, long heavyWorkNanos) {
+            this.closed = closed;
+            this.heavyWorkNanos = heavyWorkNanos;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf buf = (ByteBuf) msg;
+            if (buf.getByte(buf.readerIndex()) == HEAVY) {
+                // Simulate an expensive request, e.g. serialization of a large response.
+                long deadline = System.nanoTime() + heavyWorkNanos;
+                while (System.nanoTime() < deadline) {
+                    // busy spin
+                }
+            }
+            ctx.writeAndFlush(buf);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            closed.release();
+            ctx.fireChannelInactive();
+        }
+    }
+
+    private static final class PingPongHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ctx.writeAndFlush(msg);
+        }
+    }
+
+    private static final class ResponseHandler extends ChannelInboundHandlerAdapter {
+        private final Promise<Object> response;
+
+        ResponseHandler(Promise<Object> response) {
+            this.response = response;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ((ByteBuf) msg).release();
+            response.trySuccess(Boolean.TRUE);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            response.tryFailure(cause);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.Bzip2Decoder;
+import io.netty.handler.codec.compression.Bzip2Encoder;
+import io.netty.handler.codec.compression.FastLzFrameDecoder;
+import io.netty.handler.codec.compression.FastLzFrameEncoder;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.JdkZlibEncoder;
+import io.netty.handler.codec.compression.Lz4FrameDecoder;
+import io.netty.handler.codec.compression.Lz4FrameEncoder;
+import io.netty.handler.codec.compression.LzfDecoder;
+import io.netty.handler.codec.compression.LzfEncoder;
+import io.netty.handler.codec.compression.SnappyFrameDecoder;
+import io.netty.handler.codec.compression.SnappyFrameEncoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Compares the codecs of {@code io.netty.handler.codec.compression} for different payloads and sizes, with heap and
+ * direct input, through an {@link EmbeddedChannel}. Every operation compresses or decompresses one payload as a
+ * complete stream.
+ * <p>
+ * The {@code inputBytes} and {@code outputBytes} counters of {@link #encode(ByteCounters)} can be used to calculate
+ * the compression ratio. Run with {@code -prof gc} to measure the allocation rate.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CompressionCodecBenchmark extends AbstractMicrobenchmark {
+
+    public enum Codec {
+        ZLIB {
+            @Override
+            ChannelHandler newEncoder() {
+                return new JdkZlibEncoder(ZlibWrapper.ZLIB);
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new JdkZlibDecoder(ZlibWrapper.ZLIB);
+            }
+        },
+        LZ4 {
+            @Override
+            ChannelHandler newEncoder() {
+                return new Lz4FrameEncoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new Lz4FrameDecoder();
+            }
+        },
+        SNAPPY {
+            @Override
+            ChannelHandler newEncoder() {
+                return new SnappyFrameEncoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new SnappyFrameDecoder();
+            }
+        },
+        FASTLZ {
+            @Override
+            ChannelHandler newEncoder() {
+                return new FastLzFrameEncoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new FastLzFrameDecoder();
+            }
+        },
+        LZF {
+            @Override
+            ChannelHandler newEncoder() {
+                return new LzfEncoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new LzfDecoder();
+            }
+        },
+        BZIP2 {
+            @Override
+            ChannelHandler newEncoder() {
+                return new Bzip2Encoder();
+            }
+
+            @Override
+            ChannelHandler newDecoder() {
+                return new Bzip2Decoder();
+            }
+        };
+
+        abstract ChannelHandler newEncoder();
+
+        abstract ChannelHandler newDecoder();
+    }
+
+    public enum Payload {
+        TEXT {
+            @Override
+            byte[] generate(int size) {
+                StringBuilder sb = new StringBuilder(size);
+                Random random = new Random(42);
+                while (sb.length() < size) {
+                    sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                return sb.substring(0, size).getBytes(CharsetUtil.US_ASCII);
+            }
+        },
+        JSON {
+            @Override
+            byte[] generate(int size) {
+                StringBuilder sb = new StringBuilder(size);
+                Random random = new Random(42);
+                for (int i = 0; sb.length() < size; i++) {
+                    sb.append("{\"id\":").append(i)
+                      .append(",\"name\":\"").append(WORDS[random.nextInt(WORDS.length)])
+                      .append("\",\"score\":").append(random.nextInt(1000))
+                      .append(",\"active\":").append(random.nextBoolean()).append("},");
+                }
+                return sb.substring(0, size).getBytes(CharsetUtil.US_ASCII);
+            }
+        },
+        RANDOM {
+            @Override
+            byte[] generate(int size) {
+                byte[] bytes = new byte[size];
+                new Random(42).nextBytes(bytes);
+                return bytes;
+            }
+        };
+
+        private static final String[] WORDS = {
+                "netty", "channel", "pipeline", "handler", "buffer", "event", "loop", "future", "promise",
+                "codec", "compression", "the", "a", "of", "and", "to", "in", "is", "that", "for"
+        };
+
+        abstract byte[] generate(int size);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ByteCounters {
+        public long inputBytes;
+        public long outputBytes;
+    }
+
+    @Param
+    public Codec codec;
+
+    @Param({ "TEXT", "JSON", "RANDOM" })
+    public Payload payload;
+
+    @Param({ "4096", "65536" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean direct;
+
+    private ByteBuf uncompressed;
+    private ByteBuf compressed;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] bytes = payload.generate(size);
+        uncompressed = Unpooled.unreleasableBuffer(newBuffer(bytes.length).writeBytes(bytes));
+
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder());
+        channel.writeOutbound(uncompressed.duplicate());
+        channel.finish();
+        ByteBuf out = newBuffer(size);
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            out.writeBytes(buf);
+            buf.release();
+        }
+        compressed = Unpooled.unreleasableBuffer(out);
+        if (decode() != size) {
+            throw new IllegalStateException(codec + " failed to decompress the " + payload + " payload");
+        }
+    }
+
+    private ByteBuf newBuffer(int capacity) {
+        return direct ? Unpooled.directBuffer(capacity) : Unpooled.buffer(capacity);
+    }
+
+    @Benchmark
+    public int encode(ByteCounters counters) {
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newEncoder());
+        channel.writeOutbound(uncompressed.duplicate());
+        channel.finish();
+        int length = 0;
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            length += buf.readableBytes();
+            buf.release();
+        }
+        counters.inputBytes += size;
+        counters.outputBytes += length;
+        return length;
+    }
+
+    @Benchmark
+    public int decode() {
+        EmbeddedChannel channel = new EmbeddedChannel(codec.newDecoder());
+        channel.writeInbound(compressed.duplicate());
+        channel.finish();
+        int length = 0;
+        for (;;) {
+            ByteBuf buf = channel.readInbound();
+            if (buf == null) {
+                break;
+            }
+            length += buf.readableBytes();
+            buf.release();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.JdkZlibEncoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link JdkZlibEncoder} and {@link JdkZlibDecoder} for short-lived streams, where a new encoder or decoder
+ * is used per message like it is done for HTTP responses, and for a long-lived stream.
+ * <p>
+ * Run with {@code -Dio.netty.jdkzlib.maxCachedPerThread=0} to compare with {@code Deflater}s and {@code Inflater}s
+ * which are not cached.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class JdkZlibBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "1024", "65536" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean direct;
+
+    private ByteBuf content;
+    private ByteBuf compressed;
+    private EmbeddedChannel longLivedEncoder;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i).append("\"},");
+        }
+        sb.setLength(size);
+        byte[] bytes = sb.toString().getBytes(CharsetUtil.US_ASCII);
+        content = Unpooled.unreleasableBuffer(
+                (direct ? Unpooled.directBuffer(size) : Unpooled.buffer(size)).writeBytes(bytes));
+
+        EmbeddedChannel encoder = new EmbeddedChannel(new JdkZlibEncoder(ZlibWrapper.GZIP));
+        encoder.writeOutbound(content.duplicate());
+        encoder.finish();
+        ByteBuf out = direct ? Unpooled.directBuffer() : Unpooled.buffer();
+        for (;;) {
+            ByteBuf buf = encoder.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            out.writeBytes(buf);
+            buf.release();
+        }
+        compressed = Unpooled.unreleasableBuffer(out);
+        longLivedEncoder = new EmbeddedChannel(new JdkZlibEncoder(ZlibWrapper.GZIP));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        longLivedEncoder.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void encodeStreamPerMessage(Blackhole hole) {
+        EmbeddedChannel channel = new EmbeddedChannel(new JdkZlibEncoder(ZlibWrapper.GZIP));
+        channel.writeOutbound(content.duplicate());
+        channel.finish();
+        drainOutbound(channel, hole);
+    }
+
+    @Benchmark
+    public void encodeLongLivedStream(Blackhole hole) {
+        longLivedEncoder.writeOutbound(content.duplicate());
+        drainOutbound(longLivedEncoder, hole);
+    }
+
+    @Benchmark
+    public void decodeStreamPerMessage(Blackhole hole) {
+        EmbeddedChannel channel = new EmbeddedChannel(new JdkZlibDecoder(ZlibWrapper.GZIP));
+        channel.writeInbound(compressed.duplicate());
+        for (;;) {
+            ByteBuf buf = channel.readInbound();
+            if (buf == null) {
+                break;
+            }
+            hole.consume(buf.readableBytes());
+            buf.release();
+        }
+        channel.finish();
+    }
+
+    private static void drainOutbound(EmbeddedChannel channel, Blackhole hole) {
+        for (;;) {
+            ByteBuf buf = channel.readOutbound();
+            if (buf == null) {
+                break;
+            }
+            hole.consume(buf.readableBytes());
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.handler.stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedMappedFile;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * Measures reading a file with {@link ChunkedFile}, {@link ChunkedNioFile} and {@link ChunkedMappedFile}, where
+ * each chunk is copied once more afterwards as a {@code SslHandler} would do.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ChunkedFileBenchmark extends AbstractMicrobenchmark {
+
+    public enum InputType {
+        FILE, NIO_FILE, MAPPED_FILE
+    }
+
+    @Param({ "1048576", "16777216" })
+    public int fileSize;
+
+    @Param({ "16384" })
+    public int chunkSize;
+
+    @Param
+    public InputType input;
+
+    private final ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private File file;
+    private ByteBuf target;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        byte[] bytes = new byte[fileSize];
+        new Random(42).nextBytes(bytes);
+        file = File.createTempFile("netty-chunked-", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        target = allocator.directBuffer(chunkSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        target.release();
+        file.delete();
+    }
+
+    @Benchmark
+    public long readFile() throws Exception {
+        ChunkedInput<ByteBuf> chunked = newInput();
+        long read = 0;
+        try {
+            for (;;) {
+                ByteBuf chunk = chunked.readChunk(allocator);
+                if (chunk == null) {
+                    break;
+                }
+                read += chunk.readableBytes();
+                target.clear().writeBytes(chunk);
+                chunk.release();
+            }
+        } finally {
+            chunked.close();
+        }
+        return read;
+    }
+
+    private ChunkedInput<ByteBuf> newInput() throws IOException {
+        switch (input) {
+        case FILE:
+            return new ChunkedFile(new RandomAccessFile(file, "r"), chunkSize);
+        case NIO_FILE:
+            return new ChunkedNioFile(file, chunkSize);
+        case MAPPED_FILE:
+            return new ChunkedMappedFile(file, chunkSize);
+        default:
+            throw new Error();
+        }
+    }
+}
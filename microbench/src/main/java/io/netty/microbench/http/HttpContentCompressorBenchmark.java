@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.CompressedContentCache;
+import io.netty.handler.codec.http.CompressionEncoderFactories;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link HttpContentCompressor} for a static body which is sent repeatedly, with and without a
+ * {@link CompressedContentCache}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class HttpContentCompressorBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "1024", "16384" })
+    public int contentLength;
+
+    @Param({ "false", "true" })
+    public boolean cache;
+
+    private ByteBuf content;
+    private EmbeddedChannel channel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder sb = new StringBuilder(contentLength);
+        for (int i = 0; sb.length() < contentLength; i++) {
+            sb.append("<li class=\"item\">Item ").append(i).append("</li>\n");
+        }
+        sb.setLength(contentLength);
+        content = Unpooled.unreleasableBuffer(
+                Unpooled.copiedBuffer(sb, CharsetUtil.US_ASCII).asReadOnly());
+        channel = new EmbeddedChannel(new HttpContentCompressor(0,
+                cache ? new CompressedContentCache(16, contentLength) : null,
+                CompressionEncoderFactories.gzip(6, 15, 8)));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void fullResponse(Blackhole hole) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        channel.writeInbound(request);
+        ReferenceCountUtil.release(channel.readInbound());
+
+        channel.writeOutbound(new DefaultFullHttpResponse(
+                HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content.duplicate()));
+        for (;;) {
+            Object msg = channel.readOutbound();
+            if (msg == null) {
+                break;
+            }
+            hole.consume(msg);
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
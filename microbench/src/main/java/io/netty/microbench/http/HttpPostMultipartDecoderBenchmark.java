@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpPostMultipartRequestDecoder;
+import io.netty.handler.codec.http.multipart.HttpPostMultipartStreamingDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.handler.codec.http.multipart.InterfaceHttpPostRequestDecoder;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Measures {@link HttpPostMultipartRequestDecoder} against {@link HttpPostMultipartStreamingDecoder} for a
+ * request with one field and one file upload, offered as direct chunks.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class HttpPostMultipartDecoderBenchmark extends AbstractMicrobenchmark {
+
+    private static final String BOUNDARY = "dLV9Wyq26L_-JQxk6ferf-RT153LhOO";
+
+    @Param({ "65536", "1048576" })
+    public int uploadSize;
+
+    @Param({ "false", "true" })
+    public boolean streaming;
+
+    private final HttpDataFactory factory = new DefaultHttpDataFactory(false);
+    private ByteBuf[] chunks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        byte[] upload = new byte[uploadSize];
+        new Random(42).nextBytes(upload);
+        ByteBuf body = Unpooled.buffer();
+        body.writeCharSequence("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"field\"\r\n" +
+                "\r\n" +
+                "value\r\n" +
+                "--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n" +
+                "Content-Type: application/octet-stream\r\n" +
+                "\r\n", CharsetUtil.US_ASCII);
+        body.writeBytes(upload);
+        body.writeCharSequence("\r\n--" + BOUNDARY + "--\r\n", CharsetUtil.US_ASCII);
+
+        chunks = new ByteBuf[(body.readableBytes() + 8191) / 8192];
+        for (int i = 0; i < chunks.length; i++) {
+            int length = Math.min(8192, body.readableBytes());
+            chunks[i] = Unpooled.unreleasableBuffer(Unpooled.directBuffer(length).writeBytes(body, length));
+        }
+        body.release();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        for (ByteBuf chunk : chunks) {
+            chunk.unwrap().release();
+        }
+    }
+
+    @Benchmark
+    public long decode() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/upload");
+        request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=" + BOUNDARY);
+        InterfaceHttpPostRequestDecoder decoder = streaming ?
+                new HttpPostMultipartStreamingDecoder(factory, request) :
+                new HttpPostMultipartRequestDecoder(factory, request);
+        try {
+            for (ByteBuf chunk : chunks) {
+                decoder.offer(new DefaultHttpContent(chunk.duplicate()));
+            }
+            decoder.offer(new DefaultLastHttpContent());
+            long length = 0;
+            for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
+                length += data.toString().length();
+                data.release();
+            }
+            return length;
+        } finally {
+            decoder.destroy();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketBroadcast;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+
+/**
+ * Measures writing the same {@link TextWebSocketFrame} to all channels of a {@link ChannelGroup}, with and without
+ * a {@link WebSocketBroadcast}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class WebSocketBroadcastBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "100", "1000" })
+    public int channels;
+
+    @Param({ "false", "true" })
+    public boolean compression;
+
+    @Param({ "false", "true" })
+    public boolean broadcast;
+
+    private ByteBuf content;
+    private ChannelGroup group;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 256; i++) {
+            sb.append("{\"symbol\":\"SYM").append(i).append("\",\"bid\":101.25,\"ask\":101.27},");
+        }
+        content = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(sb, CharsetUtil.UTF_8).asReadOnly());
+        group = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+        for (int i = 0; i < channels; i++) {
+            EmbeddedChannel channel = new EmbeddedChannel(DefaultChannelId.newInstance(), new DiscardingHandler(),
+                    new WebSocket13FrameEncoder(false));
+            if (compression) {
+                channel.pipeline().addLast(new PerMessageDeflateServerExtensionHandshaker(6, false, 15, true, false)
+                        .handshakeExtension(new WebSocketExtensionData("permessage-deflate",
+                                Collections.<String, String>singletonMap("server_no_context_takeover", null)))
+                        .newExtensionEncoder());
+            }
+            group.add(channel);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        group.close();
+    }
+
+    @Benchmark
+    public void writeAndFlush() {
+        TextWebSocketFrame frame = new TextWebSocketFrame(content.duplicate());
+        group.writeAndFlush(broadcast ? new WebSocketBroadcast(frame) : frame);
+    }
+
+    private static final class DiscardingHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            ReferenceCountUtil.release(msg);
+            promise.setSuccess();
+        }
+    }
+}
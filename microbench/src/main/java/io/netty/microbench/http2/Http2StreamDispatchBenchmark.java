@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.http2;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersEncoder;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersFrame;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2FrameTypes;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2HeadersEncoder;
+import io.netty.handler.codec.http2.Http2HeadersFrame;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamContext;
+import io.netty.handler.codec.http2.Http2StreamFrame;
+import io.netty.handler.codec.http2.Http2StreamFrameDispatcher;
+import io.netty.handler.codec.http2.Http2StreamFrameHandler;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static io.netty.handler.codec.http2.Http2CodecUtil.FRAME_HEADER_LENGTH;
+
+/**
+ * Measures a server which answers requests of new streams, with a {@link Http2MultiplexHandler} which creates a
+ * child channel per stream and with a {@link Http2StreamFrameDispatcher}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class Http2StreamDispatchBenchmark extends AbstractMicrobenchmark {
+
+    private static final Http2Headers RESPONSE = new DefaultHttp2Headers().status("200");
+
+    @Param({ "multiplex", "dispatcher" })
+    public String mode;
+
+    private EmbeddedChannel channel;
+    private ByteBuf headerBlock;
+    private int streamId;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Http2Headers request = new DefaultHttp2Headers().method("GET").scheme("https")
+                .authority("example.org").path("/index.html");
+        // Literals which are never indexed, so the same header block can be sent on every stream
+        headerBlock = Unpooled.unreleasableBuffer(Unpooled.directBuffer());
+        new DefaultHttp2HeadersEncoder(Http2HeadersEncoder.ALWAYS_SENSITIVE).encodeHeaders(1, request, headerBlock);
+
+        ChannelHandler handler;
+        if ("multiplex".equals(mode)) {
+            handler = new Http2MultiplexHandler(new ChannelInboundHandlerAdapter() {
+                @Override
+                public boolean isSharable() {
+                    return true;
+                }
+
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                    if (msg instanceof Http2HeadersFrame && ((Http2HeadersFrame) msg).isEndStream()) {
+                        ctx.writeAndFlush(new DefaultHttp2HeadersFrame(RESPONSE, true));
+                    }
+                    ReferenceCountUtil.release(msg);
+                }
+            });
+        } else {
+            handler = new Http2StreamFrameDispatcher(new Http2StreamFrameHandler() {
+                @Override
+                public void streamFrameRead(Http2StreamContext ctx, Http2StreamFrame frame) {
+                    if (frame instanceof Http2HeadersFrame && ((Http2HeadersFrame) frame).isEndStream()) {
+                        ctx.writeAndFlush(new DefaultHttp2HeadersFrame(RESPONSE, true));
+                    }
+                    ReferenceCountUtil.release(frame);
+                }
+
+                @Override
+                public void streamWritabilityChanged(Http2StreamContext ctx) {
+                }
+
+                @Override
+                public void streamExceptionCaught(Http2StreamContext ctx, Throwable cause) {
+                }
+
+                @Override
+                public void streamClosed(Http2StreamContext ctx) {
+                }
+            });
+        }
+        channel = new EmbeddedChannel(Http2FrameCodecBuilder.forServer().build(), handler);
+        channel.writeInbound(Http2CodecUtil.connectionPrefaceBuf());
+        ByteBuf settings = Unpooled.buffer(FRAME_HEADER_LENGTH);
+        writeFrameHeader(settings, 0, Http2FrameTypes.SETTINGS, 0, 0);
+        channel.writeInbound(settings);
+        drainOutbound();
+        // Stream 1 is treated as the upgrade stream by a Http2MultiplexHandler without a server parent channel
+        streamId = 3;
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void requestResponse() {
+        ByteBuf frame = channel.alloc().buffer(FRAME_HEADER_LENGTH + headerBlock.readableBytes());
+        // END_STREAM | END_HEADERS
+        writeFrameHeader(frame, headerBlock.readableBytes(), Http2FrameTypes.HEADERS, 0x5, streamId);
+        frame.writeBytes(headerBlock, headerBlock.readerIndex(), headerBlock.readableBytes());
+        streamId += 2;
+        channel.writeInbound(frame);
+        drainOutbound();
+    }
+
+    private void drainOutbound() {
+        for (;;) {
+            Object msg = channel.readOutbound();
+            if (msg == null) {
+                break;
+            }
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    private static void writeFrameHeader(ByteBuf buf, int length, byte type, int flags, int streamId) {
+        buf.writeMedium(length);
+        buf.writeByte(type);
+        buf.writeByte(flags);
+        buf.writeInt(streamId);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttConnectMessage;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttProperties.IntegerProperty;
+import io.netty.handler.codec.mqtt.MqttProperties.MqttPropertyType;
+import io.netty.handler.codec.mqtt.MqttProperties.StringProperty;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+
+final class MqttBenchmarkUtil {
+
+    static MqttConnectMessage connect(MqttVersion version) {
+        return MqttMessageBuilders.connect()
+                .clientId("benchmark")
+                .protocolVersion(version)
+                .cleanSession(true)
+                .keepAlive(60)
+                .build();
+    }
+
+    /**
+     * Returns a QoS 1 PUBLISH as sent by a sensor, with the properties of a MQTT 5 client if the version is
+     * {@link MqttVersion#MQTT_5}.
+     */
+    static MqttPublishMessage publish(MqttVersion version, int packetId, ByteBuf payload) {
+        MqttProperties properties = MqttProperties.NO_PROPERTIES;
+        if (version == MqttVersion.MQTT_5) {
+            properties = new MqttProperties();
+            properties.add(new IntegerProperty(MqttPropertyType.PAYLOAD_FORMAT_INDICATOR.value(), 1));
+            properties.add(new IntegerProperty(MqttPropertyType.MESSAGE_EXPIRY_INTERVAL.value(), 3600));
+            properties.add(new StringProperty(MqttPropertyType.CONTENT_TYPE.value(), "application/json"));
+        }
+        return new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("sensors/building-7/floor-3/temperature", packetId, properties),
+                payload);
+    }
+
+    private MqttBenchmarkUtil() { }
+}
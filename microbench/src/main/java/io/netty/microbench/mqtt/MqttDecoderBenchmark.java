@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes a burst of {@value #PUBLISHES} PUBLISH messages as read by a broker, either at once or split into
+ * {@code readSize} byte reads which cut messages apart. The score is in messages.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class MqttDecoderBenchmark extends AbstractMicrobenchmark {
+
+    private static final int PUBLISHES = 64;
+
+    @Param({ "MQTT_3_1_1", "MQTT_5" })
+    public MqttVersion version;
+
+    @Param({ "64", "1024" })
+    public int payloadSize;
+
+    @Param({ "0", "1460" })
+    public int readSize;
+
+    private ByteBuf bytes;
+    private EmbeddedChannel channel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        EmbeddedChannel encoder = new EmbeddedChannel(MqttEncoder.INSTANCE);
+        encoder.writeOutbound(MqttBenchmarkUtil.connect(version));
+        ByteBuf connect = encoder.readOutbound();
+
+        ByteBuf payload = PooledByteBufAllocator.DEFAULT.buffer(payloadSize).writeZero(payloadSize);
+        bytes = PooledByteBufAllocator.DEFAULT.directBuffer();
+        for (int i = 1; i <= PUBLISHES; i++) {
+            encoder.writeOutbound(MqttBenchmarkUtil.publish(version, i, payload.retainedDuplicate()));
+            ByteBuf encoded = encoder.readOutbound();
+            bytes.writeBytes(encoded);
+            encoded.release();
+        }
+        payload.release();
+        encoder.finishAndReleaseAll();
+
+        channel = new EmbeddedChannel(new MqttDecoder(payloadSize + 1024));
+        // Let the decoder learn the version of the connection.
+        channel.writeInbound(connect);
+        ReferenceCountUtil.release(channel.readInbound());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        channel.finishAndReleaseAll();
+        bytes.release();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUBLISHES)
+    public void decodePublishes(Blackhole hole) {
+        int length = bytes.readableBytes();
+        int step = readSize == 0 ? length : readSize;
+        for (int i = 0; i < length; i += step) {
+            channel.writeInbound(bytes.retainedSlice(i, Math.min(step, length - i)));
+            for (;;) {
+                Object msg = channel.readInbound();
+                if (msg == null) {
+                    break;
+                }
+                hole.consume(msg);
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Encodes the PUBLISH messages which a broker forwards to its subscribers.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class MqttEncoderBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "MQTT_3_1_1", "MQTT_5" })
+    public MqttVersion version;
+
+    @Param({ "64", "1024" })
+    public int payloadSize;
+
+    private ByteBuf payload;
+    private EmbeddedChannel channel;
+    private int packetId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        payload = PooledByteBufAllocator.DEFAULT.directBuffer(payloadSize).writeZero(payloadSize);
+        channel = new EmbeddedChannel(MqttEncoder.INSTANCE);
+        // Let the encoder learn the version of the connection.
+        channel.writeOutbound(MqttBenchmarkUtil.connect(version));
+        ReferenceCountUtil.release(channel.readOutbound());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        channel.finishAndReleaseAll();
+        payload.release();
+    }
+
+    @Benchmark
+    public void encodePublish(Blackhole hole) {
+        packetId = packetId == 65535 ? 1 : packetId + 1;
+        channel.writeOutbound(MqttBenchmarkUtil.publish(version, packetId, payload.retainedDuplicate()));
+        ByteBuf encoded = channel.readOutbound();
+        hole.consume(encoded);
+        encoded.release();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.mqtt;
+
+import io.netty.handler.codec.mqtt.MqttTopicTrie;
+import io.netty.handler.codec.mqtt.MqttTopicTrie.SubscriptionVisitor;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Finds the subscribers of PUBLISH topics in a {@link MqttTopicTrie} which holds {@code devices} exact
+ * subscriptions plus a wildcard subscription for every site and metric.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class MqttTopicTrieBenchmark extends AbstractMicrobenchmark {
+
+    private static final int REGIONS = 100;
+    private static final String[] METRICS = { "temperature", "humidity", "pressure", "battery" };
+
+    @Param({ "10000", "1000000" })
+    public int devices;
+
+    private MqttTopicTrie<Integer> trie;
+    private String[] topics;
+    private int index;
+    private SubscriptionVisitor<Integer> visitor;
+
+    @Setup(Level.Trial)
+    public void setup(final Blackhole hole) {
+        visitor = new SubscriptionVisitor<Integer>() {
+            @Override
+            public void visit(Set<Integer> subscribers) {
+                hole.consume(subscribers);
+            }
+        };
+        trie = new MqttTopicTrie<Integer>();
+        int sitesPerRegion = Math.max(1, (int) Math.sqrt(devices) / REGIONS);
+        int devicesPerSite = devices / (REGIONS * sitesPerRegion);
+        int subscriber = 0;
+        for (int r = 0; r < REGIONS; r++) {
+            for (int s = 0; s < sitesPerRegion; s++) {
+                String site = "region-" + r + "/site-" + s;
+                for (int d = 0; d < devicesPerSite; d++) {
+                    trie.subscribe(site + "/device-" + d + "/#", subscriber++);
+                }
+                for (String metric : METRICS) {
+                    trie.subscribe(site + "/+/" + metric, subscriber++);
+                }
+            }
+        }
+        trie.subscribe("+/+/+/alarm", subscriber);
+
+        Random random = new Random(42);
+        topics = new String[1024];
+        for (int i = 0; i < topics.length; i++) {
+            topics[i] = "region-" + random.nextInt(REGIONS) + "/site-" + random.nextInt(sitesPerRegion) +
+                    "/device-" + random.nextInt(devicesPerSite) + '/' + METRICS[random.nextInt(METRICS.length)];
+        }
+    }
+
+    @Benchmark
+    public int match() {
+        return trie.forEachMatch(topics[index++ & topics.length - 1], visitor);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.microbench.redis;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.redis.FixedRedisMessagePool;
+import io.netty.handler.codec.redis.RedisArrayAggregator;
+import io.netty.handler.codec.redis.RedisBulkStringAggregator;
+import io.netty.handler.codec.redis.RedisDecoder;
+import io.netty.microbench.util.AbstractMicrobenchmark;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decodes the reply to a {@code MGET} of {@code arraySize} keys, with and without flyweight decoding.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class RedisDecoderBenchmark extends AbstractMicrobenchmark {
+
+    private static final int INLINE_MAX_LENGTH = 64 * 1024;
+
+    @Param({ "50", "200", "1000" })
+    public int arraySize;
+
+    @Param({ "false", "true" })
+    public boolean flyweight;
+
+    private ByteBuf reply;
+    private EmbeddedChannel channel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder sb = new StringBuilder().append('*').append(arraySize).append("\r\n");
+        for (int i = 0; i < arraySize; i++) {
+            if (i % 10 == 9) {
+                sb.append("$-1\r\n");
+            } else {
+                String value = "value:" + i;
+                sb.append('$').append(value.length()).append("\r\n").append(value).append("\r\n");
+            }
+        }
+        byte[] bytes = sb.toString().getBytes(CharsetUtil.US_ASCII);
+        reply = PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length).writeBytes(bytes);
+        channel = new EmbeddedChannel(
+                new RedisDecoder(INLINE_MAX_LENGTH, FixedRedisMessagePool.INSTANCE, false, flyweight ? arraySize : 0),
+                new RedisBulkStringAggregator(),
+                new RedisArrayAggregator());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        channel.finishAndReleaseAll();
+        reply.release();
+    }
+
+    @Benchmark
+    public void decodeReply(Blackhole hole) {
+        channel.writeInbound(reply.retainedDuplicate());
+        Object msg = channel.readInbound();
+        hole.consume(msg);
+        ReferenceCountUtil.release(msg);
+    }
+}
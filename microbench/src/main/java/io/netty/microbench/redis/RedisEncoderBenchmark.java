@@ -22,6 +22,7 @@ import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.redis.ArrayRedisMessage;
+import io.netty.handler.codec.redis.FixedRedisMessagePool;
 import io.netty.handler.codec.redis.FullBulkStringRedisMessage;
 import io.netty.handler.codec.redis.RedisEncoder;
 import io.netty.handler.codec.redis.RedisMessage;
@@ -42,6 +43,8 @@ import org.openjdk.jmh.annotations.Warmup;
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.netty.util.CharsetUtil.US_ASCII;
+
 @State(Scope.Benchmark)
 @Fork(1)
 @Threads(1)
@@ -52,6 +55,7 @@ public class RedisEncoderBenchmark extends AbstractMicrobenchmark {
     private ByteBuf content;
     private ChannelHandlerContext context;
     private ArrayRedisMessage redisArray;
+    private ArrayRedisMessage[] commands;
 
     @Param({ "true", "false" })
     public boolean pooledAllocator;
@@ -62,6 +66,9 @@ public class RedisEncoderBenchmark extends AbstractMicrobenchmark {
     @Param({ "50", "200", "1000" })
     public int arraySize;
 
+    @Param({ "0", "65536" })
+    public int maxBatchSize;
+
     @Setup(Level.Trial)
     public void setup() {
         byte[] bytes = new byte[256];
@@ -74,7 +81,18 @@ public class RedisEncoderBenchmark extends AbstractMicrobenchmark {
             rList.add(new FullBulkStringRedisMessage(testContent));
         }
         redisArray = new ArrayRedisMessage(rList);
-        encoder = new RedisEncoder();
+
+        // GET commands as written by a client which pipelines requests.
+        ByteBuf get = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer("GET", US_ASCII).asReadOnly());
+        commands = new ArrayRedisMessage[arraySize];
+        for (int i = 0; i < arraySize; ++i) {
+            List<RedisMessage> command = new ArrayList<RedisMessage>(2);
+            command.add(new FullBulkStringRedisMessage(get));
+            command.add(new FullBulkStringRedisMessage(Unpooled.unreleasableBuffer(
+                    Unpooled.copiedBuffer("key:" + i, US_ASCII).asReadOnly())));
+            commands[i] = new ArrayRedisMessage(command);
+        }
+        encoder = new RedisEncoder(FixedRedisMessagePool.INSTANCE, maxBatchSize);
         context = new EmbeddedChannelWriteReleaseHandlerContext(pooledAllocator ? PooledByteBufAllocator.DEFAULT :
                 UnpooledByteBufAllocator.DEFAULT, encoder) {
             @Override
@@ -95,6 +113,14 @@ public class RedisEncoderBenchmark extends AbstractMicrobenchmark {
         encoder.write(context, redisArray.retain(), newPromise());
     }
 
+    @Benchmark
+    public void writePipelinedCommands() throws Exception {
+        for (ArrayRedisMessage command : commands) {
+            encoder.write(context, command.retain(), newPromise());
+        }
+        encoder.flush(context);
+    }
+
     private ChannelPromise newPromise() {
         return voidPromise ? context.voidPromise() : context.newPromise();
     }
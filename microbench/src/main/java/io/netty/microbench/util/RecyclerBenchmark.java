@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.microbench.util;
+
+import io.netty.util.Recycler;
+import io.netty.util.internal.PlatformDependent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Queue;
+
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class RecyclerBenchmark extends AbstractMicrobenchmark {
+
+    private static final Recycler<DummyObject> RECYCLER = new Recycler<DummyObject>() {
+        @Override
+        protected DummyObject newObject(Handle<DummyObject> handle) {
+            return new DummyObject(handle);
+        }
+    };
+
+    @State(Scope.Thread)
+    public static class BurstState {
+        @Param({ "1", "16", "256" })
+        public int burstSize;
+
+        DummyObject[] objects;
+
+        @Setup
+        public void setup() {
+            objects = new DummyObject[burstSize];
+        }
+    }
+
+    @State(Scope.Group)
+    public static class HandOverState {
+        Queue<DummyObject> queue;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            queue = PlatformDependent.newFixedMpscQueue(1024);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            // Drain so the objects are not kept alive by the queue between iterations.
+            while (queue.poll() != null) {
+                // NOOP
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public DummyObject sameThreadGetAndRecycle() {
+        DummyObject object = RECYCLER.get();
+        object.recycle();
+        return object;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void sameThreadBurst(BurstState state, Blackhole hole) {
+        DummyObject[] objects = state.objects;
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = RECYCLER.get();
+        }
+        for (int i = 0; i < objects.length; i++) {
+            hole.consume(objects[i]);
+            objects[i].recycle();
+            objects[i] = null;
+        }
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public void producer(HandOverState state) {
+        DummyObject object = RECYCLER.get();
+        if (!state.queue.offer(object)) {
+            object.recycle();
+        }
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public void consumer(HandOverState state, Blackhole hole) {
+        DummyObject object = state.queue.poll();
+        if (object != null) {
+            hole.consume(object);
+            object.recycle();
+        }
+    }
+
+    static final class DummyObject {
+        private final Recycler.Handle<DummyObject> handle;
+
+        DummyObject(Recycler.Handle<DummyObject> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            handle.recycle(this);
+        }
+    }
+}
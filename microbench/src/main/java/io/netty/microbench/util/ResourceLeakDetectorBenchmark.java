@@ -15,22 +15,67 @@
  */
 package io.netty.microbench.util;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakTracker;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
 
 public class ResourceLeakDetectorBenchmark extends AbstractMicrobenchmark {
 
     private static final Object DUMMY = new Object();
+    private static final ByteBufAllocator ALLOCATOR = new UnpooledByteBufAllocator(false);
     private ResourceLeakDetector<Object> detector;
+    private ResourceLeakDetector.Level oldLevel;
+    private boolean oldAllocationSiteTracking;
+
+    /**
+     * {@code ALLOCATION_SITES} is the {@link ResourceLeakDetector.Level#SIMPLE} level with allocation site tracking
+     * enabled.
+     */
+    @Param({ "DISABLED", "SIMPLE", "ALLOCATION_SITES" })
+    public String mode;
 
     @Setup
     public void setup() {
+        oldLevel = ResourceLeakDetector.getLevel();
+        oldAllocationSiteTracking = ResourceLeakDetector.isAllocationSiteTracking();
+        if ("DISABLED".equals(mode)) {
+            ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.DISABLED);
+        } else {
+            ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.SIMPLE);
+            ResourceLeakDetector.setAllocationSiteTracking("ALLOCATION_SITES".equals(mode));
+        }
         detector = new ResourceLeakDetector<Object>(getClass(), 128, Long.MAX_VALUE);
     }
 
+    @TearDown
+    public void tearDown() {
+        ResourceLeakDetector.setLevel(oldLevel);
+        ResourceLeakDetector.setAllocationSiteTracking(oldAllocationSiteTracking);
+    }
+
     @Benchmark
     public Object open() {
         return detector.open(DUMMY);
     }
+
+    @Benchmark
+    public Object trackAndClose() {
+        ResourceLeakTracker<Object> tracker = detector.track(DUMMY);
+        if (tracker != null) {
+            tracker.close(DUMMY);
+        }
+        return tracker;
+    }
+
+    @Benchmark
+    public boolean allocateAndRelease() {
+        ByteBuf buf = ALLOCATOR.heapBuffer(64);
+        return buf.release();
+    }
 }
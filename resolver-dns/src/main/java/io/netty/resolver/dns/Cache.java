@@ -16,6 +16,7 @@
 package io.netty.resolver.dns;
 
 import io.netty.channel.EventLoop;
+import io.netty.util.internal.LongCounter;
 import io.netty.util.internal.PlatformDependent;
 
 import java.util.ArrayList;
@@ -24,10 +25,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
@@ -35,12 +40,23 @@ import static java.util.Collections.singletonList;
 
 /**
  * Abstract cache that automatically removes entries for a hostname once the TTL for an entry is reached.
+ * <p>
+ * Optionally the number of cached hostnames can be bounded, in which case the least recently used hostnames are
+ * evicted (approximated via the CLOCK algorithm), and expired entries can be retained for some time so they can be
+ * served if a refresh fails.
  *
  * @param <E>
  */
 abstract class Cache<E> {
     private static final AtomicReferenceFieldUpdater<Cache.Entries, ScheduledFuture> FUTURE_UPDATER =
             AtomicReferenceFieldUpdater.newUpdater(Cache.Entries.class, ScheduledFuture.class, "expirationFuture");
+    private static final AtomicIntegerFieldUpdater<Cache.Entries> PREFETCH_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(Cache.Entries.class, "prefetchState");
+
+    private static final int PREFETCH_IDLE = 0;
+    private static final int PREFETCH_PENDING = 1;
+    // Entries are refreshed once less than 1 / PREFETCH_TTL_DIVISOR of their TTL is left.
+    private static final int PREFETCH_TTL_DIVISOR = 10;
 
     private static final ScheduledFuture<?> CANCELLED = new ScheduledFuture<Object>() {
 
@@ -88,6 +104,45 @@ abstract class Cache<E> {
 
     private final ConcurrentMap<String, Entries> resolveCache = PlatformDependent.newConcurrentHashMap();
 
+    private final int maxEntries;
+    private final int staleTtl;
+
+    // Only used if maxEntries > 0. Contains the Entries in the order they were added or got their second chance,
+    // including Entries which were removed already and are dropped once they are polled.
+    private final Queue<Entries> evictionQueue;
+    private final AtomicInteger evictionQueueSize;
+    private final LongCounter evictions = PlatformDependent.newLongCounter();
+
+    // Only used if staleTtl > 0.
+    private final ConcurrentMap<String, StaleEntries> staleCache;
+
+    /**
+     * Creates a cache which is unbounded and does not retain expired entries.
+     */
+    Cache() {
+        this(0, 0);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the maximum number of hostnames to cache or {@code 0} if the number should not be bounded
+     * @param staleTtl the number of seconds for which expired entries are retained and returned by
+     *                 {@link #getStale(String)} or {@code 0} if expired entries should be removed directly
+     */
+    Cache(int maxEntries, int staleTtl) {
+        this.maxEntries = maxEntries;
+        this.staleTtl = Math.min(MAX_SUPPORTED_TTL_SECS, staleTtl);
+        if (maxEntries > 0) {
+            evictionQueue = new ConcurrentLinkedQueue<Entries>();
+            evictionQueueSize = new AtomicInteger();
+        } else {
+            evictionQueue = null;
+            evictionQueueSize = null;
+        }
+        staleCache = staleTtl > 0 ? PlatformDependent.<String, StaleEntries>newConcurrentHashMap() : null;
+    }
+
     /**
      * Remove everything from the cache.
      */
@@ -100,6 +155,9 @@ abstract class Cache<E> {
                 e.getValue().clearAndCancel();
             }
         }
+        if (staleCache != null) {
+            staleCache.clear();
+        }
     }
 
     /**
@@ -107,7 +165,11 @@ abstract class Cache<E> {
      */
     final boolean clear(String hostname) {
         Entries entries = resolveCache.remove(hostname);
-        return entries != null && entries.clearAndCancel();
+        boolean removed = entries != null && entries.clearAndCancel();
+        if (staleCache != null && staleCache.remove(hostname) != null) {
+            removed = true;
+        }
+        return removed;
     }
 
     /**
@@ -115,7 +177,48 @@ abstract class Cache<E> {
      */
     final List<? extends E> get(String hostname) {
         Entries entries = resolveCache.get(hostname);
-        return entries == null ? null : entries.get();
+        if (entries == null) {
+            return null;
+        }
+        if (evictionQueue != null && !entries.accessed) {
+            // Only write if needed to not invalidate the cache line on every access.
+            entries.accessed = true;
+        }
+        return entries.get();
+    }
+
+    /**
+     * Returns the entries for the given hostname which expired not more than {@code staleTtl} seconds ago, or
+     * {@code null} if there are none.
+     */
+    final List<? extends E> getStale(String hostname) {
+        if (staleCache == null) {
+            return null;
+        }
+        StaleEntries entries = staleCache.get(hostname);
+        return entries == null ? null : entries.entries;
+    }
+
+    /**
+     * Returns {@code true} if the entries for the given hostname will expire soon and so should be refreshed. Once
+     * this method returned {@code true} it will return {@code false} for the hostname until the entries were
+     * refreshed via {@link #cache(String, Object, int, EventLoop)}, which will then replace all the entries that
+     * were cached before, or until {@link #prefetchComplete(String)} was called.
+     */
+    final boolean prefetch(String hostname) {
+        Entries entries = resolveCache.get(hostname);
+        return entries != null && entries.claimPrefetch();
+    }
+
+    /**
+     * Must be called once the refresh for which {@link #prefetch(String)} returned {@code true} is complete. If the
+     * refresh did not cache anything, e.g. because it failed, the entries can be refreshed again.
+     */
+    final void prefetchComplete(String hostname) {
+        Entries entries = resolveCache.get(hostname);
+        if (entries != null) {
+            entries.prefetchComplete();
+        }
     }
 
     /**
@@ -128,6 +231,11 @@ abstract class Cache<E> {
             Entries oldEntries = resolveCache.putIfAbsent(hostname, entries);
             if (oldEntries != null) {
                 entries = oldEntries;
+            } else if (evictionQueue != null) {
+                // Evict before adding the new Entries to the queue, so these can not be evicted directly.
+                evictIfNeeded();
+                evictionQueue.offer(entries);
+                evictionQueueSize.incrementAndGet();
             }
         }
         entries.add(value, ttl, loop);
@@ -140,6 +248,57 @@ abstract class Cache<E> {
         return resolveCache.size();
     }
 
+    /**
+     * Return the number of hostnames which were evicted because the cache was full.
+     */
+    final long evictions() {
+        return evictions.value();
+    }
+
+    private void evictIfNeeded() {
+        for (;;) {
+            final boolean full = resolveCache.size() > maxEntries;
+            // Also drop the Entries which were removed via expiration or clear(...) once they make up the majority of
+            // the queue, so the queue can not grow without bounds.
+            if (!full && evictionQueueSize.get() <= maxEntries << 1) {
+                return;
+            }
+            Entries entries = evictionQueue.poll();
+            if (entries == null) {
+                return;
+            }
+            evictionQueueSize.decrementAndGet();
+            if (resolveCache.get(entries.hostname) != entries) {
+                // Removed already.
+                continue;
+            }
+            if (full && !entries.accessed) {
+                if (resolveCache.remove(entries.hostname, entries)) {
+                    entries.clearAndCancel();
+                    evictions.increment();
+                }
+                continue;
+            }
+            // Give the Entries a second chance.
+            entries.accessed = false;
+            evictionQueue.offer(entries);
+            evictionQueueSize.incrementAndGet();
+        }
+    }
+
+    private void cacheStale(String hostname, List<E> entries, EventLoop loop) {
+        if (maxEntries > 0 && staleCache.size() >= maxEntries && !staleCache.containsKey(hostname)) {
+            // Don't let the stale entries grow without bounds.
+            return;
+        }
+        StaleEntries staleEntries = new StaleEntries(hostname, entries);
+        StaleEntries oldEntries = staleCache.put(hostname, staleEntries);
+        if (oldEntries != null) {
+            oldEntries.cancel();
+        }
+        staleEntries.removalFuture = loop.schedule(staleEntries, staleTtl, TimeUnit.SECONDS);
+    }
+
     /**
      * Returns {@code true} if this entry should replace all other entries that are already cached for the hostname.
      */
@@ -158,19 +317,58 @@ abstract class Cache<E> {
      */
     protected abstract boolean equals(E entry, E otherEntry);
 
+    /**
+     * This method is visible for testing!
+     */
+    long ticksInNanos() {
+        return System.nanoTime();
+    }
+
     // Directly extend AtomicReference for intrinsics and also to keep memory overhead low.
     private final class Entries extends AtomicReference<List<E>> implements Runnable {
 
         private final String hostname;
         // Needs to be package-private to be able to access it via the AtomicReferenceFieldUpdater
         volatile ScheduledFuture<?> expirationFuture;
+        volatile int prefetchState;
+        // The ticksInNanos() at which the entries should be refreshed or 0 if not known yet.
+        private volatile long prefetchDeadline;
+        // The EventLoop which is used to schedule the removal of stale entries once the entries expired.
+        private volatile EventLoop expirationLoop;
+        // Used by the CLOCK eviction.
+        volatile boolean accessed;
 
         Entries(String hostname) {
             super(Collections.<E>emptyList());
             this.hostname = hostname;
         }
 
+        boolean claimPrefetch() {
+            long deadline = prefetchDeadline;
+            return deadline != 0 && ticksInNanos() - deadline >= 0 &&
+                    PREFETCH_UPDATER.compareAndSet(this, PREFETCH_IDLE, PREFETCH_PENDING);
+        }
+
+        void prefetchComplete() {
+            PREFETCH_UPDATER.compareAndSet(this, PREFETCH_PENDING, PREFETCH_IDLE);
+        }
+
         void add(E e, int ttl, EventLoop loop) {
+            if (prefetchState == PREFETCH_PENDING) {
+                if (shouldReplaceAll(e)) {
+                    List<E> entries = get();
+                    if (!entries.isEmpty() && !shouldReplaceAll(entries.get(0))) {
+                        // A failed refresh must not replace the entries which are still valid.
+                        return;
+                    }
+                } else if (PREFETCH_UPDATER.compareAndSet(this, PREFETCH_PENDING, PREFETCH_IDLE)) {
+                    // This is the first entry of a refresh, so replace everything that was cached before and extend
+                    // the expiration.
+                    set(singletonList(e));
+                    scheduleCacheExpiration(ttl, loop, true);
+                    return;
+                }
+            }
             if (!shouldReplaceAll(e)) {
                 for (;;) {
                     List<E> entries = get();
@@ -180,7 +378,7 @@ abstract class Cache<E> {
                             assert entries.size() == 1;
 
                             if (compareAndSet(entries, singletonList(e))) {
-                                scheduleCacheExpirationIfNeeded(ttl, loop);
+                                scheduleCacheExpiration(ttl, loop, false);
                                 return;
                             } else {
                                 // Need to try again as CAS failed
@@ -216,27 +414,31 @@ abstract class Cache<E> {
                         sortEntries(hostname, newEntries);
 
                         if (compareAndSet(entries, Collections.unmodifiableList(newEntries))) {
-                            scheduleCacheExpirationIfNeeded(ttl, loop);
+                            scheduleCacheExpiration(ttl, loop, false);
                             return;
                         }
                     } else if (compareAndSet(entries, singletonList(e))) {
-                        scheduleCacheExpirationIfNeeded(ttl, loop);
+                        scheduleCacheExpiration(ttl, loop, false);
                         return;
                     }
                 }
             } else {
                 set(singletonList(e));
-                scheduleCacheExpirationIfNeeded(ttl, loop);
+                scheduleCacheExpiration(ttl, loop, false);
             }
         }
 
-        private void scheduleCacheExpirationIfNeeded(int ttl, EventLoop loop) {
+        private void scheduleCacheExpiration(int ttl, EventLoop loop, boolean replace) {
             for (;;) {
                 // We currently don't calculate a new TTL when we need to retry the CAS as we don't expect this to
                 // be invoked very concurrently and also we use SECONDS anyway. If this ever becomes a problem
                 // we can reconsider.
                 ScheduledFuture<?> oldFuture = FUTURE_UPDATER.get(this);
-                if (oldFuture == null || oldFuture.getDelay(TimeUnit.SECONDS) > ttl) {
+                if (oldFuture == null || (replace && oldFuture != CANCELLED) ||
+                        oldFuture.getDelay(TimeUnit.SECONDS) > ttl) {
+                    long ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+                    long prefetchDeadline = ticksInNanos() + ttlNanos - ttlNanos / PREFETCH_TTL_DIVISOR;
+                    expirationLoop = loop;
                     ScheduledFuture<?> newFuture = loop.schedule(this, ttl, TimeUnit.SECONDS);
                     // It is possible that
                     // 1. task will fire in between this line, or
@@ -245,6 +447,7 @@ abstract class Cache<E> {
                     //     so the ttl will not be less, and we will bail out of the loop.
                     // (2) This is a trade-off to avoid concurrency resulting in contention on a synchronized block.
                     if (FUTURE_UPDATER.compareAndSet(this, oldFuture, newFuture)) {
+                        this.prefetchDeadline = prefetchDeadline == 0 ? 1 : prefetchDeadline;
                         if (oldFuture != null) {
                             oldFuture.cancel(true);
                         }
@@ -260,9 +463,13 @@ abstract class Cache<E> {
         }
 
         boolean clearAndCancel() {
+            return !clearAndCancel0().isEmpty();
+        }
+
+        private List<E> clearAndCancel0() {
             List<E> entries = getAndSet(Collections.<E>emptyList());
             if (entries.isEmpty()) {
-                return false;
+                return entries;
             }
 
             ScheduledFuture<?> expirationFuture = FUTURE_UPDATER.getAndSet(this, CANCELLED);
@@ -270,7 +477,7 @@ abstract class Cache<E> {
                 expirationFuture.cancel(false);
             }
 
-            return true;
+            return entries;
         }
 
         @Override
@@ -286,7 +493,34 @@ abstract class Cache<E> {
             // See https://github.com/netty/netty/issues/7329
             resolveCache.remove(hostname, this);
 
-            clearAndCancel();
+            List<E> entries = clearAndCancel0();
+            // Entries which replace all others (like failures) are never served stale.
+            if (staleCache != null && !entries.isEmpty() && !shouldReplaceAll(entries.get(0))) {
+                cacheStale(hostname, entries, expirationLoop);
+            }
+        }
+    }
+
+    private final class StaleEntries implements Runnable {
+        private final String hostname;
+        final List<E> entries;
+        volatile ScheduledFuture<?> removalFuture;
+
+        StaleEntries(String hostname, List<E> entries) {
+            this.hostname = hostname;
+            this.entries = entries;
+        }
+
+        void cancel() {
+            ScheduledFuture<?> future = removalFuture;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            staleCache.remove(hostname, this);
         }
     }
 }
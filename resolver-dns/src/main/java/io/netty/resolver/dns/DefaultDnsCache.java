@@ -17,7 +17,10 @@ package io.netty.resolver.dns;
 
 import io.netty.channel.EventLoop;
 import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.util.internal.LongCounter;
+import io.netty.util.internal.PlatformDependent;
 import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
 
 import java.net.InetAddress;
 import java.util.Collections;
@@ -30,31 +33,31 @@ import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
 /**
  * Default implementation of {@link DnsCache}, backed by a {@link ConcurrentMap}.
  * If any additional {@link DnsRecord} is used, no caching takes place.
+ * <p>
+ * Optionally the cache can:
+ * <ul>
+ *     <li>bound the number of cached hostnames, evicting the least recently used ones</li>
+ *     <li>let {@link DnsNameResolver} refresh entries which are used shortly before they expire (prefetch), so
+ *     frequently used hostnames do not cause a cache miss once their TTL is reached</li>
+ *     <li>retain expired entries for some time so {@link DnsNameResolver} can still use them if the hostname could
+ *     not be resolved again, e.g. because the DNS server is not reachable (serve-stale)</li>
+ * </ul>
  */
 public class DefaultDnsCache implements DnsCache {
 
-    private final Cache<DefaultDnsCacheEntry> resolveCache = new Cache<DefaultDnsCacheEntry>() {
-
-        @Override
-        protected boolean shouldReplaceAll(DefaultDnsCacheEntry entry) {
-            return entry.cause() != null;
-        }
-
-        @Override
-        protected boolean equals(DefaultDnsCacheEntry entry, DefaultDnsCacheEntry otherEntry) {
-            if (entry.address() != null) {
-                return entry.address().equals(otherEntry.address());
-            }
-            if (otherEntry.address() != null) {
-                return false;
-            }
-            return entry.cause().equals(otherEntry.cause());
-        }
-    };
+    private final Cache<DefaultDnsCacheEntry> resolveCache;
+    private final LongCounter hits = PlatformDependent.newLongCounter();
+    private final LongCounter misses = PlatformDependent.newLongCounter();
+    private final LongCounter prefetches = PlatformDependent.newLongCounter();
+    private final LongCounter staleHits = PlatformDependent.newLongCounter();
+    private final DefaultDnsCacheMetric metric = new DefaultDnsCacheMetric(this);
 
     private final int minTtl;
     private final int maxTtl;
     private final int negativeTtl;
+    private final int maxEntries;
+    private final int staleTtl;
+    private final boolean prefetch;
 
     /**
      * Create a cache that respects the TTL returned by the DNS server
@@ -71,6 +74,21 @@ public class DefaultDnsCache implements DnsCache {
      * @param negativeTtl the TTL for failed queries
      */
     public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl) {
+        this(minTtl, maxTtl, negativeTtl, 0, 0, false);
+    }
+
+    /**
+     * Create a cache.
+     * @param minTtl the minimum TTL
+     * @param maxTtl the maximum TTL
+     * @param negativeTtl the TTL for failed queries
+     * @param maxEntries the maximum number of hostnames to cache or {@code 0} to not bound the cache
+     * @param staleTtl the time (in seconds) for which expired entries are retained to be used if the hostname can
+     *                 not be resolved again or {@code 0} to not retain expired entries
+     * @param prefetch {@code true} if entries that are used shortly before they expire should be refreshed
+     */
+    @UnstableApi
+    public DefaultDnsCache(int minTtl, int maxTtl, int negativeTtl, int maxEntries, int staleTtl, boolean prefetch) {
         this.minTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(minTtl, "minTtl"));
         this.maxTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(maxTtl, "maxTtl"));
         if (minTtl > maxTtl) {
@@ -78,6 +96,10 @@ public class DefaultDnsCache implements DnsCache {
                     "minTtl: " + minTtl + ", maxTtl: " + maxTtl + " (expected: 0 <= minTtl <= maxTtl)");
         }
         this.negativeTtl = checkPositiveOrZero(negativeTtl, "negativeTtl");
+        this.maxEntries = checkPositiveOrZero(maxEntries, "maxEntries");
+        this.staleTtl = Math.min(Cache.MAX_SUPPORTED_TTL_SECS, checkPositiveOrZero(staleTtl, "staleTtl"));
+        this.prefetch = prefetch;
+        resolveCache = new DefaultDnsCacheEntryCache(maxEntries, this.staleTtl);
     }
 
     /**
@@ -106,6 +128,64 @@ public class DefaultDnsCache implements DnsCache {
         return negativeTtl;
     }
 
+    /**
+     * Returns the maximum number of cached hostnames. The default value is {@code 0}, which means the cache is not
+     * bounded.
+     */
+    @UnstableApi
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the time (in seconds) for which expired entries are retained to be used if a hostname can not be
+     * resolved again. The default value is {@code 0}, which disables serving stale entries.
+     */
+    @UnstableApi
+    public int staleTtl() {
+        return staleTtl;
+    }
+
+    /**
+     * Returns {@code true} if entries which are used shortly before they expire are refreshed.
+     */
+    @UnstableApi
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Returns the {@link DefaultDnsCacheMetric} of this cache.
+     */
+    @UnstableApi
+    public DefaultDnsCacheMetric metric() {
+        return metric;
+    }
+
+    int size() {
+        return resolveCache.size();
+    }
+
+    long hits() {
+        return hits.value();
+    }
+
+    long misses() {
+        return misses.value();
+    }
+
+    long prefetches() {
+        return prefetches.value();
+    }
+
+    long staleHits() {
+        return staleHits.value();
+    }
+
+    long evictions() {
+        return resolveCache.evictions();
+    }
+
     @Override
     public void clear() {
         resolveCache.clear();
@@ -128,7 +208,56 @@ public class DefaultDnsCache implements DnsCache {
             return Collections.<DnsCacheEntry>emptyList();
         }
 
-        return resolveCache.get(appendDot(hostname));
+        List<? extends DnsCacheEntry> entries = resolveCache.get(appendDot(hostname));
+        if (entries == null || entries.isEmpty()) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entries;
+    }
+
+    /**
+     * Returns {@code true} if the caller should refresh the entries for the given hostname because they will expire
+     * soon. Only returns {@code true} once until the entries were refreshed.
+     */
+    boolean prefetch(String hostname, DnsRecord[] additionals) {
+        if (!prefetch || !emptyAdditionals(additionals)) {
+            return false;
+        }
+        String key = appendDot(hostname);
+        List<? extends DnsCacheEntry> entries = resolveCache.get(key);
+        // Don't refresh failures, these are only cached for negativeTtl anyway.
+        if (entries == null || entries.isEmpty() || entries.get(0).cause() != null || !resolveCache.prefetch(key)) {
+            return false;
+        }
+        prefetches.increment();
+        return true;
+    }
+
+    /**
+     * Must be called once the refresh for which {@link #prefetch(String, DnsRecord[])} returned {@code true} is
+     * complete, so the entries can be refreshed again if the refresh did not replace them.
+     */
+    void prefetchComplete(String hostname, DnsRecord[] additionals) {
+        if (emptyAdditionals(additionals)) {
+            resolveCache.prefetchComplete(appendDot(hostname));
+        }
+    }
+
+    /**
+     * Returns the entries for the given hostname which expired not more than {@link #staleTtl()} seconds ago, or
+     * {@code null} if there are none.
+     */
+    List<? extends DnsCacheEntry> getStale(String hostname, DnsRecord[] additionals) {
+        if (staleTtl == 0 || !emptyAdditionals(additionals)) {
+            return null;
+        }
+        List<? extends DnsCacheEntry> entries = resolveCache.getStale(appendDot(hostname));
+        if (entries != null) {
+            staleHits.increment();
+        }
+        return entries;
     }
 
     @Override
@@ -166,7 +295,10 @@ public class DefaultDnsCache implements DnsCache {
                 .append("DefaultDnsCache(minTtl=")
                 .append(minTtl).append(", maxTtl=")
                 .append(maxTtl).append(", negativeTtl=")
-                .append(negativeTtl).append(", cached resolved hostname=")
+                .append(negativeTtl).append(", maxEntries=")
+                .append(maxEntries).append(", staleTtl=")
+                .append(staleTtl).append(", prefetch=")
+                .append(prefetch).append(", cached resolved hostname=")
                 .append(resolveCache.size()).append(')')
                 .toString();
     }
@@ -212,6 +344,41 @@ public class DefaultDnsCache implements DnsCache {
         }
     }
 
+    /**
+     * This method is visible for testing!
+     */
+    long ticksInNanos() {
+        return System.nanoTime();
+    }
+
+    private final class DefaultDnsCacheEntryCache extends Cache<DefaultDnsCacheEntry> {
+
+        DefaultDnsCacheEntryCache(int maxEntries, int staleTtl) {
+            super(maxEntries, staleTtl);
+        }
+
+        @Override
+        long ticksInNanos() {
+            return DefaultDnsCache.this.ticksInNanos();
+        }
+
+        @Override
+        protected boolean shouldReplaceAll(DefaultDnsCacheEntry entry) {
+            return entry.cause() != null;
+        }
+
+        @Override
+        protected boolean equals(DefaultDnsCacheEntry entry, DefaultDnsCacheEntry otherEntry) {
+            if (entry.address() != null) {
+                return entry.address().equals(otherEntry.address());
+            }
+            if (otherEntry.address() != null) {
+                return false;
+            }
+            return entry.cause().equals(otherEntry.cause());
+        }
+    }
+
     private static String appendDot(String hostname) {
         return StringUtil.endsWith(hostname, '.') ? hostname : hostname + '.';
     }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.resolver.dns;
+
+import io.netty.util.internal.StringUtil;
+import io.netty.util.internal.UnstableApi;
+
+/**
+ * Exposed metric for {@link DefaultDnsCache}.
+ */
+@UnstableApi
+public final class DefaultDnsCacheMetric {
+
+    private final DefaultDnsCache cache;
+
+    DefaultDnsCacheMetric(DefaultDnsCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Return the number of hostnames for which something is cached.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Return the number of lookups which found cached entries.
+     */
+    public long hits() {
+        return cache.hits();
+    }
+
+    /**
+     * Return the number of lookups which did not find any cached entries.
+     */
+    public long misses() {
+        return cache.misses();
+    }
+
+    /**
+     * Return the number of times entries were refreshed before they expired.
+     */
+    public long prefetches() {
+        return cache.prefetches();
+    }
+
+    /**
+     * Return the number of times expired entries were used because a hostname could not be resolved again.
+     */
+    public long staleHits() {
+        return cache.staleHits();
+    }
+
+    /**
+     * Return the number of hostnames which were evicted because {@link DefaultDnsCache#maxEntries()} was reached.
+     */
+    public long evictions() {
+        return cache.evictions();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(StringUtil.simpleClassName(this))
+                .append("(size: ").append(size())
+                .append("; hits: ").append(hits())
+                .append("; misses: ").append(misses())
+                .append("; prefetches: ").append(prefetches())
+                .append("; staleHits: ").append(staleHits())
+                .append("; evictions: ").append(evictions()).append(')');
+        return sb.toString();
+    }
+}
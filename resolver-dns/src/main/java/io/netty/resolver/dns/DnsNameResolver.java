@@ -883,6 +883,8 @@ public class DnsNameResolver extends InetNameResolver {
 
         if (!doResolveCached(hostname, additionals, promise, resolveCache)) {
             doResolveUncached(hostname, additionals, promise, resolveCache, true);
+        } else {
+            prefetchIfNeeded(hostname, additionals, resolveCache);
         }
     }
 
@@ -938,7 +940,8 @@ public class DnsNameResolver extends InetNameResolver {
                                    final Promise<InetAddress> promise,
                                    DnsCache resolveCache, boolean completeEarlyIfPossible) {
         final Promise<List<InetAddress>> allPromise = executor().newPromise();
-        doResolveAllUncached(hostname, additionals, allPromise, resolveCache, true);
+        doResolveAllUncached(hostname, additionals,
+                staleFallbackPromise(hostname, additionals, allPromise, resolveCache), resolveCache, true);
         allPromise.addListener(new FutureListener<List<InetAddress>>() {
             @Override
             public void operationComplete(Future<List<InetAddress>> future) {
@@ -985,7 +988,11 @@ public class DnsNameResolver extends InetNameResolver {
         }
 
         if (!doResolveAllCached(hostname, additionals, promise, resolveCache, resolvedInternetProtocolFamilies)) {
-            doResolveAllUncached(hostname, additionals, promise, resolveCache, completeOncePreferredResolved);
+            doResolveAllUncached(hostname, additionals,
+                    staleFallbackPromise(hostname, additionals, promise, resolveCache),
+                    resolveCache, completeOncePreferredResolved);
+        } else {
+            prefetchIfNeeded(hostname, additionals, resolveCache);
         }
     }
 
@@ -995,6 +1002,12 @@ public class DnsNameResolver extends InetNameResolver {
                                       DnsCache resolveCache,
                                       InternetProtocolFamily[] resolvedInternetProtocolFamilies) {
         final List<? extends DnsCacheEntry> cachedEntries = resolveCache.get(hostname, additionals);
+        return doResolveAllCached0(cachedEntries, promise, resolvedInternetProtocolFamilies);
+    }
+
+    private static boolean doResolveAllCached0(List<? extends DnsCacheEntry> cachedEntries,
+                                               Promise<List<InetAddress>> promise,
+                                               InternetProtocolFamily[] resolvedInternetProtocolFamilies) {
         if (cachedEntries == null || cachedEntries.isEmpty()) {
             return false;
         }
@@ -1025,6 +1038,56 @@ public class DnsNameResolver extends InetNameResolver {
         }
     }
 
+    /**
+     * Refreshes the cached entries for the given hostname in the background if the {@link DnsCache} asks for it.
+     */
+    private void prefetchIfNeeded(final String hostname, final DnsRecord[] additionals, DnsCache resolveCache) {
+        if (resolveCache instanceof DefaultDnsCache &&
+                ((DefaultDnsCache) resolveCache).prefetch(hostname, additionals)) {
+            final DefaultDnsCache cache = (DefaultDnsCache) resolveCache;
+            final Promise<List<InetAddress>> prefetchPromise = executor().newPromise();
+            prefetchPromise.addListener(new FutureListener<List<InetAddress>>() {
+                @Override
+                public void operationComplete(Future<List<InetAddress>> future) {
+                    // The DnsAddressResolveContext caches the result. If nothing was cached, e.g. because the
+                    // resolution failed, allow another refresh.
+                    cache.prefetchComplete(hostname, additionals);
+                }
+            });
+            doResolveAllUncached(hostname, additionals, prefetchPromise, resolveCache, false);
+        }
+    }
+
+    /**
+     * Returns a {@link Promise} which will notify the given {@link Promise}, using the stale entries of the
+     * {@link DnsCache} if the resolution fails because of a timeout or transport error.
+     */
+    private Promise<List<InetAddress>> staleFallbackPromise(final String hostname,
+                                                            final DnsRecord[] additionals,
+                                                            final Promise<List<InetAddress>> promise,
+                                                            DnsCache resolveCache) {
+        if (!(resolveCache instanceof DefaultDnsCache) || ((DefaultDnsCache) resolveCache).staleTtl() == 0) {
+            return promise;
+        }
+        final DefaultDnsCache cache = (DefaultDnsCache) resolveCache;
+        final Promise<List<InetAddress>> resolvePromise = executor().newPromise();
+        resolvePromise.addListener(new FutureListener<List<InetAddress>>() {
+            @Override
+            public void operationComplete(Future<List<InetAddress>> future) {
+                if (future.isSuccess()) {
+                    trySuccess(promise, future.getNow());
+                } else if (!isTransportOrTimeoutError(future.cause()) ||
+                        !doResolveAllCached0(cache.getStale(hostname, additionals), promise,
+                                resolvedInternetProtocolFamilies)) {
+                    // Only serve stale entries if the name servers could not be reached, never if they answered
+                    // that the name does not exist.
+                    tryFailure(promise, future.cause());
+                }
+            }
+        });
+        return resolvePromise;
+    }
+
     private void doResolveAllUncached(final String hostname,
                                       final DnsRecord[] additionals,
                                       final Promise<List<InetAddress>> promise,
@@ -24,6 +24,7 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.resolver.HostsFileEntriesResolver;
 import io.netty.resolver.ResolvedAddressTypes;
 import io.netty.util.concurrent.Future;
+import io.netty.util.internal.UnstableApi;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -46,6 +47,9 @@ public final class DnsNameResolverBuilder {
     private Integer minTtl;
     private Integer maxTtl;
     private Integer negativeTtl;
+    private Integer maxCacheEntries;
+    private Integer staleTtl;
+    private Boolean prefetch;
     private long queryTimeoutMillis = 5000;
     private ResolvedAddressTypes resolvedAddressTypes = DnsNameResolver.DEFAULT_RESOLVE_ADDRESS_TYPES;
     private boolean completeOncePreferredResolved;
@@ -230,6 +234,46 @@ public final class DnsNameResolverBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum number of hostnames for which resolved addresses are cached. Once the limit is reached the
+     * least recently used hostnames are evicted. The default value is {@code 0}, which does not bound the cache.
+     *
+     * @param maxCacheEntries the maximum number of cached hostnames
+     * @return {@code this}
+     */
+    @UnstableApi
+    public DnsNameResolverBuilder maxCacheEntries(int maxCacheEntries) {
+        this.maxCacheEntries = maxCacheEntries;
+        return this;
+    }
+
+    /**
+     * Sets the time (in seconds) for which expired resolved addresses are retained, so they can be used if a
+     * hostname could not be resolved again, for example because no DNS server is reachable. The default value is
+     * {@code 0}, which disables serving stale addresses.
+     *
+     * @param staleTtl the time for which expired addresses are retained
+     * @return {@code this}
+     */
+    @UnstableApi
+    public DnsNameResolverBuilder staleTtl(int staleTtl) {
+        this.staleTtl = staleTtl;
+        return this;
+    }
+
+    /**
+     * Sets if cached addresses which are used shortly before they expire should be refreshed in the background, so
+     * frequently resolved hostnames never need to wait for a DNS query. The default value is {@code false}.
+     *
+     * @param prefetch {@code true} to refresh cached addresses before they expire
+     * @return {@code this}
+     */
+    @UnstableApi
+    public DnsNameResolverBuilder prefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
     /**
      * Sets the timeout of each DNS query performed by this resolver (in milliseconds).
      *
@@ -420,7 +464,8 @@ public final class DnsNameResolverBuilder {
     }
 
     private DnsCache newCache() {
-        return new DefaultDnsCache(intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE), intValue(negativeTtl, 0));
+        return new DefaultDnsCache(intValue(minTtl, 0), intValue(maxTtl, Integer.MAX_VALUE), intValue(negativeTtl, 0),
+                intValue(maxCacheEntries, 0), intValue(staleTtl, 0), prefetch != null && prefetch);
     }
 
     private AuthoritativeDnsServerCache newAuthoritativeDnsServerCache() {
@@ -462,6 +507,11 @@ public final class DnsNameResolverBuilder {
             throw new IllegalStateException("resolveCache and TTLs are mutually exclusive");
         }
 
+        if (resolveCache != null && (maxCacheEntries != null || staleTtl != null || prefetch != null)) {
+            throw new IllegalStateException(
+                    "resolveCache and maxCacheEntries, staleTtl or prefetch are mutually exclusive");
+        }
+
         if (authoritativeDnsServerCache != null && (minTtl != null || maxTtl != null || negativeTtl != null)) {
             throw new IllegalStateException("authoritativeDnsServerCache and TTLs are mutually exclusive");
         }
@@ -528,6 +578,18 @@ public final class DnsNameResolverBuilder {
             copiedBuilder.negativeTtl(negativeTtl);
         }
 
+        if (maxCacheEntries != null) {
+            copiedBuilder.maxCacheEntries(maxCacheEntries);
+        }
+
+        if (staleTtl != null) {
+            copiedBuilder.staleTtl(staleTtl);
+        }
+
+        if (prefetch != null) {
+            copiedBuilder.prefetch(prefetch);
+        }
+
         if (authoritativeDnsServerCache != null) {
             copiedBuilder.authoritativeDnsServerCache(authoritativeDnsServerCache);
         }
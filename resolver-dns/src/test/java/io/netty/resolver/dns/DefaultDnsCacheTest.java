@@ -24,15 +24,18 @@ import io.netty.util.NetUtil;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DefaultDnsCacheTest {
 
@@ -198,4 +201,148 @@ public class DefaultDnsCacheTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test
+    public void testMaxEntriesEvictsLeastRecentlyUsed() throws Exception {
+        InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, 100, 0, 2, 0, false);
+            cache.cache("netty1.io", null, addr, 100, loop);
+            cache.cache("netty2.io", null, addr, 100, loop);
+            assertNotNull(cache.get("netty1.io", null));
+
+            cache.cache("netty3.io", null, addr, 100, loop);
+            assertNotNull(cache.get("netty1.io", null));
+            assertNull(cache.get("netty2.io", null));
+            assertNotNull(cache.get("netty3.io", null));
+
+            DefaultDnsCacheMetric metric = cache.metric();
+            assertEquals(2, metric.size());
+            assertEquals(1, metric.evictions());
+            assertEquals(3, metric.hits());
+            assertEquals(1, metric.misses());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testStaleEntries() throws Throwable {
+        InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final DefaultDnsCache cache = new DefaultDnsCache(0, 100, 100, 0, 100, false);
+            cache.cache("netty.io", null, addr, 1, loop);
+            cache.cache("failed.netty.io", null, new UnknownHostException(), loop);
+            assertNull(cache.getStale("netty.io", null));
+
+            Throwable error = loop.schedule(new Callable<Throwable>() {
+                @Override
+                public Throwable call() {
+                    try {
+                        assertNull(cache.get("netty.io", null));
+                        List<? extends DnsCacheEntry> entries = cache.getStale("netty.io", null);
+                        assertEquals(1, entries.size());
+                        // Failures are never served stale.
+                        assertNull(cache.getStale("failed.netty.io", null));
+                        assertEquals(1, cache.metric().staleHits());
+
+                        assertTrue(cache.clear("netty.io"));
+                        assertNull(cache.getStale("netty.io", null));
+                        return null;
+                    } catch (Throwable cause) {
+                        return cause;
+                    }
+                }
+            }, 1100, TimeUnit.MILLISECONDS).get();
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        InetAddress addr1 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress addr2 = InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final TestableDnsCache cache = new TestableDnsCache(0, 100, 0, 0, 0, true);
+            cache.cache("netty.io", null, addr1, 10, loop);
+            assertFalse(cache.prefetch("netty.io", null));
+            cache.ticks += TimeUnit.MILLISECONDS.toNanos(8999);
+            assertFalse(cache.prefetch("netty.io", null));
+
+            // Less than 10% of the TTL is left.
+            cache.ticks += TimeUnit.MILLISECONDS.toNanos(1);
+            assertTrue(cache.prefetch("netty.io", null));
+            assertFalse(cache.prefetch("netty.io", null));
+            assertEquals(1, cache.metric().prefetches());
+
+            // The refresh replaces the old entries and extends the expiration.
+            cache.cache("netty.io", null, addr2, 100, loop);
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr2);
+            assertFalse(cache.prefetch("netty.io", null));
+            cache.ticks += TimeUnit.SECONDS.toNanos(89);
+            assertFalse(cache.prefetch("netty.io", null));
+            cache.ticks += TimeUnit.SECONDS.toNanos(1);
+            assertTrue(cache.prefetch("netty.io", null));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testFailedPrefetch() throws Exception {
+        InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+
+        try {
+            EventLoop loop = group.next();
+            final TestableDnsCache cache = new TestableDnsCache(0, 100, 100, 0, 0, true);
+            cache.cache("netty.io", null, addr, 10, loop);
+
+            // Less than 10% of the TTL is left.
+            cache.ticks += TimeUnit.SECONDS.toNanos(9);
+            assertTrue(cache.prefetch("netty.io", null));
+
+            // A failed refresh does not replace the entries which are still valid.
+            cache.cache("netty.io", null, new UnknownHostException(), loop);
+            List<? extends DnsCacheEntry> entries = cache.get("netty.io", null);
+            assertEquals(1, entries.size());
+            assertEntry(entries.get(0), addr);
+
+            // Once the refresh is complete the entries can be refreshed again.
+            assertFalse(cache.prefetch("netty.io", null));
+            cache.prefetchComplete("netty.io", null);
+            assertTrue(cache.prefetch("netty.io", null));
+            assertEquals(2, cache.metric().prefetches());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    private static final class TestableDnsCache extends DefaultDnsCache {
+        long ticks;
+
+        TestableDnsCache(int minTtl, int maxTtl, int negativeTtl, int maxEntries, int staleTtl, boolean prefetch) {
+            super(minTtl, maxTtl, negativeTtl, maxEntries, staleTtl, prefetch);
+        }
+
+        @Override
+        long ticksInNanos() {
+            return ticks;
+        }
+    }
 }
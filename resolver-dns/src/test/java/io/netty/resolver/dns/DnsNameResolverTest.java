@@ -2086,6 +2086,53 @@ public class DnsNameResolverTest {
         resolver.close();
     }
 
+    @Test(timeout = 5000)
+    public void testServeStaleOnTimeout() throws Exception {
+        InetAddress address = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        DefaultDnsCache cache = new DefaultDnsCache(0, Integer.MAX_VALUE, 0, 0, 60, false);
+        DnsNameResolver resolver = newResolver()
+                .queryTimeoutMillis(100)
+                .resolveCache(cache)
+                .nameServerProvider(new SingletonDnsServerAddressStreamProvider(
+                        new InetSocketAddress(NetUtil.LOCALHOST, 12345)))
+                .build();
+        try {
+            cache.cache("stale.netty.io", null, address, 1, resolver.ch.eventLoop());
+            while (cache.get("stale.netty.io", null) != null) {
+                Thread.sleep(100);
+            }
+
+            assertEquals(address, resolver.resolve("stale.netty.io").sync().getNow());
+            assertEquals(Collections.singletonList(address), resolver.resolveAll("stale.netty.io").sync().getNow());
+            assertEquals(2, cache.metric().staleHits());
+
+            // Without stale entries the timeout is propagated.
+            assertTrue(resolver.resolve("other.netty.io").await().cause() instanceof UnknownHostException);
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testNonExistentDomainNotServedStale() throws Exception {
+        InetAddress address = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        DefaultDnsCache cache = new DefaultDnsCache(0, Integer.MAX_VALUE, 0, 0, 60, false);
+        DnsNameResolver resolver = newResolver().resolveCache(cache).build();
+        try {
+            cache.cache("non-existent.netty.io", null, address, 1, resolver.ch.eventLoop());
+            while (cache.get("non-existent.netty.io", null) != null) {
+                Thread.sleep(100);
+            }
+
+            Throwable cause = resolver.resolve("non-existent.netty.io").await().cause();
+            assertTrue(cause instanceof UnknownHostException);
+            assertFalse(DnsNameResolver.isTransportOrTimeoutError(cause));
+            assertEquals(0, cache.metric().staleHits());
+        } finally {
+            resolver.close();
+        }
+    }
+
     @Test
     public void testDnsNameResolverBuilderCopy() {
         ChannelFactory<DatagramChannel> channelFactory =
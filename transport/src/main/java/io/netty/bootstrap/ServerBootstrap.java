@@ -25,14 +25,20 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.EventExecutorChooserFactory.EventExecutorChooser;
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -53,6 +59,7 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
     private final ServerBootstrapConfig config = new ServerBootstrapConfig(this);
     private volatile EventLoopGroup childGroup;
     private volatile ChannelHandler childHandler;
+    private volatile EventExecutorChooserFactory childChooserFactory;
 
     public ServerBootstrap() { }
 
@@ -60,6 +67,7 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
         super(bootstrap);
         childGroup = bootstrap.childGroup;
         childHandler = bootstrap.childHandler;
+        childChooserFactory = bootstrap.childChooserFactory;
         synchronized (bootstrap.childOptions) {
             childOptions.putAll(bootstrap.childOptions);
         }
@@ -127,6 +135,19 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
         return this;
     }
 
+    /**
+     * Set the {@link EventExecutorChooserFactory} which is used to pick the {@link EventLoop} of the child
+     * {@link EventLoopGroup} an accepted {@link Channel} is registered with. Use a value of {@code null} to
+     * register accepted {@link Channel}s via {@link EventLoopGroup#register(Channel)}, which uses the chooser the
+     * child {@link EventLoopGroup} was constructed with.
+     *
+     * @see io.netty.channel.LoadAwareEventLoopChooserFactory
+     */
+    public ServerBootstrap childEventLoopChooserFactory(EventExecutorChooserFactory childChooserFactory) {
+        this.childChooserFactory = childChooserFactory;
+        return this;
+    }
+
     @Override
     void init(Channel channel) {
         setChannelOptions(channel, newOptionsArray(), logger);
@@ -136,6 +157,7 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
 
         final EventLoopGroup currentChildGroup = childGroup;
         final ChannelHandler currentChildHandler = childHandler;
+        final EventExecutorChooser currentChildChooser = newChildChooser(currentChildGroup, childChooserFactory);
         final Entry<ChannelOption<?>, Object>[] currentChildOptions;
         synchronized (childOptions) {
             currentChildOptions = childOptions.entrySet().toArray(EMPTY_OPTION_ARRAY);
@@ -155,13 +177,29 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
                     @Override
                     public void run() {
                         pipeline.addLast(new ServerBootstrapAcceptor(
-                                ch, currentChildGroup, currentChildHandler, currentChildOptions, currentChildAttrs));
+                                ch, currentChildGroup, currentChildChooser, currentChildHandler,
+                                currentChildOptions, currentChildAttrs));
                     }
                 });
             }
         });
     }
 
+    private static EventExecutorChooser newChildChooser(
+            EventLoopGroup childGroup, EventExecutorChooserFactory chooserFactory) {
+        if (chooserFactory == null) {
+            return null;
+        }
+        List<EventExecutor> children = new ArrayList<EventExecutor>();
+        for (EventExecutor child: childGroup) {
+            if (!(child instanceof EventLoop)) {
+                throw new IllegalStateException("childGroup contains a non EventLoop: " + child);
+            }
+            children.add(child);
+        }
+        return chooserFactory.newChooser(children.toArray(new EventExecutor[0]));
+    }
+
     @Override
     public ServerBootstrap validate() {
         super.validate();
@@ -178,15 +216,18 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
     private static class ServerBootstrapAcceptor extends ChannelInboundHandlerAdapter {
 
         private final EventLoopGroup childGroup;
+        private final EventExecutorChooser childChooser;
         private final ChannelHandler childHandler;
         private final Entry<ChannelOption<?>, Object>[] childOptions;
         private final Entry<AttributeKey<?>, Object>[] childAttrs;
         private final Runnable enableAutoReadTask;
 
         ServerBootstrapAcceptor(
-                final Channel channel, EventLoopGroup childGroup, ChannelHandler childHandler,
-                Entry<ChannelOption<?>, Object>[] childOptions, Entry<AttributeKey<?>, Object>[] childAttrs) {
+                final Channel channel, EventLoopGroup childGroup, EventExecutorChooser childChooser,
+                ChannelHandler childHandler, Entry<ChannelOption<?>, Object>[] childOptions,
+                Entry<AttributeKey<?>, Object>[] childAttrs) {
             this.childGroup = childGroup;
+            this.childChooser = childChooser;
             this.childHandler = childHandler;
             this.childOptions = childOptions;
             this.childAttrs = childAttrs;
@@ -215,7 +256,8 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
             setAttributes(child, childAttrs);
 
             try {
-                childGroup.register(child).addListener(new ChannelFutureListener() {
+                EventLoopGroup group = childChooser == null ? childGroup : (EventLoop) childChooser.next();
+                group.register(child).addListener(new ChannelFutureListener() {
                     @Override
                     public void operationComplete(ChannelFuture future) throws Exception {
                         if (!future.isSuccess()) {
@@ -269,6 +311,10 @@ public class ServerBootstrap extends AbstractBootstrap<ServerBootstrap, ServerCh
         return childHandler;
     }
 
+    final EventExecutorChooserFactory childEventLoopChooserFactory() {
+        return childChooserFactory;
+    }
+
     final Map<ChannelOption<?>, Object> childOptions() {
         synchronized (childOptions) {
             return copiedMap(childOptions);
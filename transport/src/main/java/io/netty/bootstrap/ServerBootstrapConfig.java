@@ -17,9 +17,11 @@ package io.netty.bootstrap;
 
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
 import io.netty.util.internal.StringUtil;
 
 import java.util.Map;
@@ -50,6 +52,14 @@ public final class ServerBootstrapConfig extends AbstractBootstrapConfig<ServerB
         return bootstrap.childHandler();
     }
 
+    /**
+     * Returns the configured {@link EventExecutorChooserFactory} which is used to pick the {@link EventLoop} of the
+     * child channels or {@code null} if the {@link EventLoopGroup} of the child channels should choose itself.
+     */
+    public EventExecutorChooserFactory childEventLoopChooserFactory() {
+        return bootstrap.childEventLoopChooserFactory();
+    }
+
     /**
      * Returns a copy of the configured options which will be used for the child channels.
      */
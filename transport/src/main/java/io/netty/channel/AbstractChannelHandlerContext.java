@@ -62,6 +62,13 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
     volatile AbstractChannelHandlerContext next;
     volatile AbstractChannelHandlerContext prev;
 
+    // The next contexts which handle channelRead, write, flush and write or flush. Only set if the pipeline
+    // precomputes them, see ChannelOption.PRECOMPUTE_PIPELINE_CONTEXTS.
+    volatile AbstractChannelHandlerContext nextChannelRead;
+    volatile AbstractChannelHandlerContext prevWrite;
+    volatile AbstractChannelHandlerContext prevFlush;
+    volatile AbstractChannelHandlerContext prevWriteOrFlush;
+
     private static final AtomicIntegerFieldUpdater<AbstractChannelHandlerContext> HANDLER_STATE_UPDATER =
             AtomicIntegerFieldUpdater.newUpdater(AbstractChannelHandlerContext.class, "handlerState");
 
@@ -86,7 +93,7 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
     private final DefaultChannelPipeline pipeline;
     private final String name;
     private final boolean ordered;
-    private final int executionMask;
+    final int executionMask;
 
     // Will be set to null if no child executor should be used, otherwise it will be set to the
     // child executor.
@@ -352,7 +359,8 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
 
     @Override
     public ChannelHandlerContext fireChannelRead(final Object msg) {
-        invokeChannelRead(findContextInbound(MASK_CHANNEL_READ), msg);
+        AbstractChannelHandlerContext next = nextChannelRead;
+        invokeChannelRead(next != null ? next : findContextInbound(MASK_CHANNEL_READ), msg);
         return this;
     }
 
@@ -720,7 +728,10 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
 
     @Override
     public ChannelHandlerContext flush() {
-        final AbstractChannelHandlerContext next = findContextOutbound(MASK_FLUSH);
+        AbstractChannelHandlerContext next = prevFlush;
+        if (next == null) {
+            next = findContextOutbound(MASK_FLUSH);
+        }
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
             next.invokeFlush();
@@ -779,8 +790,10 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
             throw e;
         }
 
-        final AbstractChannelHandlerContext next = findContextOutbound(flush ?
-                (MASK_WRITE | MASK_FLUSH) : MASK_WRITE);
+        AbstractChannelHandlerContext next = flush ? prevWriteOrFlush : prevWrite;
+        if (next == null) {
+            next = findContextOutbound(flush ? (MASK_WRITE | MASK_FLUSH) : MASK_WRITE);
+        }
         final Object m = pipeline.touch(msg, next);
         EventExecutor executor = next.executor();
         if (executor.inEventLoop()) {
@@ -920,6 +933,16 @@ abstract class AbstractChannelHandlerContext implements ChannelHandlerContext, R
         return ctx;
     }
 
+    /**
+     * Clears the precomputed contexts so the next handler is found by walking the linked list again.
+     */
+    final void clearPrecomputedContexts() {
+        nextChannelRead = null;
+        prevWrite = null;
+        prevFlush = null;
+        prevWriteOrFlush = null;
+    }
+
     @Override
     public ChannelPromise voidPromise() {
         return channel().voidPromise();
@@ -133,6 +133,15 @@ public class ChannelOption<T> extends AbstractConstant<ChannelOption<T>> {
     public static final ChannelOption<Boolean> SINGLE_EVENTEXECUTOR_PER_GROUP =
             valueOf("SINGLE_EVENTEXECUTOR_PER_GROUP");
 
+    /**
+     * If {@code true} the {@link DefaultChannelPipeline} computes the next {@link ChannelHandlerContext} that handles
+     * {@code channelRead}, {@code write} and {@code flush} every time it is modified, so firing these events does not
+     * need to walk over all the handlers which are not interested in them. Changing the option also updates a
+     * pipeline which is already set up.
+     */
+    public static final ChannelOption<Boolean> PRECOMPUTE_PIPELINE_CONTEXTS =
+            valueOf("PRECOMPUTE_PIPELINE_CONTEXTS");
+
     /**
      * Creates a new {@link ChannelOption} with the specified unique {@code name}.
      */
@@ -31,6 +31,7 @@ import static io.netty.channel.ChannelOption.CONNECT_TIMEOUT_MILLIS;
 import static io.netty.channel.ChannelOption.MAX_MESSAGES_PER_READ;
 import static io.netty.channel.ChannelOption.MESSAGE_SIZE_ESTIMATOR;
 import static io.netty.channel.ChannelOption.RCVBUF_ALLOCATOR;
+import static io.netty.channel.ChannelOption.PRECOMPUTE_PIPELINE_CONTEXTS;
 import static io.netty.channel.ChannelOption.SINGLE_EVENTEXECUTOR_PER_GROUP;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK;
 import static io.netty.channel.ChannelOption.WRITE_BUFFER_LOW_WATER_MARK;
@@ -67,6 +68,7 @@ public class DefaultChannelConfig implements ChannelConfig {
     private volatile boolean autoClose = true;
     private volatile WriteBufferWaterMark writeBufferWaterMark = WriteBufferWaterMark.DEFAULT;
     private volatile boolean pinEventExecutor = true;
+    private volatile boolean precomputePipelineContexts;
 
     public DefaultChannelConfig(Channel channel) {
         this(channel, new AdaptiveRecvByteBufAllocator());
@@ -85,7 +87,7 @@ public class DefaultChannelConfig implements ChannelConfig {
                 CONNECT_TIMEOUT_MILLIS, MAX_MESSAGES_PER_READ, WRITE_SPIN_COUNT,
                 ALLOCATOR, AUTO_READ, AUTO_CLOSE, RCVBUF_ALLOCATOR, WRITE_BUFFER_HIGH_WATER_MARK,
                 WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_WATER_MARK, MESSAGE_SIZE_ESTIMATOR,
-                SINGLE_EVENTEXECUTOR_PER_GROUP);
+                SINGLE_EVENTEXECUTOR_PER_GROUP, PRECOMPUTE_PIPELINE_CONTEXTS);
     }
 
     protected Map<ChannelOption<?>, Object> getOptions(
@@ -155,6 +157,9 @@ public class DefaultChannelConfig implements ChannelConfig {
         if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             return (T) Boolean.valueOf(getPinEventExecutorPerGroup());
         }
+        if (option == PRECOMPUTE_PIPELINE_CONTEXTS) {
+            return (T) Boolean.valueOf(getPrecomputePipelineContexts());
+        }
         return null;
     }
 
@@ -187,6 +192,8 @@ public class DefaultChannelConfig implements ChannelConfig {
             setMessageSizeEstimator((MessageSizeEstimator) value);
         } else if (option == SINGLE_EVENTEXECUTOR_PER_GROUP) {
             setPinEventExecutorPerGroup((Boolean) value);
+        } else if (option == PRECOMPUTE_PIPELINE_CONTEXTS) {
+            setPrecomputePipelineContexts((Boolean) value);
         } else {
             return false;
         }
@@ -414,4 +421,19 @@ public class DefaultChannelConfig implements ChannelConfig {
         return pinEventExecutor;
     }
 
+    private ChannelConfig setPrecomputePipelineContexts(boolean precomputePipelineContexts) {
+        boolean changed = this.precomputePipelineContexts != precomputePipelineContexts;
+        this.precomputePipelineContexts = precomputePipelineContexts;
+        // The pipeline may not be constructed yet if the option is set from the constructor of the Channel.
+        ChannelPipeline pipeline = channel.pipeline();
+        if (changed && pipeline instanceof DefaultChannelPipeline) {
+            ((DefaultChannelPipeline) pipeline).precomputeContextsChanged(precomputePipelineContexts);
+        }
+        return this;
+    }
+
+    private boolean getPrecomputePipelineContexts() {
+        return precomputePipelineContexts;
+    }
+
 }
@@ -39,6 +39,10 @@ import java.util.WeakHashMap;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+import static io.netty.channel.ChannelHandlerMask.MASK_CHANNEL_READ;
+import static io.netty.channel.ChannelHandlerMask.MASK_FLUSH;
+import static io.netty.channel.ChannelHandlerMask.MASK_WRITE;
+
 /**
  * The default {@link ChannelPipeline} implementation.  It is usually created
  * by a {@link Channel} implementation when the {@link Channel} is created.
@@ -72,6 +76,9 @@ public class DefaultChannelPipeline implements ChannelPipeline {
     private Map<EventExecutorGroup, EventExecutor> childExecutors;
     private volatile MessageSizeEstimator.Handle estimatorHandle;
     private boolean firstRegistration = true;
+    // Only accessed while holding the lock of the pipeline.
+    private boolean precomputeContexts;
+    private boolean contextsPrecomputed;
 
     /**
      * This is the head of a linked list that is processed by {@link #callHandlerAddedForAllHandlers()} and so process
@@ -188,6 +195,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         newCtx.next = nextCtx;
         head.next = newCtx;
         nextCtx.prev = newCtx;
+        updatePrecomputedContexts();
     }
 
     @Override
@@ -230,6 +238,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         newCtx.next = tail;
         prev.next = newCtx;
         tail.prev = newCtx;
+        updatePrecomputedContexts();
     }
 
     @Override
@@ -270,11 +279,12 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return this;
     }
 
-    private static void addBefore0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
+    private void addBefore0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
         newCtx.prev = ctx.prev;
         newCtx.next = ctx;
         ctx.prev.next = newCtx;
         ctx.prev = newCtx;
+        updatePrecomputedContexts();
     }
 
     private String filterName(String name, ChannelHandler handler) {
@@ -323,11 +333,12 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return this;
     }
 
-    private static void addAfter0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
+    private void addAfter0(AbstractChannelHandlerContext ctx, AbstractChannelHandlerContext newCtx) {
         newCtx.prev = ctx;
         newCtx.next = ctx.next;
         ctx.next.prev = newCtx;
         ctx.next = newCtx;
+        updatePrecomputedContexts();
     }
 
     public final ChannelPipeline addFirst(ChannelHandler handler) {
@@ -486,6 +497,59 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         AbstractChannelHandlerContext next = ctx.next;
         prev.next = next;
         next.prev = prev;
+        // Events which are still in flight for the removed context need to find the next context via the linked list.
+        ctx.clearPrecomputedContexts();
+        updatePrecomputedContexts();
+    }
+
+    /**
+     * Called by {@link DefaultChannelConfig} once {@link ChannelOption#PRECOMPUTE_PIPELINE_CONTEXTS} was changed, so
+     * the option also takes effect for a pipeline which is not modified anymore.
+     */
+    final synchronized void precomputeContextsChanged(boolean precomputeContexts) {
+        this.precomputeContexts = precomputeContexts;
+        updatePrecomputedContexts();
+    }
+
+    /**
+     * Updates the contexts which are precomputed if {@link ChannelOption#PRECOMPUTE_PIPELINE_CONTEXTS} is used. Must
+     * be called while holding the lock of the pipeline every time the linked list of contexts was modified.
+     */
+    private void updatePrecomputedContexts() {
+        if (precomputeContexts) {
+            contextsPrecomputed = true;
+
+            AbstractChannelHandlerContext nextChannelRead = tail;
+            for (AbstractChannelHandlerContext ctx = tail.prev; ctx != null; ctx = ctx.prev) {
+                ctx.nextChannelRead = nextChannelRead;
+                if ((ctx.executionMask & MASK_CHANNEL_READ) != 0) {
+                    nextChannelRead = ctx;
+                }
+            }
+
+            AbstractChannelHandlerContext prevWrite = head;
+            AbstractChannelHandlerContext prevFlush = head;
+            AbstractChannelHandlerContext prevWriteOrFlush = head;
+            for (AbstractChannelHandlerContext ctx = head.next; ctx != null; ctx = ctx.next) {
+                ctx.prevWrite = prevWrite;
+                ctx.prevFlush = prevFlush;
+                ctx.prevWriteOrFlush = prevWriteOrFlush;
+                if ((ctx.executionMask & MASK_WRITE) != 0) {
+                    prevWrite = ctx;
+                    prevWriteOrFlush = ctx;
+                }
+                if ((ctx.executionMask & MASK_FLUSH) != 0) {
+                    prevFlush = ctx;
+                    prevWriteOrFlush = ctx;
+                }
+            }
+        } else if (contextsPrecomputed) {
+            // The option was disabled since the last modification.
+            contextsPrecomputed = false;
+            for (AbstractChannelHandlerContext ctx = head; ctx != null; ctx = ctx.next) {
+                ctx.clearPrecomputedContexts();
+            }
+        }
     }
 
     @Override
@@ -574,7 +638,7 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         return ctx.handler();
     }
 
-    private static void replace0(AbstractChannelHandlerContext oldCtx, AbstractChannelHandlerContext newCtx) {
+    private void replace0(AbstractChannelHandlerContext oldCtx, AbstractChannelHandlerContext newCtx) {
         AbstractChannelHandlerContext prev = oldCtx.prev;
         AbstractChannelHandlerContext next = oldCtx.next;
         newCtx.prev = prev;
@@ -590,6 +654,8 @@ public class DefaultChannelPipeline implements ChannelPipeline {
         // update the reference to the replacement so forward of buffered content will work correctly
         oldCtx.prev = newCtx;
         oldCtx.next = newCtx;
+        oldCtx.clearPrecomputedContexts();
+        updatePrecomputedContexts();
     }
 
     private static void checkMultiplicity(ChannelHandler handler) {
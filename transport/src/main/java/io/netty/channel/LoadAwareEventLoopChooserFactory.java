@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.UnstableApi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the {@link EventExecutor} that currently carries the least load
+ * instead of using simple round-robin.
+ * <p>
+ * The load of an {@link EventLoop} is the number of {@link Channel}s registered with it (as reported by
+ * {@link SingleThreadEventLoop#registeredChannels()}) plus the number of tasks that are pending for execution. The
+ * pending tasks also account for registrations which were submitted but not processed yet, so a burst of accepted
+ * {@link Channel}s is still spread across all {@link EventLoop}s. {@link EventExecutor}s which do not expose these
+ * numbers are treated as idle. Ties are broken in a round-robin fashion.
+ * <p>
+ * Both numbers are read from the calling thread without synchronization and so are best effort only.
+ */
+@UnstableApi
+public final class LoadAwareEventLoopChooserFactory implements EventExecutorChooserFactory {
+
+    public static final LoadAwareEventLoopChooserFactory INSTANCE = new LoadAwareEventLoopChooserFactory();
+
+    private LoadAwareEventLoopChooserFactory() { }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        return new LoadAwareEventLoopChooser(executors);
+    }
+
+    /**
+     * Returns the load of the given {@link EventExecutor} as used by the {@link EventExecutorChooser}s created by
+     * this factory.
+     */
+    static long load(EventExecutor executor) {
+        long load = 0;
+        if (executor instanceof SingleThreadEventLoop) {
+            int channels = ((SingleThreadEventLoop) executor).registeredChannels();
+            if (channels > 0) {
+                load = channels;
+            }
+        }
+        if (executor instanceof SingleThreadEventExecutor) {
+            load += ((SingleThreadEventExecutor) executor).pendingTasks();
+        }
+        return load;
+    }
+
+    private static final class LoadAwareEventLoopChooser implements EventExecutorChooser {
+        private final AtomicInteger idx = new AtomicInteger();
+        private final EventExecutor[] executors;
+
+        LoadAwareEventLoopChooser(EventExecutor[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public EventExecutor next() {
+            final EventExecutor[] executors = this.executors;
+            final int length = executors.length;
+            // Start at a rotating offset so we fall back to round-robin if all executors carry the same load.
+            int i = Math.abs(idx.getAndIncrement() % length);
+            EventExecutor best = executors[i];
+            long bestLoad = load(best);
+            for (int n = 1; n < length && bestLoad > 0; n++) {
+                if (++i == length) {
+                    i = 0;
+                }
+                EventExecutor executor = executors[i];
+                long load = load(executor);
+                if (load < bestLoad) {
+                    best = executor;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.netty.channel.group;
+
+import io.netty.channel.Channel;
+
+/**
+ * A message which is written to the {@link Channel}s of a {@link DefaultChannelGroup} as a different message per
+ * {@link Channel}, like an encoded form which depends on the handlers in the pipeline of the {@link Channel}. This
+ * allows to prepare such a message once per distinct form instead of once per {@link Channel}.
+ * <p>
+ * The {@link ChannelGroupMessage} itself is released once it was written to all {@link Channel}s, if it is
+ * {@linkplain io.netty.util.ReferenceCounted reference counted}.
+ */
+public interface ChannelGroupMessage {
+
+    /**
+     * Returns the message which is written to the given {@link Channel}. The caller takes over the ownership of
+     * the returned message. This method is called by the thread which writes to the {@link ChannelGroup}.
+     */
+    Object newMessage(Channel channel);
+}
@@ -38,7 +38,8 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * The default {@link ChannelGroup} implementation.
+ * The default {@link ChannelGroup} implementation. A written {@link ChannelGroupMessage} is replaced by the message it
+ * returns for each {@link Channel}.
  */
 public class DefaultChannelGroup extends AbstractSet<Channel> implements ChannelGroup {
 
@@ -238,8 +239,10 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
 
     // Create a safe duplicate of the message to write it to a channel but not affect other writes.
     // See https://github.com/netty/netty/issues/1461
-    private static Object safeDuplicate(Object message) {
-        if (message instanceof ByteBuf) {
+    private static Object safeDuplicate(Object message, Channel channel) {
+        if (message instanceof ChannelGroupMessage) {
+            return ((ChannelGroupMessage) message).newMessage(channel);
+        } else if (message instanceof ByteBuf) {
             return ((ByteBuf) message).retainedDuplicate();
         } else if (message instanceof ByteBufHolder) {
             return ((ByteBufHolder) message).retainedDuplicate();
@@ -262,7 +265,7 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
         if (voidPromise) {
             for (Channel c: nonServerChannels.values()) {
                 if (matcher.matches(c)) {
-                    c.write(safeDuplicate(message), c.voidPromise());
+                    c.write(safeDuplicate(message, c), c.voidPromise());
                 }
             }
             future = voidFuture;
@@ -270,7 +273,7 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
             Map<Channel, ChannelFuture> futures = new LinkedHashMap<Channel, ChannelFuture>(nonServerChannels.size());
             for (Channel c: nonServerChannels.values()) {
                 if (matcher.matches(c)) {
-                    futures.put(c, c.write(safeDuplicate(message)));
+                    futures.put(c, c.write(safeDuplicate(message, c)));
                 }
             }
             future = new DefaultChannelGroupFuture(this, futures, executor);
@@ -395,7 +398,7 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
         if (voidPromise) {
             for (Channel c: nonServerChannels.values()) {
                 if (matcher.matches(c)) {
-                    c.writeAndFlush(safeDuplicate(message), c.voidPromise());
+                    c.writeAndFlush(safeDuplicate(message, c), c.voidPromise());
                 }
             }
             future = voidFuture;
@@ -403,7 +406,7 @@ public class DefaultChannelGroup extends AbstractSet<Channel> implements Channel
             Map<Channel, ChannelFuture> futures = new LinkedHashMap<Channel, ChannelFuture>(nonServerChannels.size());
             for (Channel c: nonServerChannels.values()) {
                 if (matcher.matches(c)) {
-                    futures.put(c, c.writeAndFlush(safeDuplicate(message)));
+                    futures.put(c, c.writeAndFlush(safeDuplicate(message, c)));
                 }
             }
             future = new DefaultChannelGroupFuture(this, futures, executor);
@@ -22,11 +22,14 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.local.LocalAddress;
 import io.netty.channel.local.LocalChannel;
 import io.netty.channel.local.LocalEventLoopGroup;
 import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory;
 import org.junit.Test;
 
 import java.util.UUID;
@@ -34,6 +37,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class ServerBootstrapTest {
@@ -137,4 +141,61 @@ public class ServerBootstrapTest {
             group.shutdownGracefully();
         }
     }
+
+    @Test(timeout = 5000)
+    public void testChildEventLoopChooserFactory() throws Exception {
+        final LocalAddress addr = new LocalAddress(UUID.randomUUID().toString());
+        final AtomicReference<EventLoop> childLoop = new AtomicReference<EventLoop>();
+        final CountDownLatch registeredLatch = new CountDownLatch(1);
+        EventLoopGroup group = new DefaultEventLoopGroup(1);
+        EventLoopGroup childGroup = new DefaultEventLoopGroup(4);
+        final AtomicReference<EventLoop> expected = new AtomicReference<EventLoop>();
+        Channel sch = null;
+        Channel cch = null;
+        try {
+            ServerBootstrap sb = new ServerBootstrap();
+            sb.channel(LocalServerChannel.class)
+                    .group(group, childGroup)
+                    .childEventLoopChooserFactory(new EventExecutorChooserFactory() {
+                        @Override
+                        public EventExecutorChooser newChooser(final EventExecutor[] executors) {
+                            expected.set((EventLoop) executors[executors.length - 1]);
+                            return new EventExecutorChooser() {
+                                @Override
+                                public EventExecutor next() {
+                                    return executors[executors.length - 1];
+                                }
+                            };
+                        }
+                    })
+                    .childHandler(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+                            childLoop.set(ctx.channel().eventLoop());
+                            registeredLatch.countDown();
+                            super.channelRegistered(ctx);
+                        }
+                    });
+
+            Bootstrap cb = new Bootstrap();
+            cb.group(group)
+                    .channel(LocalChannel.class)
+                    .handler(new ChannelInboundHandlerAdapter());
+
+            sch = sb.bind(addr).syncUninterruptibly().channel();
+            cch = cb.connect(addr).syncUninterruptibly().channel();
+
+            registeredLatch.await();
+            assertSame(expected.get(), childLoop.get());
+        } finally {
+            if (sch != null) {
+                sch.close().syncUninterruptibly();
+            }
+            if (cch != null) {
+                cch.close().syncUninterruptibly();
+            }
+            group.shutdownGracefully();
+            childGroup.shutdownGracefully();
+        }
+    }
 }
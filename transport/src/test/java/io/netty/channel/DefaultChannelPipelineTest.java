@@ -49,6 +49,7 @@ import org.junit.Test;
 import java.net.SocketAddress;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -291,6 +292,106 @@ public class DefaultChannelPipelineTest {
         assertNull(pipeline.get("handler1"));
     }
 
+    @Test
+    public void testPrecomputedContexts() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.config().setOption(ChannelOption.PRECOMPUTE_PIPELINE_CONTEXTS, true);
+        ChannelPipeline pipeline = channel.pipeline();
+
+        final List<String> events = new ArrayList<String>();
+        pipeline.addLast("out1", new RecordingOutboundHandler("out1", events));
+        pipeline.addLast("in1", new RecordingInboundHandler("in1", events));
+        pipeline.addLast("noop", new ChannelInboundHandlerAdapter());
+        pipeline.addLast("in2", new RecordingInboundHandler("in2", events));
+
+        assertPipelineEvents(channel, events, "in1", "in2", "out1", "out1");
+
+        pipeline.addAfter("in1", "in3", new RecordingInboundHandler("in3", events));
+        pipeline.addFirst("out2", new RecordingOutboundHandler("out2", events));
+        assertPipelineEvents(channel, events, "in1", "in3", "in2", "out1", "out2", "out1", "out2");
+
+        pipeline.remove("in3");
+        pipeline.replace("out1", "out3", new RecordingOutboundHandler("out3", events));
+        assertPipelineEvents(channel, events, "in1", "in2", "out3", "out2", "out3", "out2");
+
+        // Disabling the option takes effect without modifying the pipeline.
+        channel.config().setOption(ChannelOption.PRECOMPUTE_PIPELINE_CONTEXTS, false);
+        assertNull(((AbstractChannelHandlerContext) pipeline.context("in1")).nextChannelRead);
+        assertNull(((AbstractChannelHandlerContext) pipeline.context("out3")).prevWrite);
+        assertPipelineEvents(channel, events, "in1", "in2", "out3", "out2", "out3", "out2");
+        pipeline.remove("noop");
+        assertNull(((AbstractChannelHandlerContext) pipeline.context("in1")).nextChannelRead);
+        assertPipelineEvents(channel, events, "in1", "in2", "out3", "out2", "out3", "out2");
+
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPrecomputedContextsEnabledAfterSetup() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChannelPipeline pipeline = channel.pipeline();
+        final List<String> events = new ArrayList<String>();
+        pipeline.addLast("out1", new RecordingOutboundHandler("out1", events));
+        pipeline.addLast("in1", new RecordingInboundHandler("in1", events));
+        pipeline.addLast("noop", new ChannelInboundHandlerAdapter());
+        assertNull(((AbstractChannelHandlerContext) pipeline.context("in1")).nextChannelRead);
+
+        channel.config().setOption(ChannelOption.PRECOMPUTE_PIPELINE_CONTEXTS, true);
+        assertNotNull(((AbstractChannelHandlerContext) pipeline.context("in1")).nextChannelRead);
+        assertNotNull(((AbstractChannelHandlerContext) pipeline.context("out1")).prevWrite);
+        assertPipelineEvents(channel, events, "in1", "out1", "out1");
+
+        assertFalse(channel.finish());
+    }
+
+    private static void assertPipelineEvents(EmbeddedChannel channel, List<String> events, String... expected) {
+        events.clear();
+        channel.pipeline().fireChannelRead(Unpooled.EMPTY_BUFFER);
+        channel.pipeline().write(Unpooled.EMPTY_BUFFER);
+        channel.pipeline().flush();
+        assertEquals(Arrays.asList(expected), events);
+        assertTrue(channel.releaseInbound());
+        assertTrue(channel.releaseOutbound());
+    }
+
+    private static final class RecordingInboundHandler extends ChannelInboundHandlerAdapter {
+        private final String name;
+        private final List<String> events;
+
+        RecordingInboundHandler(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            events.add(name);
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private static final class RecordingOutboundHandler extends ChannelOutboundHandlerAdapter {
+        private final String name;
+        private final List<String> events;
+
+        RecordingOutboundHandler(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            events.add(name);
+            ctx.write(msg, promise);
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            events.add(name);
+            ctx.flush();
+        }
+    }
+
     @Test
     public void testRenameChannelHandler() {
         ChannelPipeline pipeline = new LocalChannel().pipeline();
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.channel;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorChooserFactory.EventExecutorChooser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LoadAwareEventLoopChooserFactoryTest {
+
+    private TestEventLoop[] loops;
+
+    @Before
+    public void setUp() {
+        loops = new TestEventLoop[4];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new TestEventLoop();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (TestEventLoop loop: loops) {
+            loop.shutdownGracefully();
+        }
+    }
+
+    @Test
+    public void testRoundRobinWhenIdle() {
+        EventExecutorChooser chooser = LoadAwareEventLoopChooserFactory.INSTANCE.newChooser(loops);
+        Set<EventExecutor> chosen = new HashSet<EventExecutor>();
+        for (int i = 0; i < loops.length; i++) {
+            chosen.add(chooser.next());
+        }
+        assertEquals(loops.length, chosen.size());
+    }
+
+    @Test
+    public void testChoosesLeastRegisteredChannels() {
+        loops[0].registeredChannels = 10;
+        loops[1].registeredChannels = 3;
+        loops[2].registeredChannels = 7;
+        loops[3].registeredChannels = 5;
+        EventExecutorChooser chooser = LoadAwareEventLoopChooserFactory.INSTANCE.newChooser(loops);
+        for (int i = 0; i < loops.length; i++) {
+            assertSame(loops[1], chooser.next());
+        }
+    }
+
+    @Test
+    public void testUnsupportedRegisteredChannelsTreatedAsIdle() {
+        loops[0].registeredChannels = -1;
+        loops[1].registeredChannels = 1;
+        loops[2].registeredChannels = 1;
+        loops[3].registeredChannels = 1;
+        EventExecutorChooser chooser = LoadAwareEventLoopChooserFactory.INSTANCE.newChooser(loops);
+        for (int i = 0; i < loops.length; i++) {
+            assertSame(loops[0], chooser.next());
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testPendingTasksCountAsLoad() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 1; i < loops.length; i++) {
+            loops[i].registeredChannels = 1;
+        }
+        loops[0].execute(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        blocked.await();
+        try {
+            for (int i = 0; i < 2; i++) {
+                loops[0].execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // NOOP
+                    }
+                });
+            }
+            EventExecutorChooser chooser = LoadAwareEventLoopChooserFactory.INSTANCE.newChooser(loops);
+            for (int i = 0; i < loops.length; i++) {
+                EventExecutor next = chooser.next();
+                assertEquals(1, LoadAwareEventLoopChooserFactory.load(next));
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static final class TestEventLoop extends DefaultEventLoop {
+        volatile int registeredChannels;
+
+        @Override
+        public int registeredChannels() {
+            return registeredChannels;
+        }
+    }
+}